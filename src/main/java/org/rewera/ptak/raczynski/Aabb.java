@@ -0,0 +1,39 @@
+package org.rewera.ptak.raczynski;
+
+/**
+ * Test przecięcia prostokątów o bokach równoległych do osi (AABB) na współrzędnych typu {@code int}.
+ *
+ * <p>Symulacja sprawdza kolizje przy każdym ruchu czołgu i w każdym takcie lotu pocisku, więc
+ * tworzenie {@link java.awt.Rectangle} tylko po to, aby wywołać {@code intersects}, dawało stały
+ * strumień śmieci. Obiekty gry przekazują tu swoje granice wprost (np. {@link Tank#intersects},
+ * {@link Obstacle#intersects}), a wynik jest taki sam jak {@link java.awt.Rectangle#intersects}:
+ * prostokąty stykające się krawędzią się nie przecinają, a prostokąt o zerowym boku nie przecina
+ * niczego.</p>
+ */
+final class Aabb {
+
+    /**
+     * Klasa narzędziowa - bez instancji.
+     */
+    private Aabb() {
+    }
+
+    /**
+     * Sprawdza, czy dwa prostokąty się przecinają.
+     *
+     * @param ax Lewy brzeg pierwszego prostokąta.
+     * @param ay Górny brzeg pierwszego prostokąta.
+     * @param aw Szerokość pierwszego prostokąta.
+     * @param ah Wysokość pierwszego prostokąta.
+     * @param bx Lewy brzeg drugiego prostokąta.
+     * @param by Górny brzeg drugiego prostokąta.
+     * @param bw Szerokość drugiego prostokąta.
+     * @param bh Wysokość drugiego prostokąta.
+     * @return true, jeśli prostokąty mają część wspólną.
+     */
+    static boolean intersects(int ax, int ay, int aw, int ah, int bx, int by, int bw, int bh) {
+        // Bez skoków warunkowych - wynik kolejnych porównań jest trudny do przewidzenia
+        return aw > 0 & ah > 0 & bw > 0 & bh > 0
+                & ax < bx + bw & bx < ax + aw & ay < by + bh & by < ay + ah;
+    }
+}
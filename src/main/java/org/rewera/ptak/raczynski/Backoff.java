@@ -0,0 +1,80 @@
+package org.rewera.ptak.raczynski;
+
+import java.util.Random;
+
+/**
+ * Wykładnicze opóźnienie kolejnych prób ponownego połączenia z pełnym losowym rozrzutem.
+ *
+ * <p>Po awarii sieci wszyscy klienci tracą połączenie w tej samej chwili. Gdyby ponawiali próby
+ * w stałych odstępach, serwer dostawałby falę połączeń co odstęp. Opóźnienie kolejnej próby jest
+ * losowane z przedziału od zera do górnej granicy, która podwaja się z każdą próbą aż do maksimum,
+ * więc ponowne połączenia rozkładają się równomiernie w czasie.</p>
+ */
+class Backoff {
+
+    /**
+     * Górna granica opóźnienia pierwszej próby w milisekundach.
+     */
+    private final long baseMillis;
+
+    /**
+     * Największa górna granica opóźnienia w milisekundach.
+     */
+    private final long maxMillis;
+
+    /**
+     * Generator rozrzutu.
+     */
+    private final Random random;
+
+    /**
+     * Liczba prób od ostatniego udanego połączenia.
+     */
+    private int attempts;
+
+    /**
+     * Tworzy opóźnienie kolejnych prób.
+     *
+     * @param baseMillis Górna granica opóźnienia pierwszej próby w milisekundach (co najmniej 1).
+     * @param maxMillis  Największa górna granica opóźnienia w milisekundach (co najmniej baseMillis).
+     * @param random     Generator rozrzutu.
+     */
+    Backoff(long baseMillis, long maxMillis, Random random) {
+        if (baseMillis < 1 || maxMillis < baseMillis) {
+            throw new IllegalArgumentException("Invalid backoff bounds: " + baseMillis + ", " + maxMillis);
+        }
+        this.baseMillis = baseMillis;
+        this.maxMillis = maxMillis;
+        this.random = random;
+    }
+
+    /**
+     * Zwraca opóźnienie przed kolejną próbą i zwiększa licznik prób.
+     *
+     * @return Opóźnienie w milisekundach, od 0 do bieżącej górnej granicy włącznie.
+     */
+    long nextDelayMillis() {
+        long ceiling = maxMillis;
+        if (attempts < 62 && baseMillis <= maxMillis >> attempts) {
+            ceiling = baseMillis << attempts;
+        }
+        attempts++;
+        return (long) (random.nextDouble() * (ceiling + 1));
+    }
+
+    /**
+     * Zwraca liczbę prób od ostatniego udanego połączenia.
+     *
+     * @return Liczba prób.
+     */
+    int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * Zeruje licznik prób po udanym połączeniu.
+     */
+    void reset() {
+        attempts = 0;
+    }
+}
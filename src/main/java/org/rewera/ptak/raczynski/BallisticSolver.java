@@ -0,0 +1,308 @@
+package org.rewera.ptak.raczynski;
+
+import java.util.List;
+
+/**
+ * Wyznacza analitycznie, gdzie i w którym takcie zakończy się lot pocisku, bez symulowania kolejnych taktów.
+ *
+ * <p>Takt {@link BulletStore#step} (i {@link Bullet#move()}) przesuwa pocisk o {@code (dx, dy)},
+ * a potem zwiększa {@code dy} o {@link BulletStore#GRAVITY}, więc po {@code n} taktach pocisk jest w punkcie
+ * {@code x + n dx}, {@code y + n dy + GRAVITY n (n - 1) / 2}. Solver wyznacza z tego wzoru takt, w którym
+ * pocisk spada na podłoże lub wylatuje poza ekran, a dla czołgu przeciwnika i każdej przeszkody - przedział
+ * taktów, w których pocisk może leżeć na nich (z zapasem jednego piksela na zaokrąglenia). Dopiero takty
+ * z tych przedziałów są sprawdzane dokładnie, tak jak w {@link BulletStore#step}: pozycja obcięta do
+ * {@code int} i {@link Aabb}. Koszt jest więc proporcjonalny do liczby przeszkód, a nie do czasu lotu.</p>
+ *
+ * <p>Wynik odpowiada symulacji takt po takcie przy nieruchomych czołgach i przeszkodach (w trakcie strzału
+ * polecenia graczy są pomijane). Pozycja ze wzoru może różnić się od sumowanej co takt na ostatnich bitach
+ * mantysy, co ma znaczenie tylko wtedy, gdy pocisk wypada dokładnie na granicy piksela.</p>
+ */
+final class BallisticSolver {
+
+    /**
+     * Najniższa pozycja Y pocisku w powietrzu - niżej pocisk dotyka podłoża.
+     */
+    private static final int GROUND_LIMIT = 530 - BulletStore.DIAMETER;
+
+    /**
+     * Zapas w pikselach przy wyznaczaniu przedziałów taktów do dokładnego sprawdzenia.
+     */
+    private static final double SLACK = 1;
+
+    /**
+     * Wynik lotu pocisku.
+     */
+    static final class Impact {
+
+        /**
+         * Takt (liczony od 1), w którym pocisk trafił lub został usunięty z planszy.
+         */
+        final int tick;
+
+        /**
+         * Pozycja X pocisku w tym takcie.
+         */
+        final double x;
+
+        /**
+         * Pozycja Y pocisku w tym takcie.
+         */
+        final double y;
+
+        /**
+         * Określa, czy pocisk trafił czołg przeciwnika.
+         */
+        final boolean tankHit;
+
+        /**
+         * Określa, czy pocisk trafił przeszkodę.
+         */
+        final boolean obstacleHit;
+
+        /**
+         * Tworzy wynik.
+         *
+         * @param tick        Takt trafienia lub usunięcia.
+         * @param x           Pozycja X.
+         * @param y           Pozycja Y.
+         * @param tankHit     Trafienie czołgu.
+         * @param obstacleHit Trafienie przeszkody.
+         */
+        Impact(int tick, double x, double y, boolean tankHit, boolean obstacleHit) {
+            this.tick = tick;
+            this.x = x;
+            this.y = y;
+            this.tankHit = tankHit;
+            this.obstacleHit = obstacleHit;
+        }
+
+        /**
+         * Zwraca takt, w którym pocisk znika z magazynu. Pocisk, który trafił, pozostaje w nim
+         * jako niewidoczny do kolejnego taktu.
+         *
+         * @return Takt usunięcia pocisku.
+         */
+        int removalTick() {
+            return tankHit || obstacleHit ? tick + 1 : tick;
+        }
+
+        @Override
+        public String toString() {
+            return "Impact{tick=" + tick + ", x=" + x + ", y=" + y + ", tankHit=" + tankHit + ", obstacleHit=" + obstacleHit + "}";
+        }
+    }
+
+    /**
+     * Klasa narzędziowa - bez instancji.
+     */
+    private BallisticSolver() {
+    }
+
+    /**
+     * Wyznacza wynik lotu pocisku o podanym stanie.
+     *
+     * @param x         Pozycja X.
+     * @param y         Pozycja Y.
+     * @param dx        Przemieszczenie w osi X na takt.
+     * @param dy        Przemieszczenie w osi Y na takt.
+     * @param target    Czołg przeciwnika.
+     * @param obstacles Przeszkody na planszy.
+     * @return Pierwsze trafienie albo usunięcie pocisku z planszy.
+     */
+    static Impact solve(double x, double y, double dx, double dy, Tank target, List<Obstacle> obstacles) {
+        int end = removalTick(x, y, dx, dy);
+        int tankTick = firstHit(x, y, dx, dy, target.getX(), target.getY(), target.getWidth(), target.getHeight(), end);
+        int obstacleTick = end;
+        int limit = Math.min(end, tankTick + 1); // Trafienie przeszkody w tym samym takcie też się liczy
+        for (int i = 0; i < obstacles.size(); i++) {
+            Obstacle obstacle = obstacles.get(i);
+            int top = obstacle.getY() - obstacle.getHeight();
+            obstacleTick = Math.min(obstacleTick, firstHit(x, y, dx, dy, obstacle.getX(), top, obstacle.getWidth(), obstacle.getHeight(), limit));
+            limit = Math.min(limit, obstacleTick);
+        }
+        int tick = Math.min(end, Math.min(tankTick, obstacleTick));
+        return new Impact(tick, positionX(x, dx, tick), positionY(y, dy, tick), tick < end && tankTick == tick, tick < end && obstacleTick == tick);
+    }
+
+    /**
+     * Wyznacza wynik lotu pocisku o podanym indeksie w magazynie.
+     *
+     * @param bullets     Magazyn pocisków.
+     * @param i           Indeks pocisku.
+     * @param player1Tank Czołg gracza 1.
+     * @param player2Tank Czołg gracza 2.
+     * @param obstacles   Przeszkody na planszy.
+     * @return Pierwsze trafienie albo usunięcie pocisku z planszy.
+     */
+    static Impact solve(BulletStore bullets, int i, Tank player1Tank, Tank player2Tank, List<Obstacle> obstacles) {
+        Tank target = bullets.isPlayer1(i) ? player2Tank : player1Tank;
+        return solve(bullets.getX(i), bullets.getY(i), bullets.getDx(i), bullets.getDy(i), target, obstacles);
+    }
+
+    /**
+     * Zwraca pozycję X pocisku po podanej liczbie taktów.
+     *
+     * @param x    Pozycja początkowa.
+     * @param dx   Przemieszczenie na takt.
+     * @param tick Liczba taktów.
+     * @return Pozycja X.
+     */
+    static double positionX(double x, double dx, int tick) {
+        return x + tick * dx;
+    }
+
+    /**
+     * Zwraca pozycję Y pocisku po podanej liczbie taktów.
+     *
+     * @param y    Pozycja początkowa.
+     * @param dy   Początkowe przemieszczenie na takt.
+     * @param tick Liczba taktów.
+     * @return Pozycja Y.
+     */
+    static double positionY(double y, double dy, int tick) {
+        return y + tick * dy + BulletStore.GRAVITY * ((long) tick * (tick - 1) / 2);
+    }
+
+    /**
+     * Wyznacza pierwszy takt, w którym pocisk dotyka podłoża lub jest poza ekranem
+     * (warunki usuwania z {@link BulletStore#step}).
+     *
+     * @param x  Pozycja X.
+     * @param y  Pozycja Y.
+     * @param dx Przemieszczenie w osi X na takt.
+     * @param dy Przemieszczenie w osi Y na takt.
+     * @return Takt usunięcia.
+     */
+    private static int removalTick(double x, double y, double dx, double dy) {
+        if (isRemoved(x, y, dx, dy, 1)) {
+            return 1;
+        }
+        // Oszacowanie ze wzoru, poprawiane dokładnym warunkiem - po pierwszym takcie w zasięgu
+        // zbiór taktów usunięcia jest przedziałem [n, nieskończoność)
+        double estimate = upperRoot(y, dy, GROUND_LIMIT);
+        if (Double.isNaN(estimate)) {
+            estimate = 1; // Pocisk cały czas jest poniżej poziomu podłoża
+        }
+        if (dx > 0) {
+            estimate = Math.min(estimate, (800 - x) / dx);
+        } else if (dx < 0) {
+            estimate = Math.min(estimate, -x / dx);
+        }
+        int tick = (int) Math.max(1, Math.min(Integer.MAX_VALUE / 2, Math.ceil(estimate)));
+        while (tick > 1 && isRemoved(x, y, dx, dy, tick - 1)) {
+            tick--;
+        }
+        while (!isRemoved(x, y, dx, dy, tick)) {
+            tick++;
+        }
+        return tick;
+    }
+
+    /**
+     * Sprawdza, czy pocisk jest w danym takcie usuwany z planszy.
+     *
+     * @param x    Pozycja X.
+     * @param y    Pozycja Y.
+     * @param dx   Przemieszczenie w osi X na takt.
+     * @param dy   Przemieszczenie w osi Y na takt.
+     * @param tick Takt.
+     * @return true, jeśli pocisk jest usuwany.
+     */
+    private static boolean isRemoved(double x, double y, double dx, double dy, int tick) {
+        double px = positionX(x, dx, tick);
+        double py = positionY(y, dy, tick);
+        return py + BulletStore.DIAMETER >= 530 || py > 600 || px < 0 || px > 800;
+    }
+
+    /**
+     * Wyznacza pierwszy takt przed {@code limit}, w którym pocisk przecina prostokąt.
+     *
+     * @param x      Pozycja X.
+     * @param y      Pozycja Y.
+     * @param dx     Przemieszczenie w osi X na takt.
+     * @param dy     Przemieszczenie w osi Y na takt.
+     * @param bx     Lewy brzeg prostokąta.
+     * @param by     Górny brzeg prostokąta.
+     * @param bw     Szerokość prostokąta.
+     * @param bh     Wysokość prostokąta.
+     * @param limit  Takt, od którego nie szukamy.
+     * @return Takt trafienia albo {@code limit}, jeśli pocisk nie przecina prostokąta wcześniej.
+     */
+    private static int firstHit(double x, double y, double dx, double dy, int bx, int by, int bw, int bh, int limit) {
+        // Pocisk może przeciąć prostokąt tylko wtedy, gdy jego lewy górny róg leży w prostokącie
+        // powiększonym o średnicę pocisku (i o zapas na obcięcie do int)
+        double left = bx - BulletStore.DIAMETER - SLACK;
+        double right = bx + bw + SLACK;
+        double first = 1;
+        double last = limit - 1;
+        if (dx > 0) {
+            first = Math.max(first, (left - x) / dx);
+            last = Math.min(last, (right - x) / dx);
+        } else if (dx < 0) {
+            first = Math.max(first, (right - x) / dx);
+            last = Math.min(last, (left - x) / dx);
+        } else if (x < left || x > right) {
+            return limit;
+        }
+
+        // Wykres pozycji Y jest parabolą: pocisk jest nie niżej niż dolny brzeg w przedziale pierwiastków...
+        double bottom = by + bh + SLACK;
+        double lower = lowerRoot(y, dy, bottom);
+        double upper = upperRoot(y, dy, bottom);
+        if (Double.isNaN(lower)) {
+            return limit;
+        }
+        first = Math.max(first, lower);
+        last = Math.min(last, upper);
+
+        // ...z wyjątkiem taktów, w których leci wyżej niż górny brzeg
+        double top = by - BulletStore.DIAMETER - SLACK;
+        double skipFrom = lowerRoot(y, dy, top);
+        double skipTo = upperRoot(y, dy, top);
+
+        int from = (int) Math.max(1, Math.ceil(first));
+        int to = (int) Math.min(limit - 1, Math.floor(last));
+        for (int tick = from; tick <= to; tick++) {
+            if (tick > skipFrom && tick < skipTo) {
+                tick = (int) Math.ceil(skipTo) - 1; // Pętla zwiększy takt do pierwszego poza przedziałem
+                continue;
+            }
+            int px = (int) positionX(x, dx, tick);
+            int py = (int) positionY(y, dy, tick);
+            if (Aabb.intersects(px, py, BulletStore.DIAMETER, BulletStore.DIAMETER, bx, by, bw, bh)) {
+                return tick;
+            }
+        }
+        return limit;
+    }
+
+    /**
+     * Zwraca mniejszy pierwiastek równania {@code positionY(n) = level} (dla {@code n} rzeczywistego).
+     *
+     * @param y     Pozycja Y.
+     * @param dy    Przemieszczenie w osi Y na takt.
+     * @param level Poziom.
+     * @return Pierwiastek albo {@code NaN}, jeśli pocisk nie osiąga poziomu.
+     */
+    private static double lowerRoot(double y, double dy, double level) {
+        double a = BulletStore.GRAVITY / 2;
+        double b = dy - BulletStore.GRAVITY / 2;
+        double delta = b * b - 4 * a * (y - level);
+        return delta < 0 ? Double.NaN : (-b - Math.sqrt(delta)) / (2 * a);
+    }
+
+    /**
+     * Zwraca większy pierwiastek równania {@code positionY(n) = level} (dla {@code n} rzeczywistego).
+     *
+     * @param y     Pozycja Y.
+     * @param dy    Przemieszczenie w osi Y na takt.
+     * @param level Poziom.
+     * @return Pierwiastek albo {@code NaN}, jeśli pocisk nie osiąga poziomu.
+     */
+    private static double upperRoot(double y, double dy, double level) {
+        double a = BulletStore.GRAVITY / 2;
+        double b = dy - BulletStore.GRAVITY / 2;
+        double delta = b * b - 4 * a * (y - level);
+        return delta < 0 ? Double.NaN : (-b + Math.sqrt(delta)) / (2 * a);
+    }
+}
@@ -0,0 +1,209 @@
+package org.rewera.ptak.raczynski;
+
+import java.awt.*;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ręcznie napisany, wersjonowany kodek binarny stanu gry.
+ * Pola mają stałą szerokość i są zapisywane bez refleksji, deskryptorów klas i tablicy odwołań.
+ *
+ * <p>Układ (wersja 1, big-endian):</p>
+ * <pre>
+ * byte   wersja
+ * byte   flagi (bit 0: tura gracza 1)
+ * czołg  x 2: short x, short y, int rgb, short kąt, short hp, short paliwo
+ * short  liczba pocisków, dla każdego: double x, y, dx, dy, int rgb, byte flagi (bit 0: widoczny, bit 1: gracz 1)
+ * short  liczba przeszkód, dla każdej: short x, y, szerokość, wysokość
+ * </pre>
+ */
+class BinaryCodec implements GameStateCodec {
+
+    /**
+     * Jedyna instancja kodeka (kodek jest bezstanowy).
+     */
+    static final BinaryCodec INSTANCE = new BinaryCodec();
+
+    /**
+     * Wersja formatu zapisywana w pierwszym bajcie.
+     */
+    static final byte FORMAT_VERSION = 1;
+
+    /**
+     * Rozmiar nagłówka (wersja i flagi).
+     */
+    private static final int HEADER_SIZE = 2;
+
+    /**
+     * Rozmiar zakodowanego czołgu.
+     */
+    static final int TANK_SIZE = 14;
+
+    /**
+     * Rozmiar zakodowanego pocisku.
+     */
+    static final int BULLET_SIZE = 37;
+
+    /**
+     * Rozmiar zakodowanej przeszkody.
+     */
+    static final int OBSTACLE_SIZE = 8;
+
+    @Override
+    public byte id() {
+        return BINARY;
+    }
+
+    @Override
+    public byte[] encode(GameState gameState) {
+        List<Bullet> bullets = gameState.getBullets();
+        List<Obstacle> obstacles = gameState.getObstacles();
+        byte[] data = new byte[HEADER_SIZE + 2 * TANK_SIZE + 2 + bullets.size() * BULLET_SIZE
+                + 2 + obstacles.size() * OBSTACLE_SIZE];
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        buffer.put(FORMAT_VERSION);
+        buffer.put((byte) (gameState.isPlayer1Turn() ? 1 : 0));
+        writeTank(buffer, gameState.getPlayer1Tank());
+        writeTank(buffer, gameState.getPlayer2Tank());
+        buffer.putShort((short) bullets.size());
+        for (Bullet bullet : bullets) {
+            writeBullet(buffer, bullet);
+        }
+        buffer.putShort((short) obstacles.size());
+        for (Obstacle obstacle : obstacles) {
+            writeObstacle(buffer, obstacle);
+        }
+        return data;
+    }
+
+    @Override
+    public GameState decode(byte[] data, int offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(data, offset, length);
+        try {
+            byte version = buffer.get();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported binary format version: " + version);
+            }
+            boolean isPlayer1Turn = (buffer.get() & 1) != 0;
+            Tank player1Tank = readTank(buffer);
+            Tank player2Tank = readTank(buffer);
+            int bulletCount = buffer.getShort() & 0xFFFF;
+            List<Bullet> bullets = new ArrayList<>(bulletCount);
+            for (int i = 0; i < bulletCount; i++) {
+                bullets.add(readBullet(buffer));
+            }
+            int obstacleCount = buffer.getShort() & 0xFFFF;
+            List<Obstacle> obstacles = new ArrayList<>(obstacleCount);
+            for (int i = 0; i < obstacleCount; i++) {
+                obstacles.add(readObstacle(buffer));
+            }
+            return new GameState(player1Tank, player2Tank, bullets, obstacles, isPlayer1Turn);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated game state frame", e);
+        }
+    }
+
+    /**
+     * Zapisuje czołg.
+     *
+     * @param buffer Bufor docelowy.
+     * @param tank   Czołg.
+     */
+    static void writeTank(ByteBuffer buffer, Tank tank) {
+        buffer.putShort((short) tank.getX());
+        buffer.putShort((short) tank.getY());
+        buffer.putInt(tank.getColor().getRGB());
+        buffer.putShort((short) tank.getAngle());
+        buffer.putShort((short) tank.getHp());
+        buffer.putShort((short) tank.getFuel());
+    }
+
+    /**
+     * Odczytuje czołg.
+     *
+     * @param buffer Bufor źródłowy.
+     * @return Odczytany czołg.
+     */
+    static Tank readTank(ByteBuffer buffer) {
+        int x = buffer.getShort();
+        int y = buffer.getShort();
+        Color color = color(buffer.getInt());
+        int angle = buffer.getShort();
+        int hp = buffer.getShort();
+        int fuel = buffer.getShort();
+        return new Tank(x, y, color, angle, hp, fuel);
+    }
+
+    /**
+     * Zapisuje pocisk.
+     *
+     * @param buffer Bufor docelowy.
+     * @param bullet Pocisk.
+     */
+    static void writeBullet(ByteBuffer buffer, Bullet bullet) {
+        buffer.putDouble(bullet.getX());
+        buffer.putDouble(bullet.getY());
+        buffer.putDouble(bullet.getDx());
+        buffer.putDouble(bullet.getDy());
+        buffer.putInt(bullet.getColor().getRGB());
+        buffer.put((byte) ((bullet.isVisible() ? 1 : 0) | (bullet.isPlayer1() ? 2 : 0)));
+    }
+
+    /**
+     * Odczytuje pocisk.
+     *
+     * @param buffer Bufor źródłowy.
+     * @return Odczytany pocisk.
+     */
+    static Bullet readBullet(ByteBuffer buffer) {
+        double x = buffer.getDouble();
+        double y = buffer.getDouble();
+        double dx = buffer.getDouble();
+        double dy = buffer.getDouble();
+        Color color = color(buffer.getInt());
+        byte flags = buffer.get();
+        return new Bullet(x, y, dx, dy, color, (flags & 1) != 0, (flags & 2) != 0);
+    }
+
+    /**
+     * Zwraca kolor o podanej wartości RGB, używając wspólnych instancji dla kolorów graczy.
+     *
+     * @param rgb Wartość RGB z kanałem alfa.
+     * @return Kolor.
+     */
+    static Color color(int rgb) {
+        if (rgb == Color.BLUE.getRGB()) {
+            return Color.BLUE;
+        }
+        if (rgb == Color.RED.getRGB()) {
+            return Color.RED;
+        }
+        return new Color(rgb, true);
+    }
+
+    /**
+     * Zapisuje przeszkodę.
+     *
+     * @param buffer   Bufor docelowy.
+     * @param obstacle Przeszkoda.
+     */
+    static void writeObstacle(ByteBuffer buffer, Obstacle obstacle) {
+        buffer.putShort((short) obstacle.getX());
+        buffer.putShort((short) obstacle.getY());
+        buffer.putShort((short) obstacle.getWidth());
+        buffer.putShort((short) obstacle.getHeight());
+    }
+
+    /**
+     * Odczytuje przeszkodę.
+     *
+     * @param buffer Bufor źródłowy.
+     * @return Odczytana przeszkoda.
+     */
+    static Obstacle readObstacle(ByteBuffer buffer) {
+        return new Obstacle(buffer.getShort(), buffer.getShort(), buffer.getShort(), buffer.getShort());
+    }
+}
@@ -85,6 +85,37 @@ class Bullet implements Serializable {
         this.dy = -velocity * Math.sin(angleRadians);
     }
 
+    /**
+     * Konstruktor odtwarzający pełny stan pocisku (np. po odebraniu go z sieci).
+     *
+     * @param x         Aktualna pozycja X pocisku.
+     * @param y         Aktualna pozycja Y pocisku.
+     * @param dx        Przemieszczenie w osi X na klatkę.
+     * @param dy        Przemieszczenie w osi Y na klatkę.
+     * @param color     Kolor pocisku.
+     * @param visible   Określa, czy pocisk jest widoczny.
+     * @param isPlayer1 Określa, czy pocisk należy do gracza 1.
+     */
+    Bullet(double x, double y, double dx, double dy, Color color, boolean visible, boolean isPlayer1) {
+        this.x = x;
+        this.y = y;
+        this.dx = dx;
+        this.dy = dy;
+        this.color = color;
+        this.visible = visible;
+        this.isPlayer1 = isPlayer1;
+        this.angleRadians = Math.atan2(-dy, dx);
+    }
+
+    /**
+     * Tworzy niezależną kopię pocisku.
+     *
+     * @return Kopia pocisku.
+     */
+    Bullet copy() {
+        return new Bullet(x, y, dx, dy, color, visible, isPlayer1);
+    }
+
     /**
      * Rysuje pocisk na ekranie.
      *
@@ -136,6 +167,51 @@ class Bullet implements Serializable {
         return new Rectangle((int) x, (int) y, diameter, diameter);
     }
 
+    /**
+     * Zwraca aktualną pozycję X pocisku.
+     *
+     * @return Pozycja X.
+     */
+    public double getX() {
+        return x;
+    }
+
+    /**
+     * Zwraca aktualną pozycję Y pocisku.
+     *
+     * @return Pozycja Y.
+     */
+    public double getY() {
+        return y;
+    }
+
+    /**
+     * Zwraca przemieszczenie pocisku w osi X na klatkę.
+     *
+     * @return Przemieszczenie w osi X.
+     */
+    public double getDx() {
+        return dx;
+    }
+
+    /**
+     * Zwraca przemieszczenie pocisku w osi Y na klatkę.
+     *
+     * @return Przemieszczenie w osi Y.
+     */
+    public double getDy() {
+        return dy;
+    }
+
+    /**
+     * Zwraca kolor pocisku.
+     *
+     * @return Kolor pocisku.
+     */
+    public Color getColor() {
+        return color;
+    }
+
     /**
      * Ustawia widoczność pocisku.
      *
@@ -0,0 +1,371 @@
+package org.rewera.ptak.raczynski;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Pociski w locie przechowywane w tablicach prostych typów zamiast listy obiektów {@link Bullet}.
+ *
+ * <p>Położenia i prędkości leżą w równoległych tablicach {@code double[]}, a właściciel i trafienie
+ * w zbiorach bitów, więc takt ({@link #step(Tank, Tank, ObstacleIndex)}) przesuwa, usuwa i sprawdza kolizje
+ * pocisków bez tworzenia obiektów - kolizje sprawdza {@link Aabb} zamiast {@link Rectangle}, a przeszkody
+ * w pobliżu pocisku wskazuje {@link ObstacleIndex}.
+ * Pocisk jest usuwany przez przeniesienie na jego miejsce ostatniego pocisku, więc kolejność pocisków
+ * może się zmieniać. Tablice rosną tylko wtedy, gdy przybywa pocisków ponad dotychczasową pojemność.</p>
+ *
+ * <p>Ruch i kolizje odpowiadają {@link Bullet#move()} i dawnemu sprawdzaniu trafień: pocisk, który
+ * trafił, pozostaje w magazynie jako niewidoczny do kolejnego taktu. Obiekty {@link Bullet} powstają
+ * tylko przy wymianie stanu ({@link #load(List)}, {@link #toList()}). Magazynu używa
+ * {@link GameSimulation} - na serwerze i w grze lokalnej w {@link GamePanel}.</p>
+ *
+ * <p>Klasa nie jest bezpieczna wątkowo - wywołujący zapewnia synchronizację.</p>
+ */
+class BulletStore {
+
+    /**
+     * Średnica pocisku (jak w {@link Bullet}).
+     */
+    static final int DIAMETER = 10;
+
+    /**
+     * Prędkość początkowa pocisku.
+     */
+    static final double VELOCITY = 10;
+
+    /**
+     * Przyspieszenie ziemskie na takt.
+     */
+    static final double GRAVITY = 0.2;
+
+    /**
+     * Obrażenia zadawane przez trafienie.
+     */
+    static final int DAMAGE = 20;
+
+    /**
+     * Współrzędna Y podłoża.
+     */
+    private static final int GROUND_Y = 530;
+
+    /**
+     * Pozycje X pocisków.
+     */
+    private double[] x;
+
+    /**
+     * Pozycje Y pocisków.
+     */
+    private double[] y;
+
+    /**
+     * Przemieszczenia w osi X na takt.
+     */
+    private double[] dx;
+
+    /**
+     * Przemieszczenia w osi Y na takt.
+     */
+    private double[] dy;
+
+    /**
+     * Zbiór bitów pocisków gracza 1 (bit {@code i} w słowie {@code i >>> 6}).
+     */
+    private long[] player1;
+
+    /**
+     * Zbiór bitów pocisków, które trafiły i zostaną usunięte w kolejnym takcie.
+     */
+    private long[] spent;
+
+    /**
+     * Liczba pocisków.
+     */
+    private int size;
+
+    /**
+     * Tworzy pusty magazyn.
+     *
+     * @param capacity Początkowa pojemność.
+     */
+    BulletStore(int capacity) {
+        capacity = Math.max(1, capacity);
+        x = new double[capacity];
+        y = new double[capacity];
+        dx = new double[capacity];
+        dy = new double[capacity];
+        player1 = new long[words(capacity)];
+        spent = new long[words(capacity)];
+    }
+
+    /**
+     * Zwraca liczbę pocisków.
+     *
+     * @return Liczba pocisków.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Sprawdza, czy magazyn jest pusty.
+     *
+     * @return true, jeśli nie ma pocisków.
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Wystrzeliwuje pocisk (jak konstruktor {@link Bullet#Bullet(int, int, int, Color, boolean)}).
+     *
+     * @param x         Środek lufy w osi X.
+     * @param y         Pozycja Y.
+     * @param angle     Kąt strzału w stopniach.
+     * @param isPlayer1 Określa, czy pocisk należy do gracza 1.
+     */
+    void fire(int x, int y, int angle, boolean isPlayer1) {
+        double radians = Math.toRadians(angle);
+        add(x - DIAMETER / 2.0, y, VELOCITY * Math.cos(radians), -VELOCITY * Math.sin(radians), isPlayer1, true);
+    }
+
+    /**
+     * Dodaje pocisk o podanym stanie.
+     *
+     * @param x         Pozycja X.
+     * @param y         Pozycja Y.
+     * @param dx        Przemieszczenie w osi X na takt.
+     * @param dy        Przemieszczenie w osi Y na takt.
+     * @param isPlayer1 Określa, czy pocisk należy do gracza 1.
+     * @param visible   Określa, czy pocisk jest widoczny (niewidoczny zniknie w kolejnym takcie).
+     */
+    void add(double x, double y, double dx, double dy, boolean isPlayer1, boolean visible) {
+        if (size == this.x.length) {
+            int capacity = size * 2;
+            this.x = Arrays.copyOf(this.x, capacity);
+            this.y = Arrays.copyOf(this.y, capacity);
+            this.dx = Arrays.copyOf(this.dx, capacity);
+            this.dy = Arrays.copyOf(this.dy, capacity);
+            player1 = Arrays.copyOf(player1, words(capacity));
+            spent = Arrays.copyOf(spent, words(capacity));
+        }
+        this.x[size] = x;
+        this.y[size] = y;
+        this.dx[size] = dx;
+        this.dy[size] = dy;
+        set(player1, size, isPlayer1);
+        set(spent, size, !visible);
+        size++;
+    }
+
+    /**
+     * Zastępuje zawartość magazynu pociskami ze stanu gry.
+     *
+     * @param bullets Pociski.
+     */
+    void load(List<Bullet> bullets) {
+        clear();
+        for (int i = 0; i < bullets.size(); i++) {
+            Bullet bullet = bullets.get(i);
+            add(bullet.getX(), bullet.getY(), bullet.getDx(), bullet.getDy(), bullet.isPlayer1(), bullet.isVisible());
+        }
+    }
+
+    /**
+     * Usuwa wszystkie pociski.
+     */
+    void clear() {
+        Arrays.fill(player1, 0);
+        Arrays.fill(spent, 0);
+        size = 0;
+    }
+
+    /**
+     * Wykonuje jeden takt: przesuwa pociski, usuwa te, które trafiły wcześniej, spadły na podłoże
+     * lub wyleciały poza ekran, a następnie sprawdza trafienia w czołgi i przeszkody.
+     *
+     * @param player1Tank Czołg gracza 1.
+     * @param player2Tank Czołg gracza 2.
+     * @param obstacles   Indeks przeszkód na planszy.
+     */
+    void step(Tank player1Tank, Tank player2Tank, ObstacleIndex obstacles) {
+        for (int i = 0; i < size; i++) {
+            x[i] += dx[i];
+            y[i] += dy[i];
+            dy[i] += GRAVITY;
+        }
+        int i = 0;
+        while (i < size) {
+            if (get(spent, i) || y[i] + DIAMETER >= GROUND_Y || y[i] > 600 || x[i] < 0 || x[i] > 800) {
+                remove(i); // Na miejsce i trafia ostatni pocisk - sprawdzamy je ponownie
+            } else {
+                i++;
+            }
+        }
+
+        for (i = 0; i < size; i++) {
+            int left = (int) x[i];
+            int top = (int) y[i];
+            Tank target = get(player1, i) ? player2Tank : player1Tank;
+            if (target.intersects(left, top, DIAMETER, DIAMETER)) {
+                target.decreaseHp(DAMAGE);
+                set(spent, i, true);
+            }
+            if (obstacles.intersectsInAir(left, top, DIAMETER, DIAMETER)) {
+                set(spent, i, true);
+            }
+        }
+    }
+
+    /**
+     * Usuwa pocisk, przenosząc na jego miejsce ostatni pocisk.
+     *
+     * @param i Indeks usuwanego pocisku.
+     */
+    private void remove(int i) {
+        int last = --size;
+        x[i] = x[last];
+        y[i] = y[last];
+        dx[i] = dx[last];
+        dy[i] = dy[last];
+        set(player1, i, get(player1, last));
+        set(spent, i, get(spent, last));
+        set(player1, last, false);
+        set(spent, last, false);
+    }
+
+    /**
+     * Zwraca liczbę słów zbioru bitów dla podanej liczby pocisków.
+     *
+     * @param capacity Liczba pocisków.
+     * @return Liczba słów.
+     */
+    private static int words(int capacity) {
+        return (capacity + 63) >>> 6;
+    }
+
+    /**
+     * Odczytuje bit pocisku.
+     *
+     * @param bits Zbiór bitów.
+     * @param i    Indeks pocisku.
+     * @return Wartość bitu.
+     */
+    private static boolean get(long[] bits, int i) {
+        return (bits[i >>> 6] & (1L << i)) != 0;
+    }
+
+    /**
+     * Ustawia bit pocisku.
+     *
+     * @param bits  Zbiór bitów.
+     * @param i     Indeks pocisku.
+     * @param value Nowa wartość bitu.
+     */
+    private static void set(long[] bits, int i, boolean value) {
+        if (value) {
+            bits[i >>> 6] |= 1L << i;
+        } else {
+            bits[i >>> 6] &= ~(1L << i);
+        }
+    }
+
+    /**
+     * Zwraca pozycję X pocisku.
+     *
+     * @param i Indeks pocisku.
+     * @return Pozycja X.
+     */
+    double getX(int i) {
+        return x[i];
+    }
+
+    /**
+     * Zwraca pozycję Y pocisku.
+     *
+     * @param i Indeks pocisku.
+     * @return Pozycja Y.
+     */
+    double getY(int i) {
+        return y[i];
+    }
+
+    /**
+     * Zwraca przemieszczenie pocisku w osi X na takt.
+     *
+     * @param i Indeks pocisku.
+     * @return Przemieszczenie w osi X.
+     */
+    double getDx(int i) {
+        return dx[i];
+    }
+
+    /**
+     * Zwraca przemieszczenie pocisku w osi Y na takt.
+     *
+     * @param i Indeks pocisku.
+     * @return Przemieszczenie w osi Y.
+     */
+    double getDy(int i) {
+        return dy[i];
+    }
+
+    /**
+     * Sprawdza, czy pocisk należy do gracza 1.
+     *
+     * @param i Indeks pocisku.
+     * @return true, jeśli pocisk należy do gracza 1.
+     */
+    boolean isPlayer1(int i) {
+        return get(player1, i);
+    }
+
+    /**
+     * Sprawdza, czy pocisk jest widoczny (nie trafił jeszcze w cel).
+     *
+     * @param i Indeks pocisku.
+     * @return true, jeśli pocisk jest widoczny.
+     */
+    boolean isVisible(int i) {
+        return !get(spent, i);
+    }
+
+    /**
+     * Tworzy obiekt pocisku do wysłania w stanie gry.
+     *
+     * @param i Indeks pocisku.
+     * @return Pocisk.
+     */
+    Bullet get(int i) {
+        boolean isPlayer1 = get(player1, i);
+        return new Bullet(x[i], y[i], dx[i], dy[i], isPlayer1 ? Color.BLUE : Color.RED, !get(spent, i), isPlayer1);
+    }
+
+    /**
+     * Tworzy listę obiektów wszystkich pocisków (np. do stanu gry wysyłanego przez sieć).
+     *
+     * @return Nowa lista pocisków.
+     */
+    ArrayList<Bullet> toList() {
+        ArrayList<Bullet> bullets = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            bullets.add(get(i));
+        }
+        return bullets;
+    }
+
+    /**
+     * Rysuje widoczne pociski (jak {@link Bullet#draw(Graphics)}).
+     *
+     * @param g Obiekt Graphics używany do rysowania.
+     */
+    void draw(Graphics g) {
+        for (int i = 0; i < size; i++) {
+            if (!get(spent, i)) {
+                g.setColor(get(player1, i) ? Color.BLUE : Color.RED);
+                g.fillOval((int) x[i], (int) y[i], DIAMETER, DIAMETER);
+            }
+        }
+    }
+}
@@ -1,15 +1,48 @@
 package org.rewera.ptak.raczynski;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Obsługuje połączenie klienta z serwerem gry.
  * Implementuje interfejs Runnable, co pozwala na obsługę w oddzielnym wątku.
+ * Klient może używać strumieni obiektowych (stary protokół) albo protokołu ramkowego
+ * z kodekiem wynegocjowanym w powitaniu ({@link WireProtocol}).
+ *
+ * <p>Zapis może odbywać się bezpośrednio w wątku wywołującym albo, po wywołaniu
+ * {@link #startWriter(ClientThreads, int, long)}, w osobnym wątku zapisującym wiadomości
+ * z ograniczonej kolejki {@link OutboundQueue}. Wtedy wolny klient nie blokuje gry: niewysłane
+ * stany gry są scalane, a klient opóźniony dłużej niż dopuszczalny limit jest rozłączany.</p>
+ *
+ * <p>Klient z flagą {@link WireProtocol#FLAG_UDP} po zgłoszeniu się przez UDP dostaje stany
+ * gry datagramami ({@link UdpTransport}); stany ze strzałem lub zmianą tury idą kanałem
+ * niezawodnym jako klatki kluczowe. TCP pozostaje ścieżką zapasową, np. dla stanów
+ * niemieszczących się w datagramie lub gdy łącze UDP przestanie odpowiadać.</p>
+ *
+ * <p>Klient bez replikacji różnicowej dostaje stan zakodowany raz dla wszystkich odbiorców
+ * rozesłania ({@link StateBroadcast}); klient z flagą {@link WireProtocol#FLAG_SPECTATE} jest
+ * widzem - tylko odbiera stany, a jego polecenia i stany są pomijane.</p>
+ *
+ * <p>Stany i polecenia od klienta przechodzą przez limit wiadomości ({@link TokenBucket}) - nadmiarowe
+ * są pomijane - a ramka lub obiekt większy niż dopuszczalny rozmiar kończy połączenie.</p>
+ *
+ * <p>Do synchronizacji używana jest {@link ReentrantLock} zamiast {@code synchronized},
+ * aby blokujący zapis nie przypinał wątku wirtualnego do wątku nośnego.</p>
  */
-public class ClientHandler implements Runnable {
+public class ClientHandler implements Runnable, PlayerConnection {
 
     /**
      * Gniazdo połączenia klienta.
@@ -19,7 +52,7 @@ public class ClientHandler implements Runnable {
     /**
      * Instancja gry, do której klient jest podłączony.
      */
-    private GameInstance gameInstance;
+    private volatile GameInstance gameInstance;
 
     /**
      * Strumień wyjściowy do przesyłania danych do klienta.
@@ -31,26 +64,474 @@ public class ClientHandler implements Runnable {
      */
     private ObjectInputStream in;
 
+    /**
+     * Strumień wyjściowy protokołu ramkowego (null dla starego protokołu).
+     */
+    private DataOutputStream frameOut;
+
+    /**
+     * Strumień wejściowy protokołu ramkowego (null dla starego protokołu).
+     */
+    private DataInputStream frameIn;
+
+    /**
+     * Kodek stanu gry protokołu ramkowego (null dla starego protokołu).
+     */
+    private GameStateCodec codec;
+
+    /**
+     * Flagi funkcji przyjęte w powitaniu.
+     */
+    private byte flags;
+
+    /**
+     * Replikacja różnicowa stanu gry (null, jeśli klient jej nie żądał).
+     * Przy wznowieniu sesji przejmowana od poprzedniego połączenia gracza.
+     */
+    private volatile StateReplicator replicator;
+
+    /**
+     * Określa, czy klient potrafi wznowić sesję ({@link WireProtocol#FLAG_RESUME} w powitaniu).
+     */
+    private boolean resumable;
+
     /**
      * Określa, czy klient jest graczem 1.
      */
-    private boolean isPlayer1;
+    private volatile boolean isPlayer1;
+
+    /**
+     * Blokada chroniąca strumień wyjściowy.
+     */
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    /**
+     * Kolejka wiadomości dla wątku zapisującego (null, gdy zapis odbywa się bezpośrednio).
+     */
+    private volatile OutboundQueue outbox;
+
+    /**
+     * Dopuszczalne opóźnienie klienta w nanosekundach (0 oznacza brak limitu).
+     */
+    private volatile long maxLagNanos;
+
+    /**
+     * Określa, czy klient został rozłączony, bo nie nadążał z odbiorem.
+     */
+    private volatile boolean disconnectedForLag;
+
+    /**
+     * Transport UDP serwera (null, jeśli klient nie używa UDP).
+     */
+    private UdpTransport udpTransport;
+
+    /**
+     * Łącze UDP klienta (null, jeśli klient nie używa UDP lub łącze zostało porzucone).
+     */
+    private volatile UdpLink udp;
+
+    /**
+     * Ostatnio wysłany stan gry (do wykrywania zdarzeń i ponowienia przez UDP).
+     */
+    private volatile GameState lastState;
+
+    /**
+     * Czas wysłania ostatniego datagramu ze stanem w nanosekundach.
+     */
+    private volatile long lastDatagramNanos;
+
+    /**
+     * Licznik bajtów zapisanych do strumienia obiektów (stary protokół) lub null.
+     */
+    private LongAdder written;
+
+    /**
+     * Strumień pod strumieniem obiektów, do którego dopisywane są stany zserializowane raz
+     * dla wszystkich odbiorców (stary protokół) lub null.
+     */
+    private OutputStream rawOut;
+
+    /**
+     * Metryki serwera (null, jeśli połączenie nie jest liczone).
+     */
+    private ServerMetrics serverMetrics;
+
+    /**
+     * Limit stanów i poleceń od klienta (null - bez limitu).
+     */
+    private TokenBucket inboundLimit;
+
+    /**
+     * Największy rozmiar ramki od klienta protokołu ramkowego.
+     */
+    private int maxFrameBytes = WireProtocol.MAX_FRAME_SIZE;
+
+    /**
+     * Strumień ograniczający rozmiar obiektów starego protokołu (null, jeśli rozmiar nie jest ograniczany).
+     */
+    private FrameLimitInputStream legacyFrames;
+
+    /**
+     * Powód rozłączenia - ustalany przez pierwsze zdarzenie kończące połączenie.
+     */
+    private final AtomicReference<DisconnectReason> disconnectReason = new AtomicReference<>();
 
     /**
      * Tworzy nową instancję obsługi klienta.
+     * Instancja gry i rola są przypisywane później przez {@link #joined(GameInstance, boolean)}.
      *
      * @param socket        Gniazdo połączenia klienta.
-     * @param gameInstance  Instancja gry, do której klient jest podłączony.
-     * @param isPlayer1     Określa, czy klient jest graczem 1.
      * @param out           Strumień wyjściowy do przesyłania danych do klienta.
      * @param in            Strumień wejściowy do odbierania danych od klienta.
      */
-    public ClientHandler(Socket socket, GameInstance gameInstance, boolean isPlayer1, ObjectOutputStream out, ObjectInputStream in) {
+    public ClientHandler(Socket socket, ObjectOutputStream out, ObjectInputStream in) {
+        this(socket, out, in, null, null);
+    }
+
+    /**
+     * Tworzy obsługę klienta starego protokołu z dostępem do strumienia pod strumieniem obiektów
+     * (do wysyłania stanów zserializowanych raz dla wszystkich odbiorców) i licznikiem zapisanych
+     * bajtów (do metryk rozmiaru serializacji).
+     *
+     * @param socket  Gniazdo połączenia klienta.
+     * @param out     Strumień wyjściowy zapisujący do {@code raw}.
+     * @param in      Strumień wejściowy do odbierania danych od klienta.
+     * @param raw     Strumień, do którego zapisuje {@code out}, lub null.
+     * @param written Licznik bajtów zapisanych przez {@code out} lub null.
+     */
+    ClientHandler(Socket socket, ObjectOutputStream out, ObjectInputStream in, OutputStream raw, LongAdder written) {
         this.socket = socket;
-        this.gameInstance = gameInstance;
-        this.isPlayer1 = isPlayer1;
         this.out = out;
         this.in = in;
+        this.rawOut = raw;
+        this.written = written;
+    }
+
+    /**
+     * Zlicza połączenie w metrykach serwera. Przy zakończeniu obsługi zapisywany jest powód rozłączenia.
+     *
+     * @param metrics Metryki serwera.
+     */
+    void trackConnection(ServerMetrics metrics) {
+        serverMetrics = metrics;
+        metrics.connectionOpened();
+    }
+
+    /**
+     * Ustawia limity wiadomości od klienta. Wywoływane przed odczytem pierwszej ramki po powitaniu.
+     *
+     * @param limit         Limit stanów i poleceń lub null (bez limitu).
+     * @param maxFrameBytes Największy rozmiar ramki protokołu ramkowego.
+     * @param legacyFrames  Strumień pod strumieniem obiektów ograniczający rozmiar obiektów starego
+     *                      protokołu lub null.
+     */
+    void limitInbound(TokenBucket limit, int maxFrameBytes, FrameLimitInputStream legacyFrames) {
+        this.inboundLimit = limit;
+        this.maxFrameBytes = maxFrameBytes;
+        this.legacyFrames = legacyFrames;
+    }
+
+    /**
+     * Tworzy obsługę klienta mówiącego protokołem ramkowym.
+     *
+     * @param socket   Gniazdo połączenia klienta.
+     * @param frameOut Strumień wyjściowy ramek.
+     * @param frameIn  Strumień wejściowy ramek (po odczytaniu powitania).
+     * @param codec    Kodek stanu gry wynegocjowany w powitaniu.
+     * @param flags    Flagi funkcji przyjęte w powitaniu.
+     */
+    ClientHandler(Socket socket, DataOutputStream frameOut, DataInputStream frameIn, GameStateCodec codec, byte flags) {
+        this.socket = socket;
+        this.frameOut = frameOut;
+        this.frameIn = frameIn;
+        this.codec = codec;
+        // Flaga wznowienia wraca w powitaniu tylko wtedy, gdy sesja rzeczywiście została wznowiona
+        this.resumable = (flags & WireProtocol.FLAG_RESUME) != 0;
+        this.flags = (byte) (flags & ~WireProtocol.FLAG_RESUME);
+        if ((flags & WireProtocol.FLAG_DELTA) != 0) {
+            replicator = new StateReplicator(codec);
+        }
+    }
+
+    /**
+     * Otwiera sesję UDP dla klienta. Żeton sesji zostanie wysłany po powitaniu.
+     *
+     * @param transport Transport UDP serwera.
+     */
+    void attachUdp(UdpTransport transport) {
+        udpTransport = transport;
+        udp = transport.open(new UdpTransport.Endpoint() {
+            @Override
+            public void handleDatagram(WireProtocol.Frame frame) throws IOException {
+                handleFrame(frame);
+            }
+
+            @Override
+            public void onTimer() {
+                resendLatestState();
+            }
+        });
+    }
+
+    /**
+     * Uruchamia osobny wątek zapisujący. Od tej chwili wysyłanie jedynie dodaje
+     * wiadomości do kolejki, a blokujący zapis do gniazda wykonuje wątek zapisujący.
+     *
+     * @param threads      Fabryka wątków klientów.
+     * @param capacity     Pojemność kolejki wiadomości wychodzących.
+     * @param maxLagMillis Dopuszczalne opóźnienie klienta w milisekundach (0 oznacza brak limitu).
+     */
+    void startWriter(ClientThreads threads, int capacity, long maxLagMillis) {
+        maxLagNanos = TimeUnit.MILLISECONDS.toNanos(maxLagMillis);
+        outbox = new OutboundQueue(capacity);
+        threads.start(this::writeLoop);
+    }
+
+    /**
+     * Pętla wątku zapisującego. Kończy się po zamknięciu kolejki lub błędzie zapisu
+     * i zamyka wtedy gniazdo.
+     */
+    private void writeLoop() {
+        try {
+            Object message;
+            while ((message = outbox.take()) != null && write(message)) {
+                GameInstance game = gameInstance;
+                if ((message instanceof GameState || message instanceof SharedFrame) && game != null) {
+                    game.getMetrics().recordDelivery(System.nanoTime() - outbox.getTakenStateSince());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeSocket();
+        }
+    }
+
+    /**
+     * Wysyła wiadomość bezpośrednio lub przez kolejkę wątku zapisującego.
+     * Klient, którego kolejka się przepełniła, jest rozłączany.
+     *
+     * @param message Rola gracza ({@link Boolean}) lub obiekt do serializacji.
+     */
+    private void send(Object message) {
+        OutboundQueue queue = outbox;
+        if (queue == null) {
+            write(message);
+        } else if (!queue.offer(message)) {
+            disconnectLagging(DisconnectReason.QUEUE_FULL);
+        }
+    }
+
+    /**
+     * Rozłącza klienta, który nie nadąża z odbiorem. Zamknięcie gniazda przerywa zablokowany
+     * zapis i odczyt, a wątek obsługi usuwa klienta z gry.
+     *
+     * @param reason Powód rozłączenia ({@link DisconnectReason#QUEUE_FULL} lub {@link DisconnectReason#LAG_LIMIT}).
+     */
+    private void disconnectLagging(DisconnectReason reason) {
+        OutboundQueue queue = outbox;
+        if (disconnectedForLag || queue == null) {
+            return;
+        }
+        disconnectedForLag = true;
+        disconnectReason.compareAndSet(null, reason);
+        System.out.println("Disconnecting lagging player (" + reason.name().toLowerCase().replace('_', ' ') + ", "
+                + queue.getLag(TimeUnit.MILLISECONDS) + " ms behind).");
+        queue.close();
+        closeSocket();
+    }
+
+    /**
+     * Zapisuje wiadomość do strumienia wyjściowego.
+     *
+     * @param message Rola gracza ({@link Boolean}), wiadomość współdzielona (zwalniana po zapisie)
+     *                lub obiekt do serializacji.
+     * @return false w przypadku błędu zapisu.
+     */
+    private boolean write(Object message) {
+        writeLock.lock();
+        try {
+            if (message instanceof SharedFrame) {
+                writeShared((SharedFrame) message);
+            } else if (codec != null) {
+                writeFrame(message);
+            } else if (message instanceof Boolean) {
+                out.writeBoolean((Boolean) message);
+                out.flush();
+            } else {
+                long start = System.nanoTime();
+                long before = written != null ? written.sum() : 0;
+                out.writeObject(message);
+                out.reset(); // Stany są nowymi obiektami - bez tego tablica odwołań strumienia rośnie bez końca
+                if (message instanceof GameState) {
+                    // Strumień obiektów ma własny bufor bloku danych - po reset() wszystko jest już w liczniku
+                    recordSerialization(start, written != null ? (int) (written.sum() - before) : 0);
+                }
+                out.flush();
+            }
+            return true;
+        } catch (IOException e) {
+            if (!socket.isClosed()) {
+                e.printStackTrace();
+            }
+            return false;
+        } finally {
+            writeLock.unlock();
+            if (message instanceof SharedFrame) {
+                ((SharedFrame) message).release();
+            }
+        }
+    }
+
+    /**
+     * Zapisuje wiadomość zakodowaną raz dla wszystkich odbiorców rozesłania.
+     *
+     * @param frame Ramka protokołu ramkowego lub stan zserializowany dla strumienia obiektów.
+     * @throws IOException w przypadku błędu zapisu.
+     */
+    private void writeShared(SharedFrame frame) throws IOException {
+        if (codec != null) {
+            frame.writeTo(frameOut);
+            frameOut.flush();
+        } else {
+            out.flush(); // Bufor bloku danych strumienia obiektów musi trafić do gniazda przed obcymi bajtami
+            frame.writeTo(rawOut);
+            rawOut.flush();
+        }
+    }
+
+    /**
+     * Zapisuje wiadomość jako ramkę protokołu ramkowego.
+     *
+     * @param message Rola gracza ({@link Boolean}), stan gry lub komunikat tekstowy.
+     * @throws IOException w przypadku błędu zapisu.
+     */
+    private void writeFrame(Object message) throws IOException {
+        if (message instanceof Boolean) {
+            WireProtocol.writeFrame(frameOut, WireProtocol.FRAME_WELCOME,
+                    WireProtocol.welcome((Boolean) message, flags, codec));
+        } else if (message instanceof WireProtocol.Frame) {
+            WireProtocol.Frame frame = (WireProtocol.Frame) message;
+            WireProtocol.writeFrame(frameOut, frame.type, frame.payload);
+        } else if (message instanceof GameState && replicator != null) {
+            GameState state = (GameState) message;
+            boolean event = isEvent(state);
+            UdpLink link = udp;
+            long start = System.nanoTime();
+            WireProtocol.Frame frame = replicator.next(state, event && link != null && link.isBound());
+            recordSerialization(start, frame.payload.length);
+            if (!sendDatagram(frame, event)) {
+                WireProtocol.writeFrame(frameOut, frame.type, frame.payload);
+            }
+        } else if (message instanceof GameState) {
+            long start = System.nanoTime();
+            byte[] payload = codec.encode((GameState) message);
+            recordSerialization(start, payload.length);
+            WireProtocol.writeFrame(frameOut, WireProtocol.FRAME_STATE, payload);
+        } else {
+            WireProtocol.writeFrame(frameOut, WireProtocol.FRAME_TEXT,
+                    String.valueOf(message).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Zapisuje czas i rozmiar serializacji stanu w metrykach gry.
+     *
+     * @param start Czas rozpoczęcia serializacji w nanosekundach.
+     * @param bytes Rozmiar zserializowanego stanu.
+     */
+    private void recordSerialization(long start, int bytes) {
+        GameInstance game = gameInstance;
+        if (game != null) {
+            game.getMetrics().recordSerialization(System.nanoTime() - start, bytes);
+        }
+    }
+
+    /**
+     * Sprawdza, czy stan niesie zdarzenie (strzał lub zmianę tury), i zapamiętuje go jako ostatnio wysłany.
+     *
+     * @param state Wysyłany stan gry.
+     * @return true, jeśli względem poprzedniego stanu zmieniła się tura lub przybyło pocisków.
+     */
+    private boolean isEvent(GameState state) {
+        GameState previous = lastState;
+        lastState = state;
+        return previous != null && (previous.isPlayer1Turn() != state.isPlayer1Turn()
+                || state.getBullets().size() > previous.getBullets().size());
+    }
+
+    /**
+     * Wysyła ramkę replikacji przez UDP, jeśli łącze jest gotowe, a ramka mieści się w datagramie.
+     *
+     * @param frame    Ramka {@link WireProtocol#FRAME_SNAPSHOT} lub {@link WireProtocol#FRAME_DELTA}.
+     * @param reliable Określa, czy ramka idzie kanałem niezawodnym.
+     * @return false, jeśli ramkę trzeba wysłać przez TCP.
+     */
+    private boolean sendDatagram(WireProtocol.Frame frame, boolean reliable) {
+        UdpLink link = udp;
+        if (link == null || !link.isBound() || !link.fits(frame.payload.length, reliable)) {
+            return false;
+        }
+        if (link.isStalled()) {
+            System.out.println("UDP link stopped acknowledging, falling back to TCP.");
+            udp = null;
+            udpTransport.close(link);
+            return false;
+        }
+        try {
+            if (reliable) {
+                if (!link.sendReliable(frame.type, frame.payload)) {
+                    return false;
+                }
+            } else {
+                link.send(frame.type, frame.payload);
+            }
+            lastDatagramNanos = System.nanoTime();
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Ponawia przez UDP ostatni stan, jeśli klient go nie potwierdził, a nowszy stan nie został wysłany.
+     * Stany są rozsyłane tylko po zmianie, więc bez tego zgubiony ostatni datagram zostawiłby
+     * klienta z nieaktualnym stanem. Zapis do TCP w toku jest pomijany, aby nie czekać na blokadę.
+     */
+    private void resendLatestState() {
+        GameState state = lastState;
+        if (state == null || replicator == null || replicator.isLatestAcked()
+                || System.nanoTime() - lastDatagramNanos < ReliableChannel.RETRANSMIT_MILLIS * 1_000_000L
+                || !writeLock.tryLock()) {
+            return;
+        }
+        try {
+            // Pod blokadą zapisu wątek zapisujący nie wyśle w międzyczasie nowszego stanu
+            if (state == lastState) {
+                sendDatagram(replicator.next(state), false);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Zapamiętuje instancję gry i rolę, a następnie wysyła rolę klientowi.
+     *
+     * @param gameInstance Instancja gry, do której dołączył gracz.
+     * @param isPlayer1    Określa, czy klient jest graczem 1.
+     */
+    @Override
+    public void joined(GameInstance gameInstance, boolean isPlayer1) {
+        this.gameInstance = gameInstance;
+        this.isPlayer1 = isPlayer1;
+        send(isPlayer1);
+        UdpLink link = udp;
+        if (link != null) {
+            send(new WireProtocol.Frame(WireProtocol.FRAME_UDP_BIND,
+                    ByteBuffer.allocate(8).putLong(link.getToken()).array()));
+        }
     }
 
     /**
@@ -60,20 +541,89 @@ public class ClientHandler implements Runnable {
     @Override
     public void run() {
         try {
+            if (codec == null) {
+                while (true) {
+                    if (legacyFrames != null) {
+                        legacyFrames.startFrame();
+                    }
+                    if (!admit()) {
+                        // Obiektu starego protokołu nie da się pominąć bez deserializacji - zamiast odrzucać
+                        // zdekodowany stan, odczyt czeka na żeton, a TCP spowalnia zalewającego klienta
+                        inboundLimit.acquire();
+                    }
+                    gameInstance.updateGameState((GameState) in.readObject());
+                }
+            }
             while (true) {
-                GameState clientState = (GameState) in.readObject();
-                gameInstance.updateGameState(clientState);
+                handleFrame(WireProtocol.readFrame(frameIn, maxFrameBytes));
             }
+        } catch (EOFException e) {
+            disconnectReason.compareAndSet(null, DisconnectReason.CLIENT_CLOSED);
+            System.out.println("Player disconnected.");
+        } catch (SocketException e) {
+            disconnectReason.compareAndSet(null, DisconnectReason.IO_ERROR);
+            System.out.println("Player disconnected.");
+        } catch (WireProtocol.FrameTooLargeException e) {
+            disconnectReason.compareAndSet(null, DisconnectReason.FRAME_TOO_LARGE);
+            System.out.println("Player disconnected: " + e.getMessage());
         } catch (IOException | ClassNotFoundException e) {
+            disconnectReason.compareAndSet(null, DisconnectReason.PROTOCOL_ERROR);
+            System.out.println("Player disconnected.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            disconnectReason.compareAndSet(null, DisconnectReason.IO_ERROR);
             System.out.println("Player disconnected.");
         } finally {
-            try {
-                socket.close();
-            } catch (IOException e) {
-                e.printStackTrace();
+            if (serverMetrics != null) {
+                disconnectReason.compareAndSet(null, DisconnectReason.IO_ERROR);
+                serverMetrics.connectionClosed(disconnectReason.get());
+            }
+            close();
+            if (gameInstance != null) {
+                gameInstance.removeClient(this);
+            }
+        }
+    }
+
+    /**
+     * Obsługuje ramkę od klienta protokołu ramkowego, pomijając nieznane typy.
+     *
+     * @param frame Ramka od klienta.
+     * @throws IOException jeśli dane ramki są niepoprawne.
+     */
+    private void handleFrame(WireProtocol.Frame frame) throws IOException {
+        if (isSpectator()) {
+            return; // Widz tylko ogląda
+        }
+        if (frame.type == WireProtocol.FRAME_STATE) {
+            if (admit()) {
+                gameInstance.updateGameState(codec.decode(frame.payload, 0, frame.payload.length));
+            }
+        } else if (frame.type == WireProtocol.FRAME_INPUT) {
+            if (admit()) {
+                gameInstance.applyInput(InputCommand.decode(isPlayer1, frame.payload, 0, frame.payload.length));
             }
-            gameInstance.removeClient(this);
+        } else if (frame.type == WireProtocol.FRAME_ACK && replicator != null) {
+            replicator.ack(WireProtocol.readSeq(frame.payload, 0, frame.payload.length));
+        }
+    }
+
+    /**
+     * Sprawdza limit wiadomości dla odebranego stanu lub polecenia, jeszcze przed dekodowaniem.
+     * Wiadomość ponad limit jest zliczana w metrykach serwera - ramka jest pomijana, a obiekt starego
+     * protokołu czeka na żeton.
+     *
+     * @return true, jeśli wiadomość mieści się w limicie.
+     */
+    private boolean admit() {
+        TokenBucket limit = inboundLimit;
+        if (limit == null || limit.tryAcquire()) {
+            return true;
         }
+        if (serverMetrics != null) {
+            serverMetrics.messageThrottled();
+        }
+        return false;
     }
 
     /**
@@ -81,21 +631,232 @@ public class ClientHandler implements Runnable {
      *
      * @param gameState Stan gry do wysłania.
      */
+    @Override
     public void sendGameState(GameState gameState) {
+        sendState(gameState);
+    }
+
+    /**
+     * Wysyła stan z rozesłania. Bez replikacji różnicowej klient dostaje bajty zakodowane raz
+     * dla wszystkich odbiorców, z replikacją - własną ramkę zależną od potwierdzonego stanu.
+     *
+     * @param broadcast Rozesłanie stanu gry.
+     */
+    @Override
+    public void sendBroadcast(StateBroadcast broadcast) {
+        if (replicator != null || (codec == null && rawOut == null)) {
+            sendState(broadcast.getState());
+            return;
+        }
+        SharedFrame frame = codec != null ? broadcast.frame(codec) : broadcast.legacyFrame();
+        if (!sendState(frame.retain())) {
+            frame.release();
+        }
+    }
+
+    /**
+     * Wysyła stan bezpośrednio lub przez kolejkę, w której zastępuje niewysłany starszy stan.
+     *
+     * @param state Stan gry lub wiadomość współdzielona ze stanem.
+     * @return false, jeśli stan nie został przyjęty do kolejki.
+     */
+    private boolean sendState(Object state) {
+        OutboundQueue queue = outbox;
+        if (queue == null) {
+            write(state);
+        } else if (!queue.offerState(state)) {
+            disconnectLagging(DisconnectReason.QUEUE_FULL);
+            return false;
+        } else if (maxLagNanos > 0 && queue.getLag(TimeUnit.NANOSECONDS) > maxLagNanos) {
+            disconnectLagging(DisconnectReason.LAG_LIMIT);
+        }
+        return true;
+    }
+
+    /**
+     * Odczytuje ramkę widza z identyfikatorem oglądanej gry. Wywoływane po powitaniu
+     * z flagą {@link WireProtocol#FLAG_SPECTATE}.
+     *
+     * @return Identyfikator gry lub {@link WireProtocol#ANY_GAME}.
+     * @throws IOException jeśli klient nie przysłał ramki {@link WireProtocol#FRAME_WATCH}.
+     */
+    int readWatchRequest() throws IOException {
+        WireProtocol.Frame frame = WireProtocol.readFrame(frameIn, maxFrameBytes);
+        if (frame.type != WireProtocol.FRAME_WATCH) {
+            throw new IOException("Expected watch request, got frame type " + frame.type);
+        }
+        return WireProtocol.readGameId(frame.payload, 0, frame.payload.length);
+    }
+
+    /**
+     * Odczytuje żądanie wznowienia sesji. Wywoływane po powitaniu z flagą {@link WireProtocol#FLAG_RESUME}.
+     *
+     * @return Żądanie wznowienia (żeton 0 dla nowej sesji).
+     * @throws IOException jeśli klient nie przysłał ramki {@link WireProtocol#FRAME_RESUME}.
+     */
+    WireProtocol.Resume readResumeRequest() throws IOException {
+        WireProtocol.Frame frame = WireProtocol.readFrame(frameIn, maxFrameBytes);
+        if (frame.type != WireProtocol.FRAME_RESUME) {
+            throw new IOException("Expected resume request, got frame type " + frame.type);
+        }
+        return WireProtocol.readResume(frame.payload, 0, frame.payload.length);
+    }
+
+    /**
+     * Sprawdza, czy klient potrafi wznowić sesję.
+     *
+     * @return true, jeśli klient przyjął flagę {@link WireProtocol#FLAG_RESUME}.
+     */
+    @Override
+    public boolean isResumable() {
+        return resumable;
+    }
+
+    /**
+     * Wysyła klientowi żeton sesji.
+     *
+     * @param token Żeton sesji.
+     */
+    @Override
+    public void sessionIssued(long token) {
+        send(new WireProtocol.Frame(WireProtocol.FRAME_SESSION, WireProtocol.session(token)));
+    }
+
+    /**
+     * Zwraca replikację różnicową stanu gry.
+     *
+     * @return Replikacja lub null.
+     */
+    @Override
+    public StateReplicator getReplicator() {
+        return replicator;
+    }
+
+    /**
+     * Przejmuje sesję po poprzednim połączeniu: powitanie potwierdzi wznowienie flagą
+     * {@link WireProtocol#FLAG_RESUME}, a replikacja kontynuuje numerację poprzedniego połączenia
+     * z bazą w ostatnim stanie, który klient odtworzył.
+     *
+     * @param previous Poprzednie połączenie gracza lub null dla gry odtworzonej z migawki.
+     * @param lastSeq  Numer ostatniego stanu odtworzonego przez klienta.
+     */
+    @Override
+    public void resumed(PlayerConnection previous, int lastSeq) {
+        flags |= WireProtocol.FLAG_RESUME;
+        StateReplicator inherited = previous != null ? previous.getReplicator() : null;
+        if (replicator != null && inherited != null) {
+            inherited.ack(lastSeq);
+            replicator = inherited;
+        }
+    }
+
+    /**
+     * Wysyła klientowi przewidującemu skutki poleceń numer ostatniego wykonanego polecenia.
+     * Ramka idzie przez TCP - stan wysłany przez UDP może ją wyprzedzić, co klient koryguje
+     * przy kolejnym stanie.
+     *
+     * @param seq Numer ostatniego wykonanego polecenia gracza.
+     */
+    @Override
+    public void inputApplied(int seq) {
+        if ((flags & WireProtocol.FLAG_PREDICT) != 0) {
+            send(new WireProtocol.Frame(WireProtocol.FRAME_INPUT_ACK, WireProtocol.ack(seq)));
+        }
+    }
+
+    /**
+     * Wysyła komunikat tekstowy do klienta.
+     *
+     * @param message Treść komunikatu.
+     */
+    @Override
+    public void sendMessage(String message) {
+        send(message);
+    }
+
+    /**
+     * Zamyka gniazdo klienta. Wątek obsługi zakończy się przy najbliższym odczycie.
+     * Jeśli działa wątek zapisujący, gniazdo zamyka on sam po wysłaniu czekających wiadomości.
+     */
+    @Override
+    public void close() {
+        UdpLink link = udp;
+        if (link != null) {
+            udp = null;
+            udpTransport.close(link);
+        }
+        OutboundQueue queue = outbox;
+        if (queue != null) {
+            queue.close();
+        } else {
+            closeSocket();
+        }
+    }
+
+    /**
+     * Zamyka gniazdo klienta.
+     */
+    private void closeSocket() {
         try {
-            out.writeObject(gameState);
-            out.flush();
+            socket.close();
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * Zwraca kolejkę wiadomości wychodzących (jej głębokość, liczbę scalonych stanów i opóźnienie).
+     *
+     * @return Kolejka wiadomości wychodzących lub null, jeśli zapis odbywa się bezpośrednio.
+     */
+    OutboundQueue getOutbound() {
+        return outbox;
+    }
+
+    /**
+     * Sprawdza, czy klient został rozłączony, bo nie nadążał z odbiorem.
+     *
+     * @return true, jeśli klient został rozłączony z powodu opóźnienia.
+     */
+    boolean isDisconnectedForLag() {
+        return disconnectedForLag;
+    }
+
+    /**
+     * Zwraca powód rozłączenia.
+     *
+     * @return Powód rozłączenia lub null, jeśli połączenie trwa.
+     */
+    DisconnectReason getDisconnectReason() {
+        return disconnectReason.get();
+    }
+
     /**
      * Sprawdza, czy klient jest graczem 1.
      *
      * @return true, jeśli klient jest graczem 1, false w przeciwnym razie.
      */
+    @Override
     public boolean isPlayer1() {
         return isPlayer1;
     }
-}
\ No newline at end of file
+
+    /**
+     * Sprawdza, czy klient steruje grą poleceniami.
+     *
+     * @return true, jeśli klient przyjął flagę {@link WireProtocol#FLAG_INPUT}.
+     */
+    @Override
+    public boolean sendsInput() {
+        return (flags & WireProtocol.FLAG_INPUT) != 0;
+    }
+
+    /**
+     * Sprawdza, czy klient jest widzem.
+     *
+     * @return true, jeśli klient przyjął flagę {@link WireProtocol#FLAG_SPECTATE}.
+     */
+    boolean isSpectator() {
+        return (flags & WireProtocol.FLAG_SPECTATE) != 0;
+    }
+}
@@ -0,0 +1,116 @@
+package org.rewera.ptak.raczynski;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fabryka wątków obsługujących klientów w trybie blokującym.
+ * W trybie {@link Mode#VIRTUAL} pętle odczytu i zapisu każdego klienta działają na
+ * wątkach wirtualnych JDK, więc bezczynne połączenie kosztuje kilobajty zamiast pełnego stosu.
+ *
+ * <p>Wątki wirtualne są dostępne od JDK 21, a projekt kompiluje się także starszym JDK,
+ * dlatego fabryka jest pobierana przez refleksję.</p>
+ */
+class ClientThreads {
+
+    /**
+     * Rodzaj wątków obsługujących klientów.
+     */
+    enum Mode {
+        /**
+         * Zwykłe wątki platformowe.
+         */
+        PLATFORM,
+
+        /**
+         * Wątki wirtualne (JDK 21+).
+         */
+        VIRTUAL
+    }
+
+    /**
+     * Fabryka wątków wirtualnych lub null, jeśli JDK ich nie obsługuje.
+     */
+    private static final ThreadFactory VIRTUAL_FACTORY = lookupVirtualFactory();
+
+    /**
+     * Wybrany rodzaj wątków.
+     */
+    private final Mode mode;
+
+    /**
+     * Fabryka tworząca wątki.
+     */
+    private final ThreadFactory factory;
+
+    /**
+     * Licznik nadający nazwy wątkom platformowym.
+     */
+    private final AtomicInteger counter = new AtomicInteger();
+
+    /**
+     * Tworzy fabrykę wątków klientów.
+     *
+     * @param mode Rodzaj wątków.
+     * @throws IllegalStateException jeśli wybrano wątki wirtualne, a JDK ich nie obsługuje.
+     */
+    ClientThreads(Mode mode) {
+        this.mode = mode;
+        if (mode == Mode.VIRTUAL) {
+            if (VIRTUAL_FACTORY == null) {
+                throw new IllegalStateException("Virtual threads require JDK 21 or newer (running "
+                        + System.getProperty("java.version") + ")");
+            }
+            this.factory = VIRTUAL_FACTORY;
+        } else {
+            this.factory = runnable -> new Thread(runnable, "client-" + counter.incrementAndGet());
+        }
+    }
+
+    /**
+     * Sprawdza, czy bieżące JDK obsługuje wątki wirtualne.
+     *
+     * @return true, jeśli wątki wirtualne są dostępne.
+     */
+    static boolean isVirtualSupported() {
+        return VIRTUAL_FACTORY != null;
+    }
+
+    /**
+     * Zwraca wybrany rodzaj wątków.
+     *
+     * @return Rodzaj wątków.
+     */
+    Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Tworzy i uruchamia wątek wykonujący zadanie.
+     *
+     * @param task Zadanie do wykonania.
+     * @return Uruchomiony wątek.
+     */
+    Thread start(Runnable task) {
+        Thread thread = factory.newThread(task);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Pobiera fabrykę wątków wirtualnych przez {@code Thread.ofVirtual().factory()}.
+     *
+     * @return Fabryka wątków wirtualnych lub null, jeśli nie są dostępne.
+     */
+    private static ThreadFactory lookupVirtualFactory() {
+        try {
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            Object builder = ofVirtual.invoke(null);
+            Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.rewera.ptak.raczynski;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ogranicza liczbę jednocześnie obsługiwanych połączeń.
+ *
+ * <p>Miejsce jest zajmowane w wątku akceptującym, zanim powstanie wątek klienta, bufor odczytu
+ * czy strumień obiektów - połączenie ponad limit kosztuje jedynie {@code accept()} i zamknięcie gniazda.
+ * Miejsce zwalnia kod, który kończy obsługę połączenia.</p>
+ */
+class ConnectionLimiter {
+
+    /**
+     * Największa liczba połączeń (0 oznacza brak limitu).
+     */
+    private final int max;
+
+    /**
+     * Liczba zajętych miejsc.
+     */
+    private final AtomicInteger open = new AtomicInteger();
+
+    /**
+     * Tworzy ogranicznik połączeń.
+     *
+     * @param max Największa liczba połączeń (0 oznacza brak limitu).
+     */
+    ConnectionLimiter(int max) {
+        this.max = max;
+    }
+
+    /**
+     * Zajmuje miejsce dla nowego połączenia.
+     *
+     * @return false, jeśli limit połączeń został osiągnięty.
+     */
+    boolean tryAcquire() {
+        while (true) {
+            int current = open.get();
+            if (max > 0 && current >= max) {
+                return false;
+            }
+            if (open.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Zwalnia miejsce zakończonego połączenia.
+     */
+    void release() {
+        open.decrementAndGet();
+    }
+
+    /**
+     * Zwraca liczbę zajętych miejsc.
+     *
+     * @return Liczba połączeń.
+     */
+    int getOpen() {
+        return open.get();
+    }
+}
@@ -0,0 +1,46 @@
+package org.rewera.ptak.raczynski;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Strumień wejściowy zliczający odebrane bajty (licznik może być wspólny dla wielu strumieni).
+ */
+class CountingInputStream extends FilterInputStream {
+
+    /**
+     * Licznik bajtów.
+     */
+    private final LongAdder counter;
+
+    /**
+     * Tworzy strumień zliczający.
+     *
+     * @param in      Strumień źródłowy.
+     * @param counter Licznik bajtów.
+     */
+    CountingInputStream(InputStream in, LongAdder counter) {
+        super(in);
+        this.counter = counter;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int value = super.read();
+        if (value >= 0) {
+            counter.increment();
+        }
+        return value;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int read = super.read(buffer, offset, length);
+        if (read > 0) {
+            counter.add(read);
+        }
+        return read;
+    }
+}
@@ -0,0 +1,40 @@
+package org.rewera.ptak.raczynski;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Strumień wyjściowy zliczający wysłane bajty (licznik może być wspólny dla wielu strumieni).
+ */
+class CountingOutputStream extends FilterOutputStream {
+
+    /**
+     * Licznik bajtów.
+     */
+    private final LongAdder counter;
+
+    /**
+     * Tworzy strumień zliczający.
+     *
+     * @param out     Strumień docelowy.
+     * @param counter Licznik bajtów.
+     */
+    CountingOutputStream(OutputStream out, LongAdder counter) {
+        super(out);
+        this.counter = counter;
+    }
+
+    @Override
+    public void write(int value) throws IOException {
+        out.write(value);
+        counter.increment();
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int length) throws IOException {
+        out.write(buffer, offset, length);
+        counter.add(length);
+    }
+}
@@ -0,0 +1,324 @@
+package org.rewera.ptak.raczynski;
+
+import java.awt.*;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Koduje różnicę między dwoma stanami gry. Zapisywane są tylko zmienione pola czołgów,
+ * dodane, usunięte lub przesunięte pociski oraz flaga tury; przeszkody tylko wtedy, gdy się zmieniły.
+ * Rekordy pełnych obiektów używają układu z {@link BinaryCodec}.
+ *
+ * <p>Układ (big-endian):</p>
+ * <pre>
+ * byte   maska: bit 0 tura gracza 1, bit 1 czołg 1, bit 2 czołg 2, bit 3 pociski, bit 4 przeszkody
+ * czołg  (jeśli zmieniony): byte maska pól (x, y, kąt, hp, paliwo, kolor), dalej short dla zmienionych pól, int dla koloru
+ * pociski (jeśli zmienione): short liczba, dla każdego byte znacznik:
+ *        0 bez zmian, bit 0 pozycja (double x, y), bit 1 prędkość (double dx, dy), bit 2 flagi (byte),
+ *        {@link #BULLET_FULL} pełny rekord pocisku (nowy pocisk)
+ * przeszkody (jeśli zmienione): short liczba i pełne rekordy przeszkód
+ * </pre>
+ *
+ * <p>Pociski nie mają identyfikatorów, więc są dopasowywane po pozycji na liście.</p>
+ */
+final class DeltaCodec {
+
+    /**
+     * Bit maski: tura gracza 1.
+     */
+    private static final int TURN = 1;
+
+    /**
+     * Bit maski: zmieniony czołg gracza 1.
+     */
+    private static final int TANK1 = 1 << 1;
+
+    /**
+     * Bit maski: zmieniony czołg gracza 2.
+     */
+    private static final int TANK2 = 1 << 2;
+
+    /**
+     * Bit maski: zmienione pociski.
+     */
+    private static final int BULLETS = 1 << 3;
+
+    /**
+     * Bit maski: zmienione przeszkody.
+     */
+    private static final int OBSTACLES = 1 << 4;
+
+    /**
+     * Bity maski pól czołgu.
+     */
+    private static final int TANK_X = 1, TANK_Y = 1 << 1, TANK_ANGLE = 1 << 2, TANK_HP = 1 << 3,
+            TANK_FUEL = 1 << 4, TANK_COLOR = 1 << 5;
+
+    /**
+     * Bity znacznika pocisku.
+     */
+    private static final int BULLET_POSITION = 1, BULLET_VELOCITY = 1 << 1, BULLET_FLAGS = 1 << 2;
+
+    /**
+     * Znacznik pocisku zapisanego w całości.
+     */
+    private static final int BULLET_FULL = 0xFF;
+
+    /**
+     * Klasa narzędziowa - bez instancji.
+     */
+    private DeltaCodec() {
+    }
+
+    /**
+     * Koduje różnicę między stanem bazowym a bieżącym.
+     *
+     * @param base    Stan bazowy potwierdzony przez klienta.
+     * @param current Stan bieżący.
+     * @return Zakodowana różnica.
+     */
+    static byte[] encode(GameState base, GameState current) {
+        List<Bullet> bullets = current.getBullets();
+        List<Obstacle> obstacles = current.getObstacles();
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 2 * (1 + 2 * 5 + 4) + 2 + bullets.size() * (1 + BinaryCodec.BULLET_SIZE)
+                + 2 + obstacles.size() * BinaryCodec.OBSTACLE_SIZE);
+        buffer.put((byte) 0); // Maska uzupełniana na końcu
+        int mask = current.isPlayer1Turn() ? TURN : 0;
+        if (writeTankDelta(buffer, base.getPlayer1Tank(), current.getPlayer1Tank())) {
+            mask |= TANK1;
+        }
+        if (writeTankDelta(buffer, base.getPlayer2Tank(), current.getPlayer2Tank())) {
+            mask |= TANK2;
+        }
+        if (writeBulletsDelta(buffer, base.getBullets(), bullets)) {
+            mask |= BULLETS;
+        }
+        if (!sameObstacles(base.getObstacles(), obstacles)) {
+            mask |= OBSTACLES;
+            buffer.putShort((short) obstacles.size());
+            for (Obstacle obstacle : obstacles) {
+                BinaryCodec.writeObstacle(buffer, obstacle);
+            }
+        }
+        buffer.put(0, (byte) mask);
+        byte[] data = new byte[buffer.position()];
+        System.arraycopy(buffer.array(), 0, data, 0, data.length);
+        return data;
+    }
+
+    /**
+     * Odtwarza stan bieżący, nakładając różnicę na stan bazowy. Stan bazowy nie jest modyfikowany.
+     *
+     * @param base   Stan bazowy.
+     * @param data   Bufor z różnicą.
+     * @param offset Początek różnicy w buforze.
+     * @param length Długość różnicy.
+     * @return Odtworzony stan gry.
+     * @throws IOException jeśli dane są niepoprawne.
+     */
+    static GameState apply(GameState base, byte[] data, int offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(data, offset, length);
+        try {
+            int mask = buffer.get();
+            Tank player1Tank = (mask & TANK1) != 0 ? readTankDelta(buffer, base.getPlayer1Tank()) : base.getPlayer1Tank().copy();
+            Tank player2Tank = (mask & TANK2) != 0 ? readTankDelta(buffer, base.getPlayer2Tank()) : base.getPlayer2Tank().copy();
+            List<Bullet> bullets = (mask & BULLETS) != 0 ? readBulletsDelta(buffer, base.getBullets()) : copyBullets(base.getBullets());
+            List<Obstacle> obstacles;
+            if ((mask & OBSTACLES) != 0) {
+                int count = buffer.getShort() & 0xFFFF;
+                obstacles = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    obstacles.add(BinaryCodec.readObstacle(buffer));
+                }
+            } else {
+                obstacles = new ArrayList<>(base.getObstacles());
+            }
+            return new GameState(player1Tank, player2Tank, bullets, obstacles, (mask & TURN) != 0);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated delta frame", e);
+        }
+    }
+
+    /**
+     * Zapisuje zmienione pola czołgu.
+     *
+     * @param buffer  Bufor docelowy.
+     * @param base    Czołg w stanie bazowym.
+     * @param current Czołg w stanie bieżącym.
+     * @return true, jeśli czołg się zmienił i coś zostało zapisane.
+     */
+    private static boolean writeTankDelta(ByteBuffer buffer, Tank base, Tank current) {
+        int fields = (base.getX() != current.getX() ? TANK_X : 0)
+                | (base.getY() != current.getY() ? TANK_Y : 0)
+                | (base.getAngle() != current.getAngle() ? TANK_ANGLE : 0)
+                | (base.getHp() != current.getHp() ? TANK_HP : 0)
+                | (base.getFuel() != current.getFuel() ? TANK_FUEL : 0)
+                | (!base.getColor().equals(current.getColor()) ? TANK_COLOR : 0);
+        if (fields == 0) {
+            return false;
+        }
+        buffer.put((byte) fields);
+        if ((fields & TANK_X) != 0) buffer.putShort((short) current.getX());
+        if ((fields & TANK_Y) != 0) buffer.putShort((short) current.getY());
+        if ((fields & TANK_ANGLE) != 0) buffer.putShort((short) current.getAngle());
+        if ((fields & TANK_HP) != 0) buffer.putShort((short) current.getHp());
+        if ((fields & TANK_FUEL) != 0) buffer.putShort((short) current.getFuel());
+        if ((fields & TANK_COLOR) != 0) buffer.putInt(current.getColor().getRGB());
+        return true;
+    }
+
+    /**
+     * Odczytuje zmienione pola czołgu.
+     *
+     * @param buffer Bufor źródłowy.
+     * @param base   Czołg w stanie bazowym.
+     * @return Nowy czołg z nałożonymi zmianami.
+     */
+    private static Tank readTankDelta(ByteBuffer buffer, Tank base) {
+        int fields = buffer.get();
+        int x = (fields & TANK_X) != 0 ? buffer.getShort() : base.getX();
+        int y = (fields & TANK_Y) != 0 ? buffer.getShort() : base.getY();
+        int angle = (fields & TANK_ANGLE) != 0 ? buffer.getShort() : base.getAngle();
+        int hp = (fields & TANK_HP) != 0 ? buffer.getShort() : base.getHp();
+        int fuel = (fields & TANK_FUEL) != 0 ? buffer.getShort() : base.getFuel();
+        Color color = (fields & TANK_COLOR) != 0 ? BinaryCodec.color(buffer.getInt()) : base.getColor();
+        return new Tank(x, y, color, angle, hp, fuel);
+    }
+
+    /**
+     * Zapisuje zmiany listy pocisków.
+     *
+     * @param buffer  Bufor docelowy.
+     * @param base    Pociski w stanie bazowym.
+     * @param current Pociski w stanie bieżącym.
+     * @return true, jeśli lista się zmieniła i coś zostało zapisane.
+     */
+    private static boolean writeBulletsDelta(ByteBuffer buffer, List<Bullet> base, List<Bullet> current) {
+        int start = buffer.position();
+        buffer.putShort((short) current.size());
+        boolean changed = base.size() != current.size();
+        for (int i = 0; i < current.size(); i++) {
+            Bullet bullet = current.get(i);
+            if (i >= base.size() || !base.get(i).getColor().equals(bullet.getColor())) {
+                buffer.put((byte) BULLET_FULL);
+                BinaryCodec.writeBullet(buffer, bullet);
+                changed = true;
+                continue;
+            }
+            Bullet old = base.get(i);
+            int flags = (old.getX() != bullet.getX() || old.getY() != bullet.getY() ? BULLET_POSITION : 0)
+                    | (old.getDx() != bullet.getDx() || old.getDy() != bullet.getDy() ? BULLET_VELOCITY : 0)
+                    | (old.isVisible() != bullet.isVisible() || old.isPlayer1() != bullet.isPlayer1() ? BULLET_FLAGS : 0);
+            buffer.put((byte) flags);
+            if ((flags & BULLET_POSITION) != 0) {
+                buffer.putDouble(bullet.getX());
+                buffer.putDouble(bullet.getY());
+            }
+            if ((flags & BULLET_VELOCITY) != 0) {
+                buffer.putDouble(bullet.getDx());
+                buffer.putDouble(bullet.getDy());
+            }
+            if ((flags & BULLET_FLAGS) != 0) {
+                buffer.put(bulletFlags(bullet));
+            }
+            changed |= flags != 0;
+        }
+        if (!changed) {
+            buffer.position(start);
+        }
+        return changed;
+    }
+
+    /**
+     * Odczytuje zmiany listy pocisków.
+     *
+     * @param buffer Bufor źródłowy.
+     * @param base   Pociski w stanie bazowym.
+     * @return Nowa lista pocisków.
+     * @throws IOException jeśli zmiana odwołuje się do nieistniejącego pocisku.
+     */
+    private static List<Bullet> readBulletsDelta(ByteBuffer buffer, List<Bullet> base) throws IOException {
+        int count = buffer.getShort() & 0xFFFF;
+        List<Bullet> bullets = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int flags = buffer.get() & 0xFF;
+            if (flags == BULLET_FULL) {
+                bullets.add(BinaryCodec.readBullet(buffer));
+                continue;
+            }
+            if (i >= base.size()) {
+                throw new IOException("Delta references missing bullet " + i);
+            }
+            Bullet old = base.get(i);
+            double x = old.getX(), y = old.getY(), dx = old.getDx(), dy = old.getDy();
+            boolean visible = old.isVisible(), isPlayer1 = old.isPlayer1();
+            if ((flags & BULLET_POSITION) != 0) {
+                x = buffer.getDouble();
+                y = buffer.getDouble();
+            }
+            if ((flags & BULLET_VELOCITY) != 0) {
+                dx = buffer.getDouble();
+                dy = buffer.getDouble();
+            }
+            if ((flags & BULLET_FLAGS) != 0) {
+                byte bulletFlags = buffer.get();
+                visible = (bulletFlags & 1) != 0;
+                isPlayer1 = (bulletFlags & 2) != 0;
+            }
+            bullets.add(new Bullet(x, y, dx, dy, old.getColor(), visible, isPlayer1));
+        }
+        return bullets;
+    }
+
+    /**
+     * Zwraca bajt flag pocisku w układzie {@link BinaryCodec}.
+     *
+     * @param bullet Pocisk.
+     * @return Flagi (bit 0: widoczny, bit 1: gracz 1).
+     */
+    private static byte bulletFlags(Bullet bullet) {
+        return (byte) ((bullet.isVisible() ? 1 : 0) | (bullet.isPlayer1() ? 2 : 0));
+    }
+
+    /**
+     * Kopiuje listę pocisków.
+     *
+     * @param bullets Pociski.
+     * @return Lista niezależnych kopii.
+     */
+    private static List<Bullet> copyBullets(List<Bullet> bullets) {
+        List<Bullet> copy = new ArrayList<>(bullets.size());
+        for (Bullet bullet : bullets) {
+            copy.add(bullet.copy());
+        }
+        return copy;
+    }
+
+    /**
+     * Sprawdza, czy obie listy zawierają te same przeszkody.
+     *
+     * @param base    Przeszkody w stanie bazowym.
+     * @param current Przeszkody w stanie bieżącym.
+     * @return true, jeśli przeszkody są identyczne.
+     */
+    private static boolean sameObstacles(List<Obstacle> base, List<Obstacle> current) {
+        if (base == current) {
+            return true;
+        }
+        if (base.size() != current.size()) {
+            return false;
+        }
+        for (int i = 0; i < base.size(); i++) {
+            Obstacle a = base.get(i);
+            Obstacle b = current.get(i);
+            if (a != b && (a.getX() != b.getX() || a.getY() != b.getY()
+                    || a.getWidth() != b.getWidth() || a.getHeight() != b.getHeight())) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,37 @@
+package org.rewera.ptak.raczynski;
+
+/**
+ * Powód zakończenia połączenia klienta, zliczany w {@link ServerMetrics}.
+ */
+enum DisconnectReason {
+
+    /**
+     * Klient zamknął połączenie.
+     */
+    CLIENT_CLOSED,
+
+    /**
+     * Błąd wejścia-wyjścia (np. zerwane połączenie).
+     */
+    IO_ERROR,
+
+    /**
+     * Niepoprawne dane od klienta (powitanie, ramka lub obiekt).
+     */
+    PROTOCOL_ERROR,
+
+    /**
+     * Przepełniona kolejka wiadomości wychodzących.
+     */
+    QUEUE_FULL,
+
+    /**
+     * Przekroczony dopuszczalny czas opóźnienia klienta.
+     */
+    LAG_LIMIT,
+
+    /**
+     * Ramka (lub obiekt starego protokołu) od klienta większa niż dopuszczalny rozmiar.
+     */
+    FRAME_TOO_LARGE
+}
@@ -0,0 +1,81 @@
+package org.rewera.ptak.raczynski;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Strumień wejściowy ograniczający liczbę bajtów jednej wiadomości starego protokołu.
+ *
+ * <p>Strumień obiektów nie zna rozmiaru obiektu przed jego odczytaniem, więc klient mógłby przysłać
+ * stan z milionami pocisków. Obsługa klienta zaczyna każdą wiadomość wywołaniem {@link #startFrame()},
+ * a strumień przerywa odczyt, gdy wiadomość przekroczy limit - zanim serwer zdeserializuje całość.</p>
+ */
+class FrameLimitInputStream extends FilterInputStream {
+
+    /**
+     * Największa liczba bajtów jednej wiadomości.
+     */
+    private final int max;
+
+    /**
+     * Liczba bajtów odczytanych od początku bieżącej wiadomości.
+     */
+    private long read;
+
+    /**
+     * Tworzy strumień ograniczający.
+     *
+     * @param in  Strumień źródłowy.
+     * @param max Największa liczba bajtów jednej wiadomości.
+     */
+    FrameLimitInputStream(InputStream in, int max) {
+        super(in);
+        this.max = max;
+    }
+
+    /**
+     * Rozpoczyna odliczanie bajtów kolejnej wiadomości.
+     */
+    void startFrame() {
+        read = 0;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int value = super.read();
+        if (value >= 0) {
+            count(1);
+        }
+        return value;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int count = super.read(buffer, offset, length);
+        if (count > 0) {
+            count(count);
+        }
+        return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        count(skipped);
+        return skipped;
+    }
+
+    /**
+     * Dolicza odczytane bajty do bieżącej wiadomości.
+     *
+     * @param bytes Liczba bajtów.
+     * @throws WireProtocol.FrameTooLargeException jeśli wiadomość przekroczyła limit.
+     */
+    private void count(long bytes) throws WireProtocol.FrameTooLargeException {
+        read += bytes;
+        if (read > max) {
+            throw new WireProtocol.FrameTooLargeException(read, max);
+        }
+    }
+}
@@ -2,15 +2,35 @@ package org.rewera.ptak.raczynski;
 
 import java.awt.*;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.net.Socket;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
 import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Reprezentuje instancję gry, zarządza graczami i stanem gry.
+ *
+ * <p>Gra działa w jednym z dwóch trybów. W trybie klienta autorytatywnego klienci symulują grę
+ * u siebie i przysyłają cały stan ({@link #updateGameState(GameState)}). W trybie serwera
+ * autorytatywnego klienci przysyłają jedynie polecenia ({@link #applyInput(InputCommand)}),
+ * a instancja sama prowadzi symulację ({@link GameSimulation}) w stałym takcie.</p>
+ *
+ * <p>Jeśli matchmaker ma ustawiony katalog zapisów, mecz jest zapisywany przez {@link MatchRecorder}:
+ * przeszkody, stany od klientów lub polecenia graczy z numerami taktów oraz klatki kluczowe tur.</p>
+ *
+ * <p>Stan gry jest kopiowany przy zapisie: każda zmiana podmienia referencję na nowy obiekt, który potem
+ * nie jest już modyfikowany. Dzięki temu migawki ({@link SnapshotStore}) czytają stan i jego wersję
+ * bez blokady i nie wstrzymują taktów ani aktualizacji.</p>
+ *
+ * <p>Jeśli matchmaker ma rejestr sesji ({@link SessionRegistry}), gracz, który zerwał połączenie, nie zwalnia
+ * od razu miejsca: gra przetrzymuje je przez okres karencji, a klient wracający z żetonem sesji
+ * ({@link #resume(PlayerConnection, SessionRegistry.Session, int)}) przejmuje je bez resetu meczu.
+ * Gra odtworzona z migawki po restarcie serwera ({@link #restoreSessions(long, long)}) należy tylko do graczy
+ * o zapisanych żetonach: nie trafia do kolejki lobby, a gdy któryś z nich nie wróci w okresie karencji,
+ * mecz jest kończony.</p>
  */
 public class GameInstance {
 
@@ -22,51 +42,275 @@ public class GameInstance {
     /**
      * Lista klientów (graczy) aktualnie połączonych z grą.
      */
-    private List<ClientHandler> clients = new ArrayList<>();
+    private List<PlayerConnection> clients = new ArrayList<>();
 
     /**
-     * Przechowuje aktualny stan gry.
+     * Widzowie gry - dostają stany gry, ale nie wpływają na rozgrywkę.
      */
-    private GameState gameState;
+    private final List<PlayerConnection> spectators = new ArrayList<>();
+
+    /**
+     * Przechowuje aktualny stan gry. Opublikowany stan nie jest modyfikowany - zmiana stanu podmienia referencję.
+     */
+    private volatile GameState gameState;
+
+    /**
+     * Wersja stanu gry, zwiększana przy każdej podmianie stanu (pod blokadą).
+     */
+    private volatile long version;
 
     /**
      * Określa, czy gracz 1 został przypisany.
      */
-    private boolean isPlayer1Assigned = false;
+    private volatile boolean isPlayer1Assigned = false;
 
     /**
      * Określa, czy gracz 2 został przypisany.
      */
-    private boolean isPlayer2Assigned = false;
+    private volatile boolean isPlayer2Assigned = false;
 
     /**
-     * Tworzy nową instancję gry.
+     * Blokada chroniąca stan gry i listę klientów.
+     * Zamiast {@code synchronized}, aby wątki wirtualne nie były przypinane do wątków nośnych.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Harmonogram taktów symulacji (null w trybie klienta autorytatywnego).
+     */
+    private final TickScheduler ticker;
+
+    /**
+     * Symulacja gry prowadzona przez serwer (null w trybie klienta autorytatywnego).
+     */
+    private GameSimulation simulation;
+
+    /**
+     * Polecenia graczy oczekujące na najbliższy takt.
+     */
+    private final Queue<InputCommand> inputs = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Zaplanowane wykonywanie taktów (null, gdy symulacja nie działa).
+     */
+    private TickScheduler.Handle tickTask;
+
+    /**
+     * Matchmaker, który utworzył grę (null dla gier tworzonych bezpośrednio).
+     */
+    private final Matchmaker matchmaker;
+
+    /**
+     * Określa, czy gra opustoszała i została usunięta. Do zamkniętej gry nie można dołączyć.
+     */
+    private boolean closed;
+
+    /**
+     * Metryki gry (aktualizacje, takty, serializacja i rozsyłanie stanu).
+     */
+    private final GameMetrics metrics;
+
+    /**
+     * Zapis meczu (null, jeśli mecz nie jest zapisywany).
+     */
+    private MatchRecorder recorder;
+
+    /**
+     * Liczba wykonanych taktów symulacji (numer taktu w zapisie meczu).
+     */
+    private int tickCount;
+
+    /**
+     * Liczba stanów przysłanych przez klientów (numer stanu w zapisie meczu).
+     */
+    private int updateCount;
+
+    /**
+     * Rejestr sesji graczy (null, jeśli miejsca rozłączonych graczy nie są przetrzymywane).
+     */
+    private final SessionRegistry sessions;
+
+    /**
+     * Sesja gracza 1 (null, jeśli gracz nie ma sesji). Zapisywana pod blokadą, czytana także przy migawkach.
+     */
+    private volatile SessionRegistry.Session player1Session;
+
+    /**
+     * Sesja gracza 2 (null, jeśli gracz nie ma sesji). Zapisywana pod blokadą, czytana także przy migawkach.
+     */
+    private volatile SessionRegistry.Session player2Session;
+
+    /**
+     * Określa, czy gra odtworzona z migawki czeka na powrót obu graczy - do tego czasu zwolnione
+     * miejsce kończy mecz zamiast wracać do kolejki lobby.
+     */
+    private boolean resumeOnly;
+
+    /**
+     * Numer ostatniego wykonanego polecenia gracza 1.
+     */
+    private int player1InputSeq;
+
+    /**
+     * Numer ostatniego wykonanego polecenia gracza 2.
+     */
+    private int player2InputSeq;
+
+    /**
+     * Określa, czy w bieżącym takcie wykonano polecenia gracza 1.
+     */
+    private boolean player1InputPending;
+
+    /**
+     * Określa, czy w bieżącym takcie wykonano polecenia gracza 2.
+     */
+    private boolean player2InputPending;
+
+    /**
+     * Tworzy nową instancję gry w trybie klienta autorytatywnego.
      *
      * @param gameId Unikalny identyfikator gry.
      */
     public GameInstance(int gameId) {
-        this.gameId = gameId;
-        List<Obstacle> obstacles = generateObstacles();
-        gameState = new GameState(new Tank(100, 515, Color.BLUE), new Tank(600, 515, Color.RED), new ArrayList<>(), obstacles, true);
+        this(gameId, null, null);
     }
 
     /**
-     * Dodaje nowego klienta do gry.
+     * Tworzy nową instancję gry.
      *
-     * @param socket Gniazdo połączenia klienta.
-     * @param out    Strumień wyjściowy.
-     * @param in     Strumień wejściowy.
+     * @param gameId Unikalny identyfikator gry.
+     * @param ticker Harmonogram taktów symulacji dla trybu serwera autorytatywnego
+     *               lub null dla trybu klienta autorytatywnego.
+     * @param matchmaker Matchmaker, który utworzył grę, lub null.
      */
-    public synchronized void addClient(Socket socket, ObjectOutputStream out, ObjectInputStream in) {
-        if (isFull()) {
+    GameInstance(int gameId, TickScheduler ticker, Matchmaker matchmaker) {
+        this(gameId, ticker, matchmaker, null, 0);
+    }
+
+    /**
+     * Tworzy instancję gry odtworzoną z migawki lub nową, jeśli stan nie został podany.
+     *
+     * @param gameId     Unikalny identyfikator gry.
+     * @param ticker     Harmonogram taktów symulacji lub null dla trybu klienta autorytatywnego.
+     * @param matchmaker Matchmaker, który utworzył grę, lub null.
+     * @param restored   Stan gry z migawki (przejmowany) lub null dla nowej gry.
+     * @param version    Wersja stanu z migawki.
+     */
+    GameInstance(int gameId, TickScheduler ticker, Matchmaker matchmaker, GameState restored, long version) {
+        this.gameId = gameId;
+        this.ticker = ticker;
+        this.matchmaker = matchmaker;
+        this.metrics = matchmaker != null ? matchmaker.getMetrics().newGameMetrics() : new GameMetrics();
+        this.sessions = matchmaker != null ? matchmaker.getSessions() : null;
+        this.version = version;
+        if (restored != null) {
+            gameState = restored;
+        } else {
+            List<Obstacle> obstacles = generateObstacles();
+            gameState = new GameState(new Tank(100, 515, Color.BLUE), new Tank(600, 515, Color.RED), new ArrayList<>(), obstacles, true);
+        }
+        if (ticker != null) {
+            simulation = new GameSimulation(gameState.copy());
+        }
+        Path recordDirectory = matchmaker != null ? matchmaker.getRecordDirectory() : null;
+        if (recordDirectory != null) {
+            Path file = recordDirectory.resolve("game-" + gameId + "-" + System.currentTimeMillis() + ".match");
             try {
-                out.writeObject("Game is full. No more players can join.");
-                out.flush();
-                socket.close();
+                recorder = new MatchRecorder(file, gameId, ticker != null, gameState);
             } catch (IOException e) {
-                e.printStackTrace();
+                e.printStackTrace(); // Gra toczy się bez zapisu
             }
-            return;
+        }
+    }
+
+    /**
+     * Zwraca uchwyt taktów symulacji ze statystykami przekroczeń.
+     *
+     * @return Uchwyt lub null, jeśli symulacja nie działa.
+     */
+    TickScheduler.Handle getTickHandle() {
+        return tickTask;
+    }
+
+    /**
+     * Zwraca metryki gry.
+     *
+     * @return Metryki gry.
+     */
+    GameMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sprawdza, czy grę prowadzi serwer na podstawie poleceń graczy.
+     *
+     * @return true w trybie serwera autorytatywnego.
+     */
+    boolean isServerAuthoritative() {
+        return ticker != null;
+    }
+
+    /**
+     * Dodaje nowego klienta do gry.
+     * Jeśli gra jest pełna, klient otrzymuje komunikat i połączenie jest zamykane.
+     *
+     * @param client Połączenie klienta.
+     * @return true, jeśli klient dołączył do gry, false w przeciwnym razie.
+     */
+    public boolean addClient(PlayerConnection client) {
+        lock.lock();
+        try {
+            return addClientLocked(client);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Próbuje dołączyć klienta do gry. W przeciwieństwie do {@link #addClient(PlayerConnection)}
+     * odmowa nie zamyka połączenia, więc matchmaker może spróbować innej gry.
+     *
+     * @param client Połączenie klienta.
+     * @return true, jeśli klient dołączył, false, jeśli gra jest pełna lub zamknięta.
+     */
+    boolean tryJoin(PlayerConnection client) {
+        lock.lock();
+        try {
+            return !closed && !isFull() && addClientLocked(client);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Dołącza pierwszego gracza do nowej gry i wystawia grę w kolejce lobby.
+     * Gra trafia do kolejki, zanim gracz otrzyma powitanie, a drugi gracz, który zdejmie ją z kolejki,
+     * czeka na blokadzie do zakończenia dołączania pierwszego - role graczy nie mogą się zamienić.
+     *
+     * @param client  Połączenie pierwszego gracza.
+     * @param lobbies Kolejka lobby, do której trafia gra.
+     */
+    void open(PlayerConnection client, Queue<GameInstance> lobbies) {
+        lock.lock();
+        try {
+            lobbies.offer(this);
+            addClientLocked(client);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Dodaje nowego klienta do gry przy założonej blokadzie.
+     *
+     * @param client Połączenie klienta.
+     * @return true, jeśli klient dołączył do gry, false w przeciwnym razie.
+     */
+    private boolean addClientLocked(PlayerConnection client) {
+        if (isFull()) {
+            client.sendMessage(WireProtocol.GAME_FULL_MESSAGE);
+            client.close();
+            return false;
         }
 
         boolean isPlayer1 = !isPlayer1Assigned;
@@ -76,23 +320,225 @@ public class GameInstance {
             isPlayer2Assigned = true;
         }
 
-        ClientHandler clientHandler = new ClientHandler(socket, this, isPlayer1, out, in);
-        clients.add(clientHandler);
-        new Thread(clientHandler).start();
-
-        try {
-            out.writeBoolean(isPlayer1);
-            out.flush();
-        } catch (IOException e) {
-            e.printStackTrace();
+        clients.add(client);
+        client.joined(this, isPlayer1);
+        if (sessions != null && client.isResumable()) {
+            SessionRegistry.Session session = sessions.issue(this, isPlayer1, client);
+            setSession(isPlayer1, session);
+            client.sessionIssued(session.token);
         }
 
         if (isFull()) {
             System.out.println("Game " + gameId + " is full. Starting the game...");
             broadcastGameState();
+            if (ticker != null && tickTask == null) {
+                tickTask = ticker.schedule(this::tick);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Wznawia sesję gracza na nowym połączeniu: połączenie przejmuje miejsce gracza bez przechodzenia przez
+     * matchmaker, a gra toczy się dalej. Poprzednie połączenie, jeśli serwer jeszcze nie zauważył jego
+     * zerwania, jest zamykane. Klient dostaje bieżący stan - przy replikacji różnicowej względem ostatniego
+     * stanu, który zdążył odebrać.
+     *
+     * @param client  Nowe połączenie gracza.
+     * @param session Sesja gracza.
+     * @param lastSeq Numer ostatniego stanu odebranego przez klienta.
+     * @return false, jeśli sesja nie należy już do tej gry, gra została zamknięta lub klient
+     *         nie pasuje do trybu gry.
+     */
+    boolean resume(PlayerConnection client, SessionRegistry.Session session, int lastSeq) {
+        lock.lock();
+        try {
+            if (closed || getSession(session.isPlayer1) != session || client.sendsInput() != isServerAuthoritative()) {
+                return false;
+            }
+            PlayerConnection previous = session.connection;
+            if (previous != null && clients.remove(previous)) {
+                previous.close();
+            }
+            sessions.attach(session, client);
+            client.resumed(previous, lastSeq);
+            clients.add(client);
+            client.joined(this, session.isPlayer1);
+            System.out.println("Player " + (session.isPlayer1 ? 1 : 2) + " resumed game " + gameId);
+            client.sendGameState(gameState);
+            if (ticker != null && tickTask == null) {
+                tickTask = ticker.schedule(this::tick); // Gra odtworzona z migawki
+            }
+            if (resumeOnly && !player1Session.isHeld() && !player2Session.isHeld()) {
+                resumeOnly = false; // Obaj gracze wrócili - dalej gra jak każda inna
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Odtwarza sesje graczy gry wczytanej z migawki. Miejsca są przetrzymywane dla właścicieli żetonów
+     * przez okres karencji, tak jak po zerwaniu połączenia; gra nie trafia do kolejki lobby.
+     *
+     * @param player1Token Żeton sesji gracza 1.
+     * @param player2Token Żeton sesji gracza 2.
+     * @return false, jeśli sesji nie udało się odtworzyć - gra zostaje wtedy usunięta.
+     */
+    boolean restoreSessions(long player1Token, long player2Token) {
+        lock.lock();
+        try {
+            resumeOnly = true;
+            for (boolean isPlayer1 : new boolean[]{true, false}) {
+                SessionRegistry.Session session = sessions.restore(isPlayer1 ? player1Token : player2Token, this, isPlayer1);
+                if (session == null) {
+                    terminate(WireProtocol.MATCH_ENDED_MESSAGE);
+                    return false;
+                }
+                setSession(isPlayer1, session);
+                if (isPlayer1) {
+                    isPlayer1Assigned = true;
+                } else {
+                    isPlayer2Assigned = true;
+                }
+                if (!sessions.hold(session)) {
+                    terminate(WireProtocol.MATCH_ENDED_MESSAGE);
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Zwraca żeton sesji gracza (do zapisu w migawce).
+     *
+     * @param isPlayer1 Określa, czy chodzi o gracza 1.
+     * @return Żeton lub 0, jeśli gracz nie ma sesji.
+     */
+    long getSessionToken(boolean isPlayer1) {
+        SessionRegistry.Session session = getSession(isPlayer1);
+        return session != null ? session.token : 0;
+    }
+
+    /**
+     * Zwalnia miejsce gracza, którego karencja minęła bez ponownego połączenia.
+     * Wywoływane przez wątek rejestru sesji.
+     *
+     * @param session Sesja rozłączonego gracza.
+     */
+    void expireSession(SessionRegistry.Session session) {
+        lock.lock();
+        try {
+            if (getSession(session.isPlayer1) != session || !session.isHeld()) {
+                return; // Gracz zdążył wrócić
+            }
+            sessions.revoke(session, true);
+            setSession(session.isPlayer1, null);
+            System.out.println("Session of player " + (session.isPlayer1 ? 1 : 2) + " in game " + gameId + " has expired.");
+            releaseSlot(session.isPlayer1);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Zwraca sesję gracza.
+     *
+     * @param isPlayer1 Określa, czy chodzi o gracza 1.
+     * @return Sesja lub null.
+     */
+    private SessionRegistry.Session getSession(boolean isPlayer1) {
+        return isPlayer1 ? player1Session : player2Session;
+    }
+
+    /**
+     * Ustawia sesję gracza. Wywoływane przy założonej blokadzie.
+     *
+     * @param isPlayer1 Określa, czy chodzi o gracza 1.
+     * @param session   Sesja lub null.
+     */
+    private void setSession(boolean isPlayer1, SessionRegistry.Session session) {
+        if (isPlayer1) {
+            player1Session = session;
+        } else {
+            player2Session = session;
         }
     }
 
+    /**
+     * Dołącza widza do gry. Widz dostaje powitanie jako gracz 2 (z flagą widza wynegocjowaną
+     * w powitaniu) i od razu bieżący stan gry, a potem każde rozesłanie stanu.
+     *
+     * @param spectator Połączenie widza.
+     * @return false, jeśli gra została już zamknięta.
+     */
+    boolean addSpectator(PlayerConnection spectator) {
+        lock.lock();
+        try {
+            if (closed) {
+                return false;
+            }
+            spectators.add(spectator);
+            spectator.joined(this, false);
+            spectator.sendGameState(gameState);
+            System.out.println("Spectator joined game " + gameId + " (" + spectators.size() + " watching).");
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Zwraca liczbę widzów gry.
+     *
+     * @return Liczba widzów.
+     */
+    int getSpectatorCount() {
+        lock.lock();
+        try {
+            return spectators.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Zwraca kopię bieżącego stanu gry.
+     *
+     * @return Kopia stanu gry.
+     */
+    GameState getGameState() {
+        lock.lock();
+        try {
+            return gameState.copy();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Zwraca wersję stanu gry. Odczyt bez blokady - przy migawce wersję należy odczytać przed stanem
+     * ({@link #getPublishedState()}), aby zapisany stan nie był starszy niż jego wersja.
+     *
+     * @return Wersja stanu gry.
+     */
+    long getVersion() {
+        return version;
+    }
+
+    /**
+     * Zwraca bieżący stan gry bez kopiowania i bez blokady. Zwrócony obiekt nie może być modyfikowany.
+     *
+     * @return Opublikowany stan gry.
+     */
+    GameState getPublishedState() {
+        return gameState;
+    }
+
     /**
      * Sprawdza, czy gra jest pełna.
      *
@@ -136,21 +582,144 @@ public class GameInstance {
 
     /**
      * Aktualizuje stan gry i przesyła go do wszystkich klientów.
+     * W trybie serwera autorytatywnego stan od klienta jest pomijany.
      *
      * @param newState Nowy stan gry.
      */
-    public synchronized void updateGameState(GameState newState) {
-        this.gameState = newState;
-        broadcastGameState();
+    public void updateGameState(GameState newState) {
+        if (ticker != null) {
+            return;
+        }
+        lock.lock();
+        try {
+            this.gameState = newState;
+            version++;
+            metrics.recordUpdate();
+            if (recorder != null) {
+                recorder.recordState(++updateCount, newState);
+            }
+            broadcastGameState();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Przyjmuje polecenie gracza do wykonania w najbliższym takcie.
+     * W trybie klienta autorytatywnego polecenia są pomijane.
+     *
+     * @param command Polecenie gracza.
+     */
+    void applyInput(InputCommand command) {
+        if (ticker != null) {
+            inputs.add(command);
+        }
+    }
+
+    /**
+     * Wykonuje takt symulacji: stosuje oczekujące polecenia, przesuwa symulację
+     * i rozsyła stan, jeśli się zmienił.
+     */
+    private void tick() {
+        long start = System.nanoTime();
+        lock.lock();
+        try {
+            boolean changed = false;
+            tickCount++;
+            InputCommand command;
+            while ((command = inputs.poll()) != null) {
+                if (recorder != null) {
+                    recorder.recordInput(tickCount, command);
+                }
+                changed |= simulation.applyInput(command.isPlayer1, command.buttons);
+                if (command.isPlayer1) {
+                    player1InputSeq = command.seq;
+                    player1InputPending = true;
+                } else {
+                    player2InputSeq = command.seq;
+                    player2InputPending = true;
+                }
+            }
+            changed |= simulation.step();
+            acknowledgeInputs();
+            if (changed) {
+                gameState = simulation.snapshot();
+                version++;
+                metrics.recordUpdate();
+                if (recorder != null) {
+                    recorder.recordTick(tickCount, gameState);
+                }
+                broadcastGameState();
+            }
+        } finally {
+            lock.unlock();
+        }
+        metrics.recordTick(System.nanoTime() - start);
+    }
+
+    /**
+     * Przekazuje graczom numery ostatnich poleceń wykonanych w bieżącym takcie, tuż przed stanem,
+     * który je uwzględnia. Polecenia bez skutku (np. poza turą lub ruch zablokowany przeszkodą) też są
+     * potwierdzane, choć stan nie zostanie wtedy rozesłany - klient nie powinien ich już stosować.
+     * Wywoływane przy założonej blokadzie.
+     */
+    private void acknowledgeInputs() {
+        for (PlayerConnection client : clients) {
+            if (client.isPlayer1() ? player1InputPending : player2InputPending) {
+                client.inputApplied(client.isPlayer1() ? player1InputSeq : player2InputSeq);
+            }
+        }
+        player1InputPending = false;
+        player2InputPending = false;
     }
 
     /**
-     * Wysyła aktualny stan gry do wszystkich klientów.
+     * Wysyła aktualny stan gry do wszystkich klientów i widzów.
+     * Stan jest kodowany raz dla każdego używanego formatu, a nie osobno dla każdego odbiorcy.
      */
     private void broadcastGameState() {
-        for (ClientHandler client : clients) {
-            client.sendGameState(gameState);
+        long start = System.nanoTime();
+        StateBroadcast broadcast = new StateBroadcast(gameState, metrics);
+        try {
+            for (PlayerConnection client : clients) {
+                client.sendBroadcast(broadcast);
+            }
+            for (PlayerConnection spectator : spectators) {
+                spectator.sendBroadcast(broadcast);
+            }
+        } finally {
+            broadcast.release();
+        }
+        metrics.recordBroadcast(System.nanoTime() - start);
+    }
+
+    /**
+     * Kończy oglądanie gry: widzowie dostają komunikat {@link WireProtocol#MATCH_ENDED_MESSAGE}
+     * i są rozłączani. Wywoływane przy założonej blokadzie.
+     */
+    private void dismissSpectators() {
+        // Kopia - zamknięcie połączenia może od razu wywołać removeClient w tym samym wątku
+        List<PlayerConnection> watching = new ArrayList<>(spectators);
+        spectators.clear();
+        for (PlayerConnection spectator : watching) {
+            spectator.sendMessage(WireProtocol.MATCH_ENDED_MESSAGE);
+            spectator.close();
+        }
+    }
+
+    /**
+     * Kończy zapis meczu. Wywoływane przy założonej blokadzie.
+     */
+    private void stopRecording() {
+        if (recorder == null) {
+            return;
+        }
+        try {
+            recorder.close(ticker != null ? tickCount : updateCount);
+        } catch (IOException e) {
+            e.printStackTrace();
         }
+        recorder = null;
     }
 
     /**
@@ -169,18 +738,131 @@ public class GameInstance {
 
         // Ustawienie nowego stanu gry
         gameState = new GameState(player1Tank, player2Tank, bullets, obstacles, true);
+        version++;
+        if (ticker != null) {
+            simulation = new GameSimulation(gameState.copy());
+            inputs.clear();
+        }
         System.out.println("Game state has been reset for game " + gameId);
     }
 
+    /**
+     * Zatrzymuje symulację, kończy oglądanie i zapis meczu oraz usuwa grę z rejestru.
+     * Wywoływane przy założonej blokadzie.
+     */
+    private void closeGame() {
+        if (tickTask != null) {
+            tickTask.cancel();
+            tickTask = null;
+        }
+        dismissSpectators();
+        stopRecording();
+        if (matchmaker != null) {
+            closed = true;
+            matchmaker.remove(gameId);
+        } else {
+            GameServer.getInstance().removeGameInstance(gameId);
+        }
+    }
+
+    /**
+     * Przerywa grę: gracze dostają komunikat i są rozłączani bez przetrzymywania miejsc, a gra jest usuwana.
+     * Używane przez serwer, który kończy pracę ({@link GameServer#drain(long)}).
+     *
+     * @param message Komunikat dla graczy.
+     */
+    void terminate(String message) {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            // Kopia - zamknięcie połączenia może od razu wywołać removeClient w tym samym wątku
+            List<PlayerConnection> players = new ArrayList<>(clients);
+            clients.clear();
+            for (PlayerConnection player : players) {
+                player.sendMessage(message);
+                player.close();
+            }
+            for (SessionRegistry.Session session : new SessionRegistry.Session[]{player1Session, player2Session}) {
+                if (session != null) {
+                    sessions.revoke(session, false);
+                }
+            }
+            player1Session = null;
+            player2Session = null;
+            isPlayer1Assigned = false;
+            isPlayer2Assigned = false;
+            System.out.println("Game " + gameId + " has been terminated.");
+            closeGame();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sprawdza, czy mecz rozstrzygnął się (czołg jednego z graczy został zniszczony).
+     * Po rozstrzygnięciu miejsca rozłączonych graczy nie są przetrzymywane.
+     *
+     * @return true, jeśli jeden z czołgów nie ma punktów życia.
+     */
+    private boolean isMatchOver() {
+        return gameState.getPlayer1Tank().getHp() <= 0 || gameState.getPlayer2Tank().getHp() <= 0;
+    }
+
     /**
      * Usuwa klienta z gry i aktualizuje status graczy.
      *
      * @param client Klient do usunięcia.
      */
-    public synchronized void removeClient(ClientHandler client) {
-        clients.remove(client);
+    public void removeClient(PlayerConnection client) {
+        lock.lock();
+        try {
+            removeClientLocked(client);
+        } finally {
+            lock.unlock();
+        }
+    }
 
-        if (client.isPlayer1()) {
+    /**
+     * Usuwa klienta z gry przy założonej blokadzie.
+     *
+     * @param client Klient do usunięcia.
+     */
+    private void removeClientLocked(PlayerConnection client) {
+        if (spectators.remove(client)) {
+            System.out.println("Spectator left game " + gameId);
+            return;
+        }
+        if (!clients.remove(client)) {
+            return;
+        }
+
+        boolean isPlayer1 = client.isPlayer1();
+        SessionRegistry.Session session = getSession(isPlayer1);
+        if (session != null && session.connection == client && !closed && !isMatchOver() && sessions.hold(session)) {
+            System.out.println("Player " + (isPlayer1 ? 1 : 2) + " lost connection to game " + gameId
+                    + ", holding the slot for " + sessions.getGraceMillis() + " ms");
+            return;
+        }
+        releaseSlot(isPlayer1);
+    }
+
+    /**
+     * Zwalnia miejsce gracza. Gra bez graczy jest usuwana, a gra z jednym graczem wraca do kolejki lobby -
+     * chyba że to gra odtworzona z migawki, do której nie wrócili obaj gracze: wtedy mecz jest kończony.
+     * Wywoływane przy założonej blokadzie.
+     *
+     * @param isPlayer1 Określa, czy zwalniane jest miejsce gracza 1.
+     */
+    private void releaseSlot(boolean isPlayer1) {
+        SessionRegistry.Session session = getSession(isPlayer1);
+        if (session != null) {
+            sessions.revoke(session, false);
+            setSession(isPlayer1, null);
+        }
+        if (isPlayer1) {
             isPlayer1Assigned = false;
             System.out.println("Player 1 has disconnected from game " + gameId);
         } else {
@@ -188,11 +870,17 @@ public class GameInstance {
             System.out.println("Player 2 has disconnected from game " + gameId);
         }
 
-        if (clients.isEmpty()) {
+        if (resumeOnly) {
+            System.out.println("Player did not return to restored game " + gameId);
+            terminate(WireProtocol.MATCH_ENDED_MESSAGE);
+        } else if (!isPlayer1Assigned && !isPlayer2Assigned) {
             System.out.println("Game " + gameId + " has no players. Removing game instance.");
-            GameServer.getInstance().removeGameInstance(gameId);
+            closeGame();
             resetGameState();
             broadcastGameState();
+        } else if (matchmaker != null) {
+            // Z pełnej gry wyszedł gracz - gra wraca do kolejki lobby
+            matchmaker.slotFreed(this);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,180 @@
+package org.rewera.ptak.raczynski;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metryki jednej instancji gry. Pomiary trafiają tylko do histogramów tej gry, więc wątki różnych
+ * gier nie rywalizują o wspólne liczniki - sumę serwera {@link ServerMetrics} łączy dopiero odczyt.
+ *
+ * <p>Zapis pomiarów nie alokuje pamięci (histogramy {@link LatencyHistogram} i liczniki
+ * {@link LongAdder}), więc może odbywać się w gorącej ścieżce rozsyłania stanu.
+ * Podsumowania są tworzone dopiero przy odczycie przez JMX.</p>
+ *
+ * <p>Histogramy mają rozdzielczość ok. 1 us i zakres ok. 17 s ({@link #UNIT_BITS}, {@link #RANGE_BITS}),
+ * bo tak i tak są odczytywane w mikrosekundach - pięć histogramów gry zajmuje ok. 7 KB zamiast 20 KB.</p>
+ */
+class GameMetrics implements GameMetricsMXBean {
+
+    /**
+     * Liczba bitów jednostki zapisu histogramów (2^10 ns, ok. 1 us).
+     */
+    static final int UNIT_BITS = 10;
+
+    /**
+     * Liczba bitów zakresu histogramów (2^34 ns, ok. 17 s).
+     */
+    static final int RANGE_BITS = 34;
+
+    /**
+     * Liczba aktualizacji stanu gry.
+     */
+    private final LongAdder updates = new LongAdder();
+
+    /**
+     * Czasy taktów symulacji.
+     */
+    private final LatencyHistogram tick = new LatencyHistogram(UNIT_BITS, RANGE_BITS);
+
+    /**
+     * Czasy serializacji stanu.
+     */
+    private final LatencyHistogram serialization = new LatencyHistogram(UNIT_BITS, RANGE_BITS);
+
+    /**
+     * Liczba zserializowanych stanów.
+     */
+    private final LongAdder serializedStates = new LongAdder();
+
+    /**
+     * Łączny rozmiar zserializowanych stanów.
+     */
+    private final LongAdder serializedBytes = new LongAdder();
+
+    /**
+     * Czasy rozsyłania stanu do klientów gry.
+     */
+    private final LatencyHistogram broadcast = new LatencyHistogram(UNIT_BITS, RANGE_BITS);
+
+    /**
+     * Czasy od przekazania stanu do wysłania do zapisania w gnieździe.
+     */
+    private final LatencyHistogram delivery = new LatencyHistogram(UNIT_BITS, RANGE_BITS);
+
+    /**
+     * Chwila utworzenia lub wyzerowania metryk w nanosekundach - początek okna częstotliwości aktualizacji.
+     */
+    private volatile long sinceNanos = System.nanoTime();
+
+    /**
+     * Zapisuje aktualizację stanu gry.
+     */
+    void recordUpdate() {
+        updates.increment();
+    }
+
+    /**
+     * Zapisuje czas taktu symulacji.
+     *
+     * @param nanos Czas taktu w nanosekundach.
+     */
+    void recordTick(long nanos) {
+        tick.record(nanos);
+    }
+
+    /**
+     * Zapisuje serializację stanu dla jednego klienta.
+     *
+     * @param nanos Czas serializacji w nanosekundach.
+     * @param bytes Rozmiar zserializowanego stanu.
+     */
+    void recordSerialization(long nanos, int bytes) {
+        serialization.record(nanos);
+        serializedStates.increment();
+        serializedBytes.add(bytes);
+    }
+
+    /**
+     * Zapisuje czas rozesłania stanu do wszystkich klientów gry.
+     *
+     * @param nanos Czas w nanosekundach.
+     */
+    void recordBroadcast(long nanos) {
+        broadcast.record(nanos);
+    }
+
+    /**
+     * Zapisuje czas od przekazania stanu do wysłania do zapisania go w gnieździe klienta.
+     *
+     * @param nanos Czas w nanosekundach.
+     */
+    void recordDelivery(long nanos) {
+        delivery.record(nanos);
+    }
+
+    @Override
+    public long getStateUpdates() {
+        return updates.sum();
+    }
+
+    @Override
+    public double getStateUpdateRate() {
+        return getStateUpdates() * 1e9 / Math.max(1, System.nanoTime() - sinceNanos);
+    }
+
+    @Override
+    public LatencySummary getTickTime() {
+        return new LatencySummary(tick);
+    }
+
+    @Override
+    public LatencySummary getSerializationTime() {
+        return new LatencySummary(serialization);
+    }
+
+    @Override
+    public long getSerializedStates() {
+        return serializedStates.sum();
+    }
+
+    @Override
+    public long getSerializedBytes() {
+        return serializedBytes.sum();
+    }
+
+    @Override
+    public LatencySummary getBroadcastTime() {
+        return new LatencySummary(broadcast);
+    }
+
+    @Override
+    public LatencySummary getDeliveryLatency() {
+        return new LatencySummary(delivery);
+    }
+
+    @Override
+    public void reset() {
+        updates.reset();
+        tick.reset();
+        serialization.reset();
+        serializedStates.reset();
+        serializedBytes.reset();
+        broadcast.reset();
+        delivery.reset();
+        sinceNanos = System.nanoTime();
+    }
+
+    /**
+     * Dodaje pomiary tej gry do innych metryk (sumy gier przy odczycie lub po zakończeniu gry).
+     *
+     * @param target Metryki docelowe.
+     */
+    void addTo(GameMetrics target) {
+        target.updates.add(updates.sum());
+        tick.addTo(target.tick);
+        serialization.addTo(target.serialization);
+        target.serializedStates.add(serializedStates.sum());
+        target.serializedBytes.add(serializedBytes.sum());
+        broadcast.addTo(target.broadcast);
+        delivery.addTo(target.delivery);
+    }
+}
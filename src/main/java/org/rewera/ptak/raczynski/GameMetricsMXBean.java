@@ -0,0 +1,71 @@
+package org.rewera.ptak.raczynski;
+
+/**
+ * Interfejs JMX metryk gry ({@link GameMetrics}): jednej instancji gry lub sumy wszystkich gier serwera.
+ * Czasy są podawane jako {@link LatencySummary} w mikrosekundach.
+ */
+public interface GameMetricsMXBean {
+
+    /**
+     * Zwraca liczbę aktualizacji stanu gry (od klienta lub z taktu serwera).
+     *
+     * @return Liczba aktualizacji.
+     */
+    long getStateUpdates();
+
+    /**
+     * Zwraca średnią liczbę aktualizacji stanu na sekundę od utworzenia metryk lub ostatniego
+     * {@link #reset()}. Odczyt nie zmienia metryk, więc kilku odczytujących nie zaburza sobie wyniku.
+     *
+     * @return Aktualizacje na sekundę.
+     */
+    double getStateUpdateRate();
+
+    /**
+     * Zwraca czasy taktów symulacji gier prowadzonych przez serwer.
+     *
+     * @return Podsumowanie czasów taktu.
+     */
+    LatencySummary getTickTime();
+
+    /**
+     * Zwraca czasy serializacji stanu gry dla jednego klienta.
+     *
+     * @return Podsumowanie czasów serializacji.
+     */
+    LatencySummary getSerializationTime();
+
+    /**
+     * Zwraca liczbę zserializowanych stanów gry.
+     *
+     * @return Liczba stanów.
+     */
+    long getSerializedStates();
+
+    /**
+     * Zwraca łączny rozmiar zserializowanych stanów gry.
+     *
+     * @return Liczba bajtów.
+     */
+    long getSerializedBytes();
+
+    /**
+     * Zwraca czasy rozesłania stanu do wszystkich klientów gry (wywołanie dla każdego klienta).
+     *
+     * @return Podsumowanie czasów rozsyłania.
+     */
+    LatencySummary getBroadcastTime();
+
+    /**
+     * Zwraca czasy od przekazania stanu do wysłania do jego zapisania w gnieździe klienta
+     * (czas oczekiwania w kolejce wiadomości wychodzących i zapisu).
+     *
+     * @return Podsumowanie czasów dostarczenia.
+     */
+    LatencySummary getDeliveryLatency();
+
+    /**
+     * Zeruje histogramy i liczniki.
+     */
+    void reset();
+}
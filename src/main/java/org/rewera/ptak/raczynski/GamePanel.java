@@ -4,10 +4,16 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.FocusAdapter;
+import java.awt.event.FocusEvent;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.io.*;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
@@ -15,6 +21,27 @@ import java.util.function.Consumer;
 
 /**
  * Klasa reprezentująca panel gry, w którym odbywa się rozgrywka.
+ *
+ * <p>W trybie multiplayer panel prosi serwer o sesję ({@link WireProtocol#FLAG_RESUME}). Po zerwaniu
+ * połączenia łączy się ponownie z opóźnieniem {@link Backoff} i wznawia sesję żetonem - wraca do tej samej
+ * gry, a replika stanu dostaje różnicę względem ostatniego odebranego stanu.</p>
+ *
+ * <p>Klawisze nie poruszają czołgiem bezpośrednio - zmieniają stan {@link InputSampler}, który timer
+ * gry próbkuje raz na takt. Ruch nie zależy więc od tempa powtarzania klawiszy, a w trybie multiplayer
+ * serwer dostaje najwyżej jedną wiadomość na takt i żadnej, gdy nic się nie zmieniło.</p>
+ *
+ * <p>Gdy grę prowadzi serwer, panel nie czeka na jego odpowiedź: własne polecenia są od razu
+ * wykonywane na kopii ostatniego stanu serwera, a po każdym nowym stanie ponownie stosowane są
+ * polecenia, których serwer jeszcze nie potwierdził ({@link InputPredictor}). Czołg gracza reaguje
+ * więc natychmiast niezależnie od opóźnienia łącza i nie cofa się, gdy przychodzą starsze stany.</p>
+ *
+ * <p>Czołg przeciwnika (a w grze prowadzonej przez serwer także pociski) jest rysowany z niewielkim
+ * opóźnieniem i interpolowany między ostatnimi stanami od serwera ({@link SnapshotInterpolator}),
+ * więc porusza się płynnie także wtedy, gdy stany przychodzą rzadziej niż klatki obrazu.</p>
+ *
+ * <p>Panel nie zawiera reguł gry: grę lokalną (singleplayer i grę prowadzoną przez klientów) prowadzi
+ * {@link GameSimulation}, której timer co takt przekazuje klawisze i wywołuje {@link GameSimulation#step()},
+ * a panel rysuje jej stan. Stany od serwera są wczytywane do tej samej symulacji.</p>
  */
 class GamePanel extends JPanel implements ActionListener, KeyListener {
 
@@ -24,85 +51,131 @@ class GamePanel extends JPanel implements ActionListener, KeyListener {
     private Timer timer;
 
     /**
-     * Czołg gracza 1.
+     * Symulacja gry: czołgi, pociski, przeszkody i tura.
      */
-    private Tank player1Tank;
+    private final GameSimulation simulation;
 
     /**
-     * Czołg gracza 2.
+     * Funkcja zwrotna wywoływana po wygranej.
      */
-    private Tank player2Tank;
+    private Consumer<String> onWin;
 
     /**
-     * Lista pocisków wystrzelonych w grze.
+     * Kolor ziemi na planszy.
      */
-    private ArrayList<Bullet> bullets;
+    private final Color groundColor = new Color(139, 69, 19);
+
 
     /**
-     * Lista przeszkód na planszy.
+     * Flaga określająca, czy gra jest w trybie multiplayer.
      */
-    private List<Obstacle> obstacles;
+    private boolean isMultiplayer;
 
     /**
-     * Flaga określająca, czy to tura gracza 1.
+     * Ostatni stan gry, który otrzymano od serwera (tryb gry prowadzonej przez serwer).
      */
-    private boolean isPlayer1Turn;
+    private GameState authoritativeState;
 
     /**
-     * Flaga mówiąca, czy gracz może strzelać.
+     * Polecenia wysłane serwerowi, których wykonania serwer jeszcze nie potwierdził.
      */
-    private boolean canShoot;
+    private final InputPredictor predictor = new InputPredictor();
 
     /**
-     * Funkcja zwrotna wywoływana po wygranej.
+     * Opóźnienie wyświetlania obiektów sterowanych przez serwer lub przeciwnika (ok. trzy takty serwera).
      */
-    private Consumer<String> onWin;
+    private static final long INTERPOLATION_DELAY_MILLIS = 50;
 
     /**
-     * Flaga mówiąca, czy strzał jest w trakcie.
+     * Ostatnie stany od serwera, z których wyświetlany jest czołg przeciwnika i pociski.
      */
-    private boolean shotInProgress;
+    private final SnapshotInterpolator interpolator = new SnapshotInterpolator(INTERPOLATION_DELAY_MILLIS);
 
     /**
-     * Kolor ziemi na planszy.
+     * Bieżący stan gry.
      */
-    private final Color groundColor = new Color(139, 69, 19);
+    private GameState state;
 
+    /**
+     * Największa liczba prób ponownego połączenia po zerwaniu połączenia.
+     */
+    private static final int MAX_RECONNECT_ATTEMPTS = 8;
 
     /**
-     * Flaga określająca, czy gra jest w trybie multiplayer.
+     * Limit czasu nawiązania połączenia przy ponownej próbie w milisekundach.
      */
-    private boolean isMultiplayer;
+    private static final int RECONNECT_TIMEOUT_MILLIS = 3000;
 
     /**
-     * Ostatni stan gry, który otrzymano od serwera.
+     * Gniazdo komunikacyjne w trybie multiplayer (podmieniane po ponownym połączeniu).
      */
-    private GameState latestState;
+    private volatile Socket socket;
 
     /**
-     * Flaga mówiąca, czy zmiany pochodzą z lokalnego urządzenia.
+     * Adres serwera, z którym panel łączy się ponownie po zerwaniu połączenia.
      */
-    private boolean isLocalUpdate = false;
+    private SocketAddress serverAddress;
 
     /**
-     * Bieżący stan gry.
+     * Żeton sesji od serwera (0, jeśli serwer nie wydał sesji).
      */
-    private GameState state;
+    private volatile long sessionToken;
+
+    /**
+     * Flaga określająca, czy gra się skończyła i połączenie nie powinno być wznawiane.
+     */
+    private volatile boolean finished;
 
     /**
-     * Gniazdo komunikacyjne w trybie multiplayer.
+     * Strumień do wysyłania ramek do serwera.
      */
-    private Socket socket;
+    private DataOutputStream out;
 
     /**
-     * Strumień do wysyłania danych do serwera.
+     * Strumień do odbierania ramek od serwera.
      */
-    private ObjectOutputStream out;
+    private DataInputStream in;
 
     /**
-     * Strumień do odbierania danych od serwera.
+     * Kodek stanu gry wybrany przez serwer w ramce powitalnej.
      */
-    private ObjectInputStream in;
+    private GameStateCodec codec;
+
+    /**
+     * Replika stanu gry odtwarzana z klatek kluczowych i różnic (null, jeśli serwer nie przyjął różnic).
+     */
+    private StateReplica replica;
+
+    /**
+     * Klient UDP dla stanów gry i poleceń (null, dopóki serwer nie przydzieli sesji UDP).
+     */
+    private volatile UdpClient udpClient;
+
+    /**
+     * Flaga określająca, czy grę prowadzi serwer, a klient wysyła jedynie polecenia.
+     */
+    private boolean serverAuthoritative;
+
+    /**
+     * Flaga określająca, czy serwer potwierdza wykonanie poleceń ({@link WireProtocol#FLAG_PREDICT}).
+     * Bez potwierdzeń panel nie przewiduje ruchu i wyświetla tylko stany serwera.
+     */
+    private boolean predicting;
+
+    /**
+     * Flaga określająca, czy panel odtwarza zapisany mecz ({@link MatchReplay}) zamiast prowadzić grę.
+     */
+    private boolean replaying;
+
+    /**
+     * Numer kolejnego polecenia wysyłanego do serwera.
+     */
+    private int inputSeq;
+
+    /**
+     * Stan przytrzymanych klawiszy próbkowany w każdym takcie.
+     */
+    private final InputSampler input = new InputSampler();
 
     /**
      * Flaga określająca, czy gracz jest pierwszym graczem (w trybie multiplayer).
@@ -129,15 +202,23 @@ class GamePanel extends JPanel implements ActionListener, KeyListener {
 
         setFocusable(true);
         addKeyListener(this);
+        addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusLost(FocusEvent e) {
+                input.releaseAll(); // Zwolnienie klawisza poza oknem nie dotrze do panelu
+            }
+        });
+
+        // Inicjalizacja gry (dla trybu singleplayer i multiplayer) - przed pierwszym stanem od serwera
+        Tank player1Tank = new Tank(100, 515, Color.BLUE);
+        Tank player2Tank = new Tank(600, 515, Color.RED);
+        List<Obstacle> obstacles = generateObstacles(player1Tank, player2Tank); // Generowanie przeszkód
+        simulation = new GameSimulation(new GameState(player1Tank, player2Tank, new ArrayList<>(), obstacles, true));
 
         if (isMultiplayer) {
             try {
-                // Tworzenie strumieni w odpowiedniej kolejności
-                out = new ObjectOutputStream(socket.getOutputStream());
-                in = new ObjectInputStream(socket.getInputStream());
-
-                // Odbierz informację od serwera o przydzielonej roli
-                this.isPlayer1 = in.readBoolean();
+                serverAddress = socket.getRemoteSocketAddress();
+                handshake(socket);
 
                 // Uruchom wątek nasłuchujący na aktualizacje stanu gry
                 new Thread(this::listenForUpdates).start();
@@ -146,15 +227,6 @@ class GamePanel extends JPanel implements ActionListener, KeyListener {
             }
         }
 
-        // Inicjalizacja gry (dla trybu singleplayer i multiplayer)
-        player1Tank = new Tank(100, 515, Color.BLUE);
-        player2Tank = new Tank(600, 515, Color.RED);
-        bullets = new ArrayList<>();
-        obstacles = generateObstacles(); // Generowanie przeszkód
-        isPlayer1Turn = true;
-        canShoot = true;
-        shotInProgress = false;
-
         // W trybie singleplayer gracz zawsze ma turę
         if (!isMultiplayer) {
             isMyTurn = true;
@@ -164,12 +236,94 @@ class GamePanel extends JPanel implements ActionListener, KeyListener {
         timer.start();
     }
 
+    /**
+     * Wita się z serwerem na nowym połączeniu i przełącza na nie panel. Powitanie proponuje zwięzły kodek
+     * binarny, replikację różnicową, grę prowadzoną przez serwer z potwierdzaniem poleceń, UDP i sesję;
+     * po nim idzie żądanie wznowienia z żetonem sesji (0 przy pierwszym połączeniu) i numerem ostatniego
+     * odebranego stanu. Polecenia niepotwierdzone na poprzednim połączeniu są porzucane.
+     *
+     * @param socket Nowe gniazdo połączenia z serwerem.
+     * @throws IOException w przypadku błędu połączenia lub niepoprawnego powitania serwera.
+     */
+    private void handshake(Socket socket) throws IOException {
+        socket.setTcpNoDelay(true);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        WireProtocol.writeHello(out, GameStateCodec.BINARY, (byte) (WireProtocol.FLAG_DELTA | WireProtocol.FLAG_INPUT
+                | WireProtocol.FLAG_PREDICT | WireProtocol.FLAG_UDP | WireProtocol.FLAG_RESUME));
+        WireProtocol.writeFrame(out, WireProtocol.FRAME_RESUME,
+                WireProtocol.resume(sessionToken, replica != null ? replica.getLastSeq() : 0));
+
+        // Odbierz informację od serwera o przydzielonej roli i wybranym kodeku
+        WireProtocol.Frame welcome = WireProtocol.readFrame(in);
+        if (welcome.type != WireProtocol.FRAME_WELCOME) {
+            throw new IOException("Expected welcome frame, got " + welcome.type);
+        }
+        byte flags = welcome.payload[1];
+        boolean resumed = (flags & WireProtocol.FLAG_RESUME) != 0;
+        synchronized (this) {
+            this.isPlayer1 = welcome.payload[0] != 0;
+            this.codec = GameStateCodec.forId(welcome.payload[2]);
+            if ((flags & WireProtocol.FLAG_DELTA) == 0) {
+                this.replica = null;
+            } else if (!resumed || replica == null) {
+                this.replica = new StateReplica(codec); // Nowa gra - numeracja stanów od początku
+            }
+            if (!resumed) {
+                sessionToken = 0; // Nowy żeton przyjdzie w ramce FRAME_SESSION
+            }
+            this.serverAuthoritative = (flags & WireProtocol.FLAG_INPUT) != 0;
+            this.predicting = (flags & WireProtocol.FLAG_PREDICT) != 0;
+            this.out = out;
+            this.in = in;
+            this.socket = socket;
+        }
+        SwingUtilities.invokeLater(() -> {
+            predictor.clear();
+            interpolator.clear();
+        });
+    }
+
+    /**
+     * Łączy się ponownie z serwerem po zerwaniu połączenia i wznawia sesję.
+     * Kolejne próby są rozłożone w czasie ({@link Backoff}), aby klienci rozłączeni jednocześnie
+     * nie wracali falą.
+     *
+     * @return true, jeśli połączenie zostało nawiązane.
+     */
+    private boolean reconnect() {
+        Backoff backoff = new Backoff(100, 5000, new Random());
+        while (!finished && backoff.getAttempts() < MAX_RECONNECT_ATTEMPTS) {
+            try {
+                Thread.sleep(backoff.nextDelayMillis());
+                Socket fresh = new Socket();
+                try {
+                    fresh.connect(serverAddress, RECONNECT_TIMEOUT_MILLIS);
+                    handshake(fresh);
+                    System.out.println("Reconnected to the server" + (sessionToken != 0 ? ", session resumed" : ""));
+                    return true;
+                } catch (IOException e) {
+                    fresh.close();
+                    System.out.println("Reconnect attempt " + backoff.getAttempts() + " failed: " + e.getMessage());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return false;
+    }
+
     /**
      * Generuje przeszkody na planszy.
      *
+     * @param player1Tank Czołg gracza 1 (przeszkody nie powstają w jego pobliżu).
+     * @param player2Tank Czołg gracza 2.
      * @return Lista przeszkód.
      */
-    private List<Obstacle> generateObstacles() {
+    private List<Obstacle> generateObstacles(Tank player1Tank, Tank player2Tank) {
         Random random = new Random();
         int numObstacles = random.nextInt(4) + 3;
         List<Obstacle> obstacles = new ArrayList<>();
@@ -194,9 +348,53 @@ class GamePanel extends JPanel implements ActionListener, KeyListener {
         if (!isMultiplayer || socket == null || socket.isClosed()) return;
 
         try {
-            GameState state = new GameState(player1Tank, player2Tank, bullets, obstacles, isPlayer1Turn);
-            out.writeObject(state);
-            out.flush();
+            GameState state = simulation.snapshot();
+            WireProtocol.writeFrame(out, WireProtocol.FRAME_STATE, codec.encode(state));
+        } catch (IOException e) {
+            e.printStackTrace();
+            closeSocket();
+        }
+    }
+
+    /**
+     * Wysyła serwerowi polecenie sterujące (tryb gry prowadzonej przez serwer).
+     *
+     * @param buttons Maska przycisków ({@link InputCommand}).
+     * @return Numer wysłanego polecenia lub 0, jeśli polecenia nie udało się wysłać.
+     */
+    private synchronized int sendInput(int buttons) {
+        if (socket.isClosed()) return 0;
+
+        try {
+            byte[] command = InputCommand.encode(++inputSeq, buttons);
+            UdpClient udp = udpClient;
+            if (udp == null || !udp.sendInput(command)) {
+                WireProtocol.writeFrame(out, WireProtocol.FRAME_INPUT, command);
+            }
+            return inputSeq;
+        } catch (IOException e) {
+            e.printStackTrace();
+            closeSocket();
+            return 0;
+        }
+    }
+
+    /**
+     * Potwierdza serwerowi odebranie stanu gry, aby kolejne różnice były liczone względem niego.
+     *
+     * @param seq    Numer odebranego stanu.
+     * @param viaUdp Określa, czy stan przyszedł przez UDP (potwierdzenie idzie tą samą drogą).
+     */
+    private synchronized void sendAck(int seq, boolean viaUdp) {
+        if (socket.isClosed()) return;
+
+        try {
+            UdpClient udp = udpClient;
+            if (viaUdp && udp != null) {
+                udp.sendAck(seq);
+                return;
+            }
+            WireProtocol.writeFrame(out, WireProtocol.FRAME_ACK, WireProtocol.ack(seq));
         } catch (IOException e) {
             e.printStackTrace();
             closeSocket();
@@ -207,6 +405,11 @@ class GamePanel extends JPanel implements ActionListener, KeyListener {
      * Zamyka gniazdo połączenia z serwerem.
      */
     private void closeSocket() {
+        UdpClient udp = udpClient;
+        if (udp != null) {
+            udpClient = null;
+            udp.close();
+        }
         try {
             if (socket != null && !socket.isClosed()) {
                 socket.close();
@@ -218,23 +421,48 @@ class GamePanel extends JPanel implements ActionListener, KeyListener {
 
     /**
      * Nasłuchuje na aktualizacje stanu gry od serwera w trybie multiplayer.
+     * Po zerwaniu połączenia w trakcie gry z sesją łączy się ponownie i nasłuchuje dalej.
      */
     private void listenForUpdates() {
+        do {
+            receiveUpdates();
+        } while (!finished && sessionToken != 0 && reconnect());
+    }
+
+    /**
+     * Odbiera ramki od serwera do zamknięcia bieżącego połączenia.
+     */
+    private void receiveUpdates() {
+        Socket socket = this.socket;
         try {
             while (!socket.isClosed()) {
-                Object receivedObject = in.readObject();
-                if (receivedObject instanceof GameState) {
-                    GameState state = (GameState) receivedObject;
+                WireProtocol.Frame frame = WireProtocol.readFrame(in);
+                if (frame.type == WireProtocol.FRAME_STATE) {
+                    GameState state = codec.decode(frame.payload, 0, frame.payload.length);
                     SwingUtilities.invokeLater(() -> updateGameFromState(state));
-                } else if (receivedObject instanceof String) {
-                    String message = (String) receivedObject;
-                    if (message.equals("Game is full. No more players can join.")) {
+                } else if (frame.type == WireProtocol.FRAME_SNAPSHOT || frame.type == WireProtocol.FRAME_DELTA) {
+                    applyReplicated(frame, false);
+                } else if (frame.type == WireProtocol.FRAME_INPUT_ACK) {
+                    int seq = WireProtocol.readSeq(frame.payload, 0, frame.payload.length);
+                    SwingUtilities.invokeLater(() -> acknowledgeInput(seq));
+                } else if (frame.type == WireProtocol.FRAME_UDP_BIND) {
+                    startUdp(ByteBuffer.wrap(frame.payload).getLong());
+                } else if (frame.type == WireProtocol.FRAME_SESSION) {
+                    sessionToken = ByteBuffer.wrap(frame.payload).getLong();
+                } else if (frame.type == WireProtocol.FRAME_TEXT) {
+                    String message = new String(frame.payload, StandardCharsets.UTF_8);
+                    if (message.equals(WireProtocol.GAME_FULL_MESSAGE)) {
+                        finished = true;
                         JOptionPane.showMessageDialog(this, message, "Game Full", JOptionPane.INFORMATION_MESSAGE);
                         break; // Zakończ pętlę, jeśli gra jest pełna
+                    } else if (message.equals(WireProtocol.SESSION_EXPIRED_MESSAGE)) {
+                        System.out.println("Previous session expired, joined a new game.");
+                    } else if (message.equals(WireProtocol.SERVER_RESTARTING_MESSAGE)) {
+                        System.out.println("Server is restarting, reconnecting...");
                     }
                 }
             }
-        } catch (IOException | ClassNotFoundException e) {
+        } catch (IOException e) {
             if (!socket.isClosed()) { // Tylko loguj błąd, jeśli gniazdo nie zostało zamknięte celowo
                 e.printStackTrace();
             }
@@ -244,21 +472,113 @@ class GamePanel extends JPanel implements ActionListener, KeyListener {
     }
 
     /**
-     * Aktualizuje stan gry na podstawie danych otrzymanych od serwera.
+     * Odtwarza stan z ramki replikacji otrzymanej przez TCP lub UDP i potwierdza go serwerowi.
+     * Ramki starsze niż ostatnio odtworzony stan są pomijane.
+     *
+     * @param frame  Ramka {@link WireProtocol#FRAME_SNAPSHOT} lub {@link WireProtocol#FRAME_DELTA}.
+     * @param viaUdp Określa, czy ramka przyszła przez UDP.
+     * @throws IOException jeśli dane ramki są niepoprawne.
+     */
+    private void applyReplicated(WireProtocol.Frame frame, boolean viaUdp) throws IOException {
+        if (replica == null) return;
+
+        GameState state = replica.apply(frame);
+        if (state != null) { // Brak stanu bazowego lub stan nieaktualny - czekamy na kolejny
+            sendAck(replica.getLastSeq(), viaUdp);
+            SwingUtilities.invokeLater(() -> updateGameFromState(state));
+        }
+    }
+
+    /**
+     * Zgłasza się serwerowi przez UDP z żetonem sesji otrzymanym przez TCP.
+     *
+     * @param token Żeton sesji UDP.
+     */
+    private void startUdp(long token) {
+        try {
+            UdpClient udp = new UdpClient(new InetSocketAddress(socket.getInetAddress(), socket.getPort()), token, frame -> {
+                try {
+                    applyReplicated(frame, true);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            });
+            udp.start();
+            udpClient = udp;
+        } catch (IOException e) {
+            e.printStackTrace(); // Zostajemy przy TCP
+        }
+    }
+
+    /**
+     * Aktualizuje stan gry na podstawie danych otrzymanych od serwera. Gdy grę prowadzi serwer,
+     * wyświetlany jest stan z ponownie zastosowanymi niepotwierdzonymi poleceniami. W grze prowadzonej
+     * przez klientów własny czołg w trakcie własnej tury pozostaje lokalny - serwer przysyła wtedy
+     * jedynie starsze kopie stanu wysłanego przez ten panel.
      *
      * @param state Stan gry otrzymany od serwera.
      */
     private void updateGameFromState(GameState state) {
-        this.player1Tank = state.getPlayer1Tank();
-        this.player2Tank = state.getPlayer2Tank();
-        this.bullets = new ArrayList<>(state.getBullets());
-        this.obstacles = new ArrayList<>(state.getObstacles());
-        this.isPlayer1Turn = state.isPlayer1Turn();
-        this.isMyTurn = (isPlayer1 && isPlayer1Turn) || (!isPlayer1 && !isPlayer1Turn); // Ustawienie flagi tury
-        this.latestState = state;
+        if (isMultiplayer && !replaying) {
+            interpolator.add(System.nanoTime(), state);
+        }
+        if (serverAuthoritative && !replaying) {
+            authoritativeState = state;
+            showState(predicting ? predictor.predict(state, isPlayer1) : state);
+            return;
+        }
+        boolean keepOwn = isMultiplayer && !replaying && isMyTurn && !simulation.isShotInProgress()
+                && state.isPlayer1Turn() == isPlayer1;
+        if (keepOwn) {
+            state = new GameState(isPlayer1 ? simulation.getPlayer1Tank() : state.getPlayer1Tank(),
+                    isPlayer1 ? state.getPlayer2Tank() : simulation.getPlayer2Tank(),
+                    state.getBullets(), state.getObstacles(), state.isPlayer1Turn());
+        }
+        showState(state);
+    }
+
+    /**
+     * Usuwa polecenia potwierdzone przez serwer i odświeża przewidywany stan (potwierdzenie może
+     * przyjść po stanie, który już zawiera wykonane polecenia).
+     *
+     * @param seq Numer ostatniego polecenia wykonanego przez serwer.
+     */
+    private void acknowledgeInput(int seq) {
+        predictor.acknowledge(seq);
+        if (authoritativeState != null) {
+            showState(predictor.predict(authoritativeState, isPlayer1));
+        }
+    }
+
+    /**
+     * Wyświetla podany stan gry. Turę po strzale tego panelu nadal kończy jego symulacja.
+     * Symulacja dostaje kopię, bo modyfikuje wczytane obiekty, a ten sam stan trafia do historii
+     * interpolacji i jako stan potwierdzony do przewidywania.
+     *
+     * @param state Stan gry.
+     */
+    private void showState(GameState state) {
+        simulation.load(state.copy(), simulation.isShotInProgress());
+        this.isMyTurn = isPlayer1 == simulation.isPlayer1Turn(); // Ustawienie flagi tury
         repaint();
     }
 
+    /**
+     * Przełącza panel w tryb odtwarzania: gra nie jest symulowana lokalnie, a klawisze są pomijane.
+     */
+    void startReplay() {
+        replaying = true;
+    }
+
+    /**
+     * Wyświetla stan z odtwarzanego meczu. Wywoływane w wątku Swing.
+     *
+     * @param state Stan gry z zapisu.
+     */
+    void showReplayState(GameState state) {
+        updateGameFromState(state);
+    }
+
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
@@ -266,188 +586,120 @@ class GamePanel extends JPanel implements ActionListener, KeyListener {
         g.setColor(groundColor);
         g.fillRect(0, 530, getWidth(), getHeight() - 530);
 
-        for (Obstacle obstacle : obstacles) {
+        for (Obstacle obstacle : simulation.getObstacles()) {
             obstacle.draw(g);
         }
 
-        player1Tank.draw(g);
-        player2Tank.draw(g);
-
-        for (Bullet bullet : bullets) {
-            bullet.draw(g);
+        // Własny czołg z lokalnego stanu, czołg przeciwnika (i pociski serwera) - interpolowane
+        Tank tank1 = simulation.getPlayer1Tank();
+        Tank tank2 = simulation.getPlayer2Tank();
+        List<Bullet> serverBullets = null;
+        GameState view = isMultiplayer && !replaying ? interpolator.sample(System.nanoTime()) : null;
+        if (view != null) {
+            if (isPlayer1) {
+                tank2 = view.getPlayer2Tank();
+            } else {
+                tank1 = view.getPlayer1Tank();
+            }
+            if (serverAuthoritative) {
+                serverBullets = view.getBullets();
+            }
+        }
+        tank1.draw(g);
+        tank2.draw(g);
+
+        if (serverBullets == null) {
+            simulation.getBullets().draw(g);
+        } else {
+            for (Bullet bullet : serverBullets) {
+                bullet.draw(g);
+            }
         }
 
         g.setColor(Color.BLACK);
         g.setFont(new Font("Arial", Font.BOLD, 16));
-        g.drawString(isPlayer1Turn ? "Player 1's Turn" : "Player 2's Turn", 10, 20);
+        g.drawString(simulation.isPlayer1Turn() ? "Player 1's Turn" : "Player 2's Turn", 10, 20);
     }
 
     @Override
     public void actionPerformed(ActionEvent e) {
-        // Synchronizacja stanu gry z serwera (tylko dla multiplayer)
-        if (isMultiplayer && latestState != null && !isLocalUpdate) {
-            player1Tank = latestState.getPlayer1Tank();
-            player2Tank = latestState.getPlayer2Tank();
-            bullets = new ArrayList<>(latestState.getBullets());
-            obstacles = new ArrayList<>(latestState.getObstacles());
-            isPlayer1Turn = latestState.isPlayer1Turn();
-            latestState = null; // Wyczyszczenie po aktualizacji
-        }
-
-        isLocalUpdate = false; // Reset flagi lokalnych zmian
-
-        // Aktualizacja ruchu pocisków
-        for (Bullet bullet : bullets) {
-            bullet.move();
+        applyInput();
+
+        // Gdy grę prowadzi serwer lub panel odtwarza zapis, stan jest jedynie wyświetlany
+        if (!serverAuthoritative && !replaying) {
+            // Ruch pocisków, sprawdzanie trafień i zakończenie tury, jeśli pocisk zniknął
+            boolean shotInProgress = simulation.isShotInProgress();
+            simulation.step();
+            if (shotInProgress && !simulation.isShotInProgress() && isMultiplayer) {
+                sendGameData(); // Wyślij nowy stan gry po zakończeniu tury (tylko dla multiplayer)
+            }
         }
-        bullets.removeIf(bullet -> !bullet.isVisible());
-
-        // Sprawdzanie trafień
-        checkHits();
 
         // Warunki wygranej
-        if (player1Tank.getHp() == 0) {
+        if (simulation.getPlayer1Tank().getHp() == 0) {
             timer.stop();
             onWin.accept("Player 2 Wins!");
             if (isMultiplayer) {
+                finished = true;
                 closeSocket(); // Zamknij połączenie z serwerem
             }
-        } else if (player2Tank.getHp() == 0) {
+        } else if (simulation.getPlayer2Tank().getHp() == 0) {
             timer.stop();
             onWin.accept("Player 1 Wins!");
             if (isMultiplayer) {
+                finished = true;
                 closeSocket(); // Zamknij połączenie z serwerem
             }
         }
 
-        // Zakończenie tury, jeśli pocisk zniknął
-        if (shotInProgress && bullets.isEmpty()) {
-            endTurn();
-            if (isMultiplayer) {
-                sendGameData(); // Wyślij nowy stan gry po zakończeniu tury (tylko dla multiplayer)
-            }
-        }
-
         repaint(); // Odśwież grafikę
     }
 
     /**
-     * Sprawdza kolizje pocisków z czołgami i przeszkodami.
+     * Wykonuje przyciski wciśnięte w bieżącym takcie ({@link InputSampler}). W trybie multiplayer
+     * wszystkie zmiany taktu trafiają do serwera jedną wiadomością.
      */
-    private void checkHits() {
-        for (Bullet bullet : bullets) {
-            if (bullet.isVisible()) {
-                if (bullet.isPlayer1() && bullet.getBounds().intersects(player2Tank.getBounds())) {
-                    player2Tank.decreaseHp(20);
-                    bullet.setVisible(false);
-                } else if (!bullet.isPlayer1() && bullet.getBounds().intersects(player1Tank.getBounds())) {
-                    player1Tank.decreaseHp(20);
-                    bullet.setVisible(false);
-                }
-
-                for (Obstacle obstacle : obstacles) {
-                    if (bullet.getBounds().intersects(obstacle.getBounds())) {
-                        bullet.setVisible(false);
-                        break;
-                    }
-                }
+    private void applyInput() {
+        int buttons = input.sample();
+        if (buttons == 0 || replaying || simulation.isShotInProgress() || !isMyTurn) return; // Blokada ruchu podczas strzału lub gdy nie jest moja tura
+
+        // Gdy grę prowadzi serwer, wysyłane są tylko polecenia (serwer sprawdza turę i trwający strzał),
+        // a ich skutek jest przewidywany bez czekania na odpowiedź serwera
+        if (serverAuthoritative) {
+            if (!simulation.getBullets().isEmpty()) return;
+            int seq = sendInput(buttons);
+            if (seq != 0 && predicting && authoritativeState != null) {
+                predictor.record(seq, buttons);
+                showState(predictor.predict(authoritativeState, isPlayer1));
             }
+            return;
         }
-    }
 
-    /**
-     * Kończy turę aktualnego gracza.
-     */
-    private void endTurn() {
-        isPlayer1Turn = !isPlayer1Turn; // Zmiana tury (działa zarówno w singleplayer, jak i multiplayer)
-        canShoot = true;
-        shotInProgress = false;
+        // W trybie singleplayer gracz kontroluje obu graczy na zmianę, w multiplayer - przypisanego gracza
+        boolean player1 = isMultiplayer ? isPlayer1 : simulation.isPlayer1Turn();
+        Tank tank = player1 ? simulation.getPlayer1Tank() : simulation.getPlayer2Tank();
+        int x = tank.getX();
+        int angle = tank.getAngle();
+        simulation.applyInput(player1, buttons);
+        boolean fired = simulation.isShotInProgress();
+
+        // Czołg zablokowany przez przeszkodę lub bez paliwa - nie ma czego wysyłać
+        if (fired || tank.getX() != x || tank.getAngle() != angle) {
+            sendGameData(); // Jedna wiadomość ze wszystkimi zmianami taktu (tylko dla multiplayer)
+        }
     }
 
     @Override
     public void keyPressed(KeyEvent e) {
-        if (shotInProgress || !isMyTurn) return; // Blokada ruchu podczas strzału lub gdy nie jest moja tura
-
-        // W trybie singleplayer gracz kontroluje obu graczy na zmianę
-        if (!isMultiplayer) {
-            if (isPlayer1Turn) {
-                // Sterowanie Player1
-                if (e.getKeyCode() == KeyEvent.VK_A) moveTankLeft(player1Tank);
-                if (e.getKeyCode() == KeyEvent.VK_D) moveTankRight(player1Tank);
-                if (e.getKeyCode() == KeyEvent.VK_W && canShoot) shoot(player1Tank);
-                if (e.getKeyCode() == KeyEvent.VK_Q) player1Tank.changeAngle(-5);
-                if (e.getKeyCode() == KeyEvent.VK_E) player1Tank.changeAngle(5);
-            } else {
-                // Sterowanie Player2
-                if (e.getKeyCode() == KeyEvent.VK_A) moveTankLeft(player2Tank);
-                if (e.getKeyCode() == KeyEvent.VK_D) moveTankRight(player2Tank);
-                if (e.getKeyCode() == KeyEvent.VK_W && canShoot) shoot(player2Tank);
-                if (e.getKeyCode() == KeyEvent.VK_Q) player2Tank.changeAngle(-5);
-                if (e.getKeyCode() == KeyEvent.VK_E) player2Tank.changeAngle(5);
-            }
-        }
-        // W trybie multiplayer gracz kontroluje przypisanego gracza
-        else {
-            if (isPlayer1) {
-                if (e.getKeyCode() == KeyEvent.VK_A) moveTankLeft(player1Tank);
-                if (e.getKeyCode() == KeyEvent.VK_D) moveTankRight(player1Tank);
-                if (e.getKeyCode() == KeyEvent.VK_W && canShoot) shoot(player1Tank);
-                if (e.getKeyCode() == KeyEvent.VK_Q) player1Tank.changeAngle(-5);
-                if (e.getKeyCode() == KeyEvent.VK_E) player1Tank.changeAngle(5);
-            } else {
-                if (e.getKeyCode() == KeyEvent.VK_A) moveTankLeft(player2Tank);
-                if (e.getKeyCode() == KeyEvent.VK_D) moveTankRight(player2Tank);
-                if (e.getKeyCode() == KeyEvent.VK_W && canShoot) shoot(player2Tank);
-                if (e.getKeyCode() == KeyEvent.VK_Q) player2Tank.changeAngle(-5);
-                if (e.getKeyCode() == KeyEvent.VK_E) player2Tank.changeAngle(5);
-            }
-        }
+        if (replaying) return;
+        input.press(e.getKeyCode()); // Wykonanie w najbliższym takcie
     }
 
-    /**
-     * Wystrzeliwuje pocisk z czołgu.
-     *
-     * @param tank Czołg, z którego wystrzeliwuje się pocisk.
-     */
-    private void shoot(Tank tank) {
-        Bullet bullet = new Bullet(
-                tank.getX() + tank.getWidth() / 2,
-                tank.getY(),
-                tank.getAngle(),
-                isPlayer1Turn ? Color.BLUE : Color.RED,
-                isPlayer1Turn
-        );
-        bullets.add(bullet);
-        canShoot = false;
-        shotInProgress = true;
-
-        sendGameData(); // Wyślij dane do serwera
-    }
-
-    /**
-     * Porusza czołgiem w lewo.
-     *
-     * @param tank Czołg do poruszenia.
-     */
-    public void moveTankLeft(Tank tank) {
-        isLocalUpdate = true; // Oznaczamy, że ruch pochodzi z lokalnego wejścia
-        tank.moveLeft(obstacles); // Porusz czołgiem w lewo
-        sendGameData(); // Wyślij zaktualizowane dane gry do serwera
-    }
-
-    /**
-     * Porusza czołgiem w prawo.
-     *
-     * @param tank Czołg do poruszenia.
-     */
-    public void moveTankRight(Tank tank) {
-        isLocalUpdate = true;
-        tank.moveRight(obstacles);
-        sendGameData();
+    @Override
+    public void keyReleased(KeyEvent e) {
+        input.release(e.getKeyCode());
     }
 
-    @Override
-    public void keyReleased(KeyEvent e) {}
     @Override
     public void keyTyped(KeyEvent e) {}
 
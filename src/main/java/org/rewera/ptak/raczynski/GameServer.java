@@ -1,23 +1,41 @@
 package org.rewera.ptak.raczynski;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.PushbackInputStream;
+import java.io.SequenceInputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Klasa GameServer obsługująca serwer gry multiplayer.
  * Zarządza instancjami gier oraz przypisuje graczy do odpowiednich sesji.
+ * Połączenia są obsługiwane przez silnik wybrany w {@link ServerConfig}.
+ *
+ * <p>Wdrożenie nowej wersji nie przerywa meczów: nowy proces zaczyna nasłuchiwać na tym samym porcie
+ * ({@code --reuse-port} lub odziedziczone gniazdo, {@link ListeningChannel}), a stary po sygnale
+ * zakończenia przechodzi w tryb wygaszania ({@link #drain(long)}) - przestaje przyjmować graczy
+ * i czeka, aż trwające gry się skończą.</p>
  */
 public class GameServer {
 
     /**
      * Port, na którym nasłuchuje serwer gry.
      */
-    private static final int PORT = 12345;
+    static final int PORT = 12345;
 
     /**
      * Singleton serwera gry.
@@ -25,53 +43,533 @@ public class GameServer {
     private static GameServer instance;
 
     /**
-     * Mapa przechowująca wszystkie instancje gier.
+     * Konfiguracja serwera.
      */
-    private Map<Integer, GameInstance> gameInstances = new HashMap<>();
+    private final ServerConfig config;
 
     /**
-     * Identyfikator dla kolejnej gry, która zostanie stworzona.
+     * Fabryka wątków obsługujących klientów blokujących.
      */
-    private int nextGameId = 0;
+    private final ClientThreads clientThreads;
 
     /**
-     * Konstruktor uruchamia serwer gry, oczekując na połączenia klientów.
+     * Wspólny harmonogram taktów gier prowadzonych przez serwer.
+     */
+    private final TickScheduler ticker;
+
+    /**
+     * Przydział graczy do gier i rejestr żywych gier.
+     */
+    private final Matchmaker matchmaker;
+
+    /**
+     * Metryki serwera udostępniane przez JMX.
+     */
+    private final ServerMetrics metrics = new ServerMetrics();
+
+    /**
+     * Limit jednocześnie obsługiwanych połączeń.
+     */
+    private final ConnectionLimiter connectionLimiter;
+
+    /**
+     * Gniazdo nasłuchujące silnika wątkowego.
+     */
+    private ServerSocket serverSocket;
+
+    /**
+     * Wątek akceptujący połączenia silnika wątkowego.
+     */
+    private Thread acceptor;
+
+    /**
+     * Silnik NIO (jeśli został wybrany).
+     */
+    private NioGameServer nioServer;
+
+    /**
+     * Transport UDP dla stanów gry (null, jeśli wyłączony).
+     */
+    private UdpTransport udpTransport;
+
+    /**
+     * Magazyn migawek żywych gier (null, jeśli migawki są wyłączone).
+     */
+    private SnapshotStore snapshotStore;
+
+    /**
+     * Wątek wykonujący rundy migawek (null, jeśli migawki są wyłączone).
+     */
+    private ScheduledExecutorService snapshotter;
+
+    /**
+     * Rejestr sesji graczy (null, jeśli miejsca rozłączonych graczy nie są przetrzymywane).
+     */
+    private final SessionRegistry sessions;
+
+    /**
+     * Określa, czy serwer jest wygaszany i nie przyjmuje nowych graczy.
+     */
+    private volatile boolean draining;
+
+    /**
+     * Tworzy serwer gry z domyślną konfiguracją.
      */
     public GameServer() {
-        try (ServerSocket serverSocket = new ServerSocket(PORT)) {
-            System.out.println("Server started on port " + PORT);
-            while (true) {
+        this(new ServerConfig());
+    }
+
+    /**
+     * Tworzy serwer gry. Nasłuchiwanie rozpoczyna się dopiero po wywołaniu {@link #start()}.
+     *
+     * @param config Konfiguracja serwera.
+     */
+    GameServer(ServerConfig config) {
+        this.config = config;
+        this.clientThreads = new ClientThreads(config.getThreadMode());
+        this.ticker = new TickScheduler("game-tick", config.getTickThreads(), GameSimulation.TICK_MILLIS);
+        this.matchmaker = new Matchmaker(ticker, metrics);
+        this.connectionLimiter = new ConnectionLimiter(config.getMaxConnections());
+        this.sessions = config.getResumeGraceMillis() > 0 ? new SessionRegistry(config.getResumeGraceMillis(), metrics) : null;
+        matchmaker.setSessions(sessions);
+    }
+
+    /**
+     * Tworzy serwer gry i ustawia go jako singleton.
+     *
+     * @param config Konfiguracja serwera.
+     * @return Utworzony serwer gry.
+     */
+    static synchronized GameServer create(ServerConfig config) {
+        instance = new GameServer(config);
+        return instance;
+    }
+
+    /**
+     * Uruchamia nasłuchiwanie połączeń wybranym silnikiem.
+     *
+     * @throws IOException jeśli nie udało się otworzyć portu.
+     */
+    public void start() throws IOException {
+        if (config.getRecordDir() != null) {
+            matchmaker.setRecordDirectory(Files.createDirectories(config.getRecordDir()));
+        }
+        if (config.getSnapshotDir() != null) {
+            startSnapshots();
+        }
+        if (config.getEngine() == ServerConfig.Engine.NIO) {
+            nioServer = new NioGameServer(this, config);
+            nioServer.start();
+            metrics.register(getLocalPort());
+            System.out.println("Server started on port " + getLocalPort() + " (nio, " + config.getIoThreads() + " I/O threads)");
+        } else {
+            serverSocket = ListeningChannel.open(config, 50).socket();
+            acceptor = new Thread(this::acceptLoop, "game-server-acceptor");
+            acceptor.start();
+            if (config.isUdp()) {
+                udpTransport = new UdpTransport(getLocalPort(), config.isReusePort());
+                udpTransport.start();
+            }
+            metrics.register(getLocalPort());
+            System.out.println("Server started on port " + getLocalPort() + " (" + clientThreads.getMode().name().toLowerCase() + " threads"
+                    + (udpTransport != null ? ", udp" : "") + ")");
+        }
+    }
+
+    /**
+     * Odtwarza gry z magazynu migawek i uruchamia okresowe migawki żywych gier.
+     * Wywoływane przed otwarciem portu, więc pierwsi gracze trafiają już do odtworzonych gier.
+     *
+     * @throws IOException jeśli nie udało się otworzyć magazynu.
+     */
+    private void startSnapshots() throws IOException {
+        snapshotStore = new SnapshotStore(Files.createDirectories(config.getSnapshotDir()));
+        long start = System.nanoTime();
+        List<SnapshotStore.Snapshot> snapshots = snapshotStore.load();
+        matchmaker.restore(snapshots);
+        if (!snapshots.isEmpty()) {
+            System.out.println("Restored " + snapshots.size() + " games from snapshots in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+        }
+        snapshotter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "game-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = config.getSnapshotIntervalMillis();
+        snapshotter.scheduleWithFixedDelay(this::snapshotGames, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Wykonuje rundę migawek. Błąd nie przerywa kolejnych rund.
+     */
+    private void snapshotGames() {
+        try {
+            matchmaker.snapshot(snapshotStore);
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Pętla akceptująca połączenia w silniku wątkowym.
+     * Nawiązanie strumieni odbywa się już w wątku klienta, więc wolny klient nie blokuje akceptowania.
+     * Połączenie ponad limit jest zamykane od razu, bez tworzenia wątku.
+     */
+    private void acceptLoop() {
+        try {
+            while (!serverSocket.isClosed()) {
                 Socket socket = serverSocket.accept();
+                if (!connectionLimiter.tryAcquire()) {
+                    reject(socket);
+                    continue;
+                }
                 System.out.println("New client connected");
+                serveInThread(socket, null);
+            }
+        } catch (IOException e) {
+            if (!serverSocket.isClosed()) {
+                e.printStackTrace();
+            }
+        }
+    }
 
-                ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
-                ObjectInputStream in = new ObjectInputStream(socket.getInputStream());
+    /**
+     * Obsługuje klienta blokującego w nowym wątku klienta i zwalnia jego miejsce w limicie połączeń
+     * po zakończeniu obsługi.
+     *
+     * @param socket Gniazdo klienta z zajętym miejscem w limicie połączeń.
+     * @param prefix Bajty odczytane już z gniazda (np. przez silnik NIO) lub null.
+     */
+    void serveInThread(Socket socket, byte[] prefix) {
+        try {
+            clientThreads.start(() -> {
+                try {
+                    serveBlockingClient(socket, prefix);
+                } finally {
+                    connectionLimiter.release();
+                }
+            });
+        } catch (RuntimeException | OutOfMemoryError e) {
+            // Brak wątku dla klienta - połączenie jest porzucane
+            connectionLimiter.release();
+            reject(socket);
+            e.printStackTrace();
+        }
+    }
 
-                // Przypisz klienta do istniejącej gry lub utwórz nową
-                GameInstance gameInstance = findOrCreateGameInstance();
-                gameInstance.addClient(socket, out, in);
+    /**
+     * Odrzuca połączenie ponad limit: zamyka gniazdo z natychmiastowym resetem, bez czekania
+     * na wysłanie danych i bez stanu TIME_WAIT po stronie serwera.
+     *
+     * @param socket Gniazdo odrzucanego klienta.
+     */
+    void reject(Socket socket) {
+        metrics.connectionRejected();
+        try {
+            socket.setSoLinger(true, 0);
+            socket.close();
+        } catch (IOException ignored) {
+            // Gniazdo i tak jest porzucane
+        }
+    }
+
+    /**
+     * Obsługuje klienta blokującego w bieżącym wątku klienta.
+     * Protokół jest rozpoznawany po pierwszych dwóch bajtach: nagłówek serializacji Javy
+     * oznacza starego klienta, a znacznik {@link WireProtocol#MAGIC} - protokół ramkowy.
+     *
+     * @param socket Gniazdo klienta.
+     * @param prefix Bajty odczytane już z gniazda (np. przez silnik NIO) lub null.
+     */
+    void serveBlockingClient(Socket socket, byte[] prefix) {
+        try {
+            socket.setTcpNoDelay(true); // Stany gry są małe i pilne - bez czekania na potwierdzenia
+            InputStream input = socket.getInputStream();
+            if (prefix != null) {
+                input = new SequenceInputStream(new ByteArrayInputStream(prefix), input);
+            }
+            PushbackInputStream peekable = new PushbackInputStream(new BufferedInputStream(input), 2);
+            byte[] magic = new byte[2];
+            new DataInputStream(peekable).readFully(magic);
+            peekable.unread(magic);
+
+            ClientHandler clientHandler;
+            if (((magic[0] & 0xFF) << 8 | (magic[1] & 0xFF)) == WireProtocol.LEGACY_MAGIC) {
+                // Bufor - inaczej serializacja stanu trafia do gniazda wieloma małymi segmentami
+                LongAdder written = new LongAdder();
+                CountingOutputStream raw = new CountingOutputStream(
+                        new BufferedOutputStream(socket.getOutputStream()), written);
+                ObjectOutputStream out = new ObjectOutputStream(raw);
+                out.flush();
+                FrameLimitInputStream limited = new FrameLimitInputStream(peekable, config.getMaxFrameBytes());
+                ObjectInputStream in = new ObjectInputStream(limited);
+                clientHandler = new ClientHandler(socket, out, in, raw, written);
+                clientHandler.limitInbound(config.newInboundLimit(), config.getMaxFrameBytes(), limited);
+            } else {
+                DataInputStream in = new DataInputStream(peekable);
+                WireProtocol.Hello hello = WireProtocol.readHello(in);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                byte flags = WireProtocol.acceptedFlags(hello.flags, udpTransport != null);
+                clientHandler = new ClientHandler(socket, out, in, GameStateCodec.negotiate(hello.codec), flags);
+                clientHandler.limitInbound(config.newInboundLimit(), config.getMaxFrameBytes(), null);
+                if ((flags & WireProtocol.FLAG_UDP) != 0) {
+                    clientHandler.attachUdp(udpTransport);
+                }
+            }
+            int watchedGame = clientHandler.isSpectator() ? clientHandler.readWatchRequest() : WireProtocol.ANY_GAME;
+            WireProtocol.Resume resume = clientHandler.isResumable() ? clientHandler.readResumeRequest() : null;
+
+            clientHandler.trackConnection(metrics);
+
+            // Zapis w osobnym wątku - wolny klient nie blokuje rozsyłania stanu w grze
+            clientHandler.startWriter(clientThreads, config.getOutboundCapacity(), config.getMaxLagMillis());
+
+            if (clientHandler.isSpectator()) {
+                // Po odmowie gniazdo jest zamykane, a obsługa kończy się przy pierwszym odczycie
+                watchGame(clientHandler, watchedGame);
+                clientHandler.run();
+            } else if (resume != null ? resumeSession(clientHandler, resume.token, resume.lastSeq) : assignToGame(clientHandler)) {
+                // Wznów sesję gracza albo przypisz klienta do istniejącej gry lub utwórz nową
+                clientHandler.run();
             }
         } catch (IOException e) {
             e.printStackTrace();
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Gniazdo i tak jest porzucane
+            }
+        }
+    }
+
+    /**
+     * Zwraca limit jednocześnie obsługiwanych połączeń.
+     *
+     * @return Ogranicznik połączeń.
+     */
+    ConnectionLimiter getConnectionLimiter() {
+        return connectionLimiter;
+    }
+
+    /**
+     * Przypisuje klienta do istniejącej gry z wolnym miejscem lub do nowej gry ({@link Matchmaker}).
+     *
+     * @param client Połączenie klienta.
+     * @return true, jeśli klient dołączył do gry.
+     */
+    boolean assignToGame(PlayerConnection client) {
+        if (draining) {
+            // Połączenie przyjęte tuż przed wygaszaniem - gracz powinien trafić do nowej wersji serwera
+            client.sendMessage(WireProtocol.SERVER_RESTARTING_MESSAGE);
+            client.close();
+            return false;
+        }
+        return matchmaker.assign(client) != null;
+    }
+
+    /**
+     * Wznawia sesję gracza o podanym żetonie. Jeśli sesja wygasła (lub żeton jest nieznany), klient
+     * trafia do matchmakera jak nowy gracz, a jeśli podał żeton - dostaje dodatkowo komunikat
+     * {@link WireProtocol#SESSION_EXPIRED_MESSAGE}.
+     *
+     * @param client  Połączenie klienta.
+     * @param token   Żeton sesji lub 0 dla nowej sesji.
+     * @param lastSeq Numer ostatniego stanu odtworzonego przez klienta.
+     * @return true, jeśli klient wznowił sesję lub dołączył do gry.
+     */
+    boolean resumeSession(PlayerConnection client, long token, int lastSeq) {
+        SessionRegistry.Session session = sessions != null && token != 0 ? sessions.get(token) : null;
+        if (session != null && session.game.resume(client, session, lastSeq)) {
+            return true;
+        }
+        boolean joined = assignToGame(client);
+        if (joined && token != 0) {
+            client.sendMessage(WireProtocol.SESSION_EXPIRED_MESSAGE);
+        }
+        return joined;
+    }
+
+    /**
+     * Zwraca rejestr sesji graczy.
+     *
+     * @return Rejestr lub null, jeśli sesje są wyłączone.
+     */
+    SessionRegistry getSessions() {
+        return sessions;
+    }
+
+    /**
+     * Dołącza widza do trwającej gry. Jeśli gry nie ma, widz dostaje komunikat
+     * {@link WireProtocol#NO_SUCH_GAME_MESSAGE} i połączenie jest zamykane.
+     *
+     * @param spectator Połączenie widza.
+     * @param gameId    Identyfikator gry lub {@link WireProtocol#ANY_GAME}.
+     * @return true, jeśli widz dołączył do gry.
+     */
+    boolean watchGame(PlayerConnection spectator, int gameId) {
+        GameInstance game = matchmaker.find(gameId);
+        if (game != null && game.addSpectator(spectator)) {
+            return true;
+        }
+        spectator.sendMessage(WireProtocol.NO_SUCH_GAME_MESSAGE);
+        spectator.close();
+        return false;
+    }
+
+    /**
+     * Zwraca matchmaker serwera.
+     *
+     * @return Matchmaker z rejestrem żywych gier.
+     */
+    Matchmaker getMatchmaker() {
+        return matchmaker;
+    }
+
+    /**
+     * Zwraca metryki serwera.
+     *
+     * @return Metryki serwera.
+     */
+    ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Zwraca port, na którym faktycznie nasłuchuje serwer.
+     *
+     * @return Numer portu lub -1, jeśli serwer nie został uruchomiony.
+     */
+    int getLocalPort() {
+        if (nioServer != null) {
+            return nioServer.getLocalPort();
         }
+        return serverSocket != null ? serverSocket.getLocalPort() : -1;
+    }
+
+    /**
+     * Zwraca transport UDP.
+     *
+     * @return Transport UDP lub null, jeśli jest wyłączony.
+     */
+    UdpTransport getUdpTransport() {
+        return udpTransport;
     }
 
     /**
-     * Wyszukuje istniejącą grę z wolnym miejscem lub tworzy nową instancję gry.
+     * Wygasza serwer: przestaje przyjmować połączenia, przerywa gry czekające na przeciwnika i czeka,
+     * aż trwające gry się skończą. Gry, które nie skończą się w podanym czasie, są zapisywane w migawkach
+     * (jeśli są włączone) - nowa wersja serwera odtworzy je przy starcie - a ich gracze dostają
+     * {@link WireProtocol#SERVER_RESTARTING_MESSAGE} i są rozłączani. Na koniec serwer jest zatrzymywany.
      *
-     * @return Istniejąca lub nowa instancja gry.
+     * @param timeoutMillis Czas oczekiwania na zakończenie gier w milisekundach.
+     */
+    public void drain(long timeoutMillis) {
+        if (draining) {
+            return;
+        }
+        draining = true;
+        stopAccepting();
+        int waiting = matchmaker.terminateWaiting(WireProtocol.SERVER_RESTARTING_MESSAGE);
+        System.out.println("Draining server: no longer accepting players, " + waiting + " waiting games closed, "
+                + matchmaker.size() + " games still running");
+
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        try {
+            while (matchmaker.size() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(100);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (matchmaker.size() > 0) {
+            // Migawka przed przerwaniem - przerwane gry trafiłyby do dziennika jako usunięte
+            ticker.shutdown();
+            stopSnapshots();
+            int terminated = matchmaker.terminateAll(WireProtocol.SERVER_RESTARTING_MESSAGE);
+            System.out.println("Drain timed out, " + terminated + " games handed off"
+                    + (config.getSnapshotDir() != null ? " through snapshots" : ""));
+        }
+        stop();
+        System.out.println("Server drained.");
+    }
+
+    /**
+     * Sprawdza, czy serwer jest wygaszany.
+     *
+     * @return true, jeśli serwer nie przyjmuje nowych graczy.
+     */
+    boolean isDraining() {
+        return draining;
+    }
+
+    /**
+     * Zamyka gniazdo nasłuchujące. Istniejące połączenia są dalej obsługiwane.
      */
-    private GameInstance findOrCreateGameInstance() {
-        for (GameInstance instance : gameInstances.values()) {
-            if (!instance.isFull()) {
-                return instance;
+    private void stopAccepting() {
+        if (nioServer != null) {
+            nioServer.stopAccepting();
+        }
+        if (serverSocket != null) {
+            try {
+                serverSocket.close();
+                // Gniazdo jest faktycznie zamykane dopiero po wyjściu wątku akceptującego z accept()
+                acceptor.join(1000);
+            } catch (IOException e) {
+                e.printStackTrace();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
         }
+    }
 
-        // Jeśli nie ma dostępnej gry, utwórz nową
-        GameInstance newInstance = new GameInstance(nextGameId++);
-        gameInstances.put(newInstance.getGameId(), newInstance);
-        return newInstance;
+    /**
+     * Wykonuje ostatnią rundę migawek po zatrzymaniu taktów i zamyka magazyn migawek.
+     * Restart wznawia wtedy gry od bieżącego stanu.
+     */
+    private void stopSnapshots() {
+        if (snapshotter == null) {
+            return;
+        }
+        snapshotter.shutdown();
+        try {
+            snapshotter.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        snapshotGames();
+        try {
+            snapshotStore.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        snapshotter = null;
+    }
+
+    /**
+     * Zatrzymuje nasłuchiwanie nowych połączeń.
+     */
+    void stop() {
+        ticker.shutdown();
+        stopSnapshots();
+        if (sessions != null) {
+            sessions.shutdown();
+        }
+        metrics.unregister();
+        if (nioServer != null) {
+            nioServer.stop();
+        }
+        if (udpTransport != null) {
+            udpTransport.shutdown();
+        }
+        if (serverSocket != null) {
+            try {
+                serverSocket.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
     }
 
     /**
@@ -92,15 +590,24 @@ public class GameServer {
      * @param gameId Identyfikator gry do usunięcia.
      */
     public void removeGameInstance(int gameId) {
-        gameInstances.remove(gameId);
+        matchmaker.remove(gameId);
     }
 
     /**
      * Metoda główna uruchamiająca serwer gry.
      *
-     * @param args Argumenty wiersza poleceń.
+     * @param args Argumenty wiersza poleceń, np. {@code --engine=nio --io-threads=4 --reuse-port=true} lub {@code --threads=virtual}.
      */
     public static void main(String[] args) {
-        new GameServer();
+        try {
+            ServerConfig config = ServerConfig.parse(args);
+            GameServer server = create(config);
+            server.start();
+            // SIGTERM przy wdrożeniu - trwające mecze kończą się, zanim proces zniknie
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> server.drain(config.getDrainTimeoutMillis()),
+                    "game-server-drain"));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
-}
\ No newline at end of file
+}
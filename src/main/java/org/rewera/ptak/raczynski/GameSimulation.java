@@ -0,0 +1,260 @@
+package org.rewera.ptak.raczynski;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Symulacja rozgrywki bez interfejsu użytkownika: ruch czołgów, ruch pocisków, trafienia, zmiana tury
+ * i koniec gry. Gra postępuje tylko przez {@link #applyInput} i {@link #step()}, więc symulację można
+ * prowadzić bez ekranu i szybciej niż w czasie rzeczywistym - prowadzą ją serwer ({@link GameInstance}),
+ * boty ({@link LoadBot}), odtwarzanie zapisów ({@link MatchReplay}) i testy, a {@link GamePanel} tylko
+ * przekazuje jej klawisze co takt timera i rysuje jej stan.
+ *
+ * <p>Klasa nie jest bezpieczna wątkowo - wywołujący zapewnia synchronizację.</p>
+ */
+class GameSimulation {
+
+    /**
+     * Długość taktu symulacji w milisekundach (taka jak okres timera {@link GamePanel}).
+     */
+    static final int TICK_MILLIS = 16;
+
+    /**
+     * Czołg gracza 1.
+     */
+    private Tank player1Tank;
+
+    /**
+     * Czołg gracza 2.
+     */
+    private Tank player2Tank;
+
+    /**
+     * Pociski w locie.
+     */
+    private final BulletStore bullets = new BulletStore(4);
+
+    /**
+     * Lista przeszkód na planszy.
+     */
+    private final List<Obstacle> obstacles = new ArrayList<>();
+
+    /**
+     * Indeks przeszkód do sprawdzania kolizji.
+     */
+    private final ObstacleIndex obstacleIndex = new ObstacleIndex(new ArrayList<>());
+
+    /**
+     * Flaga określająca, czy to tura gracza 1.
+     */
+    private boolean isPlayer1Turn;
+
+    /**
+     * Flaga mówiąca, czy gracz może strzelać.
+     */
+    private boolean canShoot = true;
+
+    /**
+     * Flaga mówiąca, czy strzał jest w trakcie.
+     */
+    private boolean shotInProgress;
+
+    /**
+     * Tworzy symulację zaczynającą od podanego stanu. Obiekty stanu są przejmowane i modyfikowane.
+     *
+     * @param state Stan początkowy.
+     */
+    GameSimulation(GameState state) {
+        load(state);
+    }
+
+    /**
+     * Zastępuje stan symulacji podanym stanem, np. otrzymanym od serwera. Obiekty stanu są przejmowane
+     * i modyfikowane. Pociski w locie oznaczają strzał w toku.
+     *
+     * @param state Nowy stan.
+     */
+    void load(GameState state) {
+        load(state, !state.getBullets().isEmpty());
+    }
+
+    /**
+     * Zastępuje stan symulacji podanym stanem. Obiekty stanu są przejmowane i modyfikowane.
+     *
+     * @param state          Nowy stan.
+     * @param shotInProgress Określa, czy trwa strzał, po którym symulacja kończy turę. W grze prowadzonej
+     *                       przez klientów turę kończy tylko klient, który strzelał - u przeciwnika pociski
+     *                       lecą, ale tura zmienia się dopiero ze stanem od strzelającego.
+     */
+    void load(GameState state, boolean shotInProgress) {
+        this.player1Tank = state.getPlayer1Tank();
+        this.player2Tank = state.getPlayer2Tank();
+        this.bullets.load(state.getBullets());
+        this.obstacles.clear();
+        this.obstacles.addAll(state.getObstacles());
+        this.obstacleIndex.sync(obstacles); // Zwykle bez zmian - przeszkody są stałe w trakcie gry
+        this.isPlayer1Turn = state.isPlayer1Turn();
+        this.shotInProgress = shotInProgress;
+        this.canShoot = !shotInProgress;
+    }
+
+    /**
+     * Wykonuje polecenie gracza. Polecenia gracza, który nie ma tury, oraz wydane w trakcie strzału
+     * lub po zakończeniu gry są pomijane.
+     *
+     * @param isPlayer1 Określa, czy polecenie pochodzi od gracza 1.
+     * @param buttons   Maska przycisków ({@link InputCommand}).
+     * @return true, jeśli polecenie zostało wykonane.
+     */
+    boolean applyInput(boolean isPlayer1, int buttons) {
+        if (shotInProgress || isPlayer1 != isPlayer1Turn || isGameOver() || buttons == 0) {
+            return false;
+        }
+        Tank tank = isPlayer1 ? player1Tank : player2Tank;
+        if ((buttons & InputCommand.LEFT) != 0) tank.moveLeft(obstacleIndex);
+        if ((buttons & InputCommand.RIGHT) != 0) tank.moveRight(obstacleIndex);
+        if ((buttons & InputCommand.ANGLE_DOWN) != 0) tank.changeAngle(-5);
+        if ((buttons & InputCommand.ANGLE_UP) != 0) tank.changeAngle(5);
+        if ((buttons & InputCommand.FIRE) != 0 && canShoot) shoot(tank);
+        return true;
+    }
+
+    /**
+     * Wykonuje jeden takt symulacji: ruch pocisków, trafienia i zakończenie tury.
+     *
+     * @return true, jeśli stan gry się zmienił.
+     */
+    boolean step() {
+        if (bullets.isEmpty() && !shotInProgress) {
+            return false;
+        }
+
+        // Ruch pocisków i sprawdzanie trafień
+        bullets.step(player1Tank, player2Tank, obstacleIndex);
+
+        // Zakończenie tury, jeśli pocisk zniknął
+        if (shotInProgress && bullets.isEmpty()) {
+            endTurn();
+        }
+        return true;
+    }
+
+    /**
+     * Rozstrzyga strzał w toku bez wykonywania kolejnych taktów ({@link BallisticSolver}): zadaje
+     * obrażenia, usuwa pociski i kończy turę. Stan gry jest potem taki sam jak po wywoływaniu
+     * {@link #step()} do końca strzału.
+     *
+     * @return Liczba taktów, po których {@link #step()} zakończyłby strzał, albo 0, jeśli nie ma strzału w toku.
+     */
+    int resolveShot() {
+        if (!shotInProgress) {
+            return 0;
+        }
+        int ticks = 1;
+        for (int i = 0; i < bullets.size(); i++) {
+            if (bullets.isVisible(i)) { // Pocisk, który już trafił, znika w najbliższym takcie
+                BallisticSolver.Impact impact = BallisticSolver.solve(bullets, i, player1Tank, player2Tank, obstacles);
+                if (impact.tankHit) {
+                    (bullets.isPlayer1(i) ? player2Tank : player1Tank).decreaseHp(BulletStore.DAMAGE);
+                }
+                ticks = Math.max(ticks, impact.removalTick());
+            }
+        }
+        bullets.clear();
+        endTurn();
+        return ticks;
+    }
+
+    /**
+     * Kończy turę aktualnego gracza.
+     */
+    private void endTurn() {
+        isPlayer1Turn = !isPlayer1Turn;
+        canShoot = true;
+        shotInProgress = false;
+    }
+
+    /**
+     * Wystrzeliwuje pocisk z czołgu.
+     *
+     * @param tank Czołg, z którego wystrzeliwuje się pocisk.
+     */
+    private void shoot(Tank tank) {
+        bullets.fire(tank.getX() + tank.getWidth() / 2, tank.getY(), tank.getAngle(), isPlayer1Turn);
+        canShoot = false;
+        shotInProgress = true;
+    }
+
+    /**
+     * Sprawdza, czy gra się zakończyła (któryś czołg nie ma punktów życia).
+     *
+     * @return true, jeśli gra się zakończyła.
+     */
+    boolean isGameOver() {
+        return player1Tank.getHp() == 0 || player2Tank.getHp() == 0;
+    }
+
+    /**
+     * Zwraca czołg gracza 1 (obiekt symulacji - do odczytu, np. przy rysowaniu).
+     *
+     * @return Czołg gracza 1.
+     */
+    Tank getPlayer1Tank() {
+        return player1Tank;
+    }
+
+    /**
+     * Zwraca czołg gracza 2 (obiekt symulacji - do odczytu, np. przy rysowaniu).
+     *
+     * @return Czołg gracza 2.
+     */
+    Tank getPlayer2Tank() {
+        return player2Tank;
+    }
+
+    /**
+     * Zwraca pociski w locie (do odczytu, np. przy rysowaniu).
+     *
+     * @return Pociski.
+     */
+    BulletStore getBullets() {
+        return bullets;
+    }
+
+    /**
+     * Zwraca przeszkody na planszy (do odczytu, np. przy rysowaniu).
+     *
+     * @return Przeszkody.
+     */
+    List<Obstacle> getObstacles() {
+        return obstacles;
+    }
+
+    /**
+     * Sprawdza, czy jest tura gracza 1.
+     *
+     * @return true, jeśli jest tura gracza 1.
+     */
+    boolean isPlayer1Turn() {
+        return isPlayer1Turn;
+    }
+
+    /**
+     * Sprawdza, czy trwa strzał.
+     *
+     * @return true, jeśli strzał jest w toku.
+     */
+    boolean isShotInProgress() {
+        return shotInProgress;
+    }
+
+    /**
+     * Tworzy niezależną kopię bieżącego stanu, którą można bezpiecznie wysłać innym wątkom.
+     *
+     * @return Kopia stanu gry.
+     */
+    GameState snapshot() {
+        return new GameState(player1Tank.copy(), player2Tank.copy(), bullets.toList(), new ArrayList<>(obstacles),
+                isPlayer1Turn);
+    }
+}
@@ -1,6 +1,7 @@
 package org.rewera.ptak.raczynski;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -100,4 +101,17 @@ class GameState implements Serializable {
     public boolean isPlayer1Turn() {
         return isPlayer1Turn;
     }
+
+    /**
+     * Tworzy głęboką kopię stanu gry. Przeszkody są niezmienne, więc kopiowana jest tylko ich lista.
+     *
+     * @return Kopia stanu gry.
+     */
+    GameState copy() {
+        List<Bullet> bulletsCopy = new ArrayList<>(bullets.size());
+        for (Bullet bullet : bullets) {
+            bulletsCopy.add(bullet.copy());
+        }
+        return new GameState(player1Tank.copy(), player2Tank.copy(), bulletsCopy, new ArrayList<>(obstacles), isPlayer1Turn);
+    }
 }
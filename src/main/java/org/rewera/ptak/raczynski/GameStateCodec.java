@@ -0,0 +1,78 @@
+package org.rewera.ptak.raczynski;
+
+import java.io.IOException;
+
+/**
+ * Kodek zamieniający {@link GameState} na bajty przesyłane w ramkach protokołu
+ * i z powrotem. Kodek jest wybierany przez klienta w powitaniu.
+ */
+interface GameStateCodec {
+
+    /**
+     * Identyfikator kodeka opartego na serializacji Javy.
+     */
+    byte SERIALIZATION = 0;
+
+    /**
+     * Identyfikator zwięzłego kodeka binarnego.
+     */
+    byte BINARY = 1;
+
+    /**
+     * Zwraca identyfikator kodeka przesyłany w powitaniu.
+     *
+     * @return Identyfikator kodeka.
+     */
+    byte id();
+
+    /**
+     * Koduje stan gry.
+     *
+     * @param gameState Stan gry.
+     * @return Zakodowane bajty.
+     */
+    byte[] encode(GameState gameState);
+
+    /**
+     * Dekoduje stan gry.
+     *
+     * @param data   Bufor z danymi.
+     * @param offset Początek danych w buforze.
+     * @param length Długość danych.
+     * @return Zdekodowany stan gry.
+     * @throws IOException jeśli dane są niepoprawne.
+     */
+    GameState decode(byte[] data, int offset, int length) throws IOException;
+
+    /**
+     * Zwraca kodek o podanym identyfikatorze.
+     *
+     * @param id Identyfikator kodeka.
+     * @return Kodek.
+     * @throws IOException jeśli kodek jest nieznany.
+     */
+    static GameStateCodec forId(byte id) throws IOException {
+        if (id == SERIALIZATION) {
+            return SerializationCodec.INSTANCE;
+        }
+        if (id == BINARY) {
+            return BinaryCodec.INSTANCE;
+        }
+        throw new IOException("Unknown codec: " + id);
+    }
+
+    /**
+     * Wybiera kodek dla klienta: żądany, jeśli serwer go zna, w przeciwnym razie serializację Javy.
+     * Wybrany kodek jest odsyłany klientowi w ramce powitalnej.
+     *
+     * @param requested Identyfikator kodeka żądanego przez klienta.
+     * @return Wybrany kodek.
+     */
+    static GameStateCodec negotiate(byte requested) {
+        try {
+            return forId(requested);
+        } catch (IOException e) {
+            return SerializationCodec.INSTANCE;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package org.rewera.ptak.raczynski;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Polecenie sterujące wysyłane przez klienta w trybie autorytatywnego serwera
+ * (ramka {@link WireProtocol#FRAME_INPUT}: {@code int numer, byte przyciski}).
+ * Przyciski to maska bitowa akcji, które serwer wykonuje w najbliższym takcie symulacji.
+ */
+final class InputCommand {
+
+    /**
+     * Ruch czołgu w lewo.
+     */
+    static final int LEFT = 1;
+
+    /**
+     * Ruch czołgu w prawo.
+     */
+    static final int RIGHT = 1 << 1;
+
+    /**
+     * Zmniejszenie kąta lufy o 5 stopni.
+     */
+    static final int ANGLE_DOWN = 1 << 2;
+
+    /**
+     * Zwiększenie kąta lufy o 5 stopni.
+     */
+    static final int ANGLE_UP = 1 << 3;
+
+    /**
+     * Strzał.
+     */
+    static final int FIRE = 1 << 4;
+
+    /**
+     * Rozmiar danych ramki w bajtach.
+     */
+    static final int SIZE = 5;
+
+    /**
+     * Określa, czy polecenie pochodzi od gracza 1.
+     */
+    final boolean isPlayer1;
+
+    /**
+     * Numer polecenia nadany przez klienta.
+     */
+    final int seq;
+
+    /**
+     * Maska przycisków.
+     */
+    final int buttons;
+
+    /**
+     * Tworzy polecenie.
+     *
+     * @param isPlayer1 Określa, czy polecenie pochodzi od gracza 1.
+     * @param seq       Numer polecenia.
+     * @param buttons   Maska przycisków.
+     */
+    InputCommand(boolean isPlayer1, int seq, int buttons) {
+        this.isPlayer1 = isPlayer1;
+        this.seq = seq;
+        this.buttons = buttons;
+    }
+
+    /**
+     * Koduje dane ramki polecenia.
+     *
+     * @param seq     Numer polecenia.
+     * @param buttons Maska przycisków.
+     * @return Dane ramki {@link WireProtocol#FRAME_INPUT}.
+     */
+    static byte[] encode(int seq, int buttons) {
+        return ByteBuffer.allocate(SIZE).putInt(seq).put((byte) buttons).array();
+    }
+
+    /**
+     * Dekoduje polecenie z danych ramki.
+     *
+     * @param isPlayer1 Rola połączenia, od którego przyszła ramka.
+     * @param data      Bufor z danymi.
+     * @param offset    Początek danych.
+     * @param length    Długość danych.
+     * @return Polecenie.
+     * @throws IOException jeśli dane mają niepoprawny rozmiar.
+     */
+    static InputCommand decode(boolean isPlayer1, byte[] data, int offset, int length) throws IOException {
+        if (length != SIZE) {
+            throw new IOException("Invalid input frame length: " + length);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(data, offset, length);
+        return new InputCommand(isPlayer1, buffer.getInt(), buffer.get() & 0xFF);
+    }
+}
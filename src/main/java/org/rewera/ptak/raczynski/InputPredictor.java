@@ -0,0 +1,128 @@
+package org.rewera.ptak.raczynski;
+
+import java.util.List;
+
+/**
+ * Przewidywanie skutków poleceń gracza w grze prowadzonej przez serwer.
+ *
+ * <p>Klient wykonuje własne polecenia od razu na swoim czołgu i zapamiętuje je w buforze cyklicznym,
+ * dopóki serwer nie potwierdzi ich wykonania ({@link WireProtocol#FRAME_INPUT_ACK}). Gdy przychodzi
+ * stan od serwera, wyświetlany jest ten stan z ponownie zastosowanymi poleceniami, których serwer
+ * jeszcze nie wykonał ({@link #predict(GameState, boolean)}). Przy poprawnym przewidywaniu czołg nie
+ * cofa się niezależnie od opóźnienia łącza, a rozbieżność (np. kolizja, której klient nie widział)
+ * znika przy najbliższym stanie.</p>
+ *
+ * <p>Przewidywany jest tylko ruch i kąt lufy - strzał, pociski i trafienia zawsze pochodzą z serwera.
+ * Klasa nie jest bezpieczna wątkowo - panel używa jej w wątku Swing.</p>
+ */
+class InputPredictor {
+
+    /**
+     * Pojemność bufora niepotwierdzonych poleceń (ok. 2 sekundy poleceń wysyłanych co takt).
+     */
+    static final int CAPACITY = 128;
+
+    /**
+     * Numery niepotwierdzonych poleceń.
+     */
+    private final int[] seqs = new int[CAPACITY];
+
+    /**
+     * Maski przycisków niepotwierdzonych poleceń.
+     */
+    private final int[] buttons = new int[CAPACITY];
+
+    /**
+     * Indeks najstarszego niepotwierdzonego polecenia.
+     */
+    private int head;
+
+    /**
+     * Liczba niepotwierdzonych poleceń.
+     */
+    private int size;
+
+    /**
+     * Zapamiętuje wysłane polecenie. Przy pełnym buforze najstarsze polecenie jest porzucane.
+     *
+     * @param seq     Numer polecenia.
+     * @param buttons Maska przycisków ({@link InputCommand}).
+     */
+    void record(int seq, int buttons) {
+        if (size == CAPACITY) {
+            head = (head + 1) % CAPACITY;
+            size--;
+        }
+        int tail = (head + size) % CAPACITY;
+        seqs[tail] = seq;
+        this.buttons[tail] = buttons;
+        size++;
+    }
+
+    /**
+     * Usuwa polecenia wykonane przez serwer.
+     *
+     * @param seq Numer ostatniego wykonanego polecenia.
+     */
+    void acknowledge(int seq) {
+        while (size > 0 && seqs[head] <= seq) {
+            head = (head + 1) % CAPACITY;
+            size--;
+        }
+    }
+
+    /**
+     * Porzuca wszystkie polecenia (np. po połączeniu z serwerem od nowa).
+     */
+    void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * Zwraca liczbę niepotwierdzonych poleceń.
+     *
+     * @return Liczba poleceń.
+     */
+    int getPending() {
+        return size;
+    }
+
+    /**
+     * Zwraca stan serwera z zastosowanymi niepotwierdzonymi poleceniami. Stan serwera nie jest
+     * modyfikowany (może być stanem bazowym repliki różnicowej).
+     *
+     * @param authoritative Ostatni stan od serwera.
+     * @param isPlayer1     Określa, czy klient jest graczem 1.
+     * @return Przewidywany stan lub {@code authoritative}, jeśli nie ma czego przewidywać.
+     */
+    GameState predict(GameState authoritative, boolean isPlayer1) {
+        // Serwer pominie polecenia poza turą i w trakcie strzału
+        if (size == 0 || authoritative.isPlayer1Turn() != isPlayer1 || !authoritative.getBullets().isEmpty()) {
+            return authoritative;
+        }
+        GameState predicted = authoritative.copy();
+        Tank tank = isPlayer1 ? predicted.getPlayer1Tank() : predicted.getPlayer2Tank();
+        if (tank.getHp() <= 0) {
+            return authoritative;
+        }
+        for (int i = 0; i < size; i++) {
+            apply(tank, buttons[(head + i) % CAPACITY], predicted.getObstacles());
+        }
+        return predicted;
+    }
+
+    /**
+     * Wykonuje ruch i zmianę kąta z polecenia tak jak {@link GameSimulation#applyInput(boolean, int)}.
+     *
+     * @param tank      Czołg gracza.
+     * @param buttons   Maska przycisków.
+     * @param obstacles Przeszkody na planszy.
+     */
+    static void apply(Tank tank, int buttons, List<Obstacle> obstacles) {
+        if ((buttons & InputCommand.LEFT) != 0) tank.moveLeft(obstacles);
+        if ((buttons & InputCommand.RIGHT) != 0) tank.moveRight(obstacles);
+        if ((buttons & InputCommand.ANGLE_DOWN) != 0) tank.changeAngle(-5);
+        if ((buttons & InputCommand.ANGLE_UP) != 0) tank.changeAngle(5);
+    }
+}
@@ -0,0 +1,121 @@
+package org.rewera.ptak.raczynski;
+
+import java.awt.event.KeyEvent;
+
+/**
+ * Stan przytrzymanych klawiszy gracza próbkowany raz na takt gry.
+ *
+ * <p>System powtarza zdarzenie naciśnięcia przytrzymanego klawisza we własnym tempie, więc ruch
+ * wykonywany przy każdym zdarzeniu zależałby od ustawień klawiatury. Zamiast tego naciśnięcie
+ * i zwolnienie klawisza jedynie zmieniają stan, a {@link #sample()} w każdym takcie zwraca maskę
+ * przycisków ({@link InputCommand}) do wykonania w tym takcie - wszystkie zmiany jednego taktu
+ * trafiają do jednej wiadomości. Przytrzymany ruch działa w każdym takcie, kąt lufy zmienia się
+ * co {@link #ANGLE_REPEAT_TICKS} takty, a strzał tylko raz na naciśnięcie. Klawisz wciśnięty
+ * i zwolniony w ciągu jednego taktu też jest wykonany.</p>
+ *
+ * <p>Klasa nie jest bezpieczna wątkowo - zdarzenia klawiatury i timer gry działają w wątku Swing.</p>
+ */
+class InputSampler {
+
+    /**
+     * Liczba taktów między kolejnymi zmianami kąta przy przytrzymanym klawiszu.
+     */
+    static final int ANGLE_REPEAT_TICKS = 3;
+
+    /**
+     * Przyciski działające w każdym takcie, w którym są przytrzymane.
+     */
+    private static final int CONTINUOUS = InputCommand.LEFT | InputCommand.RIGHT;
+
+    /**
+     * Przyciski zmiany kąta.
+     */
+    private static final int ANGLE = InputCommand.ANGLE_DOWN | InputCommand.ANGLE_UP;
+
+    /**
+     * Przytrzymane przyciski.
+     */
+    private int held;
+
+    /**
+     * Przyciski wciśnięte od ostatniej próbki (także te już zwolnione).
+     */
+    private int pressed;
+
+    /**
+     * Liczba taktów od ostatniej zmiany kąta przy przytrzymanym klawiszu.
+     */
+    private int angleTicks;
+
+    /**
+     * Zwraca przycisk przypisany do klawisza.
+     *
+     * @param keyCode Kod klawisza ({@link KeyEvent}).
+     * @return Przycisk {@link InputCommand} lub 0, jeśli klawisz nie steruje czołgiem.
+     */
+    static int button(int keyCode) {
+        switch (keyCode) {
+            case KeyEvent.VK_A:
+                return InputCommand.LEFT;
+            case KeyEvent.VK_D:
+                return InputCommand.RIGHT;
+            case KeyEvent.VK_Q:
+                return InputCommand.ANGLE_DOWN;
+            case KeyEvent.VK_E:
+                return InputCommand.ANGLE_UP;
+            case KeyEvent.VK_W:
+                return InputCommand.FIRE;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Zapisuje naciśnięcie klawisza. Powtórzenia zdarzenia przy przytrzymanym klawiszu są pomijane.
+     *
+     * @param keyCode Kod klawisza.
+     */
+    void press(int keyCode) {
+        int button = button(keyCode);
+        if ((held & button) == 0) {
+            held |= button;
+            pressed |= button;
+        }
+    }
+
+    /**
+     * Zapisuje zwolnienie klawisza.
+     *
+     * @param keyCode Kod klawisza.
+     */
+    void release(int keyCode) {
+        held &= ~button(keyCode);
+    }
+
+    /**
+     * Zwalnia wszystkie klawisze (np. po utracie fokusu, gdy zdarzenia zwolnienia nie dotrą).
+     */
+    void releaseAll() {
+        held = 0;
+        pressed = 0;
+    }
+
+    /**
+     * Pobiera przyciski do wykonania w bieżącym takcie.
+     *
+     * @return Maska przycisków ({@link InputCommand}) lub 0, jeśli w tym takcie nie ma nic do wykonania.
+     */
+    int sample() {
+        int buttons = (held | pressed) & CONTINUOUS;
+        if ((pressed & ANGLE) != 0) {
+            buttons |= (held | pressed) & ANGLE;
+            angleTicks = 0;
+        } else if ((held & ANGLE) != 0 && ++angleTicks >= ANGLE_REPEAT_TICKS) {
+            buttons |= held & ANGLE;
+            angleTicks = 0;
+        }
+        buttons |= pressed & InputCommand.FIRE;
+        pressed = 0;
+        return buttons;
+    }
+}
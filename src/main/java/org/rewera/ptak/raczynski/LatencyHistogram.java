@@ -0,0 +1,221 @@
+package org.rewera.ptak.raczynski;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram czasów w nanosekundach o stałym rozmiarze, bez alokacji przy zapisie.
+ * Przedziały są logarytmiczne z 8 podprzedziałami na każdą potęgę dwójki,
+ * więc błąd względny odczytanego percentyla nie przekracza 12,5%.
+ *
+ * <p>Zakres można zawęzić: wartości są zapisywane w jednostkach {@code 2^unitBits} ns, a wartości
+ * od {@code 2^rangeBits} ns trafiają do ostatniego przedziału (maksimum pozostaje dokładne).
+ * Dzięki temu histogramy tworzone dla każdej gry zajmują kilkakrotnie mniej pamięci.</p>
+ *
+ * <p>Zapis i odczyt są bezpieczne wątkowo; odczyt w trakcie zapisu daje wynik przybliżony.</p>
+ */
+class LatencyHistogram {
+
+    /**
+     * Liczba bitów podprzedziału.
+     */
+    private static final int SUB_BITS = 3;
+
+    /**
+     * Liczba podprzedziałów na potęgę dwójki.
+     */
+    private static final int SUB = 1 << SUB_BITS;
+
+    /**
+     * Liczba bitów jednostki zapisu (rozdzielczość histogramu to {@code 2^unitBits} ns).
+     */
+    private final int unitBits;
+
+    /**
+     * Największa wartość w jednostkach zapisu, która ma własny przedział.
+     */
+    private final long limit;
+
+    /**
+     * Liczniki przedziałów.
+     */
+    private final AtomicLongArray counts;
+
+    /**
+     * Liczba zapisanych wartości.
+     */
+    private final AtomicLong count = new AtomicLong();
+
+    /**
+     * Suma zapisanych wartości.
+     */
+    private final AtomicLong sum = new AtomicLong();
+
+    /**
+     * Największa zapisana wartość.
+     */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Tworzy histogram obejmujący pełny zakres wartości z rozdzielczością 1 ns.
+     */
+    LatencyHistogram() {
+        this(0, 63);
+    }
+
+    /**
+     * Tworzy histogram o zawężonym zakresie.
+     *
+     * @param unitBits  Liczba bitów jednostki zapisu (np. 10 to jednostki ok. 1 us).
+     * @param rangeBits Liczba bitów zakresu - wartości od {@code 2^rangeBits} ns trafiają do ostatniego przedziału.
+     */
+    LatencyHistogram(int unitBits, int rangeBits) {
+        if (unitBits < 0 || rangeBits > 63 || rangeBits - unitBits < SUB_BITS) {
+            throw new IllegalArgumentException("unitBits=" + unitBits + ", rangeBits=" + rangeBits);
+        }
+        this.unitBits = unitBits;
+        this.limit = -1L >>> (64 - rangeBits + unitBits);
+        this.counts = new AtomicLongArray(index(limit) + 1);
+    }
+
+    /**
+     * Zapisuje wartość. Wartości ujemne są traktowane jak zero.
+     *
+     * @param nanos Czas w nanosekundach.
+     */
+    void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(index(Math.min(value >>> unitBits, limit)));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        raiseMax(value);
+    }
+
+    /**
+     * Dodaje zawartość tego histogramu do innego histogramu (np. przy łączeniu histogramów
+     * wielu gier w sumę serwera).
+     *
+     * @param target Histogram docelowy o tym samym zakresie.
+     */
+    void addTo(LatencyHistogram target) {
+        if (target.unitBits != unitBits || target.limit != limit) {
+            throw new IllegalArgumentException("Histogram ranges differ");
+        }
+        for (int i = 0; i < counts.length(); i++) {
+            long n = counts.get(i);
+            if (n != 0) {
+                target.counts.addAndGet(i, n);
+            }
+        }
+        target.count.addAndGet(count.get());
+        target.sum.addAndGet(sum.get());
+        target.raiseMax(max.get());
+    }
+
+    /**
+     * Podnosi maksimum do podanej wartości, jeśli jest od niego większa.
+     *
+     * @param value Wartość nieujemna.
+     */
+    private void raiseMax(long value) {
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // Ponowna próba po równoczesnej zmianie maksimum
+        }
+    }
+
+    /**
+     * Zwraca liczbę zapisanych wartości.
+     *
+     * @return Liczba wartości.
+     */
+    long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Zwraca największą zapisaną wartość.
+     *
+     * @return Maksimum w nanosekundach.
+     */
+    long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Zwraca średnią zapisanych wartości.
+     *
+     * @return Średnia w nanosekundach lub 0, jeśli histogram jest pusty.
+     */
+    long getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : sum.get() / n;
+    }
+
+    /**
+     * Zwraca przybliżony percentyl (górną granicę przedziału, w którym leży).
+     *
+     * @param percentile Percentyl z zakresu 0-100.
+     * @return Wartość percentyla w nanosekundach lub 0, jeśli histogram jest pusty.
+     */
+    long getPercentile(double percentile) {
+        long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(n * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                if (i == counts.length() - 1) {
+                    return max.get(); // Ostatni przedział zbiera też wartości spoza zakresu
+                }
+                return Math.min(((upperBound(i) + 1) << unitBits) - 1, max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Zeruje histogram.
+     */
+    void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    /**
+     * Zwraca indeks przedziału dla wartości.
+     *
+     * @param value Wartość nieujemna w jednostkach zapisu.
+     * @return Indeks przedziału.
+     */
+    private static int index(long value) {
+        if (value < SUB) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) ((value >>> (exponent - SUB_BITS)) & (SUB - 1));
+        return (exponent - SUB_BITS + 1) * SUB + sub;
+    }
+
+    /**
+     * Zwraca górną granicę przedziału.
+     *
+     * @param index Indeks przedziału.
+     * @return Największa wartość należąca do przedziału w jednostkach zapisu.
+     */
+    private static long upperBound(int index) {
+        if (index < SUB) {
+            return index;
+        }
+        int exponent = index / SUB + SUB_BITS - 1;
+        long width = 1L << (exponent - SUB_BITS);
+        return ((SUB + (long) (index % SUB)) << (exponent - SUB_BITS)) + width - 1;
+    }
+}
@@ -0,0 +1,111 @@
+package org.rewera.ptak.raczynski;
+
+/**
+ * Podsumowanie histogramu {@link LatencyHistogram} w mikrosekundach, udostępniane przez JMX
+ * (typ złożony atrybutów {@link GameMetricsMXBean}).
+ */
+public class LatencySummary {
+
+    /**
+     * Liczba pomiarów.
+     */
+    private final long count;
+
+    /**
+     * Średnia w mikrosekundach.
+     */
+    private final double mean;
+
+    /**
+     * Mediana w mikrosekundach.
+     */
+    private final double p50;
+
+    /**
+     * 99. percentyl w mikrosekundach.
+     */
+    private final double p99;
+
+    /**
+     * 99,9. percentyl w mikrosekundach.
+     */
+    private final double p999;
+
+    /**
+     * Największa wartość w mikrosekundach.
+     */
+    private final double max;
+
+    /**
+     * Tworzy podsumowanie na podstawie histogramu.
+     *
+     * @param histogram Histogram czasów w nanosekundach.
+     */
+    LatencySummary(LatencyHistogram histogram) {
+        this.count = histogram.getCount();
+        this.mean = histogram.getMean() / 1e3;
+        this.p50 = histogram.getPercentile(50) / 1e3;
+        this.p99 = histogram.getPercentile(99) / 1e3;
+        this.p999 = histogram.getPercentile(99.9) / 1e3;
+        this.max = histogram.getMax() / 1e3;
+    }
+
+    /**
+     * Zwraca liczbę pomiarów.
+     *
+     * @return Liczba pomiarów.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Zwraca średnią.
+     *
+     * @return Średnia w mikrosekundach.
+     */
+    public double getMeanMicros() {
+        return mean;
+    }
+
+    /**
+     * Zwraca medianę.
+     *
+     * @return Mediana w mikrosekundach.
+     */
+    public double getP50Micros() {
+        return p50;
+    }
+
+    /**
+     * Zwraca 99. percentyl.
+     *
+     * @return 99. percentyl w mikrosekundach.
+     */
+    public double getP99Micros() {
+        return p99;
+    }
+
+    /**
+     * Zwraca 99,9. percentyl.
+     *
+     * @return 99,9. percentyl w mikrosekundach.
+     */
+    public double getP999Micros() {
+        return p999;
+    }
+
+    /**
+     * Zwraca największą wartość.
+     *
+     * @return Największa wartość w mikrosekundach.
+     */
+    public double getMaxMicros() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("n=%d p50=%.1fus p99=%.1fus p999=%.1fus max=%.1fus", count, p50, p99, p999, max);
+    }
+}
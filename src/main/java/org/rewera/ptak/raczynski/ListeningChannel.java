@@ -0,0 +1,98 @@
+package org.rewera.ptak.raczynski;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.nio.channels.Channel;
+import java.nio.channels.NetworkChannel;
+import java.nio.channels.ServerSocketChannel;
+
+/**
+ * Otwiera gniazdo nasłuchujące serwera tak, aby nowy proces mógł przejąć port od procesu,
+ * który właśnie kończy pracę ({@link GameServer#drain(long)}).
+ *
+ * <p>Z opcją {@code SO_REUSEPORT} kilka procesów może nasłuchiwać na tym samym porcie - jądro rozdziela
+ * nowe połączenia między nie, a gdy stary proces zamknie gniazdo, wszystkie trafiają do nowego.
+ * Opcja jest dostępna od Javy 9, więc jest wyszukiwana przez refleksję. Zamiast tego gniazdo może
+ * zostać odziedziczone od procesu nadrzędnego ({@link System#inheritedChannel()}, np. aktywacja gniazd
+ * systemd lub inetd) - wtedy to samo gniazdo przechodzi do kolejnych wersji serwera bez zamykania.</p>
+ */
+final class ListeningChannel {
+
+    /**
+     * Opcja {@code SO_REUSEPORT} lub null, jeśli środowisko jej nie zna.
+     */
+    private static final SocketOption<Boolean> REUSE_PORT = lookupReusePort();
+
+    /**
+     * Klasa narzędziowa.
+     */
+    private ListeningChannel() {
+    }
+
+    /**
+     * Otwiera gniazdo nasłuchujące zgodnie z konfiguracją (w trybie blokującym).
+     *
+     * @param config  Konfiguracja serwera (port, {@code --reuse-port}, {@code --inherit-channel}).
+     * @param backlog Długość kolejki połączeń oczekujących na przyjęcie.
+     * @return Gniazdo nasłuchujące.
+     * @throws IOException jeśli nie udało się otworzyć portu lub nie ma odziedziczonego gniazda.
+     */
+    static ServerSocketChannel open(ServerConfig config, int backlog) throws IOException {
+        if (config.isInheritChannel()) {
+            Channel inherited = System.inheritedChannel();
+            if (!(inherited instanceof ServerSocketChannel)) {
+                throw new IOException("No inherited listening channel: " + inherited);
+            }
+            return (ServerSocketChannel) inherited;
+        }
+        ServerSocketChannel channel = ServerSocketChannel.open();
+        try {
+            if (config.isReusePort()) {
+                enableReusePort(channel);
+            }
+            channel.bind(new InetSocketAddress(config.getPort()), backlog);
+            return channel;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Włącza {@code SO_REUSEPORT} na kanale przed związaniem go z portem.
+     *
+     * @param channel Kanał gniazda.
+     * @throws IOException jeśli system nie obsługuje tej opcji.
+     */
+    static void enableReusePort(NetworkChannel channel) throws IOException {
+        if (REUSE_PORT == null || !channel.supportedOptions().contains(REUSE_PORT)) {
+            throw new IOException("SO_REUSEPORT is not supported on this platform");
+        }
+        channel.setOption(REUSE_PORT, true);
+    }
+
+    /**
+     * Sprawdza, czy można współdzielić port z innym procesem.
+     *
+     * @return true, jeśli środowisko zna opcję {@code SO_REUSEPORT}.
+     */
+    static boolean isReusePortSupported() {
+        return REUSE_PORT != null;
+    }
+
+    /**
+     * Pobiera {@code StandardSocketOptions.SO_REUSEPORT}.
+     *
+     * @return Opcja lub null, jeśli nie jest dostępna.
+     */
+    @SuppressWarnings("unchecked")
+    private static SocketOption<Boolean> lookupReusePort() {
+        try {
+            return (SocketOption<Boolean>) StandardSocketOptions.class.getField("SO_REUSEPORT").get(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,812 @@
+package org.rewera.ptak.raczynski;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bezokienkowy generator obciążenia serwera gry.
+ *
+ * <p>Otwiera N równoległych połączeń mówiących tym samym protokołem co {@link GamePanel}:
+ * starym (odczyt roli {@code isPlayer1}, potem wymiana obiektów {@link GameState}) albo ramkowym
+ * (powitanie, ramka powitalna, polecenia {@link InputCommand} i replikacja stanów). Każdy bot
+ * w swojej turze rusza czołgiem i zmienia kąt według skryptu lub losowo, a strzela z zadaną
+ * częstotliwością. Po zakończeniu gry bot łączy się ponownie, więc obciążenie jest stałe.</p>
+ *
+ * <p>Raportowane są: czas nawiązania połączenia (do otrzymania roli), czas obiegu od wysłania ruchu
+ * do pierwszego stanu odebranego po nim, przepustowość w obu kierunkach i liczba błędów.
+ * W protokole ramkowym czas obiegu obejmuje oczekiwanie na takt serwera (do
+ * {@link GameSimulation#TICK_MILLIS} ms).</p>
+ *
+ * <p>Uruchomienie: {@code java -cp target/classes org.rewera.ptak.raczynski.LoadBot
+ * --host=localhost --port=12345 --bots=200 --duration=60 --protocol=framed}.</p>
+ */
+class LoadBot {
+
+    /**
+     * Protokół, którym mówią boty.
+     */
+    enum Protocol {
+        /**
+         * Stary protokół serializacji Javy - gra prowadzona przez klientów.
+         */
+        LEGACY,
+        /**
+         * Protokół ramkowy z poleceniami - gra prowadzona przez serwer.
+         */
+        FRAMED
+    }
+
+    /**
+     * Sposób wybierania ruchów.
+     */
+    enum Script {
+        /**
+         * Stała sekwencja ruchów w równych odstępach.
+         */
+        SCRIPTED,
+        /**
+         * Losowe ruchy w losowych (wykładniczych) odstępach.
+         */
+        RANDOM
+    }
+
+    /**
+     * Sekwencja ruchów bota w trybie {@link Script#SCRIPTED}.
+     */
+    private static final int[] MOVES = {
+            InputCommand.RIGHT, InputCommand.RIGHT, InputCommand.ANGLE_UP,
+            InputCommand.LEFT, InputCommand.LEFT, InputCommand.ANGLE_DOWN
+    };
+
+    /**
+     * Czas oczekiwania na odpowiedź serwera, po którym ruch uznaje się za zgubiony.
+     */
+    static final long RESPONSE_TIMEOUT_MILLIS = 5000;
+
+    /**
+     * Ustawienia generatora obciążenia.
+     */
+    static final class Options {
+
+        /**
+         * Adres serwera.
+         */
+        String host = "localhost";
+
+        /**
+         * Port serwera.
+         */
+        int port = GameServer.PORT;
+
+        /**
+         * Liczba równoległych botów.
+         */
+        int bots = 10;
+
+        /**
+         * Czas trwania testu w sekundach.
+         */
+        int durationSeconds = 30;
+
+        /**
+         * Czas, w którym boty są stopniowo uruchamiane, w milisekundach.
+         */
+        long rampMillis = 1000;
+
+        /**
+         * Protokół botów.
+         */
+        Protocol protocol = Protocol.FRAMED;
+
+        /**
+         * Sposób wybierania ruchów.
+         */
+        Script script = Script.SCRIPTED;
+
+        /**
+         * Liczba ruchów na sekundę w turze bota.
+         */
+        double moveRate = 10;
+
+        /**
+         * Liczba strzałów na sekundę w turze bota.
+         */
+        double fireRate = 0.5;
+
+        /**
+         * Wczytuje ustawienia z argumentów wiersza poleceń w postaci {@code --klucz=wartość}.
+         *
+         * @param args Argumenty wiersza poleceń.
+         * @return Wczytane ustawienia.
+         * @throws IllegalArgumentException jeśli argument jest nieznany lub ma błędną wartość.
+         */
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (String arg : args) {
+                int separator = arg.indexOf('=');
+                if (!arg.startsWith("--") || separator < 0) {
+                    throw new IllegalArgumentException("Unknown argument: " + arg);
+                }
+                String key = arg.substring(2, separator);
+                String value = arg.substring(separator + 1);
+                switch (key) {
+                    case "host":
+                        options.host = value;
+                        break;
+                    case "port":
+                        options.port = Integer.parseInt(value);
+                        break;
+                    case "bots":
+                        options.bots = Integer.parseInt(value);
+                        break;
+                    case "duration":
+                        options.durationSeconds = Integer.parseInt(value);
+                        break;
+                    case "ramp-ms":
+                        options.rampMillis = Long.parseLong(value);
+                        break;
+                    case "protocol":
+                        options.protocol = Protocol.valueOf(value.toUpperCase());
+                        break;
+                    case "script":
+                        options.script = Script.valueOf(value.toUpperCase());
+                        break;
+                    case "move-rate":
+                        options.moveRate = Double.parseDouble(value);
+                        break;
+                    case "fire-rate":
+                        options.fireRate = Double.parseDouble(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown argument: " + arg);
+                }
+            }
+            if (options.bots < 1) {
+                throw new IllegalArgumentException("bots must be positive: " + options.bots);
+            }
+            if (options.moveRate <= 0 || options.fireRate < 0) {
+                throw new IllegalArgumentException("move-rate must be positive and fire-rate not negative");
+            }
+            return options;
+        }
+    }
+
+    /**
+     * Statystyki wspólne dla wszystkich botów.
+     */
+    static final class Stats {
+
+        /**
+         * Czasy nawiązania połączenia (od otwarcia gniazda do otrzymania roli).
+         */
+        final LatencyHistogram connect = new LatencyHistogram();
+
+        /**
+         * Czasy obiegu ruchu.
+         */
+        final LatencyHistogram roundTrip = new LatencyHistogram();
+
+        /**
+         * Bajty odebrane od serwera.
+         */
+        final LongAdder bytesIn = new LongAdder();
+
+        /**
+         * Bajty wysłane do serwera.
+         */
+        final LongAdder bytesOut = new LongAdder();
+
+        /**
+         * Odebrane stany gry.
+         */
+        final LongAdder states = new LongAdder();
+
+        /**
+         * Wysłane wiadomości (stany lub polecenia).
+         */
+        final LongAdder sent = new LongAdder();
+
+        /**
+         * Nieudane połączenia.
+         */
+        final LongAdder connectErrors = new LongAdder();
+
+        /**
+         * Zerwane połączenia i błędy protokołu.
+         */
+        final LongAdder errors = new LongAdder();
+
+        /**
+         * Ruchy bez odpowiedzi serwera w czasie {@link #RESPONSE_TIMEOUT_MILLIS}.
+         */
+        final LongAdder timeouts = new LongAdder();
+
+        /**
+         * Zakończone gry.
+         */
+        final LongAdder games = new LongAdder();
+
+        /**
+         * Liczba botów połączonych w danej chwili.
+         */
+        final AtomicInteger connected = new AtomicInteger();
+    }
+
+    /**
+     * Ustawienia generatora.
+     */
+    private final Options options;
+
+    /**
+     * Statystyki botów.
+     */
+    private final Stats stats = new Stats();
+
+    /**
+     * Harmonogram taktów botów.
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Uruchomione boty.
+     */
+    private final List<Bot> bots = new ArrayList<>();
+
+    /**
+     * Określa, czy generator działa.
+     */
+    private volatile boolean running;
+
+    /**
+     * Tworzy generator obciążenia.
+     *
+     * @param options Ustawienia generatora.
+     */
+    LoadBot(Options options) {
+        this.options = options;
+        this.scheduler = Executors.newScheduledThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors()), runnable -> {
+            Thread thread = new Thread(runnable, "load-bot-tick");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Zwraca statystyki botów.
+     *
+     * @return Statystyki.
+     */
+    Stats getStats() {
+        return stats;
+    }
+
+    /**
+     * Uruchamia boty, rozkładając połączenia równomiernie na czas {@link Options#rampMillis}.
+     */
+    void start() {
+        running = true;
+        for (int i = 0; i < options.bots; i++) {
+            Bot bot = new Bot(i);
+            bots.add(bot);
+            long delay = options.rampMillis * i / options.bots;
+            scheduler.schedule(bot::connectInBackground, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Zatrzymuje boty i zamyka ich połączenia.
+     */
+    void stop() {
+        running = false;
+        scheduler.shutdownNow();
+        for (Bot bot : bots) {
+            bot.disconnect();
+        }
+    }
+
+    /**
+     * Jeden bot: połączenie, wątek odbierający i takt wysyłający ruchy.
+     */
+    private final class Bot {
+
+        /**
+         * Numer bota (do nazw wątków).
+         */
+        private final int id;
+
+        /**
+         * Generator ruchów losowych.
+         */
+        private final Random random;
+
+        /**
+         * Gniazdo bieżącego połączenia.
+         */
+        private Socket socket;
+
+        /**
+         * Strumień obiektów (protokół stary).
+         */
+        private ObjectOutputStream objectOut;
+
+        /**
+         * Strumień ramek (protokół ramkowy).
+         */
+        private DataOutputStream frameOut;
+
+        /**
+         * Lokalna symulacja ostatniego znanego stanu gry.
+         */
+        private GameSimulation simulation;
+
+        /**
+         * Określa, czy bot jest graczem 1.
+         */
+        private boolean isPlayer1;
+
+        /**
+         * Określa, czy bot prowadzi lokalnie własny strzał (protokół stary).
+         */
+        private boolean shooting;
+
+        /**
+         * Numer ostatniego polecenia (protokół ramkowy).
+         */
+        private int inputSeq;
+
+        /**
+         * Pozycja w sekwencji ruchów.
+         */
+        private int step;
+
+        /**
+         * Czas następnego ruchu w nanosekundach.
+         */
+        private long nextMove;
+
+        /**
+         * Czas następnego strzału w nanosekundach.
+         */
+        private long nextFire;
+
+        /**
+         * Czas wysłania ruchu oczekującego na odpowiedź lub 0.
+         */
+        private long pendingSince;
+
+        /**
+         * Takt bota.
+         */
+        private ScheduledFuture<?> tick;
+
+        /**
+         * Tworzy bota.
+         *
+         * @param id Numer bota.
+         */
+        Bot(int id) {
+            this.id = id;
+            this.random = new Random(id);
+        }
+
+        /**
+         * Uruchamia połączenie w osobnym wątku odbierającym.
+         */
+        void connectInBackground() {
+            if (!running) {
+                return;
+            }
+            Thread reader = new Thread(this::session, "load-bot-" + id);
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        /**
+         * Przebieg jednego połączenia: powitanie, odbieranie stanów i ponowne połączenie po końcu gry.
+         */
+        private void session() {
+            long start = System.nanoTime();
+            Socket current = new Socket();
+            try {
+                current.setTcpNoDelay(true);
+                current.connect(new InetSocketAddress(options.host, options.port), (int) RESPONSE_TIMEOUT_MILLIS);
+                InputStream input = new CountingInputStream(current.getInputStream(), stats.bytesIn);
+                OutputStream output = new CountingOutputStream(current.getOutputStream(), stats.bytesOut);
+                synchronized (this) {
+                    socket = current;
+                }
+                if (options.protocol == Protocol.LEGACY) {
+                    runLegacy(input, output, start);
+                } else {
+                    runFramed(input, output, start);
+                }
+            } catch (IOException | ClassNotFoundException e) {
+                if (running) {
+                    synchronized (this) {
+                        (tick == null ? stats.connectErrors : stats.errors).increment();
+                    }
+                }
+            } finally {
+                endSession(current);
+            }
+        }
+
+        /**
+         * Obsługuje połączenie starym protokołem.
+         *
+         * @param input  Strumień wejściowy gniazda.
+         * @param output Strumień wyjściowy gniazda.
+         * @param start  Czas rozpoczęcia łączenia w nanosekundach.
+         * @throws IOException            w przypadku błędu połączenia.
+         * @throws ClassNotFoundException jeśli serwer przysłał nieznany obiekt.
+         */
+        private void runLegacy(InputStream input, OutputStream output, long start) throws IOException, ClassNotFoundException {
+            ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(output));
+            out.flush();
+            ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(input));
+            boolean player1 = in.readBoolean();
+            joined(player1, start);
+            synchronized (this) {
+                objectOut = out;
+            }
+            while (running) {
+                Object message = in.readObject();
+                if (message instanceof GameState) {
+                    if (received((GameState) message)) {
+                        return;
+                    }
+                } else {
+                    throw new IOException("Server message: " + message);
+                }
+            }
+        }
+
+        /**
+         * Obsługuje połączenie protokołem ramkowym.
+         *
+         * @param input  Strumień wejściowy gniazda.
+         * @param output Strumień wyjściowy gniazda.
+         * @param start  Czas rozpoczęcia łączenia w nanosekundach.
+         * @throws IOException w przypadku błędu połączenia.
+         */
+        private void runFramed(InputStream input, OutputStream output, long start) throws IOException {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(input));
+            WireProtocol.writeHello(out, GameStateCodec.BINARY, (byte) (WireProtocol.FLAG_DELTA | WireProtocol.FLAG_INPUT));
+            WireProtocol.Frame welcome = WireProtocol.readFrame(in);
+            if (welcome.type != WireProtocol.FRAME_WELCOME) {
+                throw new IOException("Expected welcome frame, got " + welcome.type);
+            }
+            if ((welcome.payload[1] & WireProtocol.FLAG_INPUT) == 0) {
+                throw new IOException("Server does not accept input commands");
+            }
+            GameStateCodec codec = GameStateCodec.forId(welcome.payload[2]);
+            StateReplica stateReplica = (welcome.payload[1] & WireProtocol.FLAG_DELTA) != 0 ? new StateReplica(codec) : null;
+            joined(welcome.payload[0] != 0, start);
+            synchronized (this) {
+                frameOut = out;
+            }
+            while (running) {
+                WireProtocol.Frame frame = WireProtocol.readFrame(in);
+                GameState state = null;
+                if (frame.type == WireProtocol.FRAME_STATE) {
+                    state = codec.decode(frame.payload, 0, frame.payload.length);
+                } else if ((frame.type == WireProtocol.FRAME_SNAPSHOT || frame.type == WireProtocol.FRAME_DELTA)
+                        && stateReplica != null) {
+                    state = stateReplica.apply(frame);
+                    if (state != null) {
+                        synchronized (this) {
+                            WireProtocol.writeFrame(out, WireProtocol.FRAME_ACK, WireProtocol.ack(stateReplica.getLastSeq()));
+                        }
+                    }
+                } else if (frame.type == WireProtocol.FRAME_TEXT) {
+                    throw new IOException("Server message: " + new String(frame.payload, StandardCharsets.UTF_8));
+                }
+                if (state != null && received(state)) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Zapamiętuje rolę, zapisuje czas nawiązania połączenia i uruchamia takt bota.
+         *
+         * @param player1 Określa, czy bot jest graczem 1.
+         * @param start   Czas rozpoczęcia łączenia w nanosekundach.
+         */
+        private void joined(boolean player1, long start) {
+            stats.connect.record(System.nanoTime() - start);
+            stats.connected.incrementAndGet();
+            synchronized (this) {
+                isPlayer1 = player1;
+                long now = System.nanoTime();
+                nextMove = now + moveInterval();
+                nextFire = now + fireInterval();
+                tick = scheduler.scheduleAtFixedRate(this::tick, GameSimulation.TICK_MILLIS, GameSimulation.TICK_MILLIS,
+                        TimeUnit.MILLISECONDS);
+            }
+        }
+
+        /**
+         * Przyjmuje stan gry od serwera: zamyka pomiar czasu obiegu i odświeża lokalną symulację.
+         *
+         * @param state Odebrany stan gry.
+         * @return true, jeśli gra się zakończyła.
+         */
+        private synchronized boolean received(GameState state) {
+            stats.states.increment();
+            if (pendingSince != 0) {
+                stats.roundTrip.record(System.nanoTime() - pendingSince);
+                pendingSince = 0;
+            }
+            if (!shooting) { // Własny strzał jest prowadzony lokalnie - echo serwera jest starsze
+                simulation = new GameSimulation(state);
+            }
+            if (simulation.isGameOver()) {
+                stats.games.increment();
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Takt bota: prowadzi własny strzał (protokół stary) albo w swojej turze wysyła kolejny ruch.
+         */
+        private synchronized void tick() {
+            if (simulation == null || socket == null || socket.isClosed()) {
+                return;
+            }
+            long now = System.nanoTime();
+            if (pendingSince != 0 && now - pendingSince > TimeUnit.MILLISECONDS.toNanos(RESPONSE_TIMEOUT_MILLIS)) {
+                stats.timeouts.increment();
+                pendingSince = 0;
+            }
+            try {
+                if (shooting) {
+                    simulation.step();
+                    GameState state = simulation.snapshot();
+                    shooting = !state.getBullets().isEmpty();
+                    sendState(state);
+                    return;
+                }
+                GameState state = simulation.snapshot();
+                if (state.isPlayer1Turn() != isPlayer1 || !state.getBullets().isEmpty() || now < nextMove) {
+                    return;
+                }
+                int buttons = nextButtons(now);
+                if (options.protocol == Protocol.LEGACY) {
+                    simulation.applyInput(isPlayer1, buttons);
+                    shooting = (buttons & InputCommand.FIRE) != 0;
+                    sendState(simulation.snapshot());
+                } else {
+                    WireProtocol.writeFrame(frameOut, WireProtocol.FRAME_INPUT, InputCommand.encode(++inputSeq, buttons));
+                    stats.sent.increment();
+                }
+                if (pendingSince == 0) {
+                    pendingSince = now;
+                }
+            } catch (IOException e) {
+                if (running) {
+                    stats.errors.increment();
+                }
+                closeSocket();
+            }
+        }
+
+        /**
+         * Wybiera kolejne przyciski i planuje czas następnego ruchu i strzału.
+         *
+         * @param now Bieżący czas w nanosekundach.
+         * @return Maska przycisków ({@link InputCommand}).
+         */
+        private int nextButtons(long now) {
+            nextMove = now + moveInterval();
+            if (options.fireRate > 0 && now >= nextFire) {
+                nextFire = now + fireInterval();
+                return InputCommand.FIRE;
+            }
+            if (options.script == Script.RANDOM) {
+                return MOVES[random.nextInt(MOVES.length)];
+            }
+            return MOVES[step++ % MOVES.length];
+        }
+
+        /**
+         * Zwraca odstęp do następnego ruchu.
+         *
+         * @return Odstęp w nanosekundach.
+         */
+        private long moveInterval() {
+            return interval(options.moveRate);
+        }
+
+        /**
+         * Zwraca odstęp do następnego strzału.
+         *
+         * @return Odstęp w nanosekundach (bardzo długi, jeśli boty nie strzelają).
+         */
+        private long fireInterval() {
+            return options.fireRate > 0 ? interval(options.fireRate) : Long.MAX_VALUE / 4;
+        }
+
+        /**
+         * Zwraca odstęp między zdarzeniami o zadanej częstotliwości: stały w trybie skryptowym,
+         * wykładniczy (proces Poissona) w trybie losowym.
+         *
+         * @param rate Liczba zdarzeń na sekundę.
+         * @return Odstęp w nanosekundach.
+         */
+        private long interval(double rate) {
+            double seconds = 1 / rate;
+            if (options.script == Script.RANDOM) {
+                seconds *= -Math.log(1 - random.nextDouble());
+            }
+            return (long) (seconds * 1_000_000_000L);
+        }
+
+        /**
+         * Wysyła stan gry starym protokołem.
+         *
+         * @param state Stan gry.
+         * @throws IOException w przypadku błędu zapisu.
+         */
+        private void sendState(GameState state) throws IOException {
+            objectOut.writeObject(state);
+            objectOut.reset(); // Stany są nowymi obiektami - bez tego tablica odwołań strumienia rośnie bez końca
+            objectOut.flush();
+            stats.sent.increment();
+        }
+
+        /**
+         * Kończy połączenie i - jeśli generator działa - łączy się ponownie.
+         *
+         * @param current Gniazdo kończonego połączenia.
+         */
+        private void endSession(Socket current) {
+            boolean wasJoined;
+            synchronized (this) {
+                wasJoined = tick != null;
+                if (tick != null) {
+                    tick.cancel(false);
+                    tick = null;
+                }
+                simulation = null;
+                shooting = false;
+                pendingSince = 0;
+                objectOut = null;
+                frameOut = null;
+            }
+            if (wasJoined) {
+                stats.connected.decrementAndGet();
+            }
+            try {
+                current.close();
+            } catch (IOException ignored) {
+                // Połączenie i tak jest porzucane
+            }
+            if (running) {
+                try {
+                    scheduler.schedule(this::connectInBackground, wasJoined ? 0 : RESPONSE_TIMEOUT_MILLIS / 5, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException ignored) {
+                    // Generator jest zatrzymywany
+                }
+            }
+        }
+
+        /**
+         * Zamyka gniazdo bieżącego połączenia - wątek odbierający zakończy sesję.
+         */
+        private synchronized void closeSocket() {
+            try {
+                if (socket != null) {
+                    socket.close();
+                }
+            } catch (IOException ignored) {
+                // Połączenie i tak jest porzucane
+            }
+        }
+
+        /**
+         * Rozłącza bota na stałe.
+         */
+        void disconnect() {
+            closeSocket();
+        }
+    }
+
+    /**
+     * Wypisuje jednowierszowy raport z ostatniego przedziału.
+     *
+     * @param seconds    Czas od startu w sekundach.
+     * @param bytesIn    Bajty odebrane w przedziale.
+     * @param bytesOut   Bajty wysłane w przedziale.
+     * @param states     Stany odebrane w przedziale.
+     * @param elapsedSec Długość przedziału w sekundach.
+     */
+    private void printProgress(long seconds, long bytesIn, long bytesOut, long states, double elapsedSec) {
+        System.out.printf("t=%ds connected=%d states/s=%.0f in=%.1fKB/s out=%.1fKB/s rtt p50=%.1fms p99=%.1fms errors=%d%n",
+                seconds, stats.connected.get(), states / elapsedSec, bytesIn / elapsedSec / 1024, bytesOut / elapsedSec / 1024,
+                millis(stats.roundTrip.getPercentile(50)), millis(stats.roundTrip.getPercentile(99)),
+                stats.errors.sum() + stats.connectErrors.sum() + stats.timeouts.sum());
+    }
+
+    /**
+     * Wypisuje raport końcowy.
+     *
+     * @param elapsedSec Czas trwania testu w sekundach.
+     */
+    void printSummary(double elapsedSec) {
+        System.out.printf("bots=%d protocol=%s script=%s duration=%.1fs games=%d%n", options.bots,
+                options.protocol.name().toLowerCase(), options.script.name().toLowerCase(), elapsedSec, stats.games.sum());
+        System.out.printf("connect    n=%d p50=%.1fms p99=%.1fms max=%.1fms%n", stats.connect.getCount(),
+                millis(stats.connect.getPercentile(50)), millis(stats.connect.getPercentile(99)), millis(stats.connect.getMax()));
+        System.out.printf("round-trip n=%d p50=%.1fms p90=%.1fms p99=%.1fms max=%.1fms%n", stats.roundTrip.getCount(),
+                millis(stats.roundTrip.getPercentile(50)), millis(stats.roundTrip.getPercentile(90)),
+                millis(stats.roundTrip.getPercentile(99)), millis(stats.roundTrip.getMax()));
+        System.out.printf("traffic    in=%.1fKB/s out=%.1fKB/s states/s=%.0f sent/s=%.0f%n",
+                stats.bytesIn.sum() / elapsedSec / 1024, stats.bytesOut.sum() / elapsedSec / 1024,
+                stats.states.sum() / elapsedSec, stats.sent.sum() / elapsedSec);
+        System.out.printf("errors     connect=%d disconnect=%d timeout=%d%n",
+                stats.connectErrors.sum(), stats.errors.sum(), stats.timeouts.sum());
+    }
+
+    /**
+     * Zamienia nanosekundy na milisekundy.
+     *
+     * @param nanos Czas w nanosekundach.
+     * @return Czas w milisekundach.
+     */
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    /**
+     * Punkt wejścia generatora: uruchamia boty, co sekundę wypisuje postęp, a na końcu raport.
+     *
+     * @param args Argumenty w postaci {@code --klucz=wartość}: host, port, bots, duration, ramp-ms,
+     *             protocol (legacy/framed), script (scripted/random), move-rate, fire-rate.
+     * @throws InterruptedException jeśli wątek został przerwany.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        LoadBot loadBot = new LoadBot(Options.parse(args));
+        Stats stats = loadBot.getStats();
+        long start = System.nanoTime();
+        loadBot.start();
+
+        long lastIn = 0;
+        long lastOut = 0;
+        long lastStates = 0;
+        for (int second = 1; second <= loadBot.options.durationSeconds; second++) {
+            Thread.sleep(1000);
+            long in = stats.bytesIn.sum();
+            long out = stats.bytesOut.sum();
+            long states = stats.states.sum();
+            loadBot.printProgress(second, in - lastIn, out - lastOut, states - lastStates, 1.0);
+            lastIn = in;
+            lastOut = out;
+            lastStates = states;
+        }
+        loadBot.stop();
+        loadBot.printSummary((System.nanoTime() - start) / 1e9);
+    }
+}
@@ -0,0 +1,336 @@
+package org.rewera.ptak.raczynski;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Zapis meczu do pliku: dziennik tylko do dopisywania z poleceniami graczy i punktami kontrolnymi stanu.
+ *
+ * <p>Plik jest zapisywany przez odwzorowanie w pamięci ({@link MappedByteBuffer}), więc zapis rekordu
+ * to jedynie kopiowanie do pamięci - wątek gry nie wykonuje wywołań systemowych {@code write()},
+ * a dane na dysk zrzuca system. Gdy odwzorowany obszar się zapełni, jest powiększany dwukrotnie.</p>
+ *
+ * <p>Format pliku (wszystkie liczby w kolejności big-endian):</p>
+ * <ul>
+ *     <li>nagłówek {@link #HEADER_SIZE} bajtów: {@code int MAGIC, byte VERSION, byte flagi,
+ *     short 0, int identyfikator gry, long czas rozpoczęcia (ms epoki), long położenie indeksu};</li>
+ *     <li>rekordy: {@code byte typ, int długość danych, int takt, int czas od początku (ms), dane}.</li>
+ * </ul>
+ * <p>Gra prowadzona przez serwer zapisuje polecenia ({@link #INPUT}) z numerem taktu, w którym zostały
+ * wykonane, a na początku każdej tury klatkę kluczową ({@link #KEYFRAME}); symulacja jest deterministyczna,
+ * więc to wystarcza do odtworzenia meczu. Gra prowadzona przez klientów zapisuje każdy stan
+ * przysłany przez klienta ({@link #STATE}). Przy zamknięciu dopisywany jest rzadki indeks tur
+ * ({@link #INDEX}): dla każdej tury położenie pełnego stanu z jej początku. Plik niezamknięty
+ * (np. po awarii serwera) jest wciąż czytelny - indeks jest wtedy odtwarzany przez przejrzenie rekordów.</p>
+ *
+ * <p>Klasa nie jest bezpieczna wątkowo - gra zapisuje pod własną blokadą.</p>
+ */
+class MatchRecorder implements AutoCloseable {
+
+    /**
+     * Znacznik pliku zapisu meczu ("PTRC").
+     */
+    static final int MAGIC = 0x50545243;
+
+    /**
+     * Wersja formatu pliku.
+     */
+    static final byte VERSION = 1;
+
+    /**
+     * Rozmiar nagłówka pliku.
+     */
+    static final int HEADER_SIZE = 32;
+
+    /**
+     * Położenie pola z położeniem indeksu w nagłówku.
+     */
+    static final int INDEX_OFFSET_POSITION = 20;
+
+    /**
+     * Rozmiar nagłówka rekordu.
+     */
+    static final int RECORD_HEADER_SIZE = 13;
+
+    /**
+     * Flaga nagłówka: grę prowadzi serwer.
+     */
+    static final byte FLAG_SERVER_AUTHORITATIVE = 1;
+
+    /**
+     * Rekord z układem przeszkód: {@code short liczba, (short x, y, szerokość, wysokość)...}.
+     */
+    static final byte OBSTACLES = 1;
+
+    /**
+     * Klatka kluczowa z początku tury: {@code int numer tury}, stan gry ({@link BinaryCodec}).
+     */
+    static final byte KEYFRAME = 2;
+
+    /**
+     * Stan gry przysłany przez klienta ({@link BinaryCodec}).
+     */
+    static final byte STATE = 3;
+
+    /**
+     * Polecenie gracza: {@code byte gracz 1, int maska przycisków}.
+     */
+    static final byte INPUT = 4;
+
+    /**
+     * Koniec meczu (bez danych).
+     */
+    static final byte END = 5;
+
+    /**
+     * Indeks tur: {@code int liczba, (int tura, int takt, long położenie rekordu)...}.
+     */
+    static final byte INDEX = 6;
+
+    /**
+     * Rozmiar wpisu indeksu.
+     */
+    static final int INDEX_ENTRY_SIZE = 16;
+
+    /**
+     * Początkowy rozmiar odwzorowanego obszaru.
+     */
+    private static final int INITIAL_CAPACITY = 256 * 1024;
+
+    /**
+     * Kanał pliku zapisu.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Odwzorowany obszar pliku.
+     */
+    private MappedByteBuffer buffer;
+
+    /**
+     * Czas rozpoczęcia zapisu w nanosekundach.
+     */
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * Położenia pełnych stanów z początku kolejnych tur: tura, takt, położenie.
+     */
+    private final List<long[]> index = new ArrayList<>();
+
+    /**
+     * Tura gracza 1 w ostatnio zapisanym stanie.
+     */
+    private boolean player1Turn;
+
+    /**
+     * Określa, czy zapis został zamknięty.
+     */
+    private boolean closed;
+
+    /**
+     * Tworzy plik zapisu i zapisuje nagłówek, układ przeszkód i klatkę kluczową tury 0.
+     *
+     * @param file                Plik zapisu (istniejący jest nadpisywany).
+     * @param gameId              Identyfikator gry.
+     * @param serverAuthoritative Określa, czy grę prowadzi serwer (zapis poleceń zamiast stanów).
+     * @param initial             Stan początkowy gry.
+     * @throws IOException jeśli nie udało się utworzyć pliku.
+     */
+    MatchRecorder(Path file, int gameId, boolean serverAuthoritative, GameState initial) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, INITIAL_CAPACITY);
+        buffer.putInt(MAGIC);
+        buffer.put(VERSION);
+        buffer.put(serverAuthoritative ? FLAG_SERVER_AUTHORITATIVE : 0);
+        buffer.putShort((short) 0);
+        buffer.putInt(gameId);
+        buffer.putLong(System.currentTimeMillis());
+        buffer.putLong(0); // Położenie indeksu - uzupełniane przy zamknięciu
+        buffer.position(HEADER_SIZE);
+
+        List<Obstacle> obstacles = initial.getObstacles();
+        ByteBuffer record = begin(OBSTACLES, 2 + obstacles.size() * 8, 0);
+        record.putShort((short) obstacles.size());
+        for (Obstacle obstacle : obstacles) {
+            BinaryCodec.writeObstacle(record, obstacle);
+        }
+        player1Turn = initial.isPlayer1Turn();
+        keyframe(0, initial);
+    }
+
+    /**
+     * Zapisuje stan gry przysłany przez klienta. Stan, w którym zmieniła się tura, trafia do indeksu tur.
+     *
+     * @param seq   Numer kolejnego stanu.
+     * @param state Stan gry.
+     */
+    void recordState(int seq, GameState state) {
+        int position = buffer.position();
+        byte[] data = BinaryCodec.INSTANCE.encode(state);
+        ByteBuffer record = begin(STATE, data.length, seq);
+        if (record == null) {
+            return;
+        }
+        record.put(data);
+        if (state.isPlayer1Turn() != player1Turn) {
+            player1Turn = state.isPlayer1Turn();
+            index.add(new long[]{index.size(), seq, position});
+        }
+    }
+
+    /**
+     * Zapisuje polecenie gracza wykonane w podanym takcie (także odrzucone przez symulację -
+     * odtworzenie odrzuci je tak samo).
+     *
+     * @param tick    Numer taktu.
+     * @param command Polecenie gracza.
+     */
+    void recordInput(int tick, InputCommand command) {
+        ByteBuffer record = begin(INPUT, 5, tick);
+        if (record != null) {
+            record.put((byte) (command.isPlayer1 ? 1 : 0)).putInt(command.buttons);
+        }
+    }
+
+    /**
+     * Zapisuje stan po takcie symulacji, w którym gra się zmieniła. Pełny stan trafia do pliku
+     * tylko na początku nowej tury - pozostałe stany odtwarza symulacja.
+     *
+     * @param tick  Numer taktu.
+     * @param state Stan gry po takcie.
+     */
+    void recordTick(int tick, GameState state) {
+        if (state.isPlayer1Turn() == player1Turn) {
+            return;
+        }
+        player1Turn = state.isPlayer1Turn();
+        keyframe(tick, state);
+    }
+
+    /**
+     * Zwraca liczbę zapisanych tur.
+     *
+     * @return Liczba tur (co najmniej 1).
+     */
+    int getTurnCount() {
+        return index.size();
+    }
+
+    /**
+     * Zwraca liczbę zapisanych bajtów.
+     *
+     * @return Położenie końca dziennika.
+     */
+    int size() {
+        return buffer.position();
+    }
+
+    /**
+     * Kończy zapis bez podania ostatniego taktu.
+     *
+     * @throws IOException w przypadku błędu zapisu.
+     */
+    @Override
+    public void close() throws IOException {
+        close(0);
+    }
+
+    /**
+     * Kończy zapis: dopisuje rekord końca i indeks tur, uzupełnia nagłówek i przycina plik.
+     *
+     * @param lastTick Numer ostatniego taktu (lub stanu) meczu.
+     * @throws IOException w przypadku błędu zapisu.
+     */
+    void close(int lastTick) throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            begin(END, 0, lastTick);
+            int indexPosition = buffer.position();
+            ByteBuffer record = begin(INDEX, 4 + index.size() * INDEX_ENTRY_SIZE, lastTick);
+            if (record != null) {
+                record.putInt(index.size());
+                for (long[] entry : index) {
+                    record.putInt((int) entry[0]).putInt((int) entry[1]).putLong(entry[2]);
+                }
+                buffer.putLong(INDEX_OFFSET_POSITION, indexPosition);
+            }
+            buffer.force();
+            channel.truncate(buffer.position());
+        } finally {
+            closed = true;
+            channel.close();
+        }
+    }
+
+    /**
+     * Zapisuje klatkę kluczową i dodaje ją do indeksu tur.
+     *
+     * @param tick  Numer taktu.
+     * @param state Stan gry.
+     */
+    private void keyframe(int tick, GameState state) {
+        int position = buffer.position();
+        byte[] data = BinaryCodec.INSTANCE.encode(state);
+        ByteBuffer record = begin(KEYFRAME, 4 + data.length, tick);
+        if (record != null) {
+            record.putInt(index.size()).put(data);
+            index.add(new long[]{index.size(), tick, position});
+        }
+    }
+
+    /**
+     * Zapisuje nagłówek rekordu, zapewniając miejsce na dane.
+     *
+     * @param type   Typ rekordu.
+     * @param length Długość danych.
+     * @param tick   Numer taktu.
+     * @return Bufor ustawiony na początku danych rekordu lub null, jeśli zapis jest zamknięty.
+     */
+    private ByteBuffer begin(byte type, int length, int tick) {
+        if (closed || !ensureCapacity(RECORD_HEADER_SIZE + length)) {
+            return null;
+        }
+        buffer.put(type).putInt(length).putInt(tick)
+                .putInt((int) TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        return buffer;
+    }
+
+    /**
+     * Powiększa odwzorowany obszar, jeśli brakuje w nim miejsca.
+     *
+     * @param needed Liczba potrzebnych bajtów.
+     * @return false, jeśli nie udało się powiększyć pliku - zapis jest wtedy przerywany, a gra toczy się dalej.
+     */
+    private boolean ensureCapacity(int needed) {
+        if (buffer.remaining() >= needed) {
+            return true;
+        }
+        int position = buffer.position();
+        long capacity = Math.max(2L * buffer.capacity(), (long) position + needed);
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            buffer.position(position);
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.out.println("Match recording stopped.");
+            closed = true;
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Zapis i tak jest porzucany
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,513 @@
+package org.rewera.ptak.raczynski;
+
+import javax.swing.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Odtwarzanie meczu zapisanego przez {@link MatchRecorder}.
+ *
+ * <p>Dziennik gry prowadzonej przez serwer jest przepuszczany przez {@link GameSimulation}: polecenia
+ * są wykonywane w tych samych taktach co na serwerze, a każda klatka kluczowa jest porównywana ze stanem
+ * symulacji (rozbieżność oznaczałaby niedeterministyczną symulację). Dziennik gry prowadzonej przez
+ * klientów zawiera gotowe stany. Przejście do dowolnej tury wyszukuje binarnie jej klatkę kluczową
+ * w rzadkim indeksie tur - bez odtwarzania meczu od początku.</p>
+ *
+ * <p>Uruchomienie: {@code java -cp target/classes org.rewera.ptak.raczynski.MatchReplay plik
+ * [--turn=N] [--gui] [--speed=1.0]}. Bez {@code --gui} odtwarzanie jest bezgłowe i wypisuje
+ * podsumowanie tur.</p>
+ */
+class MatchReplay {
+
+    /**
+     * Odbiorca stanów odtwarzanego meczu.
+     */
+    interface Listener {
+
+        /**
+         * Przyjmuje kolejny stan meczu.
+         *
+         * @param timeMillis Czas stanu od początku meczu w milisekundach.
+         * @param state      Stan gry.
+         */
+        void onState(long timeMillis, GameState state);
+    }
+
+    /**
+     * Odwzorowany plik zapisu.
+     */
+    private final MappedByteBuffer data;
+
+    /**
+     * Identyfikator zapisanej gry.
+     */
+    private final int gameId;
+
+    /**
+     * Określa, czy grę prowadził serwer.
+     */
+    private final boolean serverAuthoritative;
+
+    /**
+     * Czas rozpoczęcia meczu w milisekundach epoki.
+     */
+    private final long startEpochMillis;
+
+    /**
+     * Układ przeszkód.
+     */
+    private final List<Obstacle> obstacles = new ArrayList<>();
+
+    /**
+     * Numery tur z indeksu (rosnąco).
+     */
+    private int[] turns;
+
+    /**
+     * Numery taktów początków tur.
+     */
+    private int[] turnTicks;
+
+    /**
+     * Położenia pełnych stanów z początków tur.
+     */
+    private long[] turnOffsets;
+
+    /**
+     * Określa, czy plik został poprawnie zamknięty (indeks odczytany z pliku, a nie odtworzony).
+     */
+    private final boolean complete;
+
+    /**
+     * Liczba klatek kluczowych niezgodnych ze stanem symulacji w ostatnim odtworzeniu.
+     */
+    private int divergences;
+
+    /**
+     * Otwiera plik zapisu i wczytuje indeks tur.
+     *
+     * @param file Plik zapisu.
+     * @throws IOException jeśli plik nie jest zapisem meczu.
+     */
+    MatchReplay(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (data.limit() < MatchRecorder.HEADER_SIZE || data.getInt(0) != MatchRecorder.MAGIC) {
+            throw new IOException("Not a match recording: " + file);
+        }
+        if (data.get(4) != MatchRecorder.VERSION) {
+            throw new IOException("Unsupported match recording version: " + data.get(4));
+        }
+        serverAuthoritative = (data.get(5) & MatchRecorder.FLAG_SERVER_AUTHORITATIVE) != 0;
+        gameId = data.getInt(8);
+        startEpochMillis = data.getLong(12);
+        long indexOffset = data.getLong(MatchRecorder.INDEX_OFFSET_POSITION);
+        complete = indexOffset != 0;
+        if (complete) {
+            readIndex((int) indexOffset);
+        } else {
+            rebuildIndex();
+        }
+        ByteBuffer record = payload(MatchRecorder.HEADER_SIZE);
+        int count = record.getShort();
+        for (int i = 0; i < count; i++) {
+            obstacles.add(BinaryCodec.readObstacle(record));
+        }
+    }
+
+    /**
+     * Wczytuje indeks tur zapisany przy zamknięciu pliku.
+     *
+     * @param offset Położenie rekordu indeksu.
+     * @throws IOException jeśli rekord nie jest indeksem.
+     */
+    private void readIndex(int offset) throws IOException {
+        if (data.get(offset) != MatchRecorder.INDEX) {
+            throw new IOException("Corrupt match recording index");
+        }
+        ByteBuffer record = payload(offset);
+        int count = record.getInt();
+        turns = new int[count];
+        turnTicks = new int[count];
+        turnOffsets = new long[count];
+        for (int i = 0; i < count; i++) {
+            turns[i] = record.getInt();
+            turnTicks[i] = record.getInt();
+            turnOffsets[i] = record.getLong();
+        }
+    }
+
+    /**
+     * Odtwarza indeks tur przez przejrzenie rekordów pliku, który nie został zamknięty.
+     *
+     * @throws IOException jeśli stan w rekordzie jest niepoprawny.
+     */
+    private void rebuildIndex() throws IOException {
+        List<long[]> entries = new ArrayList<>();
+        Boolean player1Turn = null;
+        for (int offset = MatchRecorder.HEADER_SIZE; (offset = next(offset)) >= 0; offset = end(offset)) {
+            byte type = data.get(offset);
+            if (type == MatchRecorder.KEYFRAME) {
+                entries.add(new long[]{entries.size(), data.getInt(offset + 5), offset});
+                player1Turn = decode(offset, 4).isPlayer1Turn();
+            } else if (type == MatchRecorder.STATE) {
+                boolean turn = decode(offset, 0).isPlayer1Turn();
+                if (player1Turn != null && turn != player1Turn) {
+                    entries.add(new long[]{entries.size(), data.getInt(offset + 5), offset});
+                }
+                player1Turn = turn;
+            }
+        }
+        turns = new int[entries.size()];
+        turnTicks = new int[entries.size()];
+        turnOffsets = new long[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            turns[i] = (int) entries.get(i)[0];
+            turnTicks[i] = (int) entries.get(i)[1];
+            turnOffsets[i] = entries.get(i)[2];
+        }
+    }
+
+    /**
+     * Zwraca identyfikator zapisanej gry.
+     *
+     * @return Identyfikator gry.
+     */
+    int getGameId() {
+        return gameId;
+    }
+
+    /**
+     * Sprawdza, czy grę prowadził serwer.
+     *
+     * @return true, jeśli zapis zawiera polecenia graczy.
+     */
+    boolean isServerAuthoritative() {
+        return serverAuthoritative;
+    }
+
+    /**
+     * Zwraca czas rozpoczęcia meczu.
+     *
+     * @return Czas w milisekundach epoki.
+     */
+    long getStartEpochMillis() {
+        return startEpochMillis;
+    }
+
+    /**
+     * Zwraca układ przeszkód.
+     *
+     * @return Przeszkody z początku meczu.
+     */
+    List<Obstacle> getObstacles() {
+        return obstacles;
+    }
+
+    /**
+     * Sprawdza, czy plik został poprawnie zamknięty.
+     *
+     * @return false, jeśli zapis urwał się (np. po awarii serwera), a indeks odtworzono z rekordów.
+     */
+    boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Zwraca liczbę tur w zapisie.
+     *
+     * @return Liczba tur.
+     */
+    int getTurnCount() {
+        return turns.length;
+    }
+
+    /**
+     * Zwraca liczbę klatek kluczowych niezgodnych ze stanem symulacji w ostatnim odtworzeniu.
+     *
+     * @return Liczba rozbieżności (0 dla deterministycznej symulacji).
+     */
+    int getDivergences() {
+        return divergences;
+    }
+
+    /**
+     * Zwraca stan z początku tury, wyszukując binarnie jej klatkę kluczową w indeksie.
+     *
+     * @param turn Numer tury (od 0).
+     * @return Stan gry.
+     * @throws IOException jeśli tury nie ma w zapisie lub rekord jest niepoprawny.
+     */
+    GameState seek(int turn) throws IOException {
+        return decodeFull((int) turnOffsets[find(turn)]);
+    }
+
+    /**
+     * Odtwarza mecz od początku podanej tury do końca.
+     *
+     * @param fromTurn Numer tury, od której zaczyna się odtwarzanie.
+     * @param listener Odbiorca kolejnych stanów (pierwszym jest stan z początku tury).
+     * @return Ostatni stan meczu.
+     * @throws IOException jeśli tury nie ma w zapisie lub rekord jest niepoprawny.
+     */
+    GameState play(int fromTurn, Listener listener) throws IOException {
+        int entry = find(fromTurn);
+        int offset = (int) turnOffsets[entry];
+        GameState state = decodeFull(offset);
+        listener.onState(timeOf(offset, turnTicks[entry]), state);
+        divergences = 0;
+        if (!serverAuthoritative) {
+            for (offset = end(offset); (offset = next(offset)) >= 0; offset = end(offset)) {
+                if (data.get(offset) == MatchRecorder.STATE) {
+                    state = decode(offset, 0);
+                    listener.onState(timeOf(offset, 0), state);
+                }
+            }
+            return state;
+        }
+
+        GameSimulation simulation = new GameSimulation(state.copy());
+        int tick = turnTicks[entry];
+        boolean inputApplied = false;
+        for (offset = end(offset); (offset = next(offset)) >= 0; offset = end(offset)) {
+            byte type = data.get(offset);
+            int recordTick = data.getInt(offset + 5);
+            if (type == MatchRecorder.INPUT) {
+                if (recordTick > tick + 1) { // Polecenia z najbliższego taktu są już wykonane - czas na jego krok
+                    tick = runTo(simulation, tick, recordTick - 1, inputApplied, listener);
+                    inputApplied = false;
+                }
+                ByteBuffer record = payload(offset);
+                inputApplied |= simulation.applyInput(record.get() != 0, record.getInt());
+            } else if (type == MatchRecorder.KEYFRAME || type == MatchRecorder.END) {
+                tick = runTo(simulation, tick, recordTick, inputApplied, listener);
+                inputApplied = false;
+                if (type == MatchRecorder.KEYFRAME && !Arrays.equals(BinaryCodec.INSTANCE.encode(simulation.snapshot()),
+                        Arrays.copyOfRange(bytes(offset), 4, data.getInt(offset + 1)))) {
+                    divergences++;
+                }
+            }
+        }
+        return simulation.snapshot();
+    }
+
+    /**
+     * Wykonuje takty symulacji do podanego włącznie, przekazując stany po taktach, w których gra się zmieniła.
+     *
+     * @param simulation   Symulacja.
+     * @param tick         Numer ostatniego wykonanego taktu.
+     * @param target       Numer taktu, do którego należy dojść.
+     * @param inputApplied Określa, czy w najbliższym takcie wykonano już polecenie gracza.
+     * @param listener     Odbiorca stanów.
+     * @return Numer ostatniego wykonanego taktu.
+     */
+    private static int runTo(GameSimulation simulation, int tick, int target, boolean inputApplied, Listener listener) {
+        while (tick < target) {
+            tick++;
+            boolean changed = simulation.step() | inputApplied;
+            inputApplied = false;
+            if (changed) {
+                listener.onState((long) tick * GameSimulation.TICK_MILLIS, simulation.snapshot());
+            }
+        }
+        return tick;
+    }
+
+    /**
+     * Wyszukuje binarnie turę w indeksie.
+     *
+     * @param turn Numer tury.
+     * @return Pozycja w indeksie.
+     * @throws IOException jeśli tury nie ma w zapisie.
+     */
+    private int find(int turn) throws IOException {
+        int entry = Arrays.binarySearch(turns, turn);
+        if (entry < 0) {
+            throw new IOException("No turn " + turn + " in recording (" + turns.length + " turns)");
+        }
+        return entry;
+    }
+
+    /**
+     * Zwraca czas rekordu od początku meczu: takt razy długość taktu w grze prowadzonej przez serwer,
+     * czas zapisu w grze prowadzonej przez klientów.
+     *
+     * @param offset Położenie rekordu.
+     * @param tick   Numer taktu rekordu.
+     * @return Czas w milisekundach.
+     */
+    private long timeOf(int offset, int tick) {
+        return serverAuthoritative ? (long) tick * GameSimulation.TICK_MILLIS : data.getInt(offset + 9);
+    }
+
+    /**
+     * Zwraca położenie kompletnego rekordu zaczynającego się w podanym miejscu.
+     *
+     * @param offset Położenie rekordu.
+     * @return To samo położenie lub -1 na końcu dziennika (także urwanego).
+     */
+    private int next(int offset) {
+        if (offset + MatchRecorder.RECORD_HEADER_SIZE > data.limit()) {
+            return -1;
+        }
+        byte type = data.get(offset);
+        int length = data.getInt(offset + 1);
+        if (type < MatchRecorder.OBSTACLES || type > MatchRecorder.END || length < 0
+                || offset + MatchRecorder.RECORD_HEADER_SIZE + length > data.limit()) {
+            return -1; // Indeks, niezapisany koniec odwzorowanego obszaru lub urwany rekord
+        }
+        return offset;
+    }
+
+    /**
+     * Zwraca położenie końca rekordu.
+     *
+     * @param offset Położenie rekordu.
+     * @return Położenie następnego rekordu.
+     */
+    private int end(int offset) {
+        return offset + MatchRecorder.RECORD_HEADER_SIZE + data.getInt(offset + 1);
+    }
+
+    /**
+     * Zwraca widok danych rekordu.
+     *
+     * @param offset Położenie rekordu.
+     * @return Bufor z danymi rekordu.
+     */
+    private ByteBuffer payload(int offset) {
+        ByteBuffer view = data.duplicate();
+        view.position(offset + MatchRecorder.RECORD_HEADER_SIZE);
+        view.limit(end(offset));
+        return view.slice();
+    }
+
+    /**
+     * Kopiuje dane rekordu.
+     *
+     * @param offset Położenie rekordu.
+     * @return Dane rekordu.
+     */
+    private byte[] bytes(int offset) {
+        ByteBuffer payload = payload(offset);
+        byte[] bytes = new byte[payload.remaining()];
+        payload.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Dekoduje pełny stan z klatki kluczowej lub rekordu stanu.
+     *
+     * @param offset Położenie rekordu.
+     * @return Stan gry.
+     * @throws IOException jeśli rekord jest niepoprawny.
+     */
+    private GameState decodeFull(int offset) throws IOException {
+        return decode(offset, data.get(offset) == MatchRecorder.KEYFRAME ? 4 : 0);
+    }
+
+    /**
+     * Dekoduje stan gry z rekordu.
+     *
+     * @param offset Położenie rekordu.
+     * @param skip   Liczba bajtów danych przed stanem.
+     * @return Stan gry.
+     * @throws IOException jeśli stan jest niepoprawny.
+     */
+    private GameState decode(int offset, int skip) throws IOException {
+        byte[] bytes = bytes(offset);
+        return BinaryCodec.INSTANCE.decode(bytes, skip, bytes.length - skip);
+    }
+
+    /**
+     * Narzędzie odtwarzania meczu.
+     *
+     * @param args Plik zapisu i opcje {@code --turn=N}, {@code --gui}, {@code --speed=x}.
+     * @throws Exception w przypadku błędu odczytu.
+     */
+    public static void main(String[] args) throws Exception {
+        Path file = null;
+        int turn = 0;
+        boolean gui = false;
+        double speed = 1.0;
+        for (String arg : args) {
+            if (arg.startsWith("--turn=")) {
+                turn = Integer.parseInt(arg.substring("--turn=".length()));
+            } else if (arg.equals("--gui")) {
+                gui = true;
+            } else if (arg.startsWith("--speed=")) {
+                speed = Double.parseDouble(arg.substring("--speed=".length()));
+            } else if (!arg.startsWith("--") && file == null) {
+                file = Paths.get(arg);
+            } else {
+                throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+        }
+        if (file == null) {
+            throw new IllegalArgumentException("Usage: MatchReplay <file> [--turn=N] [--gui] [--speed=x]");
+        }
+
+        MatchReplay replay = new MatchReplay(file);
+        System.out.println("Game " + replay.getGameId() + " (" + (replay.isServerAuthoritative() ? "server" : "client")
+                + "-authoritative), " + replay.getTurnCount() + " turns, " + replay.getObstacles().size() + " obstacles"
+                + (replay.isComplete() ? "" : ", recording was not closed"));
+        if (gui) {
+            playInWindow(replay, turn, speed);
+            return;
+        }
+        for (int i = turn; i < replay.getTurnCount(); i++) {
+            GameState state = replay.seek(i);
+            System.out.printf("turn %3d: %s to move, hp %3d / %3d%n", i, state.isPlayer1Turn() ? "player 1" : "player 2",
+                    state.getPlayer1Tank().getHp(), state.getPlayer2Tank().getHp());
+        }
+        GameState last = replay.play(turn, (time, state) -> { });
+        System.out.println("Final hp " + last.getPlayer1Tank().getHp() + " / " + last.getPlayer2Tank().getHp()
+                + ", keyframe divergences: " + replay.getDivergences());
+    }
+
+    /**
+     * Odtwarza mecz w oknie z {@link GamePanel} w tempie zapisu.
+     *
+     * @param replay Odtwarzany zapis.
+     * @param turn   Numer tury, od której zaczyna się odtwarzanie.
+     * @param speed  Mnożnik tempa odtwarzania.
+     * @throws Exception w przypadku błędu odczytu.
+     */
+    private static void playInWindow(MatchReplay replay, int turn, double speed) throws Exception {
+        GamePanel panel = new GamePanel(message -> System.out.println(message), null);
+        panel.startReplay();
+        SwingUtilities.invokeAndWait(() -> {
+            JFrame frame = new JFrame("Tanks Game - replay of game " + replay.getGameId());
+            frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+            frame.setSize(800, 600);
+            frame.add(panel);
+            frame.setVisible(true);
+        });
+        long start = System.nanoTime();
+        long[] first = {-1};
+        replay.play(turn, (time, state) -> {
+            if (first[0] < 0) {
+                first[0] = time;
+            }
+            long due = start + (long) ((time - first[0]) * 1_000_000L / speed);
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                try {
+                    Thread.sleep(wait / 1_000_000L, (int) (wait % 1_000_000L));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            SwingUtilities.invokeLater(() -> panel.showReplayState(state));
+        });
+    }
+}
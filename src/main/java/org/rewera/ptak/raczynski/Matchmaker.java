@@ -0,0 +1,315 @@
+package org.rewera.ptak.raczynski;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Przydziela graczy do gier bez globalnej blokady i bez przeglądania wszystkich instancji.
+ *
+ * <p>Gry z wolnym miejscem (lobby) czekają w nieblokującej kolejce - osobnej dla gier prowadzonych
+ * przez klienta i przez serwer. Ponieważ gra ma dwa miejsca, lobby w kolejce ma dokładnie jedno
+ * wolne miejsce, więc zdjęcie lobby z kolejki ({@code poll}) jest zajęciem tego miejsca w czasie O(1).
+ * Lobby, które w międzyczasie opustoszało, jest po prostu pomijane. Gdy z pełnej gry wyjdzie gracz,
+ * gra wraca do kolejki.</p>
+ *
+ * <p>Żywe instancje są przechowywane we współbieżnym rejestrze według identyfikatora.
+ * Migawki ({@link SnapshotStore}) obejmują tylko gry, w których obaj gracze mają sesje ({@link SessionRegistry}).
+ * Gry odtworzone po restarcie serwera nigdy nie trafiają do kolejki - czekają przez okres karencji
+ * na powrót właścicieli żetonów, a potem są zwalniane.</p>
+ */
+class Matchmaker {
+
+    /**
+     * Rejestr żywych instancji gier.
+     */
+    private final Map<Integer, GameInstance> instances = new ConcurrentHashMap<>();
+
+    /**
+     * Lobby gier prowadzonych przez klientów.
+     */
+    private final Queue<GameInstance> clientLobbies = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Lobby gier prowadzonych przez serwer.
+     */
+    private final Queue<GameInstance> serverLobbies = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Identyfikator dla kolejnej gry, która zostanie stworzona.
+     */
+    private final AtomicInteger nextGameId = new AtomicInteger();
+
+    /**
+     * Harmonogram taktów dla gier prowadzonych przez serwer.
+     */
+    private final TickScheduler ticker;
+
+    /**
+     * Metryki serwera (liczba gier i rejestracja metryk gier w JMX).
+     */
+    private final ServerMetrics metrics;
+
+    /**
+     * Katalog zapisów meczów (null, jeśli mecze nie są zapisywane).
+     */
+    private volatile Path recordDirectory;
+
+    /**
+     * Rejestr sesji graczy (null, jeśli miejsca rozłączonych graczy nie są przetrzymywane).
+     */
+    private volatile SessionRegistry sessions;
+
+    /**
+     * Tworzy matchmaker z własnymi, niezarejestrowanymi metrykami.
+     *
+     * @param ticker Harmonogram taktów dla gier prowadzonych przez serwer.
+     */
+    Matchmaker(TickScheduler ticker) {
+        this(ticker, new ServerMetrics());
+    }
+
+    /**
+     * Tworzy matchmaker.
+     *
+     * @param ticker  Harmonogram taktów dla gier prowadzonych przez serwer.
+     * @param metrics Metryki serwera.
+     */
+    Matchmaker(TickScheduler ticker, ServerMetrics metrics) {
+        this.ticker = ticker;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Zwraca metryki serwera.
+     *
+     * @return Metryki serwera.
+     */
+    ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Zwraca katalog zapisów meczów.
+     *
+     * @return Katalog lub null, jeśli mecze nie są zapisywane.
+     */
+    Path getRecordDirectory() {
+        return recordDirectory;
+    }
+
+    /**
+     * Ustawia katalog, w którym nowe gry zapisują przebieg meczu ({@link MatchRecorder}).
+     *
+     * @param recordDirectory Istniejący katalog lub null, aby wyłączyć zapis.
+     */
+    void setRecordDirectory(Path recordDirectory) {
+        this.recordDirectory = recordDirectory;
+    }
+
+    /**
+     * Zwraca rejestr sesji graczy.
+     *
+     * @return Rejestr lub null, jeśli sesje są wyłączone.
+     */
+    SessionRegistry getSessions() {
+        return sessions;
+    }
+
+    /**
+     * Ustawia rejestr sesji, z którego nowe gry wydają żetony wznowienia graczom.
+     *
+     * @param sessions Rejestr sesji lub null, aby wyłączyć przetrzymywanie miejsc.
+     */
+    void setSessions(SessionRegistry sessions) {
+        this.sessions = sessions;
+    }
+
+    /**
+     * Przypisuje klienta do gry z wolnym miejscem lub do nowej gry.
+     * Klienci wysyłający polecenia trafiają tylko do gier prowadzonych przez serwer i odwrotnie.
+     *
+     * @param client Połączenie klienta.
+     * @return Gra, do której dołączył klient.
+     */
+    GameInstance assign(PlayerConnection client) {
+        boolean serverAuthoritative = client.sendsInput();
+        Queue<GameInstance> lobbies = serverAuthoritative ? serverLobbies : clientLobbies;
+        GameInstance lobby;
+        while ((lobby = lobbies.poll()) != null) {
+            if (lobby.tryJoin(client)) {
+                return lobby;
+            }
+            // Lobby opustoszało lub zostało zajęte w inny sposób - szukamy dalej
+        }
+
+        // Jeśli nie ma dostępnej gry, utwórz nową
+        GameInstance instance = new GameInstance(nextGameId.getAndIncrement(),
+                serverAuthoritative ? ticker : null, this);
+        instances.put(instance.getGameId(), instance);
+        instance.open(client, lobbies);
+        // Rejestracja w JMX po wystawieniu lobby - nie wydłuża okna, w którym równoczesny gracz go nie widzi
+        metrics.gameOpened(instance.getGameId(), instance.getMetrics());
+        return instance;
+    }
+
+    /**
+     * Odtwarza gry z migawek jako gry tylko do wznowienia: miejsca są przetrzymywane dla graczy
+     * o zapisanych żetonach sesji, a gry nie trafiają do kolejek lobby. Bez rejestru sesji nikt nie mógłby
+     * do nich wrócić, więc nie są odtwarzane. Kolejne nowe gry dostają identyfikatory większe od odtworzonych.
+     *
+     * @param snapshots Migawki gier.
+     */
+    void restore(List<SnapshotStore.Snapshot> snapshots) {
+        for (SnapshotStore.Snapshot snapshot : snapshots) {
+            nextGameId.accumulateAndGet(snapshot.gameId + 1, Math::max);
+            if (sessions == null || snapshot.player1Token == 0 || snapshot.player2Token == 0) {
+                continue;
+            }
+            boolean serverAuthoritative = snapshot.serverAuthoritative && ticker != null;
+            GameInstance instance = new GameInstance(snapshot.gameId, serverAuthoritative ? ticker : null, this,
+                    snapshot.state, snapshot.version);
+            instances.put(instance.getGameId(), instance);
+            metrics.gameOpened(instance.getGameId(), instance.getMetrics());
+            instance.restoreSessions(snapshot.player1Token, snapshot.player2Token);
+        }
+    }
+
+    /**
+     * Wykonuje rundę migawek żywych gier, w których obaj gracze mają sesje (tylko do nich można wrócić
+     * po restarcie). Stan gier jest czytany bez blokady, więc runda nie wstrzymuje taktów; zapisywane są
+     * tylko gry zmienione od poprzedniej rundy.
+     *
+     * @param store Magazyn migawek.
+     * @return Liczba zapisanych rekordów.
+     * @throws IOException w przypadku błędu zapisu.
+     */
+    int snapshot(SnapshotStore store) throws IOException {
+        Set<Integer> live = new HashSet<>();
+        for (GameInstance instance : instances.values()) {
+            long player1Token = instance.getSessionToken(true);
+            long player2Token = instance.getSessionToken(false);
+            if (player1Token == 0 || player2Token == 0) {
+                continue;
+            }
+            live.add(instance.getGameId());
+            long version = instance.getVersion(); // Przed stanem - stan jest co najmniej tak nowy jak wersja
+            store.stage(instance.getGameId(), instance.isServerAuthoritative(), version, instance.getPublishedState(),
+                    player1Token, player2Token);
+        }
+        return store.flush(live);
+    }
+
+    /**
+     * Zwraca do kolejki grę, w której zwolniło się miejsce.
+     * Wywoływane przez instancję gry po wyjściu gracza z pełnej gry.
+     *
+     * @param instance Gra z jednym wolnym miejscem.
+     */
+    void slotFreed(GameInstance instance) {
+        (instance.isServerAuthoritative() ? serverLobbies : clientLobbies).offer(instance);
+    }
+
+    /**
+     * Usuwa grę z rejestru. Jeśli gra wciąż czeka w kolejce, zostanie pominięta przy zdjęciu z kolejki.
+     *
+     * @param gameId Identyfikator gry.
+     */
+    void remove(int gameId) {
+        GameInstance instance = instances.remove(gameId);
+        if (instance != null) {
+            metrics.gameClosed(gameId, instance.getMetrics());
+        }
+    }
+
+    /**
+     * Zwraca grę o podanym identyfikatorze.
+     *
+     * @param gameId Identyfikator gry.
+     * @return Gra lub null, jeśli nie istnieje.
+     */
+    GameInstance get(int gameId) {
+        return instances.get(gameId);
+    }
+
+    /**
+     * Wyszukuje grę do oglądania.
+     *
+     * @param gameId Identyfikator gry lub {@link WireProtocol#ANY_GAME} - wtedy wybierana jest
+     *               pełna (trwająca) gra, a jeśli takiej nie ma, dowolna żywa gra.
+     * @return Gra lub null, jeśli nie istnieje.
+     */
+    GameInstance find(int gameId) {
+        if (gameId != WireProtocol.ANY_GAME) {
+            return instances.get(gameId);
+        }
+        GameInstance any = null;
+        for (GameInstance instance : instances.values()) {
+            if (instance.isFull()) {
+                return instance;
+            }
+            any = instance;
+        }
+        return any;
+    }
+
+    /**
+     * Przerywa gry, które czekają na drugiego gracza. Używane przez serwer, który przestał przyjmować
+     * połączenia - przeciwnik do takiej gry już nie dołączy.
+     *
+     * @param message Komunikat dla graczy.
+     * @return Liczba przerwanych gier.
+     */
+    int terminateWaiting(String message) {
+        int terminated = 0;
+        for (GameInstance instance : instances.values()) {
+            if (!instance.isFull()) {
+                instance.terminate(message);
+                terminated++;
+            }
+        }
+        return terminated;
+    }
+
+    /**
+     * Przerywa wszystkie żywe gry.
+     *
+     * @param message Komunikat dla graczy.
+     * @return Liczba przerwanych gier.
+     */
+    int terminateAll(String message) {
+        int terminated = 0;
+        for (GameInstance instance : instances.values()) {
+            instance.terminate(message);
+            terminated++;
+        }
+        return terminated;
+    }
+
+    /**
+     * Zwraca liczbę żywych gier.
+     *
+     * @return Liczba gier.
+     */
+    int size() {
+        return instances.size();
+    }
+
+    /**
+     * Zwraca widok żywych gier.
+     *
+     * @return Niemodyfikowalny widok gier.
+     */
+    Collection<GameInstance> getInstances() {
+        return Collections.unmodifiableCollection(instances.values());
+    }
+}
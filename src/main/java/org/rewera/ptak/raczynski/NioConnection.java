@@ -0,0 +1,712 @@
+package org.rewera.ptak.raczynski;
+
+import java.io.IOException;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Połączenie klienta obsługiwane przez pętlę zdarzeń NIO.
+ * Odczyt i zapis odbywają się wyłącznie w wątku pętli; inne wątki jedynie
+ * dodają gotowe ramki do kolejki wyjściowej.
+ *
+ * <p>Kolejka wyjściowa to ta sama ograniczona kolejka {@link OutboundQueue} co w silniku wątkowym:
+ * czeka w niej co najwyżej jeden stan, zastępowany przez nowszy, a klient, którego kolejka się
+ * przepełni albo którego najstarszy niewysłany stan przekroczy dopuszczalne opóźnienie, jest rozłączany.</p>
+ *
+ * <p>Stan z rozesłania trafia do kolejki jako {@link SharedFrame} zakodowana raz dla wszystkich
+ * odbiorców; połączenie pisze z własnego widoku wspólnego bufora i zwalnia ramkę po zapisaniu.</p>
+ *
+ * <p>Stany i polecenia ponad limit wiadomości ({@link TokenBucket}) są pomijane, a ramka większa niż
+ * dopuszczalny rozmiar kończy połączenie, zanim bufor odczytu zostanie dla niej powiększony.</p>
+ */
+class NioConnection implements PlayerConnection, NioEventLoop.Handler {
+
+    /**
+     * Początkowy rozmiar bufora odczytu.
+     */
+    private static final int INITIAL_READ_BUFFER = 4096;
+
+    /**
+     * Silnik NIO, do którego należy połączenie.
+     */
+    private final NioGameServer server;
+
+    /**
+     * Pętla zdarzeń obsługująca połączenie.
+     */
+    private final NioEventLoop loop;
+
+    /**
+     * Kanał gniazda klienta.
+     */
+    private final SocketChannel channel;
+
+    /**
+     * Ramka pobrana z kolejki do wysłania.
+     */
+    private static final class Outgoing {
+
+        /**
+         * Bajty ramki w trybie do odczytu.
+         */
+        final ByteBuffer buffer;
+
+        /**
+         * Ramka współdzielona ze stanem gry, do której należą bajty (null dla innych ramek).
+         */
+        final SharedFrame shared;
+
+        /**
+         * Tworzy wpis.
+         *
+         * @param buffer Bajty ramki w trybie do odczytu.
+         * @param shared Ramka współdzielona lub null.
+         */
+        Outgoing(ByteBuffer buffer, SharedFrame shared) {
+            this.buffer = buffer;
+            this.shared = shared;
+        }
+
+        /**
+         * Zwalnia ramkę współdzieloną po zapisaniu lub porzuceniu.
+         */
+        void release() {
+            if (shared != null) {
+                shared.release();
+            }
+        }
+    }
+
+    /**
+     * Ramki oczekujące na wysłanie: stany gry jako {@link SharedFrame}, pozostałe jako {@link ByteBuffer}.
+     */
+    private final OutboundQueue outbox;
+
+    /**
+     * Dopuszczalne opóźnienie klienta w nanosekundach (0 oznacza brak limitu).
+     */
+    private final long maxLagNanos;
+
+    /**
+     * Ramka pobrana z kolejki, której zapis jeszcze trwa (używana tylko w wątku pętli).
+     */
+    private Outgoing current;
+
+    /**
+     * Określa, czy klient został rozłączony, bo nie nadążał z odbiorem.
+     */
+    private volatile boolean disconnectedForLag;
+
+    /**
+     * Określa, czy opróżnianie kolejki wyjściowej zostało już zlecone pętli.
+     */
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    /**
+     * Klucz selektora połączenia.
+     */
+    private SelectionKey key;
+
+    /**
+     * Bufor odczytu (w trybie do zapisu między wywołaniami).
+     */
+    private ByteBuffer readBuffer = ByteBuffer.allocate(INITIAL_READ_BUFFER);
+
+    /**
+     * Kodek stanu gry wynegocjowany w powitaniu (null przed powitaniem).
+     */
+    private GameStateCodec codec;
+
+    /**
+     * Flagi funkcji przyjęte w powitaniu.
+     */
+    private byte flags;
+
+    /**
+     * Replikacja różnicowa stanu gry (null, jeśli klient jej nie żądał).
+     * Przy wznowieniu sesji przejmowana od poprzedniego połączenia gracza.
+     */
+    private volatile StateReplicator replicator;
+
+    /**
+     * Określa, czy klient potrafi wznowić sesję ({@link WireProtocol#FLAG_RESUME} w powitaniu).
+     */
+    private boolean resumable;
+
+    /**
+     * Określa, czy klient przysłał już żądanie wznowienia sesji.
+     */
+    private boolean resumeRequested;
+
+    /**
+     * Instancja gry, do której klient jest podłączony.
+     */
+    private volatile GameInstance gameInstance;
+
+    /**
+     * Określa, czy klient jest graczem 1.
+     */
+    private volatile boolean isPlayer1;
+
+    /**
+     * Określa, czy połączenie zostało zamknięte.
+     */
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    /**
+     * Metryki serwera, w których liczone jest połączenie (null przed powitaniem).
+     */
+    private volatile ServerMetrics metrics;
+
+    /**
+     * Określa, czy widz wybrał już grę do oglądania.
+     */
+    private boolean watchRequested;
+
+    /**
+     * Powód rozłączenia - domyślnie błąd wejścia-wyjścia.
+     */
+    private volatile DisconnectReason disconnectReason = DisconnectReason.IO_ERROR;
+
+    /**
+     * Limit stanów i poleceń od klienta (null - bez limitu).
+     */
+    private final TokenBucket inboundLimit;
+
+    /**
+     * Największy rozmiar ramki od klienta.
+     */
+    private final int maxFrameBytes;
+
+    /**
+     * Tworzy połączenie.
+     *
+     * @param server  Silnik NIO.
+     * @param loop    Pętla zdarzeń obsługująca połączenie.
+     * @param channel Kanał gniazda klienta w trybie nieblokującym, z zajętym miejscem w limicie połączeń.
+     */
+    NioConnection(NioGameServer server, NioEventLoop loop, SocketChannel channel) {
+        this.server = server;
+        this.loop = loop;
+        this.channel = channel;
+        this.inboundLimit = server.getConfig().newInboundLimit();
+        this.maxFrameBytes = server.getConfig().getMaxFrameBytes();
+        this.outbox = new OutboundQueue(server.getConfig().getOutboundCapacity());
+        this.maxLagNanos = TimeUnit.MILLISECONDS.toNanos(server.getConfig().getMaxLagMillis());
+    }
+
+    /**
+     * Rejestruje kanał w selektorze pętli. Wywoływane w wątku pętli.
+     */
+    void register() {
+        try {
+            key = loop.register(channel, SelectionKey.OP_READ, this);
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    @Override
+    public void handle(SelectionKey key) throws IOException {
+        try {
+            if (key.isReadable()) {
+                read();
+            }
+            if (key.isValid() && key.isWritable()) {
+                flush();
+            }
+        } catch (SocketException e) {
+            throw e;
+        } catch (WireProtocol.FrameTooLargeException e) {
+            disconnectReason = DisconnectReason.FRAME_TOO_LARGE;
+            throw e;
+        } catch (IOException e) {
+            disconnectReason = DisconnectReason.PROTOCOL_ERROR; // Niepoprawne powitanie lub ramka
+            throw e;
+        }
+    }
+
+    /**
+     * Odczytuje dostępne bajty i przetwarza kompletne ramki.
+     *
+     * @throws IOException w przypadku błędu kanału lub niepoprawnych danych.
+     */
+    private void read() throws IOException {
+        int read = channel.read(readBuffer);
+        if (read < 0) {
+            disconnectReason = DisconnectReason.CLIENT_CLOSED;
+            close();
+            return;
+        }
+        readBuffer.flip();
+        try {
+            if (codec == null && !readHello()) {
+                return;
+            }
+            readFrames();
+        } finally {
+            if (key.isValid()) {
+                readBuffer.compact();
+            }
+        }
+    }
+
+    /**
+     * Przetwarza powitanie klienta lub przekazuje starego klienta do obsługi blokującej.
+     *
+     * @return true, jeśli powitanie zostało przetworzone i można czytać ramki.
+     * @throws IOException jeśli powitanie jest niepoprawne.
+     */
+    private boolean readHello() throws IOException {
+        if (readBuffer.remaining() >= 2
+                && (readBuffer.getShort(readBuffer.position()) & 0xFFFF) == WireProtocol.LEGACY_MAGIC) {
+            handOffLegacy();
+            return false;
+        }
+        if (readBuffer.remaining() < WireProtocol.HELLO_SIZE) {
+            return false;
+        }
+        if (readBuffer.getInt() != WireProtocol.MAGIC || readBuffer.get() != WireProtocol.VERSION) {
+            throw new IOException("Invalid hello");
+        }
+        codec = GameStateCodec.negotiate(readBuffer.get());
+        flags = WireProtocol.acceptedFlags(readBuffer.get());
+        // Flaga wznowienia wraca w powitaniu tylko wtedy, gdy sesja rzeczywiście została wznowiona
+        resumable = (flags & WireProtocol.FLAG_RESUME) != 0;
+        flags &= ~WireProtocol.FLAG_RESUME;
+        if ((flags & WireProtocol.FLAG_DELTA) != 0) {
+            replicator = new StateReplicator(codec);
+        }
+        System.out.println("New client connected");
+        metrics = server.getGameServer().getMetrics();
+        metrics.connectionOpened();
+        if (!isSpectator() && !resumable) {
+            // Widz wybiera grę ramką FRAME_WATCH, a klient wznawiający sesję - ramką FRAME_RESUME
+            server.getGameServer().assignToGame(this);
+        }
+        return true;
+    }
+
+    /**
+     * Przetwarza wszystkie kompletne ramki z bufora odczytu.
+     *
+     * @throws IOException jeśli ramka ma niepoprawny rozmiar lub treść.
+     */
+    private void readFrames() throws IOException {
+        while (readBuffer.remaining() >= WireProtocol.FRAME_HEADER_SIZE) {
+            int length = readBuffer.getInt(readBuffer.position());
+            // Przed powiększeniem bufora - zbyt duża ramka nie zajmuje pamięci serwera
+            WireProtocol.checkFrameLength(length, maxFrameBytes);
+            if (readBuffer.remaining() < WireProtocol.FRAME_HEADER_SIZE + length) {
+                ensureCapacity(WireProtocol.FRAME_HEADER_SIZE + length);
+                return;
+            }
+            readBuffer.getInt();
+            byte type = readBuffer.get();
+            int payloadOffset = readBuffer.arrayOffset() + readBuffer.position();
+            readBuffer.position(readBuffer.position() + length - 1);
+            handleFrame(type, readBuffer.array(), payloadOffset, length - 1);
+        }
+    }
+
+    /**
+     * Obsługuje pojedynczą ramkę od klienta.
+     *
+     * @param type   Typ ramki.
+     * @param data   Bufor z danymi.
+     * @param offset Początek danych.
+     * @param length Długość danych.
+     * @throws IOException jeśli dane są niepoprawne.
+     */
+    private void handleFrame(byte type, byte[] data, int offset, int length) throws IOException {
+        if (isSpectator()) {
+            if (type == WireProtocol.FRAME_WATCH && !watchRequested) {
+                watchRequested = true;
+                server.getGameServer().watchGame(this, WireProtocol.readGameId(data, offset, length));
+            }
+            return; // Pozostałe ramki widza są pomijane
+        }
+        if (resumable && !resumeRequested) {
+            if (type == WireProtocol.FRAME_RESUME) {
+                resumeRequested = true;
+                WireProtocol.Resume resume = WireProtocol.readResume(data, offset, length);
+                server.getGameServer().resumeSession(this, resume.token, resume.lastSeq);
+            }
+            return; // Przed żądaniem wznowienia klient nie ma miejsca w grze
+        }
+        if (type == WireProtocol.FRAME_STATE && gameInstance != null) {
+            if (admit()) {
+                gameInstance.updateGameState(codec.decode(data, offset, length));
+            }
+        } else if (type == WireProtocol.FRAME_INPUT && gameInstance != null) {
+            if (admit()) {
+                gameInstance.applyInput(InputCommand.decode(isPlayer1, data, offset, length));
+            }
+        } else if (type == WireProtocol.FRAME_ACK && replicator != null) {
+            replicator.ack(WireProtocol.readSeq(data, offset, length));
+        }
+    }
+
+    /**
+     * Sprawdza limit wiadomości dla odebranego stanu lub polecenia. Wiadomość ponad limit jest
+     * pomijana jeszcze przed dekodowaniem i zliczana w metrykach serwera.
+     *
+     * @return true, jeśli wiadomość mieści się w limicie.
+     */
+    private boolean admit() {
+        if (inboundLimit == null || inboundLimit.tryAcquire()) {
+            return true;
+        }
+        metrics.messageThrottled();
+        return false;
+    }
+
+    /**
+     * Powiększa bufor odczytu tak, aby zmieściła się cała ramka.
+     *
+     * @param frameSize Rozmiar ramki razem z nagłówkiem.
+     */
+    private void ensureCapacity(int frameSize) {
+        if (readBuffer.capacity() < frameSize) {
+            ByteBuffer larger = ByteBuffer.allocate(frameSize);
+            larger.put(readBuffer);
+            larger.flip();
+            readBuffer = larger;
+        }
+    }
+
+    /**
+     * Wyrejestrowuje kanał z selektora i przekazuje starego klienta do obsługi blokującej.
+     * Od tej chwili połączenie należy do obsługi blokującej, więc {@link #close()} nic nie robi.
+     */
+    private void handOffLegacy() {
+        byte[] prefix = new byte[readBuffer.remaining()];
+        readBuffer.get(prefix);
+        closed.set(true);
+        key.cancel();
+        // Klucz zostanie wyrejestrowany przy najbliższym select(), dopiero potem kanał może być blokujący
+        loop.execute(() -> {
+            try {
+                channel.configureBlocking(true);
+                System.out.println("New legacy client connected");
+                server.handOffLegacyClient(channel.socket(), prefix);
+            } catch (IOException e) {
+                closeChannel();
+                server.getGameServer().getConnectionLimiter().release();
+            }
+        });
+    }
+
+    /**
+     * Dodaje ramkę do kolejki wyjściowej i zleca jej wysłanie pętli zdarzeń.
+     * Można wywoływać z dowolnego wątku. Klient, którego kolejka się przepełniła, jest rozłączany.
+     *
+     * @param frame Ramka w trybie do odczytu.
+     */
+    private void enqueue(ByteBuffer frame) {
+        if (outbox.offer(frame)) {
+            scheduleFlush();
+        } else {
+            disconnectLagging(DisconnectReason.QUEUE_FULL);
+        }
+    }
+
+    /**
+     * Dodaje stan gry do kolejki wyjściowej, zastępując niewysłany starszy stan, i zleca jego wysłanie
+     * pętli zdarzeń. Można wywoływać z dowolnego wątku. Ramka nieprzyjęta do kolejki jest zwalniana.
+     *
+     * @param frame Ramka ze stanem gry (własne odwołanie przekazywane kolejce).
+     */
+    private void enqueueState(SharedFrame frame) {
+        if (!outbox.offerState(frame)) {
+            frame.release();
+            disconnectLagging(DisconnectReason.QUEUE_FULL);
+        } else if (maxLagNanos > 0 && outbox.getLag(TimeUnit.NANOSECONDS) > maxLagNanos) {
+            disconnectLagging(DisconnectReason.LAG_LIMIT);
+        } else {
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * Zleca pętli zdarzeń opróżnienie kolejki wyjściowej, jeśli nie zostało już zlecone.
+     */
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            // Zawsze przez kolejkę zadań, aby błąd zapisu nie zamykał połączenia w trakcie rozsyłania stanu
+            loop.execute(this::flushSafely);
+        }
+    }
+
+    /**
+     * Rozłącza klienta, który nie nadąża z odbiorem. Kolejka jest zamykana od razu, więc kolejne
+     * stany nie są już do niej dodawane, a połączenie zamyka pętla zdarzeń - nie wątek rozsyłający stan.
+     *
+     * @param reason Powód rozłączenia ({@link DisconnectReason#QUEUE_FULL} lub {@link DisconnectReason#LAG_LIMIT}).
+     */
+    private void disconnectLagging(DisconnectReason reason) {
+        if (closed.get() || disconnectedForLag) {
+            return; // Kolejka zamknięta razem z połączeniem
+        }
+        disconnectedForLag = true;
+        disconnectReason = reason;
+        System.out.println("Disconnecting lagging player (" + reason.name().toLowerCase().replace('_', ' ') + ", "
+                + outbox.getLag(TimeUnit.MILLISECONDS) + " ms behind).");
+        outbox.close();
+        loop.execute(this::close);
+    }
+
+    /**
+     * Opróżnia kolejkę wyjściową, zamykając połączenie w przypadku błędu.
+     */
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    /**
+     * Zapisuje ramki z kolejki, dopóki gniazdo je przyjmuje.
+     * Jeśli bufor gniazda jest pełny, czeka na gotowość do zapisu.
+     *
+     * @throws IOException w przypadku błędu zapisu.
+     */
+    private void flush() throws IOException {
+        if (key == null || !key.isValid()) {
+            return;
+        }
+        while (true) {
+            while (current != null || (current = poll()) != null) {
+                channel.write(current.buffer);
+                if (current.buffer.hasRemaining()) {
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                    return;
+                }
+                GameInstance game = gameInstance;
+                if (current.shared != null && game != null) {
+                    game.getMetrics().recordDelivery(System.nanoTime() - outbox.getTakenStateSince());
+                }
+                current.release();
+                current = null;
+            }
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            flushScheduled.set(false);
+            if (outbox.getDepth() == 0 || !flushScheduled.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Pobiera kolejną ramkę z kolejki wyjściowej. Wywoływane w wątku pętli.
+     *
+     * @return Ramka do zapisania lub null, jeśli kolejka jest pusta.
+     */
+    private Outgoing poll() {
+        Object message = outbox.poll();
+        if (message instanceof SharedFrame) {
+            SharedFrame frame = (SharedFrame) message;
+            return new Outgoing(frame.view(), frame);
+        }
+        return message == null ? null : new Outgoing((ByteBuffer) message, null);
+    }
+
+    @Override
+    public void joined(GameInstance gameInstance, boolean isPlayer1) {
+        this.gameInstance = gameInstance;
+        this.isPlayer1 = isPlayer1;
+        enqueue(WireProtocol.frame(WireProtocol.FRAME_WELCOME, WireProtocol.welcome(isPlayer1, flags, codec)));
+    }
+
+    @Override
+    public void sendGameState(GameState gameState) {
+        StateReplicator replicator = this.replicator;
+        long start = System.nanoTime();
+        byte type;
+        byte[] payload;
+        if (replicator != null) {
+            WireProtocol.Frame frame = replicator.next(gameState);
+            type = frame.type;
+            payload = frame.payload;
+        } else {
+            type = WireProtocol.FRAME_STATE;
+            payload = codec.encode(gameState);
+        }
+        GameInstance game = gameInstance;
+        if (game != null) {
+            game.getMetrics().recordSerialization(System.nanoTime() - start, payload.length);
+        }
+        enqueueState(SharedFrame.frame(type, payload));
+    }
+
+    /**
+     * Wysyła stan z rozesłania. Bez replikacji różnicowej do kolejki trafia ramka zakodowana
+     * raz dla wszystkich odbiorców.
+     *
+     * @param broadcast Rozesłanie stanu gry.
+     */
+    @Override
+    public void sendBroadcast(StateBroadcast broadcast) {
+        if (replicator != null) {
+            sendGameState(broadcast.getState());
+            return;
+        }
+        enqueueState(broadcast.frame(codec).retain());
+    }
+
+    @Override
+    public void inputApplied(int seq) {
+        if ((flags & WireProtocol.FLAG_PREDICT) != 0) {
+            enqueue(WireProtocol.frame(WireProtocol.FRAME_INPUT_ACK, WireProtocol.ack(seq)));
+        }
+    }
+
+    @Override
+    public void sendMessage(String message) {
+        enqueue(WireProtocol.frame(WireProtocol.FRAME_TEXT, message.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Override
+    public boolean isPlayer1() {
+        return isPlayer1;
+    }
+
+    @Override
+    public boolean sendsInput() {
+        return (flags & WireProtocol.FLAG_INPUT) != 0;
+    }
+
+    @Override
+    public boolean isResumable() {
+        return resumable;
+    }
+
+    @Override
+    public void sessionIssued(long token) {
+        enqueue(WireProtocol.frame(WireProtocol.FRAME_SESSION, WireProtocol.session(token)));
+    }
+
+    @Override
+    public StateReplicator getReplicator() {
+        return replicator;
+    }
+
+    /**
+     * Przejmuje sesję po poprzednim połączeniu: powitanie potwierdzi wznowienie flagą
+     * {@link WireProtocol#FLAG_RESUME}, a replikacja kontynuuje numerację poprzedniego połączenia
+     * z bazą w ostatnim stanie, który klient odtworzył.
+     *
+     * @param previous Poprzednie połączenie gracza lub null dla gry odtworzonej z migawki.
+     * @param lastSeq  Numer ostatniego stanu odtworzonego przez klienta.
+     */
+    @Override
+    public void resumed(PlayerConnection previous, int lastSeq) {
+        flags |= WireProtocol.FLAG_RESUME;
+        StateReplicator inherited = previous != null ? previous.getReplicator() : null;
+        if (replicator != null && inherited != null) {
+            inherited.ack(lastSeq);
+            replicator = inherited;
+        }
+    }
+
+    /**
+     * Sprawdza, czy klient jest widzem.
+     *
+     * @return true, jeśli klient przyjął flagę {@link WireProtocol#FLAG_SPECTATE}.
+     */
+    boolean isSpectator() {
+        return (flags & WireProtocol.FLAG_SPECTATE) != 0;
+    }
+
+    /**
+     * Zamyka połączenie i usuwa klienta z gry. Pętla zdarzeń podejmuje jeszcze jedną próbę
+     * wysłania ramek z kolejki, a pozostałe porzuca.
+     */
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        outbox.close();
+        server.getGameServer().getConnectionLimiter().release();
+        ServerMetrics counted = metrics;
+        if (counted != null) {
+            counted.connectionClosed(disconnectReason);
+        }
+        if (loop.inEventLoop()) {
+            closeChannel();
+        } else {
+            loop.execute(this::closeChannel);
+        }
+        if (gameInstance != null) {
+            gameInstance.removeClient(this);
+        }
+    }
+
+    /**
+     * Wysyła pozostałe ramki (bez czekania) i zamyka kanał. Wywoływane w wątku pętli.
+     */
+    private void closeChannel() {
+        try {
+            while (current != null || (current = poll()) != null) {
+                channel.write(current.buffer);
+                if (current.buffer.hasRemaining()) {
+                    break; // Próba dosłania komunikatu (np. o pełnej grze) przed zamknięciem
+                }
+                current.release();
+                current = null;
+            }
+        } catch (IOException ignored) {
+            // Połączenie i tak jest zamykane
+        } finally {
+            releaseQueued(); // Także ramki pominięte po nieudanym zapisie - bufory wracają do puli
+        }
+        try {
+            if (key != null) {
+                key.cancel();
+            }
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Zwalnia ramkę w trakcie zapisu i wszystkie ramki pozostałe w zamkniętej kolejce wyjściowej.
+     */
+    private void releaseQueued() {
+        if (current != null) {
+            current.release();
+            current = null;
+        }
+        Outgoing outgoing;
+        while ((outgoing = poll()) != null) {
+            outgoing.release();
+        }
+    }
+
+    /**
+     * Zwraca kolejkę wiadomości wychodzących (jej głębokość, liczbę scalonych stanów i opóźnienie).
+     *
+     * @return Kolejka wiadomości wychodzących.
+     */
+    OutboundQueue getOutbound() {
+        return outbox;
+    }
+
+    /**
+     * Sprawdza, czy klient został rozłączony, bo nie nadążał z odbiorem.
+     *
+     * @return true, jeśli klient został rozłączony z powodu opóźnienia.
+     */
+    boolean isDisconnectedForLag() {
+        return disconnectedForLag;
+    }
+}
@@ -0,0 +1,235 @@
+package org.rewera.ptak.raczynski;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Pętla zdarzeń obsługująca gotowość kanałów jednego selektora w jednym wątku I/O.
+ * Zadania z innych wątków są przekazywane przez kolejkę i budzenie selektora, a zadania odłożone
+ * w czasie ({@link #schedule(Runnable, long)}) skracają oczekiwanie selektora do najbliższego terminu.
+ */
+class NioEventLoop implements Runnable {
+
+    /**
+     * Obiekt dołączony do klucza selektora, obsługujący zdarzenia kanału.
+     */
+    interface Handler {
+
+        /**
+         * Obsługuje gotowość kanału.
+         *
+         * @param key Klucz selektora z ustawionymi gotowymi operacjami.
+         * @throws IOException w przypadku błędu kanału.
+         */
+        void handle(SelectionKey key) throws IOException;
+
+        /**
+         * Zamyka kanał po błędzie lub przy zatrzymaniu pętli.
+         */
+        void close();
+    }
+
+    /**
+     * Zadanie odłożone w czasie.
+     */
+    private static final class Delayed {
+
+        /**
+         * Termin wykonania ({@link System#nanoTime()}).
+         */
+        final long deadline;
+
+        /**
+         * Zadanie do wykonania.
+         */
+        final Runnable task;
+
+        /**
+         * Tworzy zadanie odłożone.
+         *
+         * @param deadline Termin wykonania.
+         * @param task     Zadanie do wykonania.
+         */
+        Delayed(long deadline, Runnable task) {
+            this.deadline = deadline;
+            this.task = task;
+        }
+    }
+
+    /**
+     * Selektor tej pętli.
+     */
+    private final Selector selector;
+
+    /**
+     * Zadania zlecone z innych wątków.
+     */
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Zadania odłożone w czasie, według terminu (używane tylko w wątku pętli).
+     */
+    private final PriorityQueue<Delayed> delayed = new PriorityQueue<>(Comparator.comparingLong((Delayed d) -> d.deadline));
+
+    /**
+     * Wątek wykonujący pętlę.
+     */
+    private final Thread thread;
+
+    /**
+     * Określa, czy pętla działa.
+     */
+    private volatile boolean running = true;
+
+    /**
+     * Tworzy pętlę zdarzeń.
+     *
+     * @param name Nazwa wątku I/O.
+     * @throws IOException jeśli nie udało się otworzyć selektora.
+     */
+    NioEventLoop(String name) throws IOException {
+        this.selector = Selector.open();
+        this.thread = new Thread(this, name);
+    }
+
+    /**
+     * Uruchamia wątek pętli.
+     */
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * Sprawdza, czy wywołanie następuje z wątku tej pętli.
+     *
+     * @return true, jeśli bieżący wątek jest wątkiem pętli.
+     */
+    boolean inEventLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Zleca wykonanie zadania w wątku pętli.
+     *
+     * @param task Zadanie do wykonania.
+     */
+    void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    /**
+     * Odkłada zadanie do wykonania w wątku pętli po podanym czasie. Wolno wywoływać tylko z wątku pętli.
+     *
+     * @param task        Zadanie do wykonania.
+     * @param delayMillis Opóźnienie w milisekundach.
+     */
+    void schedule(Runnable task, long delayMillis) {
+        delayed.add(new Delayed(System.nanoTime() + delayMillis * 1_000_000, task));
+    }
+
+    /**
+     * Rejestruje kanał w selektorze tej pętli. Wolno wywoływać tylko z wątku pętli.
+     *
+     * @param channel Kanał w trybie nieblokującym.
+     * @param ops     Początkowy zbiór obserwowanych operacji.
+     * @param handler Obsługa zdarzeń kanału.
+     * @return Klucz selektora.
+     * @throws IOException jeśli rejestracja się nie powiodła.
+     */
+    SelectionKey register(SelectableChannel channel, int ops, Handler handler) throws IOException {
+        return channel.register(selector, ops, handler);
+    }
+
+    /**
+     * Zatrzymuje pętlę i zamyka wszystkie zarejestrowane kanały.
+     */
+    void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                selector.select(runDelayed());
+                runTasks();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    Handler handler = (Handler) key.attachment();
+                    try {
+                        if (key.isValid()) {
+                            handler.handle(key);
+                        }
+                    } catch (IOException | CancelledKeyException e) {
+                        handler.close();
+                    } catch (RuntimeException e) {
+                        e.printStackTrace();
+                        handler.close();
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            e.printStackTrace();
+        } finally {
+            closeAll();
+        }
+    }
+
+    /**
+     * Wykonuje zadania odłożone, których termin minął.
+     *
+     * @return Czas do najbliższego terminu w milisekundach (co najmniej 1) lub 0, jeśli nie ma zadań odłożonych.
+     */
+    private long runDelayed() {
+        long now = System.nanoTime();
+        while (!delayed.isEmpty() && delayed.peek().deadline <= now) {
+            try {
+                delayed.poll().task.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+        return delayed.isEmpty() ? 0 : Math.max(1, (delayed.peek().deadline - now) / 1_000_000);
+    }
+
+    /**
+     * Wykonuje zadania zlecone z innych wątków.
+     */
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Zamyka wszystkie kanały i selektor.
+     */
+    private void closeAll() {
+        for (SelectionKey key : selector.keys()) {
+            ((Handler) key.attachment()).close();
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
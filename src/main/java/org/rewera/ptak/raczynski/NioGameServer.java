@@ -0,0 +1,236 @@
+package org.rewera.ptak.raczynski;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Silnik serwera oparty na {@link java.nio.channels.Selector}.
+ * Stała liczba wątków I/O obsługuje akceptowanie połączeń, odczyt i zapis dla wszystkich klientów.
+ * Pierwsza pętla akceptuje połączenia i rozdziela je po kolei między wszystkie pętle;
+ * połączenia ponad limit ({@link ConnectionLimiter}) są zamykane od razu po przyjęciu. Błąd akceptowania
+ * (np. brak deskryptorów plików) wstrzymuje akceptowanie na {@link #ACCEPT_BACKOFF_MILLIS} ms, a błąd
+ * przygotowania jednego kanału zamyka tylko ten kanał - gniazdo nasłuchujące działa dalej.
+ *
+ * <p>Klienci protokołu ramkowego są obsługiwani w całości w pętlach zdarzeń. Starzy klienci,
+ * rozpoznani po nagłówku serializacji Javy, są przekazywani do blokującego {@link ClientHandler}.</p>
+ */
+class NioGameServer {
+
+    /**
+     * Przerwa w akceptowaniu po błędzie {@code accept()} w milisekundach.
+     */
+    static final long ACCEPT_BACKOFF_MILLIS = 100;
+
+    /**
+     * Serwer gry zarządzający instancjami gier.
+     */
+    private final GameServer gameServer;
+
+    /**
+     * Konfiguracja serwera.
+     */
+    private final ServerConfig config;
+
+    /**
+     * Pętle zdarzeń (po jednej na wątek I/O).
+     */
+    private final NioEventLoop[] loops;
+
+    /**
+     * Licznik rozdzielający połączenia między pętle.
+     */
+    private final AtomicInteger nextLoop = new AtomicInteger();
+
+    /**
+     * Kanał nasłuchujący.
+     */
+    private ServerSocketChannel serverChannel;
+
+    /**
+     * Obsługa akceptowania połączeń (zamyka gniazdo nasłuchujące).
+     */
+    private final Acceptor acceptor = new Acceptor();
+
+    /**
+     * Tworzy silnik NIO.
+     *
+     * @param gameServer Serwer gry zarządzający instancjami gier.
+     * @param config     Konfiguracja serwera.
+     * @throws IOException jeśli nie udało się otworzyć selektorów.
+     */
+    NioGameServer(GameServer gameServer, ServerConfig config) throws IOException {
+        this.gameServer = gameServer;
+        this.config = config;
+        this.loops = new NioEventLoop[config.getIoThreads()];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new NioEventLoop("nio-io-" + i);
+        }
+    }
+
+    /**
+     * Otwiera port i uruchamia wątki I/O.
+     *
+     * @throws IOException jeśli nie udało się otworzyć portu.
+     */
+    void start() throws IOException {
+        serverChannel = ListeningChannel.open(config, 1024);
+        serverChannel.configureBlocking(false);
+        NioEventLoop acceptLoop = loops[0];
+        acceptLoop.execute(() -> {
+            try {
+                acceptLoop.register(serverChannel, SelectionKey.OP_ACCEPT, acceptor);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+        for (NioEventLoop loop : loops) {
+            loop.start();
+        }
+    }
+
+    /**
+     * Zwraca port, na którym nasłuchuje silnik.
+     *
+     * @return Numer portu.
+     */
+    int getLocalPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Zatrzymuje wszystkie pętle zdarzeń i zamyka połączenia.
+     */
+    void stop() {
+        for (NioEventLoop loop : loops) {
+            loop.shutdown();
+        }
+    }
+
+    /**
+     * Przestaje przyjmować nowe połączenia i czeka, aż pętla zamknie gniazdo nasłuchujące - potem nowe
+     * połączenia trafiają już tylko do procesu współdzielącego port. Istniejące połączenia są dalej obsługiwane.
+     */
+    void stopAccepting() {
+        CountDownLatch closed = new CountDownLatch(1);
+        loops[0].execute(() -> {
+            acceptor.close();
+            closed.countDown();
+        });
+        try {
+            closed.await(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Zwraca konfigurację serwera.
+     *
+     * @return Konfiguracja serwera.
+     */
+    ServerConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Zwraca serwer gry.
+     *
+     * @return Serwer gry.
+     */
+    GameServer getGameServer() {
+        return gameServer;
+    }
+
+    /**
+     * Przyjmuje oczekujące połączenie z kanału nasłuchującego.
+     * Wydzielone, by testy mogły zasymulować błąd akceptowania.
+     *
+     * @return Kanał klienta lub null, jeśli nie ma oczekujących połączeń.
+     * @throws IOException w przypadku błędu akceptowania.
+     */
+    SocketChannel accept() throws IOException {
+        return serverChannel.accept();
+    }
+
+    /**
+     * Przekazuje połączenie starego klienta do blokującego {@link ClientHandler}.
+     * Kanał musi być już przełączony w tryb blokujący. Miejsce połączenia w limicie połączeń
+     * przechodzi razem z gniazdem i zwalnia je wątek klienta.
+     *
+     * @param socket Gniazdo klienta.
+     * @param prefix Bajty odczytane już przez pętlę zdarzeń.
+     */
+    void handOffLegacyClient(Socket socket, byte[] prefix) {
+        gameServer.serveInThread(socket, prefix);
+    }
+
+    /**
+     * Obsługa gotowości kanału nasłuchującego.
+     */
+    private class Acceptor implements NioEventLoop.Handler {
+
+        @Override
+        public void handle(SelectionKey key) throws IOException {
+            while (true) {
+                SocketChannel channel;
+                try {
+                    channel = accept();
+                } catch (IOException e) {
+                    if (!serverChannel.isOpen()) {
+                        throw e; // Gniazdo nasłuchujące zamknięte - pętla zamyka akceptowanie
+                    }
+                    // Np. EMFILE - oczekujące połączenie zostaje w kolejce, a ponowienie od razu kręciłoby pętlą
+                    System.out.println("Accept failed (" + e.getMessage() + "), pausing accepts for "
+                            + ACCEPT_BACKOFF_MILLIS + " ms");
+                    key.interestOps(0);
+                    loops[0].schedule(() -> {
+                        if (key.isValid()) {
+                            key.interestOps(SelectionKey.OP_ACCEPT);
+                        }
+                    }, ACCEPT_BACKOFF_MILLIS);
+                    return;
+                }
+                if (channel == null) {
+                    return;
+                }
+                if (!gameServer.getConnectionLimiter().tryAcquire()) {
+                    // Przed rejestracją w selektorze i przydziałem bufora odczytu
+                    gameServer.reject(channel.socket());
+                    continue;
+                }
+                try {
+                    channel.configureBlocking(false);
+                    channel.socket().setTcpNoDelay(true);
+                } catch (IOException e) {
+                    // Np. klient zresetował połączenie zaraz po nawiązaniu - porzucany jest tylko ten kanał
+                    System.out.println("Dropping accepted connection: " + e);
+                    gameServer.getConnectionLimiter().release();
+                    try {
+                        channel.close();
+                    } catch (IOException ignored) {
+                        // Kanał i tak jest porzucany
+                    }
+                    continue;
+                }
+                NioEventLoop loop = loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)];
+                NioConnection connection = new NioConnection(NioGameServer.this, loop, channel);
+                loop.execute(connection::register);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                serverChannel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -73,4 +73,53 @@ class Obstacle implements Serializable {
     public Rectangle getBounds() {
         return new Rectangle(x, y - height, width, height);
     }
+
+    /**
+     * Sprawdza, czy przeszkoda przecina podany prostokąt (bez tworzenia {@link Rectangle}).
+     *
+     * @param x      Lewy brzeg prostokąta.
+     * @param y      Górny brzeg prostokąta.
+     * @param width  Szerokość prostokąta.
+     * @param height Wysokość prostokąta.
+     * @return true, jeśli prostokąt przecina przeszkodę.
+     */
+    boolean intersects(int x, int y, int width, int height) {
+        return Aabb.intersects(x, y, width, height, this.x, this.y - this.height, this.width, this.height);
+    }
+
+    /**
+     * Zwraca współrzędną X lewego górnego rogu przeszkody.
+     *
+     * @return Współrzędna X.
+     */
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * Zwraca współrzędną Y przeszkody (poziom podłoża).
+     *
+     * @return Współrzędna Y.
+     */
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * Zwraca szerokość przeszkody.
+     *
+     * @return Szerokość przeszkody.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Zwraca wysokość przeszkody.
+     *
+     * @return Wysokość przeszkody.
+     */
+    public int getHeight() {
+        return height;
+    }
 }
@@ -0,0 +1,355 @@
+package org.rewera.ptak.raczynski;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Indeks przeszkód zawężający sprawdzanie kolizji do przeszkód leżących w pobliżu.
+ *
+ * <p>Bez indeksu każdy krok czołgu i każdy pocisk w każdym takcie sprawdzają wszystkie przeszkody
+ * na planszy. Indeks przechowuje przeszkody na dwa sposoby:</p>
+ * <ul>
+ *     <li>posortowane według lewego brzegu - dla czołgów jadących po podłożu
+ *     ({@link #intersectsOnGround}) wyszukiwanie binarne wskazuje przeszkody, których lewy brzeg leży
+ *     najwyżej o szerokość najszerszej przeszkody przed sprawdzanym prostokątem,</li>
+ *     <li>w jednorodnej siatce komórek - dla pocisków w powietrzu ({@link #intersectsInAir}) sprawdzane
+ *     są tylko przeszkody z komórek, które przecina prostokąt.</li>
+ * </ul>
+ *
+ * <p>Obie metody dają ten sam wynik co sprawdzenie wszystkich przeszkód przez
+ * {@link Obstacle#intersects(int, int, int, int)} i nie alokują pamięci. Przeszkody można dodawać
+ * i usuwać pojedynczo ({@link #add}, {@link #remove}), a {@link #sync(List)} zmienia tylko to, co różni
+ * nową listę przeszkód od bieżącej. Współrzędne poza siatką trafiają do skrajnych komórek, więc siatka
+ * nie musi obejmować całej planszy - wpływa to tylko na liczbę sprawdzanych przeszkód.</p>
+ *
+ * <p>Klasa nie jest bezpieczna wątkowo - wywołujący zapewnia synchronizację.</p>
+ */
+class ObstacleIndex {
+
+    /**
+     * Domyślny bok komórki siatki w pikselach.
+     */
+    static final int DEFAULT_CELL_SIZE = 32;
+
+    /**
+     * Bok komórki siatki.
+     */
+    private final int cellSize;
+
+    /**
+     * Liczba kolumn siatki.
+     */
+    private final int columns;
+
+    /**
+     * Liczba wierszy siatki.
+     */
+    private final int rows;
+
+    /**
+     * Przeszkody w kolejnych komórkach siatki (wiersz po wierszu).
+     */
+    private final Obstacle[][] cells;
+
+    /**
+     * Liczba przeszkód w kolejnych komórkach siatki.
+     */
+    private final int[] cellSizes;
+
+    /**
+     * Przeszkody posortowane według lewego brzegu.
+     */
+    private Obstacle[] byLeft = new Obstacle[8];
+
+    /**
+     * Lewe brzegi przeszkód z {@link #byLeft}.
+     */
+    private int[] lefts = new int[8];
+
+    /**
+     * Liczba przeszkód.
+     */
+    private int size;
+
+    /**
+     * Szerokość najszerszej przeszkody (po usunięciu przeszkody może być większa niż potrzeba).
+     */
+    private int maxWidth;
+
+    /**
+     * Przeszkody w kolejności dodania.
+     */
+    private final List<Obstacle> obstacles = new ArrayList<>();
+
+    /**
+     * Tworzy indeks planszy gry (800 x 600 pikseli) z przeszkodami z listy.
+     *
+     * @param obstacles Przeszkody.
+     */
+    ObstacleIndex(List<Obstacle> obstacles) {
+        this(800, 600, DEFAULT_CELL_SIZE);
+        for (int i = 0; i < obstacles.size(); i++) {
+            add(obstacles.get(i));
+        }
+    }
+
+    /**
+     * Tworzy pusty indeks.
+     *
+     * @param width    Szerokość obszaru objętego siatką.
+     * @param height   Wysokość obszaru objętego siatką.
+     * @param cellSize Bok komórki siatki.
+     */
+    ObstacleIndex(int width, int height, int cellSize) {
+        if (width <= 0 || height <= 0 || cellSize <= 0) {
+            throw new IllegalArgumentException("Grid dimensions must be positive: " + width + "x" + height + "/" + cellSize);
+        }
+        this.cellSize = cellSize;
+        this.columns = (width + cellSize - 1) / cellSize;
+        this.rows = (height + cellSize - 1) / cellSize;
+        this.cells = new Obstacle[columns * rows][];
+        this.cellSizes = new int[columns * rows];
+    }
+
+    /**
+     * Zwraca liczbę przeszkód w indeksie.
+     *
+     * @return Liczba przeszkód.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Dodaje przeszkodę.
+     *
+     * @param obstacle Przeszkoda.
+     */
+    void add(Obstacle obstacle) {
+        obstacles.add(obstacle);
+        insert(obstacle);
+    }
+
+    /**
+     * Usuwa przeszkodę (ten sam obiekt, który został dodany).
+     *
+     * @param obstacle Przeszkoda.
+     * @return true, jeśli przeszkoda była w indeksie.
+     */
+    boolean remove(Obstacle obstacle) {
+        if (!obstacles.remove(obstacle)) { // Obstacle nie nadpisuje equals - porównanie tożsamości
+            return false;
+        }
+        delete(obstacle);
+        return true;
+    }
+
+    /**
+     * Dostosowuje indeks do nowej listy przeszkód, np. z kolejnego stanu od serwera. Przeszkody
+     * o tych samych granicach na tych samych pozycjach listy są zachowywane, więc przy niezmienionej
+     * planszy indeks nie jest przebudowywany.
+     *
+     * @param obstacles Nowe przeszkody.
+     * @return true, jeśli indeks się zmienił.
+     */
+    boolean sync(List<Obstacle> obstacles) {
+        boolean changed = false;
+        int common = Math.min(this.obstacles.size(), obstacles.size());
+        for (int i = 0; i < common; i++) {
+            Obstacle before = this.obstacles.get(i);
+            Obstacle after = obstacles.get(i);
+            if (!sameBounds(before, after)) {
+                delete(before);
+                insert(after);
+                this.obstacles.set(i, after);
+                changed = true;
+            }
+        }
+        while (this.obstacles.size() > common) {
+            delete(this.obstacles.remove(this.obstacles.size() - 1));
+            changed = true;
+        }
+        for (int i = common; i < obstacles.size(); i++) {
+            add(obstacles.get(i));
+            changed = true;
+        }
+        return changed;
+    }
+
+    /**
+     * Dodaje przeszkodę do listy posortowanej i do siatki.
+     *
+     * @param obstacle Przeszkoda.
+     */
+    private void insert(Obstacle obstacle) {
+        // Wstawienie z zachowaniem kolejności lewych brzegów
+        if (size == byLeft.length) {
+            byLeft = Arrays.copyOf(byLeft, size * 2);
+            lefts = Arrays.copyOf(lefts, size * 2);
+        }
+        int position = upperBound(obstacle.getX());
+        System.arraycopy(byLeft, position, byLeft, position + 1, size - position);
+        System.arraycopy(lefts, position, lefts, position + 1, size - position);
+        byLeft[position] = obstacle;
+        lefts[position] = obstacle.getX();
+        size++;
+        maxWidth = Math.max(maxWidth, obstacle.getWidth());
+
+        int top = obstacle.getY() - obstacle.getHeight();
+        for (int row = row(top); row <= row(top + obstacle.getHeight() - 1); row++) {
+            for (int column = column(obstacle.getX()); column <= column(obstacle.getX() + obstacle.getWidth() - 1); column++) {
+                int cell = row * columns + column;
+                Obstacle[] items = cells[cell];
+                if (items == null) {
+                    items = cells[cell] = new Obstacle[4];
+                } else if (cellSizes[cell] == items.length) {
+                    items = cells[cell] = Arrays.copyOf(items, items.length * 2);
+                }
+                items[cellSizes[cell]++] = obstacle;
+            }
+        }
+    }
+
+    /**
+     * Usuwa przeszkodę z listy posortowanej i z siatki.
+     *
+     * @param obstacle Przeszkoda.
+     */
+    private void delete(Obstacle obstacle) {
+        for (int i = lowerBound(obstacle.getX()); i < size; i++) {
+            if (byLeft[i] == obstacle) {
+                System.arraycopy(byLeft, i + 1, byLeft, i, size - i - 1);
+                System.arraycopy(lefts, i + 1, lefts, i, size - i - 1);
+                byLeft[--size] = null;
+                break;
+            }
+        }
+
+        int top = obstacle.getY() - obstacle.getHeight();
+        for (int row = row(top); row <= row(top + obstacle.getHeight() - 1); row++) {
+            for (int column = column(obstacle.getX()); column <= column(obstacle.getX() + obstacle.getWidth() - 1); column++) {
+                int cell = row * columns + column;
+                Obstacle[] items = cells[cell];
+                for (int i = 0; i < cellSizes[cell]; i++) {
+                    if (items[i] == obstacle) {
+                        items[i] = items[--cellSizes[cell]];
+                        items[cellSizes[cell]] = null;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Sprawdza, czy prostokąt przecina którąś przeszkodę, korzystając z przeszkód posortowanych
+     * według lewego brzegu. Przeznaczone dla czołgów poruszających się wzdłuż podłoża.
+     *
+     * @param x      Lewy brzeg prostokąta.
+     * @param y      Górny brzeg prostokąta.
+     * @param width  Szerokość prostokąta.
+     * @param height Wysokość prostokąta.
+     * @return true, jeśli prostokąt przecina przeszkodę.
+     */
+    boolean intersectsOnGround(int x, int y, int width, int height) {
+        // Przeszkoda przecina prostokąt tylko wtedy, gdy x - maxWidth < lewy brzeg < x + width
+        for (int i = lowerBound(x + width) - 1; i >= 0 && lefts[i] > x - maxWidth; i--) {
+            if (byLeft[i].intersects(x, y, width, height)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sprawdza, czy prostokąt przecina którąś przeszkodę, korzystając z siatki komórek.
+     * Przeznaczone dla pocisków w powietrzu.
+     *
+     * @param x      Lewy brzeg prostokąta.
+     * @param y      Górny brzeg prostokąta.
+     * @param width  Szerokość prostokąta.
+     * @param height Wysokość prostokąta.
+     * @return true, jeśli prostokąt przecina przeszkodę.
+     */
+    boolean intersectsInAir(int x, int y, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            return false;
+        }
+        int lastRow = row(y + height - 1);
+        int lastColumn = column(x + width - 1);
+        for (int row = row(y); row <= lastRow; row++) {
+            for (int column = column(x); column <= lastColumn; column++) {
+                int cell = row * columns + column;
+                Obstacle[] items = cells[cell];
+                for (int i = 0; i < cellSizes[cell]; i++) {
+                    if (items[i].intersects(x, y, width, height)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Zwraca pozycję pierwszej przeszkody o lewym brzegu nie mniejszym niż podany.
+     *
+     * @param left Lewy brzeg.
+     * @return Pozycja w {@link #byLeft}.
+     */
+    private int lowerBound(int left) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (lefts[middle] < left) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Zwraca pozycję pierwszej przeszkody o lewym brzegu większym niż podany.
+     *
+     * @param left Lewy brzeg.
+     * @return Pozycja w {@link #byLeft}.
+     */
+    private int upperBound(int left) {
+        return left == Integer.MAX_VALUE ? size : lowerBound(left + 1);
+    }
+
+    /**
+     * Zwraca kolumnę siatki dla współrzędnej X (skrajną dla współrzędnych poza siatką).
+     *
+     * @param x Współrzędna X.
+     * @return Kolumna.
+     */
+    private int column(int x) {
+        return Math.max(0, Math.min(columns - 1, Math.floorDiv(x, cellSize)));
+    }
+
+    /**
+     * Zwraca wiersz siatki dla współrzędnej Y (skrajny dla współrzędnych poza siatką).
+     *
+     * @param y Współrzędna Y.
+     * @return Wiersz.
+     */
+    private int row(int y) {
+        return Math.max(0, Math.min(rows - 1, Math.floorDiv(y, cellSize)));
+    }
+
+    /**
+     * Sprawdza, czy przeszkody mają te same granice.
+     *
+     * @param a Pierwsza przeszkoda.
+     * @param b Druga przeszkoda.
+     * @return true, jeśli granice są równe.
+     */
+    private static boolean sameBounds(Obstacle a, Obstacle b) {
+        return a.getX() == b.getX() && a.getY() == b.getY() && a.getWidth() == b.getWidth() && a.getHeight() == b.getHeight();
+    }
+}
@@ -0,0 +1,288 @@
+package org.rewera.ptak.raczynski;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ograniczona kolejka wiadomości wychodzących jednego klienta, opróżniana przez jego wątek zapisujący
+ * ({@link #take()}) lub przez pętlę zdarzeń NIO ({@link #poll()}).
+ *
+ * <p>Stany gry są scalane: w kolejce czeka co najwyżej jeden stan, a nowszy stan zastępuje
+ * niewysłany starszy. Klient, który nie nadąża, dostaje więc od razu najnowszy stan zamiast
+ * nadrabiać zaległe. Pozostałe wiadomości (rola gracza, komunikaty) są wysyłane w kolejności
+ * i nie są scalane; ich liczba jest ograniczona pojemnością kolejki.</p>
+ *
+ * <p>Zastąpiony stan będący {@link SharedFrame} jest zwalniany. Wiadomości pozostawione w zamkniętej
+ * kolejce zwalnia ten, kto ją opróżnia - inaczej ich bufory po prostu nie wrócą do puli.</p>
+ *
+ * <p>Opóźnienie klienta to wiek najstarszego niewysłanego stanu - przy scalaniu zachowywany
+ * jest czas dodania pierwszego z zastąpionych stanów.</p>
+ */
+class OutboundQueue {
+
+    /**
+     * Znacznik miejsca oczekującego stanu gry w kolejce wiadomości.
+     */
+    private static final Object STATE = new Object();
+
+    /**
+     * Blokada kolejki ({@link ReentrantLock}, aby oczekujący wątek wirtualny nie był przypinany).
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Warunek oczekiwania na wiadomość.
+     */
+    private final Condition notEmpty = lock.newCondition();
+
+    /**
+     * Wiadomości w kolejności wysyłania.
+     */
+    private final ArrayDeque<Object> messages = new ArrayDeque<>();
+
+    /**
+     * Maksymalna liczba wiadomości w kolejce.
+     */
+    private final int capacity;
+
+    /**
+     * Oczekujący stan gry (null, jeśli brak).
+     */
+    private Object pendingState;
+
+    /**
+     * Czas dodania najstarszego niewysłanego stanu w nanosekundach.
+     */
+    private long pendingSince;
+
+    /**
+     * Czas dodania ostatnio pobranego stanu gry w nanosekundach (odczytywany przez wątek pobierający).
+     */
+    private long takenStateSince;
+
+    /**
+     * Określa, czy kolejka została zamknięta.
+     */
+    private boolean closed;
+
+    /**
+     * Liczba stanów zastąpionych przez nowsze przed wysłaniem.
+     */
+    private long coalesced;
+
+    /**
+     * Największa zaobserwowana liczba wiadomości w kolejce.
+     */
+    private int peakDepth;
+
+    /**
+     * Tworzy kolejkę.
+     *
+     * @param capacity Maksymalna liczba wiadomości w kolejce (co najmniej 1).
+     */
+    OutboundQueue(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Dodaje wiadomość, która nie podlega scalaniu.
+     *
+     * @param message Wiadomość.
+     * @return false, jeśli kolejka jest pełna lub zamknięta.
+     */
+    boolean offer(Object message) {
+        lock.lock();
+        try {
+            if (closed || messages.size() >= capacity) {
+                return false;
+            }
+            add(message);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Dodaje stan gry, zastępując niewysłany starszy stan.
+     *
+     * @param state Stan gry.
+     * @return false, jeśli kolejka jest pełna lub zamknięta.
+     */
+    boolean offerState(Object state) {
+        lock.lock();
+        try {
+            if (closed) {
+                return false;
+            }
+            if (pendingState != null) {
+                if (pendingState instanceof SharedFrame) {
+                    ((SharedFrame) pendingState).release();
+                }
+                pendingState = state;
+                coalesced++;
+                return true;
+            }
+            if (messages.size() >= capacity) {
+                return false;
+            }
+            pendingState = state;
+            pendingSince = System.nanoTime();
+            add(STATE);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Dodaje wiadomość przy założonej blokadzie.
+     *
+     * @param message Wiadomość lub znacznik stanu.
+     */
+    private void add(Object message) {
+        messages.add(message);
+        peakDepth = Math.max(peakDepth, messages.size());
+        notEmpty.signal();
+    }
+
+    /**
+     * Pobiera kolejną wiadomość, czekając na nią w razie potrzeby.
+     *
+     * @return Wiadomość lub null, jeśli kolejka została zamknięta i opróżniona.
+     * @throws InterruptedException jeśli oczekiwanie zostało przerwane.
+     */
+    Object take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (messages.isEmpty()) {
+                if (closed) {
+                    return null;
+                }
+                notEmpty.await();
+            }
+            return next();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Pobiera kolejną wiadomość bez czekania (także z zamkniętej kolejki).
+     *
+     * @return Wiadomość lub null, jeśli kolejka jest pusta.
+     */
+    Object poll() {
+        lock.lock();
+        try {
+            return messages.isEmpty() ? null : next();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Zdejmuje pierwszą wiadomość przy założonej blokadzie, zastępując znacznik oczekującym stanem.
+     *
+     * @return Wiadomość.
+     */
+    private Object next() {
+        Object message = messages.poll();
+        if (message == STATE) {
+            message = pendingState;
+            pendingState = null;
+            takenStateSince = pendingSince;
+        }
+        return message;
+    }
+
+    /**
+     * Zwraca czas dodania do kolejki ostatnio pobranego stanu gry. Przy scalaniu jest to czas
+     * dodania najstarszego ze scalonych stanów, więc różnica z bieżącym czasem to pełne opóźnienie klienta.
+     *
+     * @return Czas w nanosekundach ({@link System#nanoTime()}).
+     */
+    long getTakenStateSince() {
+        lock.lock();
+        try {
+            return takenStateSince;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Zamyka kolejkę. Wiadomości już dodane zostaną jeszcze pobrane.
+     */
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Zwraca liczbę wiadomości w kolejce.
+     *
+     * @return Głębokość kolejki.
+     */
+    int getDepth() {
+        lock.lock();
+        try {
+            return messages.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Zwraca największą zaobserwowaną liczbę wiadomości w kolejce.
+     *
+     * @return Największa głębokość kolejki.
+     */
+    int getPeakDepth() {
+        lock.lock();
+        try {
+            return peakDepth;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Zwraca liczbę stanów zastąpionych przez nowsze przed wysłaniem.
+     *
+     * @return Liczba scalonych stanów.
+     */
+    long getCoalesced() {
+        lock.lock();
+        try {
+            return coalesced;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Zwraca wiek najstarszego niewysłanego stanu gry.
+     *
+     * @param unit Jednostka wyniku.
+     * @return Opóźnienie klienta lub 0, jeśli żaden stan nie czeka.
+     */
+    long getLag(TimeUnit unit) {
+        lock.lock();
+        try {
+            return pendingState == null ? 0 : unit.convert(System.nanoTime() - pendingSince, TimeUnit.NANOSECONDS);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package org.rewera.ptak.raczynski;
+
+/**
+ * Połączenie gracza widziane przez {@link GameInstance}.
+ * Ukrywa sposób obsługi gniazda (wątek na klienta lub pętla zdarzeń NIO),
+ * dzięki czemu logika gry jest wspólna dla wszystkich silników serwera.
+ */
+interface PlayerConnection {
+
+    /**
+     * Wywoływane przez instancję gry po przydzieleniu graczowi miejsca.
+     * Implementacja zapamiętuje instancję i rolę oraz wysyła rolę klientowi.
+     *
+     * @param gameInstance Instancja gry, do której dołączył gracz.
+     * @param isPlayer1    Określa, czy klient jest graczem 1.
+     */
+    void joined(GameInstance gameInstance, boolean isPlayer1);
+
+    /**
+     * Wysyła aktualny stan gry do klienta.
+     *
+     * @param gameState Stan gry do wysłania.
+     */
+    void sendGameState(GameState gameState);
+
+    /**
+     * Wysyła stan z rozesłania do wielu odbiorców. Domyślnie koduje stan osobno dla tego klienta;
+     * implementacje mogą zamiast tego wysłać bajty zakodowane raz dla wszystkich odbiorców.
+     *
+     * @param broadcast Rozesłanie stanu gry.
+     */
+    default void sendBroadcast(StateBroadcast broadcast) {
+        sendGameState(broadcast.getState());
+    }
+
+    /**
+     * Wywoływane przed rozesłaniem stanu, który jako pierwszy uwzględnia nowe polecenia gracza.
+     * Klient przewidujący skutki poleceń ({@link WireProtocol#FLAG_PREDICT}) dostaje numer ostatniego
+     * z nich; pozostali klienci nic nie dostają.
+     *
+     * @param seq Numer ostatniego wykonanego polecenia gracza.
+     */
+    default void inputApplied(int seq) {
+    }
+
+    /**
+     * Wysyła komunikat tekstowy do klienta.
+     *
+     * @param message Treść komunikatu.
+     */
+    void sendMessage(String message);
+
+    /**
+     * Sprawdza, czy klient jest graczem 1.
+     *
+     * @return true, jeśli klient jest graczem 1, false w przeciwnym razie.
+     */
+    boolean isPlayer1();
+
+    /**
+     * Sprawdza, czy klient steruje grą poleceniami ({@link WireProtocol#FLAG_INPUT}),
+     * czyli wymaga gry prowadzonej przez serwer.
+     *
+     * @return true, jeśli klient wysyła polecenia zamiast stanu gry.
+     */
+    boolean sendsInput();
+
+    /**
+     * Sprawdza, czy klient potrafi wznowić sesję po utracie połączenia ({@link WireProtocol#FLAG_RESUME}).
+     *
+     * @return true, jeśli gra może przetrzymać miejsce klienta po rozłączeniu.
+     */
+    default boolean isResumable() {
+        return false;
+    }
+
+    /**
+     * Wysyła klientowi żeton sesji. Wywoływane przez instancję gry po {@link #joined(GameInstance, boolean)}.
+     *
+     * @param token Żeton sesji.
+     */
+    default void sessionIssued(long token) {
+    }
+
+    /**
+     * Zwraca replikację różnicową stanu gry tego połączenia.
+     *
+     * @return Replikacja lub null, jeśli klient dostaje pełne stany.
+     */
+    default StateReplicator getReplicator() {
+        return null;
+    }
+
+    /**
+     * Przejmuje sesję po poprzednim połączeniu gracza. Wywoływane przez instancję gry przed
+     * {@link #joined(GameInstance, boolean)}: powitanie potwierdza wtedy wznowienie, a klient
+     * z replikacją różnicową dostaje różnicę względem ostatniego stanu, który już ma.
+     *
+     * @param previous Poprzednie połączenie gracza lub null dla gry odtworzonej z migawki.
+     * @param lastSeq  Numer ostatniego stanu odtworzonego przez klienta.
+     */
+    default void resumed(PlayerConnection previous, int lastSeq) {
+    }
+
+    /**
+     * Zamyka połączenie.
+     */
+    void close();
+}
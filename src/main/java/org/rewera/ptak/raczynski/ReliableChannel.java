@@ -0,0 +1,282 @@
+package org.rewera.ptak.raczynski;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Lekki kanał niezawodny nad datagramami: numeruje wiadomości, ponawia niepotwierdzone
+ * i dostarcza odebrane w kolejności.
+ *
+ * <p>Odbiorca potwierdza zbiorczo numer ostatniej wiadomości dostarczonej w kolejności,
+ * a wiadomości, które wyprzedziły zgubioną, przechowuje do czasu uzupełnienia luki.
+ * Nadawca ponawia niepotwierdzone wiadomości po upływie {@link #RETRANSMIT_MILLIS}.
+ * Kanał przenosi tylko rzadkie wiadomości (polecenia graczy, strzały, zmiany tury),
+ * więc prostota jest ważniejsza od przepustowości.</p>
+ *
+ * <p>Klasa nie wysyła datagramów sama - zwraca ich treść, a wysyłaniem zajmuje się {@link UdpLink}.</p>
+ */
+class ReliableChannel {
+
+    /**
+     * Czas, po którym niepotwierdzona wiadomość jest ponawiana.
+     */
+    static final long RETRANSMIT_MILLIS = 50;
+
+    /**
+     * Maksymalna liczba niepotwierdzonych wiadomości.
+     */
+    static final int WINDOW = 256;
+
+    /**
+     * Blokada chroniąca stan kanału.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Wysłane, jeszcze niepotwierdzone wiadomości w kolejności numerów.
+     */
+    private final ArrayDeque<Pending> unacked = new ArrayDeque<>();
+
+    /**
+     * Odebrane wiadomości, które wyprzedziły zgubioną, według numerów.
+     */
+    private final Map<Integer, WireProtocol.Frame> outOfOrder = new TreeMap<>();
+
+    /**
+     * Numer ostatnio wysłanej wiadomości.
+     */
+    private int sentSeq;
+
+    /**
+     * Numer ostatniej wiadomości potwierdzonej przez drugą stronę.
+     */
+    private int ackedSeq;
+
+    /**
+     * Numer ostatniej wiadomości dostarczonej w kolejności.
+     */
+    private int receivedSeq;
+
+    /**
+     * Liczba ponowień.
+     */
+    private long retransmits;
+
+    /**
+     * Wysłana wiadomość oczekująca na potwierdzenie.
+     */
+    private static final class Pending {
+
+        /**
+         * Numer wiadomości.
+         */
+        final int seq;
+
+        /**
+         * Treść datagramu {@link WireProtocol#FRAME_RELIABLE}.
+         */
+        final byte[] body;
+
+        /**
+         * Czas pierwszego wysłania w nanosekundach.
+         */
+        final long firstSent;
+
+        /**
+         * Czas ostatniego wysłania w nanosekundach.
+         */
+        long lastSent;
+
+        /**
+         * Tworzy wpis.
+         *
+         * @param seq  Numer wiadomości.
+         * @param body Treść datagramu.
+         * @param now  Czas wysłania w nanosekundach.
+         */
+        Pending(int seq, byte[] body, long now) {
+            this.seq = seq;
+            this.body = body;
+            this.firstSent = now;
+            this.lastSent = now;
+        }
+    }
+
+    /**
+     * Nadaje numer nowej wiadomości i zapamiętuje ją do ponowienia.
+     *
+     * @param type    Typ wiadomości (typ ramki {@link WireProtocol}).
+     * @param payload Dane wiadomości.
+     * @return Treść datagramu {@link WireProtocol#FRAME_RELIABLE} lub null, jeśli okno jest pełne.
+     */
+    byte[] send(byte type, byte[] payload) {
+        lock.lock();
+        try {
+            if (unacked.size() >= WINDOW) {
+                return null;
+            }
+            int seq = ++sentSeq;
+            byte[] body = ByteBuffer.allocate(5 + payload.length).putInt(seq).put(type).put(payload).array();
+            unacked.addLast(new Pending(seq, body, System.nanoTime()));
+            return body;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Zwraca wiadomości, których czas na potwierdzenie minął, i oznacza je jako wysłane ponownie.
+     *
+     * @param now Bieżący czas w nanosekundach.
+     * @return Treści datagramów do ponowienia (w kolejności numerów).
+     */
+    List<byte[]> due(long now) {
+        lock.lock();
+        try {
+            List<byte[]> due = new ArrayList<>();
+            long timeout = TimeUnit.MILLISECONDS.toNanos(RETRANSMIT_MILLIS);
+            for (Pending pending : unacked) {
+                if (now - pending.lastSent >= timeout) {
+                    pending.lastSent = now;
+                    due.add(pending.body);
+                }
+            }
+            retransmits += due.size();
+            return due;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Przyjmuje zbiorcze potwierdzenie: wiadomości o numerach do podanego włącznie są usuwane.
+     *
+     * @param seq Numer ostatniej wiadomości odebranej w kolejności.
+     */
+    void acked(int seq) {
+        lock.lock();
+        try {
+            ackedSeq = Math.max(ackedSeq, Math.min(seq, sentSeq));
+            while (!unacked.isEmpty() && unacked.peekFirst().seq <= seq) {
+                unacked.pollFirst();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Odbiera datagram {@link WireProtocol#FRAME_RELIABLE}. Wiadomość spoza kolejności czeka
+     * na uzupełnienie luki, a powtórzenia są pomijane.
+     *
+     * @param data   Bufor z danymi.
+     * @param offset Początek danych.
+     * @param length Długość danych.
+     * @return Wiadomości gotowe do dostarczenia w kolejności (zwykle jedna lub żadna).
+     */
+    List<WireProtocol.Frame> receive(byte[] data, int offset, int length) {
+        if (length < 5) {
+            return Collections.emptyList();
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(data, offset, length);
+        int seq = buffer.getInt();
+        byte type = buffer.get();
+        byte[] payload = new byte[buffer.remaining()];
+        buffer.get(payload);
+        lock.lock();
+        try {
+            if (seq <= receivedSeq || seq - receivedSeq > WINDOW) {
+                return Collections.emptyList();
+            }
+            outOfOrder.put(seq, new WireProtocol.Frame(type, payload));
+            List<WireProtocol.Frame> ready = new ArrayList<>(1);
+            WireProtocol.Frame next;
+            while ((next = outOfOrder.remove(receivedSeq + 1)) != null) {
+                ready.add(next);
+                receivedSeq++;
+            }
+            return ready;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Zwraca numer ostatniej wiadomości dostarczonej w kolejności (do potwierdzenia).
+     *
+     * @return Numer wiadomości.
+     */
+    int getReceivedSeq() {
+        lock.lock();
+        try {
+            return receivedSeq;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Zwraca numer ostatniej wiadomości potwierdzonej przez drugą stronę.
+     *
+     * @return Numer wiadomości (0, jeśli żadna nie została potwierdzona).
+     */
+    int getAckedSeq() {
+        lock.lock();
+        try {
+            return ackedSeq;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Zwraca liczbę niepotwierdzonych wiadomości.
+     *
+     * @return Liczba wiadomości.
+     */
+    int getUnacked() {
+        lock.lock();
+        try {
+            return unacked.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Zwraca wiek najstarszej niepotwierdzonej wiadomości.
+     *
+     * @param now  Bieżący czas w nanosekundach.
+     * @param unit Jednostka wyniku.
+     * @return Wiek wiadomości lub 0, jeśli wszystkie są potwierdzone.
+     */
+    long getOldestUnackedAge(long now, TimeUnit unit) {
+        lock.lock();
+        try {
+            return unacked.isEmpty() ? 0 : unit.convert(now - unacked.peekFirst().firstSent, TimeUnit.NANOSECONDS);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Zwraca liczbę ponowień.
+     *
+     * @return Liczba ponowionych wiadomości.
+     */
+    long getRetransmits() {
+        lock.lock();
+        try {
+            return retransmits;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
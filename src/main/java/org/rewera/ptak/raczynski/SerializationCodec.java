@@ -0,0 +1,47 @@
+package org.rewera.ptak.raczynski;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Kodek stanu gry oparty na serializacji Javy.
+ * Każda ramka jest osobnym strumieniem obiektowym, więc nie zawiera odwołań do poprzednich ramek.
+ */
+class SerializationCodec implements GameStateCodec {
+
+    /**
+     * Jedyna instancja kodeka (kodek jest bezstanowy).
+     */
+    static final SerializationCodec INSTANCE = new SerializationCodec();
+
+    @Override
+    public byte id() {
+        return SERIALIZATION;
+    }
+
+    @Override
+    public byte[] encode(GameState gameState) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(gameState);
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public GameState decode(byte[] data, int offset, int length) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data, offset, length))) {
+            return (GameState) in.readObject();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Invalid game state frame", e);
+        }
+    }
+}
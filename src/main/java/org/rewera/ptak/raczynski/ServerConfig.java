@@ -0,0 +1,601 @@
+package org.rewera.ptak.raczynski;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Konfiguracja serwera gry wczytywana z argumentów wiersza poleceń.
+ * Przykład: {@code --engine=nio --io-threads=4 --tick-threads=8 --max-lag-ms=2000 --udp=true --port=12345 --record-dir=matches --snapshot-dir=snapshots --resume-grace-ms=10000 --reuse-port=true --drain-timeout-ms=60000 --max-connections=10000 --inbound-rate=100 --inbound-burst=100 --max-frame-bytes=65536} lub {@code --threads=virtual}.
+ */
+class ServerConfig {
+
+    /**
+     * Dostępne silniki obsługi połączeń.
+     */
+    enum Engine {
+        /**
+         * Jeden wątek na każdego klienta (blokujące strumienie obiektowe).
+         */
+        THREADS,
+
+        /**
+         * Pętla zdarzeń oparta na {@link java.nio.channels.Selector} z małą, stałą liczbą wątków I/O.
+         */
+        NIO
+    }
+
+    /**
+     * Port, na którym nasłuchuje serwer (0 oznacza port przydzielony przez system).
+     */
+    private int port = GameServer.PORT;
+
+    /**
+     * Wybrany silnik obsługi połączeń.
+     */
+    private Engine engine = Engine.THREADS;
+
+    /**
+     * Liczba wątków I/O silnika NIO.
+     */
+    private int ioThreads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    /**
+     * Rodzaj wątków obsługujących klientów blokujących.
+     */
+    private ClientThreads.Mode threadMode = ClientThreads.Mode.PLATFORM;
+
+    /**
+     * Liczba wątków wykonujących takty gier prowadzonych przez serwer.
+     */
+    private int tickThreads = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Pojemność kolejki wiadomości wychodzących klienta (w obu silnikach).
+     */
+    private int outboundCapacity = 64;
+
+    /**
+     * Dopuszczalne opóźnienie klienta w milisekundach, po którym jest rozłączany (0 oznacza brak limitu).
+     */
+    private long maxLagMillis = 5000;
+
+    /**
+     * Określa, czy stany gry mogą być wysyłane przez UDP (silnik wątkowy).
+     */
+    private boolean udp;
+
+    /**
+     * Katalog zapisów meczów (null, jeśli mecze nie są zapisywane).
+     */
+    private Path recordDir;
+
+    /**
+     * Katalog migawek żywych gier (null, jeśli migawki są wyłączone).
+     */
+    private Path snapshotDir;
+
+    /**
+     * Odstęp między rundami migawek w milisekundach.
+     */
+    private long snapshotIntervalMillis = 1000;
+
+    /**
+     * Okres karencji, przez który gra przetrzymuje miejsce rozłączonego gracza (0 - bez przetrzymywania).
+     */
+    private long resumeGraceMillis = 10_000;
+
+    /**
+     * Określa, czy port może być współdzielony z innym procesem serwera ({@code SO_REUSEPORT}).
+     */
+    private boolean reusePort;
+
+    /**
+     * Określa, czy serwer nasłuchuje na gnieździe odziedziczonym od procesu nadrzędnego.
+     */
+    private boolean inheritChannel;
+
+    /**
+     * Czas, przez jaki zamykany serwer czeka na zakończenie trwających gier.
+     */
+    private long drainTimeoutMillis = 60_000;
+
+    /**
+     * Największa liczba jednocześnie obsługiwanych połączeń (0 - bez limitu).
+     */
+    private int maxConnections = 10_000;
+
+    /**
+     * Liczba wiadomości na sekundę, jaką serwer przyjmuje od jednego klienta (0 - bez limitu).
+     */
+    private int inboundRate = 100;
+
+    /**
+     * Liczba wiadomości, jaką klient może wysłać jedną serią ponad średnie tempo.
+     */
+    private int inboundBurst = 100;
+
+    /**
+     * Największy rozmiar ramki (lub obiektu starego protokołu) od klienta w bajtach.
+     */
+    private int maxFrameBytes = WireProtocol.MAX_FRAME_SIZE;
+
+    /**
+     * Tworzy konfigurację z wartościami domyślnymi.
+     */
+    ServerConfig() {
+    }
+
+    /**
+     * Wczytuje konfigurację z argumentów wiersza poleceń w postaci {@code --klucz=wartość}.
+     *
+     * @param args Argumenty wiersza poleceń.
+     * @return Wczytana konfiguracja.
+     * @throws IllegalArgumentException jeśli argument jest nieznany lub ma błędną wartość.
+     */
+    static ServerConfig parse(String[] args) {
+        ServerConfig config = new ServerConfig();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+            String key = arg.substring(2, separator);
+            String value = arg.substring(separator + 1);
+            switch (key) {
+                case "port":
+                    config.setPort(Integer.parseInt(value));
+                    break;
+                case "engine":
+                    config.setEngine(Engine.valueOf(value.toUpperCase()));
+                    break;
+                case "io-threads":
+                    config.setIoThreads(Integer.parseInt(value));
+                    break;
+                case "threads":
+                    config.setThreadMode(ClientThreads.Mode.valueOf(value.toUpperCase()));
+                    break;
+                case "tick-threads":
+                    config.setTickThreads(Integer.parseInt(value));
+                    break;
+                case "outbound-capacity":
+                    config.setOutboundCapacity(Integer.parseInt(value));
+                    break;
+                case "max-lag-ms":
+                    config.setMaxLagMillis(Long.parseLong(value));
+                    break;
+                case "udp":
+                    config.setUdp(Boolean.parseBoolean(value));
+                    break;
+                case "record-dir":
+                    config.setRecordDir(Paths.get(value));
+                    break;
+                case "snapshot-dir":
+                    config.setSnapshotDir(Paths.get(value));
+                    break;
+                case "snapshot-interval-ms":
+                    config.setSnapshotIntervalMillis(Long.parseLong(value));
+                    break;
+                case "resume-grace-ms":
+                    config.setResumeGraceMillis(Long.parseLong(value));
+                    break;
+                case "reuse-port":
+                    config.setReusePort(Boolean.parseBoolean(value));
+                    break;
+                case "inherit-channel":
+                    config.setInheritChannel(Boolean.parseBoolean(value));
+                    break;
+                case "drain-timeout-ms":
+                    config.setDrainTimeoutMillis(Long.parseLong(value));
+                    break;
+                case "max-connections":
+                    config.setMaxConnections(Integer.parseInt(value));
+                    break;
+                case "inbound-rate":
+                    config.setInboundRate(Integer.parseInt(value));
+                    break;
+                case "inbound-burst":
+                    config.setInboundBurst(Integer.parseInt(value));
+                    break;
+                case "max-frame-bytes":
+                    config.setMaxFrameBytes(Integer.parseInt(value));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+        }
+        return config;
+    }
+
+    /**
+     * Zwraca port serwera.
+     *
+     * @return Port serwera.
+     */
+    int getPort() {
+        return port;
+    }
+
+    /**
+     * Ustawia port serwera.
+     *
+     * @param port Port serwera (0 oznacza port przydzielony przez system).
+     */
+    void setPort(int port) {
+        this.port = port;
+    }
+
+    /**
+     * Zwraca wybrany silnik obsługi połączeń.
+     *
+     * @return Silnik obsługi połączeń.
+     */
+    Engine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Ustawia silnik obsługi połączeń.
+     *
+     * @param engine Silnik obsługi połączeń.
+     */
+    void setEngine(Engine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Zwraca liczbę wątków I/O silnika NIO.
+     *
+     * @return Liczba wątków I/O.
+     */
+    int getIoThreads() {
+        return ioThreads;
+    }
+
+    /**
+     * Ustawia liczbę wątków I/O silnika NIO.
+     *
+     * @param ioThreads Liczba wątków I/O (co najmniej 1).
+     */
+    void setIoThreads(int ioThreads) {
+        if (ioThreads < 1) {
+            throw new IllegalArgumentException("io-threads must be positive: " + ioThreads);
+        }
+        this.ioThreads = ioThreads;
+    }
+
+    /**
+     * Zwraca rodzaj wątków obsługujących klientów blokujących.
+     *
+     * @return Rodzaj wątków.
+     */
+    ClientThreads.Mode getThreadMode() {
+        return threadMode;
+    }
+
+    /**
+     * Ustawia rodzaj wątków obsługujących klientów blokujących.
+     *
+     * @param threadMode Rodzaj wątków.
+     */
+    void setThreadMode(ClientThreads.Mode threadMode) {
+        this.threadMode = threadMode;
+    }
+
+    /**
+     * Zwraca liczbę wątków wykonujących takty gier.
+     *
+     * @return Liczba wątków taktujących.
+     */
+    int getTickThreads() {
+        return tickThreads;
+    }
+
+    /**
+     * Ustawia liczbę wątków wykonujących takty gier.
+     *
+     * @param tickThreads Liczba wątków taktujących (co najmniej 1).
+     */
+    void setTickThreads(int tickThreads) {
+        if (tickThreads < 1) {
+            throw new IllegalArgumentException("tick-threads must be positive: " + tickThreads);
+        }
+        this.tickThreads = tickThreads;
+    }
+
+    /**
+     * Zwraca pojemność kolejki wiadomości wychodzących klienta.
+     *
+     * @return Pojemność kolejki.
+     */
+    int getOutboundCapacity() {
+        return outboundCapacity;
+    }
+
+    /**
+     * Ustawia pojemność kolejki wiadomości wychodzących klienta.
+     *
+     * @param outboundCapacity Pojemność kolejki (co najmniej 1).
+     */
+    void setOutboundCapacity(int outboundCapacity) {
+        if (outboundCapacity < 1) {
+            throw new IllegalArgumentException("outbound-capacity must be positive: " + outboundCapacity);
+        }
+        this.outboundCapacity = outboundCapacity;
+    }
+
+    /**
+     * Zwraca dopuszczalne opóźnienie klienta.
+     *
+     * @return Opóźnienie w milisekundach (0 oznacza brak limitu).
+     */
+    long getMaxLagMillis() {
+        return maxLagMillis;
+    }
+
+    /**
+     * Ustawia dopuszczalne opóźnienie klienta, po którym jest rozłączany.
+     *
+     * @param maxLagMillis Opóźnienie w milisekundach (0 oznacza brak limitu).
+     */
+    void setMaxLagMillis(long maxLagMillis) {
+        if (maxLagMillis < 0) {
+            throw new IllegalArgumentException("max-lag-ms must not be negative: " + maxLagMillis);
+        }
+        this.maxLagMillis = maxLagMillis;
+    }
+
+    /**
+     * Sprawdza, czy transport UDP jest włączony.
+     *
+     * @return true, jeśli stany gry mogą być wysyłane przez UDP.
+     */
+    boolean isUdp() {
+        return udp;
+    }
+
+    /**
+     * Włącza lub wyłącza transport UDP. Serwer nasłuchuje wtedy na porcie UDP o tym samym numerze co TCP.
+     *
+     * @param udp true, aby włączyć transport UDP.
+     */
+    void setUdp(boolean udp) {
+        this.udp = udp;
+    }
+
+    /**
+     * Zwraca katalog zapisów meczów.
+     *
+     * @return Katalog lub null, jeśli mecze nie są zapisywane.
+     */
+    Path getRecordDir() {
+        return recordDir;
+    }
+
+    /**
+     * Ustawia katalog, w którym zapisywany jest przebieg każdego meczu ({@link MatchRecorder}).
+     *
+     * @param recordDir Katalog (tworzony przy starcie serwera) lub null, aby wyłączyć zapis.
+     */
+    void setRecordDir(Path recordDir) {
+        this.recordDir = recordDir;
+    }
+
+    /**
+     * Zwraca katalog migawek żywych gier.
+     *
+     * @return Katalog lub null, jeśli migawki są wyłączone.
+     */
+    Path getSnapshotDir() {
+        return snapshotDir;
+    }
+
+    /**
+     * Ustawia katalog migawek ({@link SnapshotStore}). Przy starcie serwer odtwarza z niego gry,
+     * a potem okresowo zapisuje migawki zmienionych gier.
+     *
+     * @param snapshotDir Katalog (tworzony przy starcie serwera) lub null, aby wyłączyć migawki.
+     */
+    void setSnapshotDir(Path snapshotDir) {
+        this.snapshotDir = snapshotDir;
+    }
+
+    /**
+     * Zwraca odstęp między rundami migawek.
+     *
+     * @return Odstęp w milisekundach.
+     */
+    long getSnapshotIntervalMillis() {
+        return snapshotIntervalMillis;
+    }
+
+    /**
+     * Ustawia odstęp między rundami migawek - tyle zmian gry może przepaść przy awarii serwera.
+     *
+     * @param snapshotIntervalMillis Odstęp w milisekundach (co najmniej 1).
+     */
+    void setSnapshotIntervalMillis(long snapshotIntervalMillis) {
+        if (snapshotIntervalMillis < 1) {
+            throw new IllegalArgumentException("snapshot-interval-ms must be positive: " + snapshotIntervalMillis);
+        }
+        this.snapshotIntervalMillis = snapshotIntervalMillis;
+    }
+
+    /**
+     * Zwraca okres karencji dla rozłączonych graczy.
+     *
+     * @return Okres karencji w milisekundach (0, jeśli sesje są wyłączone).
+     */
+    long getResumeGraceMillis() {
+        return resumeGraceMillis;
+    }
+
+    /**
+     * Ustawia, jak długo gra przetrzymuje miejsce gracza, który zerwał połączenie, w oczekiwaniu
+     * na wznowienie sesji ({@link SessionRegistry}).
+     *
+     * @param resumeGraceMillis Okres karencji w milisekundach lub 0, aby od razu zwalniać miejsca.
+     */
+    void setResumeGraceMillis(long resumeGraceMillis) {
+        if (resumeGraceMillis < 0) {
+            throw new IllegalArgumentException("resume-grace-ms must not be negative: " + resumeGraceMillis);
+        }
+        this.resumeGraceMillis = resumeGraceMillis;
+    }
+
+    /**
+     * Sprawdza, czy port może być współdzielony z innym procesem serwera.
+     *
+     * @return true, jeśli gniazda są otwierane z {@code SO_REUSEPORT}.
+     */
+    boolean isReusePort() {
+        return reusePort;
+    }
+
+    /**
+     * Włącza {@code SO_REUSEPORT} dla gniazd serwera (TCP i UDP), aby nowa wersja serwera mogła
+     * nasłuchiwać na porcie, zanim stara zakończy pracę ({@link ListeningChannel}).
+     *
+     * @param reusePort true, aby współdzielić port.
+     */
+    void setReusePort(boolean reusePort) {
+        this.reusePort = reusePort;
+    }
+
+    /**
+     * Sprawdza, czy serwer nasłuchuje na gnieździe odziedziczonym od procesu nadrzędnego.
+     *
+     * @return true, jeśli gniazdo TCP pochodzi z {@link System#inheritedChannel()}.
+     */
+    boolean isInheritChannel() {
+        return inheritChannel;
+    }
+
+    /**
+     * Ustawia, czy serwer nasłuchuje na gnieździe odziedziczonym od procesu nadrzędnego (np. aktywacja
+     * gniazd systemd) zamiast otwierać port samodzielnie. Port z konfiguracji jest wtedy pomijany.
+     *
+     * @param inheritChannel true, aby użyć odziedziczonego gniazda.
+     */
+    void setInheritChannel(boolean inheritChannel) {
+        this.inheritChannel = inheritChannel;
+    }
+
+    /**
+     * Zwraca czas oczekiwania na zakończenie trwających gier przy zamykaniu serwera.
+     *
+     * @return Czas w milisekundach.
+     */
+    long getDrainTimeoutMillis() {
+        return drainTimeoutMillis;
+    }
+
+    /**
+     * Ustawia, jak długo zamykany serwer czeka na zakończenie trwających gier ({@link GameServer#drain(long)}).
+     * Gry, które nie skończą się w tym czasie, są zapisywane w migawkach (jeśli są włączone) i przerywane.
+     *
+     * @param drainTimeoutMillis Czas w milisekundach (0 - bez czekania).
+     */
+    void setDrainTimeoutMillis(long drainTimeoutMillis) {
+        if (drainTimeoutMillis < 0) {
+            throw new IllegalArgumentException("drain-timeout-ms must not be negative: " + drainTimeoutMillis);
+        }
+        this.drainTimeoutMillis = drainTimeoutMillis;
+    }
+
+    /**
+     * Zwraca największą liczbę jednocześnie obsługiwanych połączeń.
+     *
+     * @return Liczba połączeń (0 - bez limitu).
+     */
+    int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * Ustawia największą liczbę jednocześnie obsługiwanych połączeń. Połączenie ponad limit jest
+     * zamykane od razu po przyjęciu, zanim serwer przydzieli mu wątek lub bufory.
+     *
+     * @param maxConnections Liczba połączeń (0 - bez limitu).
+     */
+    void setMaxConnections(int maxConnections) {
+        if (maxConnections < 0) {
+            throw new IllegalArgumentException("max-connections must not be negative: " + maxConnections);
+        }
+        this.maxConnections = maxConnections;
+    }
+
+    /**
+     * Zwraca liczbę wiadomości na sekundę, jaką serwer przyjmuje od jednego klienta.
+     *
+     * @return Liczba wiadomości na sekundę (0 - bez limitu).
+     */
+    int getInboundRate() {
+        return inboundRate;
+    }
+
+    /**
+     * Ustawia liczbę wiadomości na sekundę, jaką serwer przyjmuje od jednego klienta ({@link TokenBucket}).
+     * Stany i polecenia ponad limit są pomijane; potwierdzenia nie są ograniczane.
+     *
+     * @param inboundRate Liczba wiadomości na sekundę (0 - bez limitu).
+     */
+    void setInboundRate(int inboundRate) {
+        if (inboundRate < 0) {
+            throw new IllegalArgumentException("inbound-rate must not be negative: " + inboundRate);
+        }
+        this.inboundRate = inboundRate;
+    }
+
+    /**
+     * Zwraca liczbę wiadomości, jaką klient może wysłać jedną serią.
+     *
+     * @return Pojemność kubełka żetonów.
+     */
+    int getInboundBurst() {
+        return inboundBurst;
+    }
+
+    /**
+     * Ustawia liczbę wiadomości, jaką klient może wysłać jedną serią ponad średnie tempo.
+     *
+     * @param inboundBurst Pojemność kubełka żetonów (co najmniej 1).
+     */
+    void setInboundBurst(int inboundBurst) {
+        if (inboundBurst < 1) {
+            throw new IllegalArgumentException("inbound-burst must be positive: " + inboundBurst);
+        }
+        this.inboundBurst = inboundBurst;
+    }
+
+    /**
+     * Tworzy ogranicznik wiadomości dla nowego połączenia.
+     *
+     * @return Kubełek żetonów lub null, jeśli wiadomości nie są ograniczane.
+     */
+    TokenBucket newInboundLimit() {
+        return inboundRate > 0 ? new TokenBucket(inboundRate, inboundBurst) : null;
+    }
+
+    /**
+     * Zwraca największy rozmiar ramki od klienta.
+     *
+     * @return Rozmiar w bajtach.
+     */
+    int getMaxFrameBytes() {
+        return maxFrameBytes;
+    }
+
+    /**
+     * Ustawia największy rozmiar ramki (lub obiektu starego protokołu) od klienta. Klient, który
+     * przyśle większą, jest rozłączany ({@link DisconnectReason#FRAME_TOO_LARGE}).
+     *
+     * @param maxFrameBytes Rozmiar w bajtach (od 1 do {@link WireProtocol#MAX_FRAME_SIZE}).
+     */
+    void setMaxFrameBytes(int maxFrameBytes) {
+        if (maxFrameBytes < 1 || maxFrameBytes > WireProtocol.MAX_FRAME_SIZE) {
+            throw new IllegalArgumentException("max-frame-bytes must be between 1 and "
+                    + WireProtocol.MAX_FRAME_SIZE + ": " + maxFrameBytes);
+        }
+        this.maxFrameBytes = maxFrameBytes;
+    }
+}
@@ -0,0 +1,478 @@
+package org.rewera.ptak.raczynski;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metryki serwera gry: suma metryk wszystkich gier ({@link GameMetrics}), liczba połączeń i gier
+ * oraz powody rozłączeń, wznowienia sesji i odrzucenia przez limity połączeń i wiadomości.
+ *
+ * <p>Gry zapisują pomiary tylko we własnych metrykach. Histogramy i liczniki odziedziczone po
+ * {@link GameMetrics} przechowują pomiary gier już zakończonych, a odczyt sumy dodaje do nich
+ * metryki żywych gier.</p>
+ *
+ * <p>Histogramy wszystkich gier są łączone raz na odczyt: podsumowania czasów są zapamiętywane
+ * na {@link #SNAPSHOT_MILLIS} ms, więc odczyt kolejnych atrybutów (np. w jednym odpytaniu JConsole)
+ * nie przegląda ponownie wszystkich gier.</p>
+ *
+ * <p>Po wywołaniu {@link #register(int)} metryki serwera i każdej żywej gry są dostępne przez JMX
+ * (np. w JConsole) pod nazwami {@code org.rewera.ptak.raczynski:type=GameServer,port=N}
+ * i {@code org.rewera.ptak.raczynski:type=GameInstance,port=N,id=M}.</p>
+ */
+class ServerMetrics extends GameMetrics implements ServerMetricsMXBean {
+
+    /**
+     * Domena nazw JMX.
+     */
+    static final String DOMAIN = "org.rewera.ptak.raczynski";
+
+    /**
+     * Czas ważności połączonych podsumowań czasów w milisekundach.
+     */
+    static final long SNAPSHOT_MILLIS = 500;
+
+    /**
+     * Serwer MBean platformy.
+     */
+    private final MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+
+    /**
+     * Liczba otwartych połączeń.
+     */
+    private final AtomicInteger connections = new AtomicInteger();
+
+    /**
+     * Liczba przyjętych połączeń.
+     */
+    private final LongAdder accepted = new LongAdder();
+
+    /**
+     * Liczba żywych gier.
+     */
+    private final AtomicInteger games = new AtomicInteger();
+
+    /**
+     * Liczba rozłączeń według powodu (indeks to {@link DisconnectReason#ordinal()}).
+     */
+    private final AtomicLongArray disconnects = new AtomicLongArray(DisconnectReason.values().length);
+
+    /**
+     * Liczba wznowionych sesji.
+     */
+    private final LongAdder resumedSessions = new LongAdder();
+
+    /**
+     * Liczba sesji, które wygasły bez ponownego połączenia.
+     */
+    private final LongAdder expiredSessions = new LongAdder();
+
+    /**
+     * Liczba połączeń odrzuconych po osiągnięciu limitu połączeń.
+     */
+    private final LongAdder rejectedConnections = new LongAdder();
+
+    /**
+     * Liczba wiadomości pominiętych przez limit wiadomości klienta.
+     */
+    private final LongAdder throttledMessages = new LongAdder();
+
+    /**
+     * Metryki żywych gier.
+     */
+    private final Set<GameMetrics> liveGames = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Metryki, do których są łączone pomiary wszystkich gier przy tworzeniu podsumowań (używane ponownie).
+     */
+    private final GameMetrics merged = new GameMetrics();
+
+    /**
+     * Ostatnie połączone podsumowania czasów lub null, jeśli trzeba je utworzyć.
+     */
+    private Snapshot snapshot;
+
+    /**
+     * Port serwera, pod którym zarejestrowano metryki (-1, jeśli nie są zarejestrowane).
+     */
+    private volatile int port = -1;
+
+    /**
+     * Tworzy metryki gry wliczane do sumy serwera.
+     *
+     * @return Metryki gry.
+     */
+    GameMetrics newGameMetrics() {
+        GameMetrics metrics = new GameMetrics();
+        liveGames.add(metrics);
+        return metrics;
+    }
+
+    /**
+     * Zapisuje przyjęcie połączenia.
+     */
+    void connectionOpened() {
+        connections.incrementAndGet();
+        accepted.increment();
+    }
+
+    /**
+     * Zapisuje zakończenie połączenia.
+     *
+     * @param reason Powód rozłączenia.
+     */
+    void connectionClosed(DisconnectReason reason) {
+        connections.decrementAndGet();
+        disconnects.incrementAndGet(reason.ordinal());
+    }
+
+    /**
+     * Zapisuje wznowienie sesji gracza.
+     */
+    void sessionResumed() {
+        resumedSessions.increment();
+    }
+
+    /**
+     * Zapisuje wygaśnięcie sesji gracza, który nie połączył się ponownie.
+     */
+    void sessionExpired() {
+        expiredSessions.increment();
+    }
+
+    /**
+     * Zapisuje odrzucenie połączenia ponad limit połączeń.
+     */
+    void connectionRejected() {
+        rejectedConnections.increment();
+    }
+
+    /**
+     * Zapisuje pominięcie wiadomości klienta, który przekroczył limit wiadomości.
+     */
+    void messageThrottled() {
+        throttledMessages.increment();
+    }
+
+    /**
+     * Zapisuje utworzenie gry i rejestruje jej metryki w JMX, jeśli serwer jest zarejestrowany.
+     *
+     * @param gameId  Identyfikator gry.
+     * @param metrics Metryki gry.
+     */
+    void gameOpened(int gameId, GameMetrics metrics) {
+        games.incrementAndGet();
+        int registeredPort = port;
+        if (registeredPort >= 0) {
+            registerBean(metrics, GameMetricsMXBean.class, gameName(registeredPort, gameId));
+        }
+    }
+
+    /**
+     * Zapisuje zakończenie gry, przenosi jej pomiary do sumy zakończonych gier i wyrejestrowuje jej metryki.
+     *
+     * @param gameId  Identyfikator gry.
+     * @param metrics Metryki gry.
+     */
+    void gameClosed(int gameId, GameMetrics metrics) {
+        games.decrementAndGet();
+        if (liveGames.remove(metrics)) {
+            metrics.addTo(this);
+        }
+        int registeredPort = port;
+        if (registeredPort >= 0) {
+            unregisterBean(gameName(registeredPort, gameId));
+        }
+    }
+
+    /**
+     * Rejestruje metryki serwera w JMX. Gry utworzone od tej chwili są rejestrowane automatycznie.
+     *
+     * @param port Port serwera (rozróżnia serwery w jednej maszynie wirtualnej).
+     */
+    void register(int port) {
+        registerBean(this, ServerMetricsMXBean.class, serverName(port));
+        this.port = port;
+    }
+
+    /**
+     * Wyrejestrowuje metryki serwera z JMX. Metryki gier są wyrejestrowywane przy ich zakończeniu,
+     * a pozostałe - tutaj.
+     */
+    void unregister() {
+        int registeredPort = port;
+        if (registeredPort < 0) {
+            return;
+        }
+        port = -1;
+        unregisterBean(serverName(registeredPort));
+        try {
+            for (ObjectName name : mbeanServer.queryNames(new ObjectName(DOMAIN + ":type=GameInstance,port=" + registeredPort + ",*"), null)) {
+                unregisterBean(name);
+            }
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public long getStateUpdates() {
+        long total = super.getStateUpdates();
+        for (GameMetrics game : liveGames) {
+            total += game.getStateUpdates();
+        }
+        return total;
+    }
+
+    @Override
+    public LatencySummary getTickTime() {
+        return snapshot().tick;
+    }
+
+    @Override
+    public LatencySummary getSerializationTime() {
+        return snapshot().serialization;
+    }
+
+    @Override
+    public long getSerializedStates() {
+        long total = super.getSerializedStates();
+        for (GameMetrics game : liveGames) {
+            total += game.getSerializedStates();
+        }
+        return total;
+    }
+
+    @Override
+    public long getSerializedBytes() {
+        long total = super.getSerializedBytes();
+        for (GameMetrics game : liveGames) {
+            total += game.getSerializedBytes();
+        }
+        return total;
+    }
+
+    @Override
+    public LatencySummary getBroadcastTime() {
+        return snapshot().broadcast;
+    }
+
+    @Override
+    public LatencySummary getDeliveryLatency() {
+        return snapshot().delivery;
+    }
+
+    /**
+     * Zeruje sumę zakończonych gier i metryki wszystkich żywych gier.
+     */
+    @Override
+    public void reset() {
+        super.reset();
+        for (GameMetrics game : liveGames) {
+            game.reset();
+        }
+        synchronized (merged) {
+            snapshot = null;
+        }
+    }
+
+    /**
+     * Zwraca podsumowania czasów wszystkich gier, łącząc pomiary zakończonych i żywych gier
+     * tylko wtedy, gdy poprzednie podsumowania są starsze niż {@link #SNAPSHOT_MILLIS}.
+     *
+     * @return Podsumowania czasów.
+     */
+    private Snapshot snapshot() {
+        synchronized (merged) {
+            long now = System.nanoTime();
+            if (snapshot == null || now - snapshot.nanos > TimeUnit.MILLISECONDS.toNanos(SNAPSHOT_MILLIS)) {
+                merged.reset();
+                addTo(merged);
+                for (GameMetrics game : liveGames) {
+                    game.addTo(merged);
+                }
+                snapshot = new Snapshot(merged, now);
+            }
+            return snapshot;
+        }
+    }
+
+    @Override
+    public int getConnections() {
+        return connections.get();
+    }
+
+    @Override
+    public long getAcceptedConnections() {
+        return accepted.sum();
+    }
+
+    @Override
+    public int getGames() {
+        return games.get();
+    }
+
+    @Override
+    public Map<String, Long> getDisconnectReasons() {
+        Map<String, Long> reasons = new LinkedHashMap<>();
+        for (DisconnectReason reason : DisconnectReason.values()) {
+            reasons.put(reason.name(), disconnects.get(reason.ordinal()));
+        }
+        return reasons;
+    }
+
+    @Override
+    public long getResumedSessions() {
+        return resumedSessions.sum();
+    }
+
+    @Override
+    public long getExpiredSessions() {
+        return expiredSessions.sum();
+    }
+
+    @Override
+    public long getRejectedConnections() {
+        return rejectedConnections.sum();
+    }
+
+    @Override
+    public long getThrottledMessages() {
+        return throttledMessages.sum();
+    }
+
+    /**
+     * Zwraca liczbę rozłączeń z danego powodu.
+     *
+     * @param reason Powód rozłączenia.
+     * @return Liczba rozłączeń.
+     */
+    long getDisconnects(DisconnectReason reason) {
+        return disconnects.get(reason.ordinal());
+    }
+
+    /**
+     * Zwraca nazwę JMX metryk serwera.
+     *
+     * @param port Port serwera.
+     * @return Nazwa JMX.
+     */
+    static ObjectName serverName(int port) {
+        return name(DOMAIN + ":type=GameServer,port=" + port);
+    }
+
+    /**
+     * Zwraca nazwę JMX metryk gry.
+     *
+     * @param port   Port serwera.
+     * @param gameId Identyfikator gry.
+     * @return Nazwa JMX.
+     */
+    static ObjectName gameName(int port, int gameId) {
+        return name(DOMAIN + ":type=GameInstance,port=" + port + ",id=" + gameId);
+    }
+
+    /**
+     * Tworzy nazwę JMX ze stałego wzorca.
+     *
+     * @param name Nazwa w postaci tekstowej.
+     * @return Nazwa JMX.
+     */
+    private static ObjectName name(String name) {
+        try {
+            return new ObjectName(name);
+        } catch (JMException e) {
+            throw new IllegalArgumentException(name, e);
+        }
+    }
+
+    /**
+     * Podsumowania czasów wszystkich gier z jednej chwili.
+     */
+    private static final class Snapshot {
+
+        /**
+         * Czasy taktów symulacji.
+         */
+        final LatencySummary tick;
+
+        /**
+         * Czasy serializacji stanu.
+         */
+        final LatencySummary serialization;
+
+        /**
+         * Czasy rozsyłania stanu.
+         */
+        final LatencySummary broadcast;
+
+        /**
+         * Czasy dostarczenia stanu do gniazd.
+         */
+        final LatencySummary delivery;
+
+        /**
+         * Chwila utworzenia podsumowań w nanosekundach.
+         */
+        final long nanos;
+
+        /**
+         * Tworzy podsumowania z połączonych metryk.
+         *
+         * @param merged Suma metryk gier.
+         * @param nanos  Chwila utworzenia w nanosekundach.
+         */
+        Snapshot(GameMetrics merged, long nanos) {
+            this.tick = merged.getTickTime();
+            this.serialization = merged.getSerializationTime();
+            this.broadcast = merged.getBroadcastTime();
+            this.delivery = merged.getDeliveryLatency();
+            this.nanos = nanos;
+        }
+    }
+
+    /**
+     * Rejestruje obiekt jako MXBean. Błąd rejestracji nie przerywa pracy serwera.
+     *
+     * @param bean      Obiekt z metrykami.
+     * @param type      Interfejs MXBean.
+     * @param name      Nazwa JMX.
+     * @param <T>       Typ interfejsu.
+     */
+    private <T> void registerBean(T bean, Class<T> type, ObjectName name) {
+        try {
+            mbeanServer.registerMBean(new StandardMBean(bean, type, true), name);
+        } catch (InstanceAlreadyExistsException e) {
+            System.out.println("MBean already registered: " + name);
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Wyrejestrowuje obiekt z JMX, jeśli jest zarejestrowany.
+     *
+     * @param name Nazwa JMX.
+     */
+    private void unregisterBean(ObjectName name) {
+        try {
+            mbeanServer.unregisterMBean(name);
+        } catch (InstanceNotFoundException ignored) {
+            // Już wyrejestrowany
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package org.rewera.ptak.raczynski;
+
+import java.util.Map;
+
+/**
+ * Interfejs JMX metryk serwera ({@link ServerMetrics}): metryki sumaryczne wszystkich gier
+ * oraz liczniki połączeń.
+ */
+public interface ServerMetricsMXBean extends GameMetricsMXBean {
+
+    /**
+     * Zwraca liczbę otwartych połączeń klientów.
+     *
+     * @return Liczba połączeń.
+     */
+    int getConnections();
+
+    /**
+     * Zwraca liczbę połączeń przyjętych od uruchomienia serwera.
+     *
+     * @return Liczba połączeń.
+     */
+    long getAcceptedConnections();
+
+    /**
+     * Zwraca liczbę żywych gier.
+     *
+     * @return Liczba gier.
+     */
+    int getGames();
+
+    /**
+     * Zwraca liczbę zakończonych połączeń według powodu ({@link DisconnectReason}).
+     *
+     * @return Liczba rozłączeń według nazwy powodu.
+     */
+    Map<String, Long> getDisconnectReasons();
+
+    /**
+     * Zwraca liczbę sesji wznowionych po utracie połączenia.
+     *
+     * @return Liczba wznowień.
+     */
+    long getResumedSessions();
+
+    /**
+     * Zwraca liczbę sesji, które wygasły, zanim gracz połączył się ponownie.
+     *
+     * @return Liczba wygasłych sesji.
+     */
+    long getExpiredSessions();
+
+    /**
+     * Zwraca liczbę połączeń odrzuconych, bo serwer obsługiwał już największą dopuszczalną liczbę połączeń.
+     *
+     * @return Liczba odrzuconych połączeń.
+     */
+    long getRejectedConnections();
+
+    /**
+     * Zwraca liczbę stanów i poleceń pominiętych, bo klient przekroczył limit wiadomości na sekundę.
+     *
+     * @return Liczba pominiętych wiadomości.
+     */
+    long getThrottledMessages();
+}
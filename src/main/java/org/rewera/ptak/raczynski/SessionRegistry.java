@@ -0,0 +1,240 @@
+package org.rewera.ptak.raczynski;
+
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rejestr sesji graczy pozwalający wznowić grę po chwilowej utracie połączenia.
+ *
+ * <p>Gracz, który dołączył do gry protokołem ramkowym z flagą {@link WireProtocol#FLAG_RESUME},
+ * dostaje losowy żeton sesji. Gdy jego połączenie zostanie zerwane, gra nie zwalnia miejsca, tylko
+ * przetrzymuje je przez okres karencji ({@link #hold(Session)}). Klient, który w tym czasie połączy się
+ * ponownie z tym samym żetonem, wraca na to samo miejsce w tej samej grze ({@link GameInstance#resume})
+ * bez przechodzenia przez matchmaker. Po upływie karencji miejsce jest zwalniane tak, jak przy zwykłym
+ * rozłączeniu.</p>
+ *
+ * <p>Wznowienie to jedno wyszukanie w mapie współbieżnej i podmiana połączenia pod blokadą gry,
+ * więc fala ponownych połączeń po awarii sieci nie tworzy nowych gier ani nie przeciąża matchmakera.</p>
+ */
+class SessionRegistry {
+
+    /**
+     * Sesja gracza: miejsce w grze i bieżące połączenie.
+     * Pola zmienne są chronione blokadą gry.
+     */
+    static final class Session {
+
+        /**
+         * Żeton sesji.
+         */
+        final long token;
+
+        /**
+         * Gra, w której gracz ma miejsce.
+         */
+        final GameInstance game;
+
+        /**
+         * Określa, czy gracz jest graczem 1.
+         */
+        final boolean isPlayer1;
+
+        /**
+         * Bieżące (lub ostatnie, jeśli miejsce jest przetrzymywane) połączenie gracza;
+         * null w sesji odtworzonej z migawki, dopóki gracz nie wróci.
+         */
+        PlayerConnection connection;
+
+        /**
+         * Zaplanowane zwolnienie miejsca (null, gdy gracz jest połączony).
+         */
+        ScheduledFuture<?> expiry;
+
+        /**
+         * Tworzy sesję.
+         *
+         * @param token      Żeton sesji.
+         * @param game       Gra, w której gracz ma miejsce.
+         * @param isPlayer1  Określa, czy gracz jest graczem 1.
+         * @param connection Połączenie gracza.
+         */
+        Session(long token, GameInstance game, boolean isPlayer1, PlayerConnection connection) {
+            this.token = token;
+            this.game = game;
+            this.isPlayer1 = isPlayer1;
+            this.connection = connection;
+        }
+
+        /**
+         * Sprawdza, czy miejsce gracza jest przetrzymywane w oczekiwaniu na ponowne połączenie.
+         *
+         * @return true, jeśli gracz jest rozłączony, a karencja trwa.
+         */
+        boolean isHeld() {
+            return expiry != null;
+        }
+    }
+
+    /**
+     * Sesje według żetonu.
+     */
+    private final Map<Long, Session> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * Generator żetonów - żeton jest jedynym dowodem prawa do miejsca w grze.
+     */
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * Okres karencji w milisekundach.
+     */
+    private final long graceMillis;
+
+    /**
+     * Wątek zwalniający miejsca po upływie karencji.
+     */
+    private final ScheduledExecutorService timer;
+
+    /**
+     * Metryki serwera (liczniki wznowień i wygasłych sesji).
+     */
+    private final ServerMetrics metrics;
+
+    /**
+     * Tworzy rejestr sesji.
+     *
+     * @param graceMillis Okres karencji w milisekundach.
+     * @param metrics     Metryki serwera.
+     */
+    SessionRegistry(long graceMillis, ServerMetrics metrics) {
+        this.graceMillis = graceMillis;
+        this.metrics = metrics;
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Tworzy sesję dla gracza, który dołączył do gry.
+     *
+     * @param game       Gra.
+     * @param isPlayer1  Określa, czy gracz jest graczem 1.
+     * @param connection Połączenie gracza.
+     * @return Nowa sesja.
+     */
+    Session issue(GameInstance game, boolean isPlayer1, PlayerConnection connection) {
+        while (true) {
+            long token = random.nextLong();
+            Session session = new Session(token, game, isPlayer1, connection);
+            if (token != 0 && sessions.putIfAbsent(token, session) == null) {
+                return session;
+            }
+        }
+    }
+
+    /**
+     * Odtwarza sesję gracza z migawki gry zapisanej przed restartem serwera. Sesja nie ma połączenia -
+     * gracz może tylko wrócić na swoje miejsce z tym samym żetonem.
+     *
+     * @param token     Żeton sesji zapisany w migawce.
+     * @param game      Odtworzona gra.
+     * @param isPlayer1 Określa, czy gracz jest graczem 1.
+     * @return Odtworzona sesja lub null, jeśli żeton jest już zajęty.
+     */
+    Session restore(long token, GameInstance game, boolean isPlayer1) {
+        Session session = new Session(token, game, isPlayer1, null);
+        return sessions.putIfAbsent(token, session) == null ? session : null;
+    }
+
+    /**
+     * Wyszukuje sesję po żetonie.
+     *
+     * @param token Żeton sesji.
+     * @return Sesja lub null, jeśli nie istnieje lub wygasła.
+     */
+    Session get(long token) {
+        return sessions.get(token);
+    }
+
+    /**
+     * Przetrzymuje miejsce rozłączonego gracza i planuje jego zwolnienie po upływie karencji.
+     * Wywoływane pod blokadą gry.
+     *
+     * @param session Sesja rozłączonego gracza.
+     * @return false, jeśli rejestr został zatrzymany (serwer kończy pracę) i miejsca nie można przetrzymać.
+     */
+    boolean hold(Session session) {
+        try {
+            session.expiry = timer.schedule(() -> session.game.expireSession(session), graceMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Przypina sesję do nowego połączenia i anuluje zaplanowane zwolnienie miejsca.
+     * Wywoływane pod blokadą gry.
+     *
+     * @param session    Sesja.
+     * @param connection Nowe połączenie gracza.
+     */
+    void attach(Session session, PlayerConnection connection) {
+        if (session.expiry != null) {
+            session.expiry.cancel(false);
+            session.expiry = null;
+        }
+        session.connection = connection;
+        metrics.sessionResumed();
+    }
+
+    /**
+     * Usuwa sesję - żeton przestaje być ważny. Wywoływane pod blokadą gry.
+     *
+     * @param session Sesja.
+     * @param expired Określa, czy sesja wygasła po upływie karencji.
+     */
+    void revoke(Session session, boolean expired) {
+        if (session.expiry != null) {
+            session.expiry.cancel(false);
+            session.expiry = null;
+        }
+        sessions.remove(session.token);
+        if (expired) {
+            metrics.sessionExpired();
+        }
+    }
+
+    /**
+     * Zwraca okres karencji.
+     *
+     * @return Okres karencji w milisekundach.
+     */
+    long getGraceMillis() {
+        return graceMillis;
+    }
+
+    /**
+     * Zwraca liczbę ważnych sesji.
+     *
+     * @return Liczba sesji.
+     */
+    int size() {
+        return sessions.size();
+    }
+
+    /**
+     * Zatrzymuje wątek zwalniający miejsca.
+     */
+    void shutdown() {
+        timer.shutdownNow();
+    }
+}
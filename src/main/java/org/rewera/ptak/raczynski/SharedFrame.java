@@ -0,0 +1,211 @@
+package org.rewera.ptak.raczynski;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Zakodowana raz wiadomość do wysłania wielu odbiorcom (graczom i widzom jednej gry).
+ *
+ * <p>Bajty leżą w buforze z puli i są liczone referencjami: nadawca tworzy ramkę z jedną referencją,
+ * każdy odbiorca, który ją zakolejkuje, wywołuje {@link #retain()}, a po zapisaniu do gniazda
+ * (lub porzuceniu, np. przy scalaniu stanów) {@link #release()}. Gdy licznik spadnie do zera,
+ * bufor wraca do puli i może zostać użyty przez kolejne rozesłanie. Odbiorcy piszą bezpośrednio
+ * z bufora - bez ponownego kodowania i kopiowania.</p>
+ */
+final class SharedFrame {
+
+    /**
+     * Najmniejszy rozmiar bufora z puli (potęga dwójki).
+     */
+    private static final int MIN_POOLED = 256;
+
+    /**
+     * Największy rozmiar bufora z puli - większe bufory są alokowane bez puli.
+     */
+    private static final int MAX_POOLED = 64 * 1024;
+
+    /**
+     * Liczba wolnych buforów przechowywanych w każdej klasie rozmiaru.
+     */
+    private static final int POOL_DEPTH = 64;
+
+    /**
+     * Pule wolnych buforów według klasy rozmiaru (potęgi dwójki od {@link #MIN_POOLED}).
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static final ArrayBlockingQueue<byte[]>[] POOL = new ArrayBlockingQueue[sizeClass(MAX_POOLED) + 1];
+
+    static {
+        for (int i = 0; i < POOL.length; i++) {
+            POOL[i] = new ArrayBlockingQueue<>(POOL_DEPTH);
+        }
+    }
+
+    /**
+     * Bufor z bajtami wiadomości (null po zwolnieniu).
+     */
+    private volatile byte[] bytes;
+
+    /**
+     * Długość wiadomości w buforze.
+     */
+    private final int length;
+
+    /**
+     * Licznik referencji.
+     */
+    private final AtomicInteger refs = new AtomicInteger(1);
+
+    /**
+     * Tworzy wiadomość z bufora z puli.
+     *
+     * @param bytes  Bufor.
+     * @param length Długość wiadomości.
+     */
+    private SharedFrame(byte[] bytes, int length) {
+        this.bytes = bytes;
+        this.length = length;
+    }
+
+    /**
+     * Tworzy ramkę protokołu ramkowego ({@code int długość, byte typ, dane}) z jedną referencją.
+     *
+     * @param type    Typ ramki.
+     * @param payload Dane ramki.
+     * @return Ramka współdzielona.
+     */
+    static SharedFrame frame(byte type, byte[] payload) {
+        int length = WireProtocol.FRAME_HEADER_SIZE + 1 + payload.length;
+        byte[] buffer = acquire(length);
+        ByteBuffer.wrap(buffer).putInt(1 + payload.length).put(type).put(payload);
+        return new SharedFrame(buffer, length);
+    }
+
+    /**
+     * Tworzy wiadomość z gotowych bajtów (np. obiektu zserializowanego dla starego protokołu).
+     *
+     * @param data Bajty wiadomości.
+     * @return Wiadomość współdzielona z jedną referencją.
+     */
+    static SharedFrame raw(byte[] data) {
+        byte[] buffer = acquire(data.length);
+        System.arraycopy(data, 0, buffer, 0, data.length);
+        return new SharedFrame(buffer, data.length);
+    }
+
+    /**
+     * Dodaje referencję (odbiorca zakolejkował wiadomość).
+     *
+     * @return Ta sama wiadomość.
+     * @throws IllegalStateException jeśli wiadomość została już zwolniona.
+     */
+    SharedFrame retain() {
+        int current;
+        do {
+            current = refs.get();
+            if (current <= 0) {
+                throw new IllegalStateException("Frame already released");
+            }
+        } while (!refs.compareAndSet(current, current + 1));
+        return this;
+    }
+
+    /**
+     * Usuwa referencję. Ostatnia zwraca bufor do puli.
+     *
+     * @throws IllegalStateException jeśli wiadomość została już zwolniona.
+     */
+    void release() {
+        int remaining = refs.decrementAndGet();
+        if (remaining == 0) {
+            byte[] buffer = bytes;
+            bytes = null;
+            if (buffer.length <= MAX_POOLED) {
+                POOL[sizeClass(buffer.length)].offer(buffer);
+            }
+        } else if (remaining < 0) {
+            throw new IllegalStateException("Frame released too many times");
+        }
+    }
+
+    /**
+     * Zwraca liczbę referencji.
+     *
+     * @return Liczba referencji (0 po zwolnieniu).
+     */
+    int refCount() {
+        return refs.get();
+    }
+
+    /**
+     * Zwraca długość wiadomości.
+     *
+     * @return Długość w bajtach.
+     */
+    int length() {
+        return length;
+    }
+
+    /**
+     * Zapisuje wiadomość do strumienia (bez opróżniania bufora strumienia).
+     *
+     * @param out Strumień wyjściowy.
+     * @throws IOException w przypadku błędu zapisu.
+     */
+    void writeTo(OutputStream out) throws IOException {
+        out.write(buffer(), 0, length);
+    }
+
+    /**
+     * Zwraca widok bufora do zapisu nieblokującego. Widok ma własną pozycję, więc wielu odbiorców
+     * może pisać z tego samego bufora jednocześnie.
+     *
+     * @return Widok bufora w trybie do odczytu.
+     */
+    ByteBuffer view() {
+        return ByteBuffer.wrap(buffer(), 0, length);
+    }
+
+    /**
+     * Zwraca bufor, sprawdzając, czy wiadomość nie została zwolniona.
+     *
+     * @return Bufor z bajtami wiadomości.
+     */
+    private byte[] buffer() {
+        byte[] buffer = bytes;
+        if (buffer == null) {
+            throw new IllegalStateException("Frame already released");
+        }
+        return buffer;
+    }
+
+    /**
+     * Pobiera bufor z puli lub alokuje nowy.
+     *
+     * @param length Wymagana długość.
+     * @return Bufor o długości co najmniej {@code length}.
+     */
+    private static byte[] acquire(int length) {
+        if (length > MAX_POOLED) {
+            return new byte[length];
+        }
+        int sizeClass = sizeClass(length);
+        byte[] buffer = POOL[sizeClass].poll();
+        return buffer != null ? buffer : new byte[MIN_POOLED << sizeClass];
+    }
+
+    /**
+     * Zwraca klasę rozmiaru bufora: numer najmniejszej potęgi dwójki (od {@link #MIN_POOLED})
+     * mieszczącej daną długość.
+     *
+     * @param length Długość.
+     * @return Klasa rozmiaru.
+     */
+    private static int sizeClass(int length) {
+        int rounded = Math.max(MIN_POOLED, Integer.highestOneBit(length - 1) << 1);
+        return Integer.numberOfTrailingZeros(rounded) - Integer.numberOfTrailingZeros(MIN_POOLED);
+    }
+}
@@ -0,0 +1,218 @@
+package org.rewera.ptak.raczynski;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bufor ostatnich stanów od serwera służący do płynnego wyświetlania obiektów, którymi gracz nie steruje.
+ *
+ * <p>Stany przychodzą w nieregularnych odstępach (i tylko wtedy, gdy coś się zmieniło), więc
+ * wyświetlanie każdego z nich od razu powoduje skoki. Interpolator zapamiętuje czas odebrania każdego
+ * stanu i zwraca stan z chwili o {@link #getDelayNanos()} wcześniejszej niż bieżąca - położenie czołgów
+ * i pocisków jest wtedy interpolowane liniowo między dwoma sąsiednimi stanami. Gdy kolejny stan się
+ * spóźnia, ruch jest przedłużany na podstawie dwóch ostatnich stanów, ale najwyżej o
+ * {@link #MAX_EXTRAPOLATION_MILLIS} ms. Wartości nieciągłe (punkty życia, paliwo, tura, przeszkody)
+ * pochodzą z nowszego stanu.</p>
+ *
+ * <p>Klasa nie jest bezpieczna wątkowo - panel używa jej w wątku Swing.</p>
+ */
+class SnapshotInterpolator {
+
+    /**
+     * Liczba zapamiętywanych stanów.
+     */
+    static final int CAPACITY = 8;
+
+    /**
+     * Najdłuższy czas przedłużania ruchu po ostatnim stanie.
+     */
+    static final long MAX_EXTRAPOLATION_MILLIS = 100;
+
+    /**
+     * Czasy odebrania stanów w nanosekundach ({@link System#nanoTime()}).
+     */
+    private final long[] times = new long[CAPACITY];
+
+    /**
+     * Zapamiętane stany.
+     */
+    private final GameState[] states = new GameState[CAPACITY];
+
+    /**
+     * Opóźnienie wyświetlania w nanosekundach.
+     */
+    private final long delayNanos;
+
+    /**
+     * Indeks najstarszego stanu.
+     */
+    private int head;
+
+    /**
+     * Liczba zapamiętanych stanów.
+     */
+    private int size;
+
+    /**
+     * Tworzy interpolator.
+     *
+     * @param delayMillis Opóźnienie wyświetlania w milisekundach (zwykle dwa-trzy odstępy między stanami).
+     */
+    SnapshotInterpolator(long delayMillis) {
+        if (delayMillis < 0) {
+            throw new IllegalArgumentException("delay must not be negative: " + delayMillis);
+        }
+        this.delayNanos = TimeUnit.MILLISECONDS.toNanos(delayMillis);
+    }
+
+    /**
+     * Zwraca opóźnienie wyświetlania.
+     *
+     * @return Opóźnienie w nanosekundach.
+     */
+    long getDelayNanos() {
+        return delayNanos;
+    }
+
+    /**
+     * Zapamiętuje stan odebrany od serwera. Przy pełnym buforze najstarszy stan jest porzucany.
+     * Serwer nie wysyła stanów, gdy nic się nie zmienia, więc po dłuższej przerwie poprzedni stan jest
+     * uznawany za aktualny do chwili {@code now - delay} - inaczej ruch po przerwie byłby rozłożony
+     * na całą przerwę i zaczynałby się skokiem.
+     *
+     * @param now   Czas odebrania w nanosekundach.
+     * @param state Stan gry.
+     */
+    void add(long now, GameState state) {
+        if (size > 0 && now - times[index(size - 1)] > delayNanos) {
+            store(now - delayNanos, states[index(size - 1)]);
+        }
+        store(now, state);
+    }
+
+    /**
+     * Dopisuje stan na koniec bufora.
+     *
+     * @param now   Czas stanu w nanosekundach.
+     * @param state Stan gry.
+     */
+    private void store(long now, GameState state) {
+        if (size == CAPACITY) {
+            states[head] = null;
+            head = (head + 1) % CAPACITY;
+            size--;
+        }
+        if (size > 0) {
+            now = Math.max(now, times[index(size - 1)]); // Czas nie może się cofnąć
+        }
+        int tail = index(size);
+        times[tail] = now;
+        states[tail] = state;
+        size++;
+    }
+
+    /**
+     * Porzuca zapamiętane stany (np. po połączeniu z serwerem od nowa).
+     */
+    void clear() {
+        for (int i = 0; i < CAPACITY; i++) {
+            states[i] = null;
+        }
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * Zwraca stan do wyświetlenia w podanej chwili.
+     *
+     * @param now Bieżący czas w nanosekundach.
+     * @return Stan z chwili {@code now - delay} lub {@code null}, jeśli nie odebrano jeszcze żadnego stanu.
+     */
+    GameState sample(long now) {
+        if (size == 0) {
+            return null;
+        }
+        long renderTime = now - delayNanos;
+        if (size == 1 || renderTime <= times[head]) {
+            return states[head];
+        }
+        for (int i = 1; i < size; i++) {
+            long time = times[index(i)];
+            if (renderTime <= time) {
+                return blend(index(i - 1), index(i), renderTime);
+            }
+        }
+        // Kolejny stan się spóźnia - przedłużamy ruch z dwóch ostatnich stanów w ograniczonym zakresie
+        long newest = times[index(size - 1)];
+        long limit = newest + TimeUnit.MILLISECONDS.toNanos(MAX_EXTRAPOLATION_MILLIS);
+        return blend(index(size - 2), index(size - 1), Math.min(renderTime, limit));
+    }
+
+    /**
+     * Zwraca indeks bufora stanu o podanej pozycji (0 - najstarszy).
+     *
+     * @param position Pozycja stanu.
+     * @return Indeks w tablicach.
+     */
+    private int index(int position) {
+        return (head + position) % CAPACITY;
+    }
+
+    /**
+     * Tworzy stan pośredni między dwoma zapamiętanymi stanami (lub za nowszym z nich).
+     *
+     * @param from Indeks starszego stanu.
+     * @param to   Indeks nowszego stanu.
+     * @param time Chwila, dla której liczony jest stan.
+     * @return Stan pośredni.
+     */
+    private GameState blend(int from, int to, long time) {
+        GameState a = states[from];
+        GameState b = states[to];
+        long span = times[to] - times[from];
+        double t = span > 0 ? (double) (time - times[from]) / span : 1;
+
+        List<Bullet> bulletsA = a.getBullets();
+        List<Bullet> bulletsB = b.getBullets();
+        List<Bullet> bullets = new ArrayList<>(bulletsB.size());
+        boolean matching = bulletsA.size() == bulletsB.size();
+        for (int i = 0; i < bulletsB.size(); i++) {
+            Bullet next = bulletsB.get(i);
+            Bullet previous = matching ? bulletsA.get(i) : null;
+            if (previous == null || previous.isPlayer1() != next.isPlayer1()) {
+                bullets.add(next.copy()); // Nowy pocisk - bez interpolacji
+            } else {
+                bullets.add(new Bullet(lerp(previous.getX(), next.getX(), t), lerp(previous.getY(), next.getY(), t),
+                        next.getDx(), next.getDy(), next.getColor(), next.isVisible(), next.isPlayer1()));
+            }
+        }
+        return new GameState(blend(a.getPlayer1Tank(), b.getPlayer1Tank(), t),
+                blend(a.getPlayer2Tank(), b.getPlayer2Tank(), t), bullets, b.getObstacles(), b.isPlayer1Turn());
+    }
+
+    /**
+     * Tworzy czołg w położeniu pośrednim.
+     *
+     * @param a Czołg ze starszego stanu.
+     * @param b Czołg z nowszego stanu.
+     * @param t Udział nowszego stanu (powyżej 1 przy przedłużaniu ruchu).
+     * @return Czołg pośredni.
+     */
+    private static Tank blend(Tank a, Tank b, double t) {
+        return new Tank((int) Math.round(lerp(a.getX(), b.getX(), t)), b.getY(), b.getColor(),
+                (int) Math.max(0, Math.min(180, Math.round(lerp(a.getAngle(), b.getAngle(), t)))), b.getHp(), b.getFuel());
+    }
+
+    /**
+     * Interpoluje liniowo dwie wartości.
+     *
+     * @param a Wartość początkowa.
+     * @param b Wartość końcowa.
+     * @param t Udział wartości końcowej.
+     * @return Wartość pośrednia.
+     */
+    private static double lerp(double a, double b, double t) {
+        return a + (b - a) * t;
+    }
+}
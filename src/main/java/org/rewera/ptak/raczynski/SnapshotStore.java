@@ -0,0 +1,491 @@
+package org.rewera.ptak.raczynski;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Lokalny magazyn migawek żywych gier, z którego serwer odtwarza gry po awarii lub restarcie.
+ *
+ * <p>Migawki trafiają do jednego dziennika tylko do dopisywania ({@link #FILE_NAME}). Zapis jest
+ * przyrostowy: gra, której wersja nie zmieniła się od ostatniej migawki, nie jest ponownie kodowana
+ * ani zapisywana, a gra usunięta z serwera dostaje rekord usunięcia. Wszystkie rekordy z jednej rundy
+ * są dopisywane jednym zapisem i utrwalane jednym {@code force} - koszt migawki jednej gry to co najwyżej
+ * jedno kodowanie stanu ({@link BinaryCodec}) na rundę, niezależnie od częstotliwości aktualizacji.
+ * Gdy dziennik urośnie ponad dwukrotność żywych danych, jest przepisywany do pliku tymczasowego
+ * i atomowo podmieniany ({@link StandardCopyOption#ATOMIC_MOVE}), więc na dysku zawsze leży
+ * kompletny dziennik.</p>
+ *
+ * <p>Format (big-endian): nagłówek {@code int MAGIC, byte VERSION}, potem rekordy
+ * {@code int długość treści, treść: (int identyfikator gry, byte rodzaj, long wersja, long żeton gracza 1,
+ * long żeton gracza 2, stan gry), int CRC32 treści}. Żetony sesji ({@link SessionRegistry}) wyznaczają
+ * właścicieli miejsc - po restarcie do gry mogą wrócić tylko oni (żeton 0 oznacza miejsce bez sesji).
+ * Przy odczycie ostatnie rekordy o złej sumie kontrolnej lub urwane (awaria w trakcie zapisu) są odrzucane,
+ * a dziennik w starszej wersji formatu jest porzucany.</p>
+ *
+ * <p>Klasa nie jest bezpieczna wątkowo - migawki wykonuje jeden wątek.</p>
+ */
+class SnapshotStore implements Closeable {
+
+    /**
+     * Nazwa pliku dziennika w katalogu magazynu.
+     */
+    static final String FILE_NAME = "snapshots.log";
+
+    /**
+     * Znacznik pliku magazynu ("PTSS").
+     */
+    static final int MAGIC = 0x50545353;
+
+    /**
+     * Wersja formatu pliku.
+     */
+    static final byte VERSION = 2;
+
+    /**
+     * Rozmiar nagłówka pliku.
+     */
+    static final int HEADER_SIZE = 5;
+
+    /**
+     * Rozmiar treści rekordu bez stanu gry.
+     */
+    static final int BODY_HEADER_SIZE = 29;
+
+    /**
+     * Rodzaj rekordu: gra usunięta z serwera.
+     */
+    static final byte REMOVED = 0;
+
+    /**
+     * Rodzaj rekordu: gra prowadzona przez klientów.
+     */
+    static final byte CLIENT_AUTHORITATIVE = 1;
+
+    /**
+     * Rodzaj rekordu: gra prowadzona przez serwer.
+     */
+    static final byte SERVER_AUTHORITATIVE = 2;
+
+    /**
+     * Domyślny rozmiar dziennika, poniżej którego nie jest on przepisywany.
+     */
+    static final long DEFAULT_COMPACT_THRESHOLD = 1024 * 1024;
+
+    /**
+     * Migawka jednej gry odczytana z magazynu.
+     */
+    static final class Snapshot {
+
+        /**
+         * Identyfikator gry.
+         */
+        final int gameId;
+
+        /**
+         * Określa, czy grę prowadzi serwer.
+         */
+        final boolean serverAuthoritative;
+
+        /**
+         * Wersja stanu gry w chwili migawki.
+         */
+        final long version;
+
+        /**
+         * Stan gry.
+         */
+        final GameState state;
+
+        /**
+         * Żeton sesji gracza 1 (0, jeśli miejsce nie ma sesji).
+         */
+        final long player1Token;
+
+        /**
+         * Żeton sesji gracza 2 (0, jeśli miejsce nie ma sesji).
+         */
+        final long player2Token;
+
+        /**
+         * Tworzy migawkę.
+         *
+         * @param gameId              Identyfikator gry.
+         * @param serverAuthoritative Określa, czy grę prowadzi serwer.
+         * @param version             Wersja stanu gry.
+         * @param state               Stan gry.
+         * @param player1Token        Żeton sesji gracza 1 lub 0.
+         * @param player2Token        Żeton sesji gracza 2 lub 0.
+         */
+        Snapshot(int gameId, boolean serverAuthoritative, long version, GameState state, long player1Token,
+                 long player2Token) {
+            this.gameId = gameId;
+            this.serverAuthoritative = serverAuthoritative;
+            this.version = version;
+            this.state = state;
+            this.player1Token = player1Token;
+            this.player2Token = player2Token;
+        }
+    }
+
+    /**
+     * Plik dziennika.
+     */
+    private final Path file;
+
+    /**
+     * Rozmiar dziennika, poniżej którego nie jest on przepisywany.
+     */
+    private final long compactThreshold;
+
+    /**
+     * Kanał dopisywania do dziennika.
+     */
+    private FileChannel channel;
+
+    /**
+     * Ostatni rekord (w postaci z dziennika) każdej żywej gry.
+     */
+    private final Map<Integer, byte[]> live = new HashMap<>();
+
+    /**
+     * Wersje stanu żywych gier zapisane w dzienniku.
+     */
+    private final Map<Integer, Long> versions = new HashMap<>();
+
+    /**
+     * Łączny rozmiar rekordów żywych gier.
+     */
+    private long liveBytes;
+
+    /**
+     * Rekordy czekające na dopisanie w bieżącej rundzie.
+     */
+    private final List<byte[]> pending = new ArrayList<>();
+
+    /**
+     * Liczba przepisań dziennika.
+     */
+    private int compactions;
+
+    /**
+     * Otwiera magazyn w podanym katalogu z domyślnym progiem przepisywania dziennika.
+     *
+     * @param directory Istniejący katalog magazynu.
+     * @throws IOException jeśli nie udało się odczytać lub utworzyć dziennika.
+     */
+    SnapshotStore(Path directory) throws IOException {
+        this(directory, DEFAULT_COMPACT_THRESHOLD);
+    }
+
+    /**
+     * Otwiera magazyn w podanym katalogu i wczytuje zapisane migawki. Urwany koniec dziennika jest obcinany.
+     *
+     * @param directory        Istniejący katalog magazynu.
+     * @param compactThreshold Rozmiar dziennika, poniżej którego nie jest on przepisywany.
+     * @throws IOException jeśli plik nie jest dziennikiem migawek lub nie udało się go otworzyć.
+     */
+    SnapshotStore(Path directory, long compactThreshold) throws IOException {
+        this.file = directory.resolve(FILE_NAME);
+        this.compactThreshold = compactThreshold;
+        long valid = Files.exists(file) ? read() : 0;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (valid == 0) {
+            channel.truncate(0);
+            channel.write(header());
+            channel.force(true);
+        } else if (channel.size() > valid) {
+            System.out.println("Discarding " + (channel.size() - valid) + " bytes of torn snapshot log tail.");
+            channel.truncate(valid);
+        }
+        channel.position(channel.size());
+    }
+
+    /**
+     * Zwraca migawki wszystkich żywych gier zapisane w magazynie.
+     * Migawki, których stanu nie udało się zdekodować, są pomijane.
+     *
+     * @return Lista migawek.
+     */
+    List<Snapshot> load() {
+        List<Snapshot> snapshots = new ArrayList<>(live.size());
+        for (byte[] record : live.values()) {
+            ByteBuffer body = ByteBuffer.wrap(record, 4, record.length - 8);
+            int gameId = body.getInt();
+            byte kind = body.get();
+            long version = body.getLong();
+            long player1Token = body.getLong();
+            long player2Token = body.getLong();
+            try {
+                GameState state = BinaryCodec.INSTANCE.decode(record, 4 + BODY_HEADER_SIZE,
+                        record.length - 8 - BODY_HEADER_SIZE);
+                snapshots.add(new Snapshot(gameId, kind == SERVER_AUTHORITATIVE, version, state, player1Token, player2Token));
+            } catch (IOException e) {
+                e.printStackTrace(); // Gra nie zostanie odtworzona
+            }
+        }
+        return snapshots;
+    }
+
+    /**
+     * Przygotowuje migawkę gry bez sesji graczy do zapisu w bieżącej rundzie.
+     *
+     * @param gameId              Identyfikator gry.
+     * @param serverAuthoritative Określa, czy grę prowadzi serwer.
+     * @param version             Wersja stanu gry.
+     * @param state               Stan gry (tylko odczytywany).
+     * @return true, jeśli migawka zostanie zapisana.
+     */
+    boolean stage(int gameId, boolean serverAuthoritative, long version, GameState state) {
+        return stage(gameId, serverAuthoritative, version, state, 0, 0);
+    }
+
+    /**
+     * Przygotowuje migawkę gry do zapisu w bieżącej rundzie. Gra, której wersja i żetony sesji
+     * są już zapisane, jest pomijana.
+     *
+     * @param gameId              Identyfikator gry.
+     * @param serverAuthoritative Określa, czy grę prowadzi serwer.
+     * @param version             Wersja stanu gry.
+     * @param state               Stan gry (tylko odczytywany).
+     * @param player1Token        Żeton sesji gracza 1 lub 0.
+     * @param player2Token        Żeton sesji gracza 2 lub 0.
+     * @return true, jeśli migawka zostanie zapisana.
+     */
+    boolean stage(int gameId, boolean serverAuthoritative, long version, GameState state, long player1Token,
+                  long player2Token) {
+        Long written = versions.get(gameId);
+        if (written != null && written == version) {
+            ByteBuffer last = ByteBuffer.wrap(live.get(gameId));
+            if (last.getLong(17) == player1Token && last.getLong(25) == player2Token) {
+                return false;
+            }
+        }
+        byte[] data = BinaryCodec.INSTANCE.encode(state);
+        append(record(gameId, serverAuthoritative ? SERVER_AUTHORITATIVE : CLIENT_AUTHORITATIVE, version,
+                player1Token, player2Token, data));
+        return true;
+    }
+
+    /**
+     * Kończy rundę migawek: dopisuje rekordy usunięcia gier, których nie ma już na serwerze,
+     * dopisuje przygotowane migawki jednym zapisem i utrwala je na dysku. W razie potrzeby przepisuje dziennik.
+     *
+     * @param liveGames Identyfikatory gier żywych w chwili rundy.
+     * @return Liczba dopisanych rekordów.
+     * @throws IOException w przypadku błędu zapisu.
+     */
+    int flush(Set<Integer> liveGames) throws IOException {
+        List<Integer> removed = new ArrayList<>();
+        for (int gameId : versions.keySet()) {
+            if (!liveGames.contains(gameId)) {
+                removed.add(gameId);
+            }
+        }
+        for (int gameId : removed) {
+            append(record(gameId, REMOVED, 0, 0, 0, new byte[0]));
+        }
+        int written = pending.size();
+        if (written == 0) {
+            return 0;
+        }
+        int size = 0;
+        for (byte[] record : pending) {
+            size += record.length;
+        }
+        ByteBuffer batch = ByteBuffer.allocate(size);
+        for (byte[] record : pending) {
+            batch.put(record);
+        }
+        pending.clear();
+        batch.flip();
+        while (batch.hasRemaining()) {
+            channel.write(batch);
+        }
+        channel.force(false);
+        long fileSize = channel.size();
+        if (fileSize > compactThreshold && fileSize > 2 * (HEADER_SIZE + liveBytes)) {
+            compact();
+        }
+        return written;
+    }
+
+    /**
+     * Zwraca liczbę gier zapisanych w magazynie.
+     *
+     * @return Liczba żywych gier.
+     */
+    int size() {
+        return live.size();
+    }
+
+    /**
+     * Zwraca rozmiar dziennika.
+     *
+     * @return Rozmiar pliku w bajtach.
+     * @throws IOException w przypadku błędu odczytu rozmiaru.
+     */
+    long fileSize() throws IOException {
+        return channel.size();
+    }
+
+    /**
+     * Zwraca liczbę przepisań dziennika.
+     *
+     * @return Liczba przepisań.
+     */
+    int getCompactions() {
+        return compactions;
+    }
+
+    /**
+     * Zamyka magazyn. Migawki przygotowane, ale niezapisane przez {@link #flush(Set)}, są porzucane.
+     *
+     * @throws IOException w przypadku błędu zamknięcia pliku.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Dodaje rekord do bieżącej rundy i aktualizuje ostatni rekord gry.
+     *
+     * @param record Rekord w postaci z dziennika.
+     */
+    private void append(byte[] record) {
+        pending.add(record);
+        apply(record);
+    }
+
+    /**
+     * Aktualizuje ostatni rekord i wersję gry na podstawie rekordu z dziennika.
+     *
+     * @param record Rekord w postaci z dziennika.
+     */
+    private void apply(byte[] record) {
+        ByteBuffer fields = ByteBuffer.wrap(record);
+        int gameId = fields.getInt(4);
+        byte[] previous;
+        if (record[8] == REMOVED) {
+            previous = live.remove(gameId);
+            versions.remove(gameId);
+        } else {
+            previous = live.put(gameId, record);
+            versions.put(gameId, fields.getLong(9));
+            liveBytes += record.length;
+        }
+        if (previous != null) {
+            liveBytes -= previous.length;
+        }
+    }
+
+    /**
+     * Wczytuje dziennik i odtwarza ostatnie rekordy gier.
+     *
+     * @return Długość poprawnej części dziennika lub 0, jeśli plik nie ma poprawnego nagłówka albo ma starszą wersję formatu.
+     * @throws IOException jeśli plik nie jest dziennikiem migawek.
+     */
+    private long read() throws IOException {
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (data.limit() < HEADER_SIZE) {
+            return 0; // Awaria przed zapisaniem nagłówka
+        }
+        if (data.getInt(0) != MAGIC) {
+            throw new IOException("Not a snapshot log: " + file);
+        }
+        if (data.get(4) != VERSION) {
+            System.out.println("Discarding snapshot log of format version " + data.get(4) + ".");
+            return 0; // Starsze migawki nie mają żetonów sesji - nikt nie mógłby wrócić do tych gier
+        }
+        data.position(HEADER_SIZE);
+        CRC32 crc = new CRC32();
+        while (data.remaining() >= 4) {
+            int offset = data.position();
+            int length = data.getInt(offset);
+            if (length < BODY_HEADER_SIZE || data.remaining() < 4 + length + 4) {
+                break;
+            }
+            byte[] record = new byte[4 + length + 4];
+            data.get(record);
+            crc.reset();
+            crc.update(record, 4, length);
+            if ((int) crc.getValue() != ByteBuffer.wrap(record).getInt(4 + length)) {
+                data.position(offset);
+                break;
+            }
+            apply(record);
+        }
+        return data.position();
+    }
+
+    /**
+     * Przepisuje dziennik tak, by zawierał tylko ostatnie rekordy żywych gier, i atomowo podmienia plik.
+     *
+     * @throws IOException w przypadku błędu zapisu.
+     */
+    private void compact() throws IOException {
+        Path temporary = file.resolveSibling(FILE_NAME + ".tmp");
+        try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) (HEADER_SIZE + liveBytes));
+            buffer.put(header());
+            for (byte[] record : live.values()) {
+                buffer.put(record);
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            out.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        channel.close();
+        channel = FileChannel.open(file, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        compactions++;
+    }
+
+    /**
+     * Tworzy nagłówek pliku.
+     *
+     * @return Bufor z nagłówkiem gotowy do zapisu.
+     */
+    private static ByteBuffer header() {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).put(VERSION).flip();
+        return header;
+    }
+
+    /**
+     * Tworzy rekord dziennika.
+     *
+     * @param gameId       Identyfikator gry.
+     * @param kind         Rodzaj rekordu.
+     * @param version      Wersja stanu gry.
+     * @param player1Token Żeton sesji gracza 1 lub 0.
+     * @param player2Token Żeton sesji gracza 2 lub 0.
+     * @param data         Zakodowany stan gry (pusty dla rekordu usunięcia).
+     * @return Rekord: długość treści, treść i suma kontrolna.
+     */
+    private static byte[] record(int gameId, byte kind, long version, long player1Token, long player2Token, byte[] data) {
+        int length = BODY_HEADER_SIZE + data.length;
+        ByteBuffer record = ByteBuffer.allocate(4 + length + 4);
+        record.putInt(length).putInt(gameId).put(kind).putLong(version).putLong(player1Token).putLong(player2Token).put(data);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 4, length);
+        record.putInt((int) crc.getValue());
+        return record.array();
+    }
+}
@@ -0,0 +1,136 @@
+package org.rewera.ptak.raczynski;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Jedno rozesłanie stanu gry do graczy i widzów.
+ *
+ * <p>Stan jest kodowany leniwie i co najwyżej raz dla każdego formatu (kodeka protokołu ramkowego
+ * lub strumienia obiektów starego protokołu), niezależnie od liczby odbiorców. Zakodowane bajty
+ * trafiają do {@link SharedFrame}, którą odbiorcy współdzielą bez kopiowania. Odbiorcy z replikacją
+ * różnicową nadal kodują stan sami, bo różnica zależy od stanu potwierdzonego przez danego klienta.</p>
+ *
+ * <p>Obiekt jest używany tylko przez wątek rozsyłający (pod blokadą gry). Po rozesłaniu
+ * {@link #release()} zwalnia referencje rozsyłającego - bufory wracają do puli, gdy zapiszą je
+ * wszyscy odbiorcy.</p>
+ */
+final class StateBroadcast {
+
+    /**
+     * Rozsyłany stan gry.
+     */
+    private final GameState state;
+
+    /**
+     * Metryki gry, w których zapisywany jest czas i rozmiar kodowania (lub null).
+     */
+    private final GameMetrics metrics;
+
+    /**
+     * Ramki {@link WireProtocol#FRAME_STATE} według identyfikatora kodeka (null przed pierwszym użyciem).
+     */
+    private final SharedFrame[] frames = new SharedFrame[2];
+
+    /**
+     * Stan zserializowany dla strumienia obiektów starego protokołu (null przed pierwszym użyciem).
+     */
+    private SharedFrame legacy;
+
+    /**
+     * Tworzy rozesłanie stanu.
+     *
+     * @param state   Stan gry.
+     * @param metrics Metryki gry lub null.
+     */
+    StateBroadcast(GameState state, GameMetrics metrics) {
+        this.state = state;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Zwraca rozsyłany stan gry.
+     *
+     * @return Stan gry.
+     */
+    GameState getState() {
+        return state;
+    }
+
+    /**
+     * Zwraca ramkę {@link WireProtocol#FRAME_STATE} dla kodeka, kodując stan przy pierwszym wywołaniu.
+     * Odbiorca, który zatrzymuje ramkę, musi wywołać {@link SharedFrame#retain()}.
+     *
+     * @param codec Kodek stanu gry.
+     * @return Ramka współdzielona.
+     */
+    SharedFrame frame(GameStateCodec codec) {
+        SharedFrame frame = frames[codec.id()];
+        if (frame == null) {
+            long start = System.nanoTime();
+            byte[] payload = codec.encode(state);
+            frame = SharedFrame.frame(WireProtocol.FRAME_STATE, payload);
+            record(start, payload.length);
+            frames[codec.id()] = frame;
+        }
+        return frame;
+    }
+
+    /**
+     * Zwraca stan zserializowany tak, jak zapisałby go {@link ObjectOutputStream} starego protokołu
+     * ({@code writeObject} i {@code reset}), bez nagłówka strumienia. Bajty można więc dopisać do
+     * strumienia obiektów dowolnego klienta po opróżnieniu jego bufora.
+     * Odbiorca, który zatrzymuje wiadomość, musi wywołać {@link SharedFrame#retain()}.
+     *
+     * @return Wiadomość współdzielona.
+     */
+    SharedFrame legacyFrame() {
+        if (legacy == null) {
+            long start = System.nanoTime();
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+                ObjectOutputStream out = new ObjectOutputStream(bytes);
+                out.flush();
+                bytes.reset(); // Nagłówek strumienia klient odebrał już przy połączeniu
+                out.writeObject(state);
+                out.reset(); // Klient czyści tablicę odwołań jak przy zapisie przez własny strumień
+                out.flush();
+                legacy = SharedFrame.raw(bytes.toByteArray());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            record(start, legacy.length());
+        }
+        return legacy;
+    }
+
+    /**
+     * Zapisuje czas i rozmiar kodowania w metrykach gry.
+     *
+     * @param start Czas rozpoczęcia kodowania w nanosekundach.
+     * @param bytes Rozmiar zakodowanego stanu.
+     */
+    private void record(long start, int bytes) {
+        if (metrics != null) {
+            metrics.recordSerialization(System.nanoTime() - start, bytes);
+        }
+    }
+
+    /**
+     * Zwalnia referencje rozsyłającego do zakodowanych ramek.
+     */
+    void release() {
+        for (int i = 0; i < frames.length; i++) {
+            if (frames[i] != null) {
+                frames[i].release();
+                frames[i] = null;
+            }
+        }
+        if (legacy != null) {
+            legacy.release();
+            legacy = null;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package org.rewera.ptak.raczynski;
+
+import java.io.IOException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Kliencka strona replikacji stanu gry ({@link StateReplicator}).
+ * Przechowuje ostatnie odebrane stany według numerów i odtwarza stan z klatek kluczowych
+ * oraz różnic. Przechowywane stany nie są udostępniane na zewnątrz - wywołujący dostaje kopie,
+ * które może dowolnie modyfikować.
+ *
+ * <p>Ramki mogą przychodzić z dwóch wątków (TCP i UDP) i w dowolnej kolejności - ramka
+ * starsza niż ostatnio odtworzony stan jest pomijana (najnowszy stan wygrywa).</p>
+ */
+class StateReplica {
+
+    /**
+     * Odebrane stany; stan o numerze {@code n} leży pod indeksem {@code n % HISTORY}.
+     */
+    private final GameState[] states = new GameState[StateReplicator.HISTORY];
+
+    /**
+     * Numery stanów przechowywanych w {@link #states}.
+     */
+    private final int[] seqs = new int[StateReplicator.HISTORY];
+
+    /**
+     * Kodek używany dla klatek kluczowych.
+     */
+    private final GameStateCodec codec;
+
+    /**
+     * Numer ostatnio odtworzonego stanu (do potwierdzenia).
+     */
+    private int lastSeq;
+
+    /**
+     * Blokada chroniąca stan repliki.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Tworzy replikę.
+     *
+     * @param codec Kodek wybrany przez serwer.
+     */
+    StateReplica(GameStateCodec codec) {
+        this.codec = codec;
+    }
+
+    /**
+     * Odtwarza stan z ramki {@link WireProtocol#FRAME_SNAPSHOT} lub {@link WireProtocol#FRAME_DELTA}.
+     *
+     * @param frame Ramka od serwera.
+     * @return Kopia odtworzonego stanu albo null, jeśli ramka jest starsza niż ostatnio odtworzony stan
+     *         lub różnica odwołuje się do nieznanego stanu (serwer wkrótce wyśle klatkę kluczową).
+     * @throws IOException jeśli dane ramki są niepoprawne.
+     */
+    GameState apply(WireProtocol.Frame frame) throws IOException {
+        lock.lock();
+        try {
+            return applyLocked(frame);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Odtwarza stan z ramki przy założonej blokadzie.
+     *
+     * @param frame Ramka od serwera.
+     * @return Kopia odtworzonego stanu albo null.
+     * @throws IOException jeśli dane ramki są niepoprawne.
+     */
+    private GameState applyLocked(WireProtocol.Frame frame) throws IOException {
+        byte[] data = frame.payload;
+        int seq = WireProtocol.readSeq(data, 0, data.length);
+        if (seq <= lastSeq) {
+            return null;
+        }
+        GameState state;
+        if (frame.type == WireProtocol.FRAME_SNAPSHOT) {
+            state = codec.decode(data, 4, data.length - 4);
+        } else if (frame.type == WireProtocol.FRAME_DELTA) {
+            GameState base = get(WireProtocol.readSeq(data, 4, data.length - 4));
+            if (base == null) {
+                return null;
+            }
+            state = DeltaCodec.apply(base, data, 8, data.length - 8);
+        } else {
+            throw new IOException("Not a replication frame: " + frame.type);
+        }
+        int index = Math.floorMod(seq, StateReplicator.HISTORY);
+        states[index] = state;
+        seqs[index] = seq;
+        lastSeq = seq;
+        return state.copy();
+    }
+
+    /**
+     * Zwraca numer ostatnio odtworzonego stanu, który klient powinien potwierdzić.
+     *
+     * @return Numer stanu.
+     */
+    int getLastSeq() {
+        lock.lock();
+        try {
+            return lastSeq;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Zwraca przechowywany stan o podanym numerze.
+     *
+     * @param seq Numer stanu.
+     * @return Stan lub null, jeśli został już nadpisany.
+     */
+    private GameState get(int seq) {
+        int index = Math.floorMod(seq, StateReplicator.HISTORY);
+        return states[index] != null && seqs[index] == seq ? states[index] : null;
+    }
+}
@@ -0,0 +1,190 @@
+package org.rewera.ptak.raczynski;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Replikacja stanu gry do jednego klienta przyjmującego różnice ({@link WireProtocol#FLAG_DELTA}).
+ *
+ * <p>Każdy wysłany stan dostaje kolejny numer. Dopóki klient nie potwierdzi żadnego stanu,
+ * wysyłane są pełne klatki kluczowe. Po potwierdzeniu kolejne stany są kodowane jako różnica
+ * względem ostatniego potwierdzonego stanu ({@link DeltaCodec}). Co {@link #KEYFRAME_INTERVAL}
+ * stanów oraz gdy potwierdzony stan jest zbyt stary, wysyłana jest ponownie klatka kluczowa,
+ * dzięki czemu klient zawsze może się zsynchronizować.</p>
+ *
+ * <p>Stany są wysyłane z wątku rozsyłającego, a potwierdzenia przychodzą z wątku czytającego,
+ * dlatego obiekt jest chroniony blokadą.</p>
+ */
+class StateReplicator {
+
+    /**
+     * Liczba ostatnich stanów przechowywanych przez klienta. Różnica może odwoływać się
+     * tylko do stanu nie starszego niż tyle numerów.
+     */
+    static final int HISTORY = 64;
+
+    /**
+     * Co ile stanów wysyłana jest klatka kluczowa.
+     */
+    static final int KEYFRAME_INTERVAL = 60;
+
+    /**
+     * Kodek używany dla klatek kluczowych.
+     */
+    private final GameStateCodec codec;
+
+    /**
+     * Wysłane, jeszcze niepotwierdzone stany w kolejności numerów.
+     */
+    private final ArrayDeque<Sent> unacked = new ArrayDeque<>();
+
+    /**
+     * Blokada chroniąca stan replikacji.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Ostatni stan potwierdzony przez klienta (null przed pierwszym potwierdzeniem).
+     */
+    private GameState baseline;
+
+    /**
+     * Numer ostatniego potwierdzonego stanu.
+     */
+    private int baselineSeq;
+
+    /**
+     * Numer ostatnio wysłanego stanu.
+     */
+    private int seq;
+
+    /**
+     * Liczba stanów wysłanych od ostatniej klatki kluczowej.
+     */
+    private int sinceKeyframe;
+
+    /**
+     * Wysłany stan oczekujący na potwierdzenie.
+     */
+    private static final class Sent {
+
+        /**
+         * Numer stanu.
+         */
+        final int seq;
+
+        /**
+         * Kopia wysłanego stanu.
+         */
+        final GameState state;
+
+        /**
+         * Tworzy wpis.
+         *
+         * @param seq   Numer stanu.
+         * @param state Kopia wysłanego stanu.
+         */
+        Sent(int seq, GameState state) {
+            this.seq = seq;
+            this.state = state;
+        }
+    }
+
+    /**
+     * Tworzy replikację dla klienta.
+     *
+     * @param codec Kodek wynegocjowany z klientem, używany dla klatek kluczowych.
+     */
+    StateReplicator(GameStateCodec codec) {
+        this.codec = codec;
+    }
+
+    /**
+     * Przygotowuje ramkę z kolejnym stanem gry: klatkę kluczową lub różnicę.
+     *
+     * @param gameState Stan gry do wysłania.
+     * @return Ramka {@link WireProtocol#FRAME_SNAPSHOT} lub {@link WireProtocol#FRAME_DELTA}.
+     */
+    WireProtocol.Frame next(GameState gameState) {
+        return next(gameState, false);
+    }
+
+    /**
+     * Przygotowuje ramkę z kolejnym stanem gry.
+     *
+     * @param gameState Stan gry do wysłania.
+     * @param keyframe  Wymusza klatkę kluczową (np. dla stanu wysyłanego kanałem niezawodnym,
+     *                  który musi dać się odtworzyć niezależnie od zgubionych różnic).
+     * @return Ramka {@link WireProtocol#FRAME_SNAPSHOT} lub {@link WireProtocol#FRAME_DELTA}.
+     */
+    WireProtocol.Frame next(GameState gameState, boolean keyframe) {
+        lock.lock();
+        try {
+            GameState state = gameState.copy();
+            seq++;
+            if (unacked.size() == HISTORY) {
+                unacked.pollFirst();
+            }
+            unacked.addLast(new Sent(seq, state));
+
+            if (keyframe || baseline == null || sinceKeyframe >= KEYFRAME_INTERVAL || seq - baselineSeq >= HISTORY) {
+                sinceKeyframe = 1;
+                byte[] encoded = codec.encode(state);
+                return new WireProtocol.Frame(WireProtocol.FRAME_SNAPSHOT,
+                        ByteBuffer.allocate(4 + encoded.length).putInt(seq).put(encoded).array());
+            }
+            sinceKeyframe++;
+            byte[] delta = DeltaCodec.encode(baseline, state);
+            return new WireProtocol.Frame(WireProtocol.FRAME_DELTA,
+                    ByteBuffer.allocate(8 + delta.length).putInt(seq).putInt(baselineSeq).put(delta).array());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Przyjmuje potwierdzenie od klienta. Potwierdzony stan staje się bazą kolejnych różnic.
+     * Potwierdzenia starsze niż bieżąca baza oraz nieznanych numerów są pomijane.
+     *
+     * @param ackSeq Numer potwierdzonego stanu.
+     */
+    void ack(int ackSeq) {
+        lock.lock();
+        try {
+            if (ackSeq <= baselineSeq) {
+                return;
+            }
+            Iterator<Sent> iterator = unacked.iterator();
+            while (iterator.hasNext()) {
+                Sent sent = iterator.next();
+                if (sent.seq > ackSeq) {
+                    return;
+                }
+                iterator.remove();
+                if (sent.seq == ackSeq) {
+                    baseline = sent.state;
+                    baselineSeq = ackSeq;
+                    return;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sprawdza, czy klient potwierdził ostatnio wysłany stan.
+     *
+     * @return true, jeśli ostatni wysłany stan jest potwierdzony (lub nic nie wysłano).
+     */
+    boolean isLatestAcked() {
+        lock.lock();
+        try {
+            return baselineSeq == seq;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -72,6 +72,34 @@ class Tank implements Serializable {
         this.fuel = 100; // Domyślne paliwo
     }
 
+    /**
+     * Konstruktor odtwarzający pełny stan czołgu (np. po odebraniu go z sieci).
+     *
+     * @param x Współrzędna X pozycji czołgu.
+     * @param y Współrzędna Y pozycji czołgu.
+     * @param color Kolor czołgu.
+     * @param angle Kąt nachylenia lufy w stopniach.
+     * @param hp Punkty życia.
+     * @param fuel Ilość paliwa.
+     */
+    Tank(int x, int y, Color color, int angle, int hp, int fuel) {
+        this.x = x;
+        this.y = y;
+        this.color = color;
+        this.angle = angle;
+        this.hp = hp;
+        this.fuel = fuel;
+    }
+
+    /**
+     * Tworzy niezależną kopię czołgu.
+     *
+     * @return Kopia czołgu.
+     */
+    Tank copy() {
+        return new Tank(x, y, color, angle, hp, fuel);
+    }
+
     /**
      * Rysuje czołg na ekranie.
      * Wyświetla również kąt, punkty życia i paliwo.
@@ -111,6 +139,30 @@ class Tank implements Serializable {
         }
     }
 
+    /**
+     * Przesuwa czołg w lewo, sprawdzając kolizje przez indeks przeszkód.
+     *
+     * @param obstacles Indeks przeszkód, z którymi może kolidować czołg.
+     */
+    void moveLeft(ObstacleIndex obstacles) {
+        if (x > 0 && fuel > 0 && !obstacles.intersectsOnGround(x - 2, y, width, height)) { // Sprawdzenie kolizji
+            x -= 2;
+            decreaseFuel(1);
+        }
+    }
+
+    /**
+     * Przesuwa czołg w prawo, sprawdzając kolizje przez indeks przeszkód.
+     *
+     * @param obstacles Indeks przeszkód, z którymi może kolidować czołg.
+     */
+    void moveRight(ObstacleIndex obstacles) {
+        if (x < 750 && fuel > 0 && !obstacles.intersectsOnGround(x + 2, y, width, height)) { // Sprawdzenie kolizji
+            x += 2;
+            decreaseFuel(1);
+        }
+    }
+
     /**
      * Sprawdza, czy czołg koliduje z jakąkolwiek przeszkodą.
      *
@@ -120,9 +172,8 @@ class Tank implements Serializable {
      * @return {@code true} jeśli występuje kolizja z przeszkodą, {@code false} w przeciwnym razie.
      */
     private boolean isCollisionWithObstacle(int newX, int newY, List<Obstacle> obstacles) {
-        Rectangle tankBounds = new Rectangle(newX, newY, width, height);
-        for (Obstacle obstacle : obstacles) {
-            if (tankBounds.intersects(obstacle.getBounds())) {
+        for (int i = 0; i < obstacles.size(); i++) {
+            if (obstacles.get(i).intersects(newX, newY, width, height)) {
                 return true; // Kolizja z przeszkodą
             }
         }
@@ -167,6 +218,24 @@ class Tank implements Serializable {
         return width;
     }
 
+    /**
+     * Zwraca wysokość czołgu.
+     *
+     * @return Wysokość czołgu.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Zwraca kolor czołgu.
+     *
+     * @return Kolor czołgu.
+     */
+    public Color getColor() {
+        return color;
+    }
+
     /**
      * Zwraca kąt czołgu.
      *
@@ -185,6 +254,19 @@ class Tank implements Serializable {
         return new Rectangle(x, y, width, height);
     }
 
+    /**
+     * Sprawdza, czy czołg przecina podany prostokąt (bez tworzenia {@link Rectangle}).
+     *
+     * @param x      Lewy brzeg prostokąta.
+     * @param y      Górny brzeg prostokąta.
+     * @param width  Szerokość prostokąta.
+     * @param height Wysokość prostokąta.
+     * @return true, jeśli prostokąt przecina czołg.
+     */
+    boolean intersects(int x, int y, int width, int height) {
+        return Aabb.intersects(x, y, width, height, this.x, this.y, this.width, this.height);
+    }
+
     /**
      * Zwraca punkty życia czołgu.
      *
@@ -0,0 +1,394 @@
+package org.rewera.ptak.raczynski;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Wspólny harmonogram taktów dla wielu instancji gier.
+ *
+ * <p>Zadania są rozdzielane między stałą liczbę shardów, każdy z własnym wątkiem, który co okres
+ * wykonuje kolejno wszystkie swoje zadania. Nowe zadanie trafia do najmniej obciążonego sharda.
+ * Dla każdego zadania liczone są takty wykonane z opóźnieniem większym niż okres oraz takty,
+ * które same trwały dłużej niż {@link #slowTaskNanos}. Zadanie, które {@link #SLOW_STRIKES} razy
+ * z rzędu było wolne, jest przenoszone na osobny wolny pas, aby nie opóźniało pozostałych
+ * zadań swojego sharda. Po {@link #RECOVERY_TICKS} szybkich taktach z rzędu wraca na najmniej
+ * obciążony zwykły shard, więc chwilowe spowolnienie (np. pauza GC) nie zostawia gry na wolnym pasie
+ * na zawsze.</p>
+ *
+ * <p>Jeśli shard nie nadąża, pominięte takty nie są nadrabiane seriami - harmonogram przesuwa
+ * termin na najbliższy przyszły takt i zlicza pominięcia.</p>
+ */
+class TickScheduler {
+
+    /**
+     * Liczba kolejnych wolnych taktów, po której zadanie trafia na wolny pas.
+     */
+    static final int SLOW_STRIKES = 3;
+
+    /**
+     * Liczba kolejnych szybkich taktów, po której zadanie wraca z wolnego pasa na zwykły shard.
+     */
+    static final int RECOVERY_TICKS = 50;
+
+    /**
+     * Okres taktu w nanosekundach.
+     */
+    private final long periodNanos;
+
+    /**
+     * Czas wykonania pojedynczego zadania, powyżej którego takt jest uznawany za wolny.
+     */
+    private final long slowTaskNanos;
+
+    /**
+     * Shardy wykonujące zadania.
+     */
+    private final Shard[] shards;
+
+    /**
+     * Shard wolnego pasa dla zadań, które regularnie przekraczają budżet.
+     */
+    private final Shard slowLane;
+
+    /**
+     * Opóźnienie rozpoczęcia taktów shardów względem terminu.
+     */
+    private final LatencyHistogram tickLateness = new LatencyHistogram();
+
+    /**
+     * Liczba taktów pominiętych, bo shard nie nadążał.
+     */
+    private final AtomicLong missedTicks = new AtomicLong();
+
+    /**
+     * Określa, czy harmonogram działa.
+     */
+    private volatile boolean running = true;
+
+    /**
+     * Tworzy i uruchamia harmonogram.
+     *
+     * @param name         Przedrostek nazw wątków.
+     * @param threads      Liczba shardów (wątków).
+     * @param periodMillis Okres taktu w milisekundach.
+     */
+    TickScheduler(String name, int threads, long periodMillis) {
+        this.periodNanos = TimeUnit.MILLISECONDS.toNanos(periodMillis);
+        this.slowTaskNanos = periodNanos / 4;
+        this.shards = new Shard[threads];
+        for (int i = 0; i < threads; i++) {
+            shards[i] = new Shard(name + "-" + i, false);
+        }
+        this.slowLane = new Shard(name + "-slow", true);
+    }
+
+    /**
+     * Dodaje zadanie wykonywane co takt.
+     *
+     * @param task Zadanie (np. takt instancji gry).
+     * @return Uchwyt zadania pozwalający je anulować i odczytać statystyki.
+     */
+    Handle schedule(Runnable task) {
+        Handle handle = new Handle(task);
+        leastLoaded().add(handle);
+        return handle;
+    }
+
+    /**
+     * Wybiera zwykły shard z najmniejszą liczbą zadań.
+     *
+     * @return Najmniej obciążony shard.
+     */
+    private Shard leastLoaded() {
+        Shard target = shards[0];
+        for (Shard shard : shards) {
+            if (shard.size.get() < target.size.get()) {
+                target = shard;
+            }
+        }
+        return target;
+    }
+
+    /**
+     * Zatrzymuje wszystkie wątki harmonogramu.
+     */
+    void shutdown() {
+        running = false;
+        for (Shard shard : shards) {
+            LockSupport.unpark(shard.thread);
+        }
+        LockSupport.unpark(slowLane.thread);
+    }
+
+    /**
+     * Zwraca histogram opóźnień rozpoczęcia taktów względem terminu.
+     *
+     * @return Histogram opóźnień.
+     */
+    LatencyHistogram getTickLateness() {
+        return tickLateness;
+    }
+
+    /**
+     * Zwraca liczbę taktów pominiętych przez przeciążone shardy.
+     *
+     * @return Liczba pominiętych taktów.
+     */
+    long getMissedTicks() {
+        return missedTicks.get();
+    }
+
+    /**
+     * Zwraca liczbę zadań na wolnym pasie.
+     *
+     * @return Liczba zadań na wolnym pasie.
+     */
+    int getSlowLaneSize() {
+        return slowLane.size.get();
+    }
+
+    /**
+     * Uchwyt zaplanowanego zadania ze statystykami przekroczeń.
+     * Liczniki są zapisywane wyłącznie przez wątek sharda.
+     */
+    static final class Handle {
+
+        /**
+         * Wykonywane zadanie.
+         */
+        private final Runnable task;
+
+        /**
+         * Określa, czy zadanie zostało anulowane.
+         */
+        private volatile boolean cancelled;
+
+        /**
+         * Liczba taktów rozpoczętych z opóźnieniem większym niż okres.
+         */
+        private volatile long lateTicks;
+
+        /**
+         * Liczba taktów, które same trwały dłużej niż budżet zadania.
+         */
+        private volatile long slowTicks;
+
+        /**
+         * Czas wykonania ostatniego taktu w nanosekundach.
+         */
+        private volatile long lastTickNanos;
+
+        /**
+         * Liczba kolejnych wolnych taktów.
+         */
+        private int strikes;
+
+        /**
+         * Liczba kolejnych szybkich taktów na wolnym pasie.
+         */
+        private int fastStreak;
+
+        /**
+         * Określa, czy zadanie zostało przeniesione na wolny pas.
+         */
+        private volatile boolean slowLane;
+
+        /**
+         * Tworzy uchwyt.
+         *
+         * @param task Wykonywane zadanie.
+         */
+        private Handle(Runnable task) {
+            this.task = task;
+        }
+
+        /**
+         * Anuluje zadanie. Zadanie zostanie usunięte z sharda przy najbliższym takcie.
+         */
+        void cancel() {
+            cancelled = true;
+        }
+
+        /**
+         * Zwraca liczbę taktów rozpoczętych z opóźnieniem większym niż okres.
+         *
+         * @return Liczba opóźnionych taktów.
+         */
+        long getLateTicks() {
+            return lateTicks;
+        }
+
+        /**
+         * Zwraca liczbę taktów, które trwały dłużej niż budżet zadania.
+         *
+         * @return Liczba wolnych taktów.
+         */
+        long getSlowTicks() {
+            return slowTicks;
+        }
+
+        /**
+         * Zwraca czas wykonania ostatniego taktu.
+         *
+         * @return Czas w nanosekundach.
+         */
+        long getLastTickNanos() {
+            return lastTickNanos;
+        }
+
+        /**
+         * Sprawdza, czy zadanie zostało przeniesione na wolny pas.
+         *
+         * @return true, jeśli zadanie jest na wolnym pasie.
+         */
+        boolean isOnSlowLane() {
+            return slowLane;
+        }
+    }
+
+    /**
+     * Shard: wątek wykonujący co takt wszystkie swoje zadania.
+     */
+    private final class Shard implements Runnable {
+
+        /**
+         * Zadania dodane z innych wątków, oczekujące na przejęcie przez shard.
+         */
+        private final Queue<Handle> incoming = new ConcurrentLinkedQueue<>();
+
+        /**
+         * Zadania sharda (używane tylko przez jego wątek).
+         */
+        private final List<Handle> tasks = new ArrayList<>();
+
+        /**
+         * Liczba zadań sharda (razem z oczekującymi).
+         */
+        private final AtomicInteger size = new AtomicInteger();
+
+        /**
+         * Określa, czy to shard wolnego pasa.
+         */
+        private final boolean isSlowLane;
+
+        /**
+         * Wątek sharda.
+         */
+        private final Thread thread;
+
+        /**
+         * Tworzy i uruchamia shard.
+         *
+         * @param name       Nazwa wątku.
+         * @param isSlowLane Określa, czy to shard wolnego pasa.
+         */
+        Shard(String name, boolean isSlowLane) {
+            this.isSlowLane = isSlowLane;
+            this.thread = new Thread(this, name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        /**
+         * Przekazuje zadanie shardowi.
+         *
+         * @param handle Uchwyt zadania.
+         */
+        void add(Handle handle) {
+            size.incrementAndGet();
+            incoming.add(handle);
+        }
+
+        @Override
+        public void run() {
+            long deadline = System.nanoTime() + periodNanos;
+            while (running) {
+                long now;
+                while ((now = System.nanoTime()) < deadline && running) {
+                    LockSupport.parkNanos(deadline - now);
+                }
+                tickLateness.record(now - deadline);
+
+                Handle handle;
+                while ((handle = incoming.poll()) != null) {
+                    tasks.add(handle);
+                }
+                runTasks(deadline);
+
+                deadline += periodNanos;
+                long behind = System.nanoTime() - deadline;
+                if (behind > periodNanos) {
+                    long skipped = behind / periodNanos;
+                    deadline += skipped * periodNanos;
+                    missedTicks.addAndGet(skipped);
+                }
+            }
+        }
+
+        /**
+         * Wykonuje wszystkie zadania sharda, usuwając anulowane i przenosząc wolne na wolny pas,
+         * a zadania wolnego pasa, które znów są szybkie - z powrotem na zwykły shard.
+         *
+         * @param deadline Termin bieżącego taktu.
+         */
+        private void runTasks(long deadline) {
+            for (int i = 0; i < tasks.size(); i++) {
+                Handle handle = tasks.get(i);
+                if (handle.cancelled) {
+                    removeAt(i--);
+                    continue;
+                }
+                long start = System.nanoTime();
+                if (start - deadline > periodNanos) {
+                    handle.lateTicks++;
+                }
+                try {
+                    handle.task.run();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+                long took = System.nanoTime() - start;
+                handle.lastTickNanos = took;
+                if (took <= slowTaskNanos) {
+                    handle.strikes = 0;
+                    if (isSlowLane && ++handle.fastStreak >= RECOVERY_TICKS) {
+                        System.out.println("Tick task stayed within " + slowTaskNanos / 1000 + " us for "
+                                + RECOVERY_TICKS + " ticks, moving it back from the slow lane");
+                        handle.fastStreak = 0;
+                        handle.slowLane = false;
+                        removeAt(i--);
+                        leastLoaded().add(handle);
+                    }
+                    continue;
+                }
+                handle.fastStreak = 0;
+                handle.slowTicks++;
+                if (++handle.strikes >= SLOW_STRIKES && !isSlowLane) {
+                    System.out.println("Tick task exceeded " + slowTaskNanos / 1000 + " us "
+                            + SLOW_STRIKES + " times in a row, moving it to the slow lane");
+                    handle.slowLane = true;
+                    removeAt(i--);
+                    slowLane.add(handle);
+                }
+            }
+        }
+
+        /**
+         * Usuwa zadanie z listy, zastępując je ostatnim (kolejność zadań nie ma znaczenia).
+         *
+         * @param index Indeks zadania.
+         */
+        private void removeAt(int index) {
+            int last = tasks.size() - 1;
+            tasks.set(index, tasks.get(last));
+            tasks.remove(last);
+            size.decrementAndGet();
+        }
+    }
+}
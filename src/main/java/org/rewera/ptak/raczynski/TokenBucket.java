@@ -0,0 +1,82 @@
+package org.rewera.ptak.raczynski;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Kubełek żetonów ograniczający liczbę wiadomości od jednego klienta.
+ *
+ * <p>Kubełek mieści co najwyżej {@code burst} żetonów i uzupełnia się w tempie {@code rate} żetonów
+ * na sekundę. Każda przyjęta wiadomość zużywa jeden żeton, więc klient może chwilowo wysłać serię
+ * (np. po przytrzymaniu klawisza), ale średnio nie więcej niż {@code rate} wiadomości na sekundę.
+ * Żetony są liczone w nanosekundach czasu uzupełniania, więc sprawdzenie to kilka działań
+ * na liczbach całkowitych, bez alokacji.</p>
+ */
+class TokenBucket {
+
+    /**
+     * Czas uzupełnienia jednego żetonu w nanosekundach.
+     */
+    private final long nanosPerToken;
+
+    /**
+     * Czas uzupełnienia pełnego kubełka w nanosekundach.
+     */
+    private final long capacityNanos;
+
+    /**
+     * Chwila, w której kubełek byłby pusty, gdyby nie przyjmował wiadomości (w nanosekundach).
+     * Kubełek jest pełny, gdy od tej chwili minęło co najmniej {@link #capacityNanos}.
+     */
+    private long emptyAt;
+
+    /**
+     * Tworzy pełny kubełek.
+     *
+     * @param rate  Liczba żetonów uzupełnianych na sekundę (co najmniej 1).
+     * @param burst Pojemność kubełka (co najmniej 1).
+     */
+    TokenBucket(int rate, int burst) {
+        if (rate < 1 || burst < 1) {
+            throw new IllegalArgumentException("Invalid token bucket: rate " + rate + ", burst " + burst);
+        }
+        this.nanosPerToken = TimeUnit.SECONDS.toNanos(1) / rate;
+        this.capacityNanos = nanosPerToken * burst;
+        this.emptyAt = System.nanoTime() - capacityNanos;
+    }
+
+    /**
+     * Pobiera żeton dla wiadomości odebranej teraz.
+     *
+     * @return true, jeśli wiadomość mieści się w limicie.
+     */
+    boolean tryAcquire() {
+        return tryAcquire(System.nanoTime());
+    }
+
+    /**
+     * Czeka, aż kubełek przyjmie kolejną wiadomość, i pobiera dla niej żeton.
+     *
+     * @throws InterruptedException jeśli oczekiwanie zostało przerwane.
+     */
+    void acquire() throws InterruptedException {
+        while (!tryAcquire()) {
+            TimeUnit.NANOSECONDS.sleep(Math.max(TimeUnit.MILLISECONDS.toNanos(1), nanosPerToken / 4));
+        }
+    }
+
+    /**
+     * Pobiera żeton dla wiadomości odebranej w podanej chwili.
+     * Synchronizowane, bo klient UDP wysyła polecenia także z wątku transportu.
+     *
+     * @param now Bieżący czas w nanosekundach ({@link System#nanoTime()}).
+     * @return true, jeśli wiadomość mieści się w limicie.
+     */
+    synchronized boolean tryAcquire(long now) {
+        long base = Math.max(emptyAt, now - capacityNanos);
+        if (base + nanosPerToken > now) {
+            return false;
+        }
+        emptyAt = base + nanosPerToken;
+        return true;
+    }
+}
@@ -0,0 +1,167 @@
+package org.rewera.ptak.raczynski;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Kliencki koniec transportu UDP ({@link UdpTransport}).
+ *
+ * <p>Po otrzymaniu żetonu przez TCP klient zgłasza się serwerowi wiadomością niezawodną
+ * {@link WireProtocol#FRAME_UDP_BIND}. Gdy serwer ją potwierdzi, polecenia gracza idą
+ * kanałem niezawodnym przez UDP, a stany gry przychodzą datagramami. Jeśli łącze UDP
+ * przestanie działać, {@link #isReady()} zwraca false i klient wraca do TCP.</p>
+ */
+class UdpClient {
+
+    /**
+     * Kanał datagramowy połączony z serwerem.
+     */
+    private final DatagramChannel channel;
+
+    /**
+     * Koniec łącza sesji.
+     */
+    private final UdpLink link;
+
+    /**
+     * Odbiorca wiadomości od serwera.
+     */
+    private final Consumer<WireProtocol.Frame> handler;
+
+    /**
+     * Zegar ponowień.
+     */
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "udp-client-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Tworzy klienta UDP.
+     *
+     * @param server  Adres UDP serwera (ten sam host i port co połączenie TCP).
+     * @param token   Żeton sesji otrzymany w ramce {@link WireProtocol#FRAME_UDP_BIND}.
+     * @param handler Odbiorca wiadomości od serwera (wywoływany w wątku odbierającym).
+     * @throws IOException jeśli nie udało się otworzyć kanału.
+     */
+    UdpClient(SocketAddress server, long token, Consumer<WireProtocol.Frame> handler) throws IOException {
+        this.channel = DatagramChannel.open();
+        this.channel.connect(server);
+        this.link = new UdpLink(channel, token, server);
+        this.handler = handler;
+    }
+
+    /**
+     * Zgłasza się serwerowi i uruchamia wątek odbierający oraz zegar ponowień.
+     *
+     * @throws IOException w przypadku błędu wysyłania.
+     */
+    void start() throws IOException {
+        Thread receiver = new Thread(this::receiveLoop, "udp-client-receive");
+        receiver.setDaemon(true);
+        receiver.start();
+        timer.scheduleAtFixedRate(this::retransmit, UdpTransport.TIMER_MILLIS, UdpTransport.TIMER_MILLIS,
+                TimeUnit.MILLISECONDS);
+        link.sendReliable(WireProtocol.FRAME_UDP_BIND, ByteBuffer.allocate(8).putLong(link.getToken()).array());
+    }
+
+    /**
+     * Sprawdza, czy serwer potwierdził zgłoszenie, a łącze działa.
+     *
+     * @return true, jeśli polecenia można wysyłać przez UDP.
+     */
+    boolean isReady() {
+        return channel.isOpen() && link.getReliable().getAckedSeq() > 0 && !link.isStalled();
+    }
+
+    /**
+     * Wysyła polecenie gracza kanałem niezawodnym.
+     *
+     * @param payload Dane ramki {@link WireProtocol#FRAME_INPUT}.
+     * @return false, jeśli łącze UDP nie jest gotowe i polecenie trzeba wysłać przez TCP.
+     * @throws IOException w przypadku błędu wysyłania.
+     */
+    boolean sendInput(byte[] payload) throws IOException {
+        return isReady() && link.sendReliable(WireProtocol.FRAME_INPUT, payload);
+    }
+
+    /**
+     * Potwierdza odebranie stanu gry datagramem (bez ponowień - kolejne potwierdzenie zastąpi zgubione).
+     *
+     * @param seq Numer odebranego stanu.
+     * @throws IOException w przypadku błędu wysyłania.
+     */
+    void sendAck(int seq) throws IOException {
+        link.send(WireProtocol.FRAME_ACK, WireProtocol.ack(seq));
+    }
+
+    /**
+     * Zwraca koniec łącza sesji (np. do ustawienia sztucznej utraty w testach).
+     *
+     * @return Koniec łącza.
+     */
+    UdpLink getLink() {
+        return link;
+    }
+
+    /**
+     * Zamyka klienta UDP.
+     */
+    void close() {
+        timer.shutdownNow();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Ponawia niepotwierdzone wiadomości niezawodne.
+     */
+    private void retransmit() {
+        try {
+            link.retransmit();
+        } catch (IOException e) {
+            if (channel.isOpen()) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Pętla wątku odbierającego datagramy od serwera.
+     */
+    private void receiveLoop() {
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        while (channel.isOpen()) {
+            try {
+                buffer.clear();
+                channel.receive(buffer);
+                buffer.flip();
+                if (buffer.remaining() < UdpLink.HEADER_SIZE || buffer.getLong() != link.getToken()) {
+                    continue;
+                }
+                byte type = buffer.get();
+                for (WireProtocol.Frame frame : link.receive(type, buffer.array(), buffer.position(), buffer.remaining())) {
+                    handler.accept(frame);
+                }
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                // Np. ICMP "port unreachable" po zamknięciu serwera - kanał UDP po prostu milknie
+                if (!channel.isOpen()) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package org.rewera.ptak.raczynski;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jeden koniec sesji UDP między klientem a serwerem.
+ *
+ * <p>Każdy datagram ma postać {@code long żeton, byte typ, dane}. Żeton jest przydzielany przez
+ * serwer i przekazywany klientowi przez TCP ({@link WireProtocol#FRAME_UDP_BIND}), więc serwer
+ * rozpoznaje sesję niezależnie od adresu nadawcy. Stany gry są wysyłane bez potwierdzeń (najnowszy
+ * wygrywa), a rzadkie, ważne wiadomości przez {@link ReliableChannel}.</p>
+ *
+ * <p>Do testów można włączyć sztuczną utratę wysyłanych datagramów ({@link #setLossRate(double)}).</p>
+ */
+class UdpLink {
+
+    /**
+     * Maksymalny rozmiar datagramu - bezpiecznie poniżej typowego MTU.
+     */
+    static final int MAX_DATAGRAM = 1200;
+
+    /**
+     * Rozmiar nagłówka datagramu: żeton i typ.
+     */
+    static final int HEADER_SIZE = 9;
+
+    /**
+     * Czas bez potwierdzenia wiadomości niezawodnej, po którym łącze uznaje się za zerwane.
+     */
+    static final long STALL_MILLIS = 3000;
+
+    /**
+     * Kanał datagramowy (na serwerze współdzielony przez wszystkie sesje).
+     */
+    private final DatagramChannel channel;
+
+    /**
+     * Żeton sesji.
+     */
+    private final long token;
+
+    /**
+     * Kanał niezawodny sesji.
+     */
+    private final ReliableChannel reliable = new ReliableChannel();
+
+    /**
+     * Generator sztucznej utraty datagramów.
+     */
+    private final Random random = new Random();
+
+    /**
+     * Adres drugiej strony (null, dopóki klient się nie zgłosił).
+     */
+    private volatile SocketAddress remote;
+
+    /**
+     * Prawdopodobieństwo sztucznej utraty wysyłanego datagramu.
+     */
+    private volatile double lossRate;
+
+    /**
+     * Tworzy koniec sesji.
+     *
+     * @param channel Kanał datagramowy.
+     * @param token   Żeton sesji.
+     * @param remote  Adres drugiej strony lub null, jeśli jeszcze nieznany.
+     */
+    UdpLink(DatagramChannel channel, long token, SocketAddress remote) {
+        this.channel = channel;
+        this.token = token;
+        this.remote = remote;
+    }
+
+    /**
+     * Zwraca żeton sesji.
+     *
+     * @return Żeton sesji.
+     */
+    long getToken() {
+        return token;
+    }
+
+    /**
+     * Zapamiętuje adres drugiej strony (także po zmianie adresu klienta, np. przez NAT).
+     *
+     * @param remote Adres drugiej strony.
+     */
+    void setRemote(SocketAddress remote) {
+        this.remote = remote;
+    }
+
+    /**
+     * Sprawdza, czy adres drugiej strony jest znany.
+     *
+     * @return true, jeśli można wysyłać datagramy.
+     */
+    boolean isBound() {
+        return remote != null;
+    }
+
+    /**
+     * Sprawdza, czy wiadomość zmieści się w jednym datagramie.
+     *
+     * @param payloadLength Długość danych wiadomości.
+     * @param reliable      Określa, czy wiadomość idzie kanałem niezawodnym (dodatkowy nagłówek).
+     * @return true, jeśli wiadomość się zmieści.
+     */
+    boolean fits(int payloadLength, boolean reliable) {
+        return HEADER_SIZE + (reliable ? 5 : 0) + payloadLength <= MAX_DATAGRAM;
+    }
+
+    /**
+     * Sprawdza, czy wiadomość niezawodna czeka na potwierdzenie dłużej niż {@link #STALL_MILLIS}.
+     *
+     * @return true, jeśli łącze UDP należy uznać za zerwane.
+     */
+    boolean isStalled() {
+        return reliable.getOldestUnackedAge(System.nanoTime(), TimeUnit.MILLISECONDS) > STALL_MILLIS;
+    }
+
+    /**
+     * Zwraca kanał niezawodny sesji.
+     *
+     * @return Kanał niezawodny.
+     */
+    ReliableChannel getReliable() {
+        return reliable;
+    }
+
+    /**
+     * Ustawia prawdopodobieństwo sztucznej utraty wysyłanych datagramów (do testów).
+     *
+     * @param lossRate Prawdopodobieństwo z przedziału [0, 1).
+     */
+    void setLossRate(double lossRate) {
+        this.lossRate = lossRate;
+    }
+
+    /**
+     * Wysyła wiadomość bez potwierdzenia.
+     *
+     * @param type    Typ wiadomości.
+     * @param payload Dane wiadomości.
+     * @throws IOException w przypadku błędu wysyłania.
+     */
+    void send(byte type, byte[] payload) throws IOException {
+        transmit(type, payload);
+    }
+
+    /**
+     * Wysyła wiadomość kanałem niezawodnym.
+     *
+     * @param type    Typ wiadomości.
+     * @param payload Dane wiadomości.
+     * @return false, jeśli okno kanału niezawodnego jest pełne.
+     * @throws IOException w przypadku błędu wysyłania.
+     */
+    boolean sendReliable(byte type, byte[] payload) throws IOException {
+        byte[] body = reliable.send(type, payload);
+        if (body == null) {
+            return false;
+        }
+        transmit(WireProtocol.FRAME_RELIABLE, body);
+        return true;
+    }
+
+    /**
+     * Ponawia niepotwierdzone wiadomości niezawodne, których czas minął.
+     *
+     * @throws IOException w przypadku błędu wysyłania.
+     */
+    void retransmit() throws IOException {
+        for (byte[] body : reliable.due(System.nanoTime())) {
+            transmit(WireProtocol.FRAME_RELIABLE, body);
+        }
+    }
+
+    /**
+     * Obsługuje odebrany datagram tej sesji (bez nagłówka). Wiadomości niezawodne są potwierdzane
+     * i dostarczane w kolejności, potwierdzenia trafiają do kanału niezawodnego.
+     *
+     * @param type   Typ datagramu.
+     * @param data   Bufor z danymi.
+     * @param offset Początek danych.
+     * @param length Długość danych.
+     * @return Wiadomości do obsłużenia w kolejności (zwykle jedna lub żadna).
+     * @throws IOException w przypadku błędu wysyłania potwierdzenia lub niepoprawnych danych.
+     */
+    List<WireProtocol.Frame> receive(byte type, byte[] data, int offset, int length) throws IOException {
+        if (type == WireProtocol.FRAME_RELIABLE) {
+            List<WireProtocol.Frame> frames = reliable.receive(data, offset, length);
+            // Potwierdzenie także dla powtórzeń - poprzednie potwierdzenie mogło zaginąć
+            transmit(WireProtocol.FRAME_RELIABLE_ACK, WireProtocol.ack(reliable.getReceivedSeq()));
+            return frames;
+        }
+        if (type == WireProtocol.FRAME_RELIABLE_ACK) {
+            reliable.acked(WireProtocol.readSeq(data, offset, length));
+            return Collections.emptyList();
+        }
+        byte[] payload = new byte[length];
+        System.arraycopy(data, offset, payload, 0, length);
+        return Collections.singletonList(new WireProtocol.Frame(type, payload));
+    }
+
+    /**
+     * Wysyła datagram do drugiej strony, o ile jej adres jest znany.
+     *
+     * @param type    Typ datagramu.
+     * @param payload Dane datagramu.
+     * @throws IOException w przypadku błędu wysyłania.
+     */
+    private void transmit(byte type, byte[] payload) throws IOException {
+        SocketAddress target = remote;
+        if (target == null || (lossRate > 0 && random.nextDouble() < lossRate)) {
+            return;
+        }
+        ByteBuffer datagram = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+        datagram.putLong(token).put(type).put(payload).flip();
+        channel.send(datagram, target);
+    }
+}
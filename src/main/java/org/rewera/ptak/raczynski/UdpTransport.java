@@ -0,0 +1,259 @@
+package org.rewera.ptak.raczynski;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serwerowy transport UDP dla stanów gry.
+ *
+ * <p>Nasłuchuje na tym samym numerze portu co serwer TCP, który pozostaje ścieżką powitania
+ * i zapasową. Klient z flagą {@link WireProtocol#FLAG_UDP} dostaje przez TCP żeton sesji
+ * i zgłasza się nim datagramem; od tej chwili stany gry płyną przez UDP, gdzie zgubiony
+ * datagram nie wstrzymuje kolejnych (brak blokowania czoła kolejki jak w TCP).</p>
+ *
+ * <p>Jeden wątek odbiera wszystkie datagramy i przekazuje je sesjom według żetonu, a wątek
+ * zegara co {@link #TIMER_MILLIS} ms ponawia niepotwierdzone wiadomości niezawodne.</p>
+ */
+class UdpTransport {
+
+    /**
+     * Okres zegara ponowień w milisekundach.
+     */
+    static final long TIMER_MILLIS = 10;
+
+    /**
+     * Odbiorca wiadomości jednej sesji (po stronie serwera - obsługa klienta).
+     */
+    interface Endpoint {
+
+        /**
+         * Obsługuje wiadomość odebraną przez UDP.
+         *
+         * @param frame Odebrana wiadomość.
+         * @throws IOException jeśli wiadomość jest niepoprawna.
+         */
+        void handleDatagram(WireProtocol.Frame frame) throws IOException;
+
+        /**
+         * Wywoływane co takt zegara transportu (np. do ponowienia ostatniego stanu).
+         */
+        void onTimer();
+    }
+
+    /**
+     * Sesja: koniec łącza i jego odbiorca.
+     */
+    private static final class Session {
+
+        /**
+         * Koniec łącza UDP.
+         */
+        final UdpLink link;
+
+        /**
+         * Odbiorca wiadomości.
+         */
+        final Endpoint endpoint;
+
+        /**
+         * Tworzy sesję.
+         *
+         * @param link     Koniec łącza UDP.
+         * @param endpoint Odbiorca wiadomości.
+         */
+        Session(UdpLink link, Endpoint endpoint) {
+            this.link = link;
+            this.endpoint = endpoint;
+        }
+    }
+
+    /**
+     * Kanał datagramowy serwera.
+     */
+    private final DatagramChannel channel;
+
+    /**
+     * Sesje według żetonu.
+     */
+    private final Map<Long, Session> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * Generator żetonów sesji (nieprzewidywalnych, aby nie dało się podszyć pod cudzą sesję).
+     */
+    private final SecureRandom tokens = new SecureRandom();
+
+    /**
+     * Zegar ponowień.
+     */
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "udp-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Prawdopodobieństwo sztucznej utraty datagramów dla nowych sesji (do testów).
+     */
+    private volatile double lossRate;
+
+    /**
+     * Otwiera kanał datagramowy na podanym porcie.
+     *
+     * @param port Port UDP (zwykle ten sam co port TCP serwera).
+     * @throws IOException jeśli nie udało się otworzyć portu.
+     */
+    UdpTransport(int port) throws IOException {
+        this(port, false);
+    }
+
+    /**
+     * Otwiera kanał datagramowy na podanym porcie.
+     *
+     * @param port      Port UDP (zwykle ten sam co port TCP serwera).
+     * @param reusePort Określa, czy port może być współdzielony z innym procesem serwera ({@code SO_REUSEPORT}).
+     * @throws IOException jeśli nie udało się otworzyć portu.
+     */
+    UdpTransport(int port, boolean reusePort) throws IOException {
+        channel = DatagramChannel.open();
+        try {
+            if (reusePort) {
+                ListeningChannel.enableReusePort(channel);
+            }
+            channel.bind(new InetSocketAddress(port));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Uruchamia wątek odbierający i zegar ponowień.
+     */
+    void start() {
+        Thread receiver = new Thread(this::receiveLoop, "udp-receive");
+        receiver.setDaemon(true);
+        receiver.start();
+        timer.scheduleAtFixedRate(this::onTimer, TIMER_MILLIS, TIMER_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Otwiera sesję z nowym żetonem. Adres klienta zostanie poznany z pierwszego datagramu.
+     *
+     * @param endpoint Odbiorca wiadomości sesji.
+     * @return Koniec łącza sesji.
+     */
+    UdpLink open(Endpoint endpoint) {
+        while (true) {
+            UdpLink link = new UdpLink(channel, tokens.nextLong(), null);
+            link.setLossRate(lossRate);
+            if (sessions.putIfAbsent(link.getToken(), new Session(link, endpoint)) == null) {
+                return link;
+            }
+        }
+    }
+
+    /**
+     * Zamyka sesję.
+     *
+     * @param link Koniec łącza sesji.
+     */
+    void close(UdpLink link) {
+        sessions.remove(link.getToken());
+    }
+
+    /**
+     * Zwraca liczbę otwartych sesji.
+     *
+     * @return Liczba sesji.
+     */
+    int getSessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * Ustawia prawdopodobieństwo sztucznej utraty datagramów dla nowych sesji (do testów).
+     *
+     * @param lossRate Prawdopodobieństwo z przedziału [0, 1).
+     */
+    void setLossRate(double lossRate) {
+        this.lossRate = lossRate;
+    }
+
+    /**
+     * Zwraca port UDP.
+     *
+     * @return Port UDP.
+     * @throws IOException w przypadku błędu odczytu adresu.
+     */
+    int getLocalPort() throws IOException {
+        return ((InetSocketAddress) channel.getLocalAddress()).getPort();
+    }
+
+    /**
+     * Zamyka transport.
+     */
+    void shutdown() {
+        timer.shutdownNow();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Pętla wątku odbierającego datagramy.
+     */
+    private void receiveLoop() {
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        while (channel.isOpen()) {
+            try {
+                buffer.clear();
+                SocketAddress sender = channel.receive(buffer);
+                buffer.flip();
+                if (buffer.remaining() < UdpLink.HEADER_SIZE) {
+                    continue;
+                }
+                Session session = sessions.get(buffer.getLong());
+                if (session == null) {
+                    continue; // Nieznany lub zamknięty żeton
+                }
+                byte type = buffer.get();
+                session.link.setRemote(sender);
+                for (WireProtocol.Frame frame : session.link.receive(type, buffer.array(), buffer.position(), buffer.remaining())) {
+                    if (frame.type != WireProtocol.FRAME_UDP_BIND) {
+                        session.endpoint.handleDatagram(frame);
+                    }
+                }
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Takt zegara: ponowienia wiadomości niezawodnych i obsługa sesji.
+     */
+    private void onTimer() {
+        for (Session session : sessions.values()) {
+            try {
+                session.link.retransmit();
+                session.endpoint.onTimer();
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
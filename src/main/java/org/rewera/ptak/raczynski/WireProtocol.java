@@ -0,0 +1,547 @@
+package org.rewera.ptak.raczynski;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Stałe i pomocnicze metody protokołu ramkowego używanego między klientem a serwerem.
+ *
+ * <p>Klient rozpoczyna połączenie powitaniem: {@code int MAGIC, byte VERSION, byte codec, byte flags}.
+ * Dalej obie strony wymieniają ramki w postaci {@code int długość, byte typ, bajty danych},
+ * gdzie długość obejmuje bajt typu i dane. Starzy klienci rozpoczynają strumień nagłówkiem
+ * serializacji Javy ({@link #LEGACY_MAGIC}) i są obsługiwani strumieniami obiektowymi.</p>
+ */
+final class WireProtocol {
+
+    /**
+     * Znacznik początku powitania ("CZG1").
+     */
+    static final int MAGIC = 0x435A4731;
+
+    /**
+     * Pierwsze dwa bajty strumienia {@link java.io.ObjectOutputStream}.
+     */
+    static final int LEGACY_MAGIC = 0xACED;
+
+    /**
+     * Wersja protokołu ramkowego.
+     */
+    static final byte VERSION = 1;
+
+    /**
+     * Rozmiar powitania w bajtach.
+     */
+    static final int HELLO_SIZE = 7;
+
+    /**
+     * Rozmiar nagłówka ramki (pole długości).
+     */
+    static final int FRAME_HEADER_SIZE = 4;
+
+    /**
+     * Maksymalny rozmiar ramki (typ + dane) w bajtach.
+     */
+    static final int MAX_FRAME_SIZE = 64 * 1024;
+
+    /**
+     * Ramka serwera z przydzieloną rolą: {@code byte isPlayer1, byte przyjęte flagi, byte wybrany kodek}.
+     */
+    static final byte FRAME_WELCOME = 1;
+
+    /**
+     * Ramka ze stanem gry zakodowanym wynegocjowanym kodekiem.
+     */
+    static final byte FRAME_STATE = 2;
+
+    /**
+     * Ramka z komunikatem tekstowym (UTF-8).
+     */
+    static final byte FRAME_TEXT = 3;
+
+    /**
+     * Ramka serwera z pełnym stanem gry (klatka kluczowa): {@code int numer, stan zakodowany kodekiem}.
+     * Wysyłana klientom z flagą {@link #FLAG_DELTA}.
+     */
+    static final byte FRAME_SNAPSHOT = 4;
+
+    /**
+     * Ramka serwera ze zmianami względem potwierdzonego stanu:
+     * {@code int numer, int numer stanu bazowego, różnica} ({@link DeltaCodec}).
+     */
+    static final byte FRAME_DELTA = 5;
+
+    /**
+     * Ramka klienta potwierdzająca odebranie stanu: {@code int numer}.
+     */
+    static final byte FRAME_ACK = 6;
+
+    /**
+     * Ramka klienta z poleceniem sterującym ({@link InputCommand}).
+     */
+    static final byte FRAME_INPUT = 7;
+
+    /**
+     * Ramka serwera z żetonem sesji UDP: {@code long żeton}. Klient z flagą {@link #FLAG_UDP}
+     * odsyła ten sam typ datagramem, aby serwer poznał jego adres ({@link UdpLink}).
+     */
+    static final byte FRAME_UDP_BIND = 8;
+
+    /**
+     * Datagram kanału niezawodnego: {@code int numer, byte typ, dane} ({@link ReliableChannel}).
+     */
+    static final byte FRAME_RELIABLE = 9;
+
+    /**
+     * Datagram potwierdzający kanału niezawodnego: {@code int numer} (potwierdzenie zbiorcze).
+     */
+    static final byte FRAME_RELIABLE_ACK = 10;
+
+    /**
+     * Ramka widza wysyłana po powitaniu z flagą {@link #FLAG_SPECTATE}: {@code int identyfikator gry}
+     * ({@link #ANY_GAME} - dowolna trwająca gra).
+     */
+    static final byte FRAME_WATCH = 11;
+
+    /**
+     * Ramka serwera z żetonem sesji gracza: {@code long żeton}. Wysyłana po powitaniu klientowi
+     * z flagą {@link #FLAG_RESUME}, gdy serwer przechowuje sesje ({@link SessionRegistry}).
+     */
+    static final byte FRAME_SESSION = 12;
+
+    /**
+     * Ramka klienta wysyłana po powitaniu z flagą {@link #FLAG_RESUME}: {@code long żeton,
+     * int numer ostatniego odtworzonego stanu} (0, jeśli klient nie ma repliki stanu).
+     * Żeton 0 oznacza nową sesję.
+     */
+    static final byte FRAME_RESUME = 13;
+
+    /**
+     * Ramka serwera z numerem ostatniego polecenia gracza wykonanego w symulacji: {@code int numer}.
+     * Wysyłana klientowi z flagą {@link #FLAG_PREDICT} przed pierwszym stanem gry uwzględniającym
+     * to polecenie; klient stosuje ponownie na tym stanie tylko polecenia o wyższych numerach.
+     */
+    static final byte FRAME_INPUT_ACK = 14;
+
+    /**
+     * Identyfikator gry w ramce {@link #FRAME_WATCH} oznaczający dowolną trwającą grę.
+     */
+    static final int ANY_GAME = -1;
+
+    /**
+     * Flaga powitania: klient przyjmuje stan jako klatki kluczowe i różnice.
+     */
+    static final byte FLAG_DELTA = 1;
+
+    /**
+     * Flaga powitania: klient wysyła polecenia, a grę prowadzi serwer.
+     */
+    static final byte FLAG_INPUT = 1 << 1;
+
+    /**
+     * Flaga powitania: klient odbiera stany gry przez UDP. Wymaga {@link #FLAG_DELTA}
+     * i jest przyjmowana tylko przez serwer z włączonym transportem UDP.
+     */
+    static final byte FLAG_UDP = 1 << 2;
+
+    /**
+     * Flaga powitania: klient jest widzem (tylko odbiera stany gry). Wyklucza pozostałe flagi -
+     * widzowie dostają pełne stany {@link #FRAME_STATE} kodowane raz dla wszystkich odbiorców.
+     */
+    static final byte FLAG_SPECTATE = 1 << 3;
+
+    /**
+     * Flaga powitania: klient obsługuje wznawianie sesji - po powitaniu wysyła ramkę {@link #FRAME_RESUME}.
+     * W ramce powitalnej serwera flaga oznacza, że sesja została wznowiona (to samo miejsce w tej samej grze);
+     * jej brak - że klient dołączył od nowa i musi porzucić replikę stanu.
+     */
+    static final byte FLAG_RESUME = 1 << 4;
+
+    /**
+     * Flaga powitania: klient przewiduje skutki własnych poleceń i potrzebuje ramek {@link #FRAME_INPUT_ACK}.
+     * Wymaga {@link #FLAG_INPUT}.
+     */
+    static final byte FLAG_PREDICT = 1 << 5;
+
+    /**
+     * Flagi obsługiwane przez serwer.
+     */
+    private static final byte SUPPORTED_FLAGS = FLAG_DELTA | FLAG_INPUT | FLAG_RESUME | FLAG_PREDICT;
+
+    /**
+     * Komunikat wysyłany klientowi, gdy gra jest pełna.
+     */
+    static final String GAME_FULL_MESSAGE = "Game is full. No more players can join.";
+
+    /**
+     * Komunikat wysyłany widzowi, gdy wybranej gry nie ma.
+     */
+    static final String NO_SUCH_GAME_MESSAGE = "No such game to watch.";
+
+    /**
+     * Komunikat wysyłany widzom po zakończeniu oglądanej gry.
+     */
+    static final String MATCH_ENDED_MESSAGE = "Match ended.";
+
+    /**
+     * Komunikat wysyłany klientowi, którego sesji nie udało się wznowić (dołącza wtedy od nowa).
+     */
+    static final String SESSION_EXPIRED_MESSAGE = "Session expired.";
+
+    /**
+     * Komunikat wysyłany graczom przed rozłączeniem przez serwer, który kończy pracę
+     * ({@link GameServer#drain(long)}). Klient może połączyć się ponownie z nową wersją serwera.
+     */
+    static final String SERVER_RESTARTING_MESSAGE = "Server is restarting.";
+
+    /**
+     * Klasa narzędziowa - bez instancji.
+     */
+    private WireProtocol() {
+    }
+
+    /**
+     * Pojedyncza ramka odczytana ze strumienia.
+     */
+    static final class Frame {
+
+        /**
+         * Typ ramki.
+         */
+        final byte type;
+
+        /**
+         * Dane ramki (bez bajtu typu).
+         */
+        final byte[] payload;
+
+        /**
+         * Tworzy ramkę.
+         *
+         * @param type    Typ ramki.
+         * @param payload Dane ramki.
+         */
+        Frame(byte type, byte[] payload) {
+            this.type = type;
+            this.payload = payload;
+        }
+    }
+
+    /**
+     * Powitanie odczytane od klienta.
+     */
+    static final class Hello {
+
+        /**
+         * Identyfikator kodeka żądanego przez klienta.
+         */
+        final byte codec;
+
+        /**
+         * Flagi funkcji żądanych przez klienta.
+         */
+        final byte flags;
+
+        /**
+         * Tworzy powitanie.
+         *
+         * @param codec Identyfikator kodeka.
+         * @param flags Flagi funkcji.
+         */
+        Hello(byte codec, byte flags) {
+            this.codec = codec;
+            this.flags = flags;
+        }
+    }
+
+    /**
+     * Żądanie wznowienia sesji odczytane z ramki {@link #FRAME_RESUME}.
+     */
+    static final class Resume {
+
+        /**
+         * Żeton sesji (0 dla nowej sesji).
+         */
+        final long token;
+
+        /**
+         * Numer ostatniego stanu odtworzonego przez klienta.
+         */
+        final int lastSeq;
+
+        /**
+         * Tworzy żądanie.
+         *
+         * @param token   Żeton sesji.
+         * @param lastSeq Numer ostatniego odtworzonego stanu.
+         */
+        Resume(long token, int lastSeq) {
+            this.token = token;
+            this.lastSeq = lastSeq;
+        }
+    }
+
+    /**
+     * Wyjątek zgłaszany, gdy klient przysłał ramkę większą niż dopuszczalny rozmiar.
+     */
+    static final class FrameTooLargeException extends IOException {
+
+        /**
+         * Unikalny identyfikator wersji klasy do serializacji.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Tworzy wyjątek.
+         *
+         * @param length Zadeklarowany rozmiar ramki.
+         * @param max    Dopuszczalny rozmiar ramki.
+         */
+        FrameTooLargeException(long length, int max) {
+            super("Frame too large: " + length + " bytes, limit " + max);
+        }
+    }
+
+    /**
+     * Odczytuje powitanie klienta ze strumienia blokującego.
+     *
+     * @param in Strumień wejściowy.
+     * @return Odczytane powitanie.
+     * @throws IOException jeśli powitanie jest niepoprawne.
+     */
+    static Hello readHello(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+            throw new IOException("Invalid hello");
+        }
+        return new Hello(in.readByte(), in.readByte());
+    }
+
+    /**
+     * Buduje dane ramki powitalnej serwera.
+     *
+     * @param isPlayer1 Określa, czy klient jest graczem 1.
+     * @param flags     Przyjęte flagi funkcji.
+     * @param codec     Wybrany kodek.
+     * @return Dane ramki {@link #FRAME_WELCOME}.
+     */
+    static byte[] welcome(boolean isPlayer1, byte flags, GameStateCodec codec) {
+        return new byte[]{(byte) (isPlayer1 ? 1 : 0), flags, codec.id()};
+    }
+
+    /**
+     * Zwraca flagi z powitania klienta, które serwer obsługuje. Pozostałe są pomijane.
+     *
+     * @param requested Flagi żądane przez klienta.
+     * @return Przyjęte flagi.
+     */
+    static byte acceptedFlags(byte requested) {
+        if ((requested & FLAG_SPECTATE) != 0) {
+            return FLAG_SPECTATE;
+        }
+        byte accepted = (byte) (requested & SUPPORTED_FLAGS);
+        if ((accepted & FLAG_INPUT) == 0) {
+            accepted &= ~FLAG_PREDICT; // Bez poleceń nie ma czego przewidywać
+        }
+        return accepted;
+    }
+
+    /**
+     * Zwraca flagi z powitania klienta, które serwer obsługuje, z uwzględnieniem transportu UDP.
+     *
+     * @param requested Flagi żądane przez klienta.
+     * @param udp       Określa, czy serwer ma włączony transport UDP.
+     * @return Przyjęte flagi.
+     */
+    static byte acceptedFlags(byte requested, boolean udp) {
+        byte accepted = acceptedFlags(requested);
+        if (udp && (requested & FLAG_UDP) != 0 && (accepted & FLAG_DELTA) != 0) {
+            accepted |= FLAG_UDP;
+        }
+        return accepted;
+    }
+
+    /**
+     * Buduje dane ramki potwierdzenia.
+     *
+     * @param seq Numer potwierdzanego stanu.
+     * @return Dane ramki {@link #FRAME_ACK}.
+     */
+    static byte[] ack(int seq) {
+        return ByteBuffer.allocate(4).putInt(seq).array();
+    }
+
+    /**
+     * Buduje dane ramki widza.
+     *
+     * @param gameId Identyfikator oglądanej gry lub {@link #ANY_GAME}.
+     * @return Dane ramki {@link #FRAME_WATCH}.
+     */
+    static byte[] watch(int gameId) {
+        return ByteBuffer.allocate(4).putInt(gameId).array();
+    }
+
+    /**
+     * Buduje dane ramki żetonu sesji.
+     *
+     * @param token Żeton sesji.
+     * @return Dane ramki {@link #FRAME_SESSION}.
+     */
+    static byte[] session(long token) {
+        return ByteBuffer.allocate(8).putLong(token).array();
+    }
+
+    /**
+     * Buduje dane ramki wznowienia sesji.
+     *
+     * @param token   Żeton sesji lub 0 dla nowej sesji.
+     * @param lastSeq Numer ostatniego odtworzonego stanu.
+     * @return Dane ramki {@link #FRAME_RESUME}.
+     */
+    static byte[] resume(long token, int lastSeq) {
+        return ByteBuffer.allocate(12).putLong(token).putInt(lastSeq).array();
+    }
+
+    /**
+     * Odczytuje identyfikator gry z danych ramki {@link #FRAME_WATCH}.
+     *
+     * @param data   Bufor z danymi ramki.
+     * @param offset Początek danych.
+     * @param length Długość danych.
+     * @return Identyfikator gry lub {@link #ANY_GAME}.
+     * @throws IOException jeśli dane są za krótkie.
+     */
+    static int readGameId(byte[] data, int offset, int length) throws IOException {
+        if (length < 4) {
+            throw new IOException("Frame too short for game id");
+        }
+        return ByteBuffer.wrap(data, offset, 4).getInt();
+    }
+
+    /**
+     * Odczytuje żądanie wznowienia sesji z danych ramki {@link #FRAME_RESUME}.
+     *
+     * @param data   Bufor z danymi ramki.
+     * @param offset Początek danych.
+     * @param length Długość danych.
+     * @return Żądanie wznowienia.
+     * @throws IOException jeśli dane są za krótkie.
+     */
+    static Resume readResume(byte[] data, int offset, int length) throws IOException {
+        if (length < 12) {
+            throw new IOException("Frame too short for resume request");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(data, offset, 12);
+        return new Resume(buffer.getLong(), buffer.getInt());
+    }
+
+    /**
+     * Odczytuje numer stanu z początku danych ramki.
+     *
+     * @param data   Bufor z danymi.
+     * @param offset Początek danych.
+     * @param length Długość danych.
+     * @return Numer stanu.
+     * @throws IOException jeśli dane są za krótkie.
+     */
+    static int readSeq(byte[] data, int offset, int length) throws IOException {
+        if (length < 4) {
+            throw new IOException("Frame too short for sequence number");
+        }
+        return ByteBuffer.wrap(data, offset, 4).getInt();
+    }
+
+    /**
+     * Zapisuje powitanie klienta.
+     *
+     * @param out   Strumień wyjściowy.
+     * @param codec Identyfikator kodeka stanu gry.
+     * @param flags Flagi żądanych funkcji.
+     * @throws IOException w przypadku błędu zapisu.
+     */
+    static void writeHello(DataOutputStream out, byte codec, byte flags) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(codec);
+        out.writeByte(flags);
+        out.flush();
+    }
+
+    /**
+     * Buduje bufor z kompletną ramką gotową do wysłania.
+     *
+     * @param type    Typ ramki.
+     * @param payload Dane ramki.
+     * @return Bufor w trybie do odczytu.
+     */
+    static ByteBuffer frame(byte type, byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.allocate(FRAME_HEADER_SIZE + 1 + payload.length);
+        buffer.putInt(1 + payload.length);
+        buffer.put(type);
+        buffer.put(payload);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Zapisuje ramkę do strumienia blokującego.
+     *
+     * @param out     Strumień wyjściowy.
+     * @param type    Typ ramki.
+     * @param payload Dane ramki.
+     * @throws IOException w przypadku błędu zapisu.
+     */
+    static void writeFrame(DataOutputStream out, byte type, byte[] payload) throws IOException {
+        out.writeInt(1 + payload.length);
+        out.writeByte(type);
+        out.write(payload);
+        out.flush();
+    }
+
+    /**
+     * Odczytuje ramkę ze strumienia blokującego.
+     *
+     * @param in Strumień wejściowy.
+     * @return Odczytana ramka.
+     * @throws IOException jeśli strumień się skończył lub ramka ma niepoprawny rozmiar.
+     */
+    static Frame readFrame(DataInputStream in) throws IOException {
+        return readFrame(in, MAX_FRAME_SIZE);
+    }
+
+    /**
+     * Odczytuje ramkę ze strumienia blokującego, odrzucając ramki większe niż podany rozmiar
+     * jeszcze przed przydzieleniem bufora na dane.
+     *
+     * @param in  Strumień wejściowy.
+     * @param max Największy dopuszczalny rozmiar ramki (typ + dane) w bajtach.
+     * @return Odczytana ramka.
+     * @throws FrameTooLargeException jeśli ramka jest większa niż {@code max}.
+     * @throws IOException            jeśli strumień się skończył lub ramka ma niepoprawny rozmiar.
+     */
+    static Frame readFrame(DataInputStream in, int max) throws IOException {
+        int length = in.readInt();
+        checkFrameLength(length, max);
+        byte type = in.readByte();
+        byte[] payload = new byte[length - 1];
+        in.readFully(payload);
+        return new Frame(type, payload);
+    }
+
+    /**
+     * Sprawdza długość ramki odczytaną z nagłówka.
+     *
+     * @param length Długość ramki (typ + dane).
+     * @param max    Największy dopuszczalny rozmiar ramki.
+     * @throws FrameTooLargeException jeśli ramka jest większa niż {@code max}.
+     * @throws IOException            jeśli długość jest niepoprawna.
+     */
+    static void checkFrameLength(int length, int max) throws IOException {
+        if (length < 1) {
+            throw new IOException("Invalid frame length: " + length);
+        }
+        if (length > max) {
+            throw new FrameTooLargeException(length, max);
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package org.rewera.ptak.raczynski;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.rewera.ptak.raczynski.ServerFixtures.*;
+
+/**
+ * Testy limitów serwera: liczby połączeń, wiadomości na sekundę i rozmiaru ramki.
+ */
+class AdmissionControlTest {
+
+    /**
+     * Uruchomiony serwer.
+     */
+    private GameServer server;
+
+    /**
+     * Zatrzymuje serwer po każdym teście.
+     */
+    @AfterEach
+    void tearDown() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    /**
+     * Sprawdza, czy silnik wątkowy odrzuca połączenia ponad limit i przyjmuje nowe po zwolnieniu miejsca.
+     *
+     * @throws Exception w przypadku błędu połączenia.
+     */
+    @Test
+    void testConnectionLimitWithThreads() throws Exception {
+        checkConnectionLimit(ServerConfig.Engine.THREADS);
+    }
+
+    /**
+     * Sprawdza, czy silnik NIO odrzuca połączenia ponad limit i przyjmuje nowe po zwolnieniu miejsca.
+     *
+     * @throws Exception w przypadku błędu połączenia.
+     */
+    @Test
+    void testConnectionLimitWithNio() throws Exception {
+        checkConnectionLimit(ServerConfig.Engine.NIO);
+    }
+
+    /**
+     * Sprawdza, czy klient zasypujący serwer stanami dostaje ich tylko tyle, ile pozwala limit,
+     * a pominięte stany są zliczane (silnik wątkowy).
+     *
+     * @throws Exception w przypadku błędu połączenia.
+     */
+    @Test
+    void testFloodIsThrottledWithThreads() throws Exception {
+        checkFloodIsThrottled(ServerConfig.Engine.THREADS);
+    }
+
+    /**
+     * Sprawdza, czy silnik NIO pomija stany ponad limit wiadomości.
+     *
+     * @throws Exception w przypadku błędu połączenia.
+     */
+    @Test
+    void testFloodIsThrottledWithNio() throws Exception {
+        checkFloodIsThrottled(ServerConfig.Engine.NIO);
+    }
+
+    /**
+     * Sprawdza, czy silnik wątkowy odczytuje obiekty zasypującego serwer starego klienta dopiero
+     * po przyjęciu przez limit, nie rozłączając go.
+     *
+     * @throws Exception w przypadku błędu połączenia.
+     */
+    @Test
+    void testLegacyFloodIsPaced() throws Exception {
+        ServerConfig config = config(ServerConfig.Engine.THREADS, 0);
+        config.setInboundRate(5);
+        config.setInboundBurst(5);
+        server = start(config);
+        try (Socket first = new Socket("localhost", server.getLocalPort());
+             Socket second = new Socket("localhost", server.getLocalPort())) {
+            new ObjectOutputStream(second.getOutputStream()).flush(); // Nagłówek strumienia drugiego gracza
+            ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(first.getOutputStream()));
+            int sent = 30;
+            for (int x = 1; x <= sent; x++) {
+                out.writeObject(state(100 + x));
+                out.reset();
+            }
+            out.flush();
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (server.getMetrics().getThrottledMessages() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Thread.sleep(300);
+            long throttled = server.getMetrics().getThrottledMessages(); // Po jednym na każdy obiekt czekający na żeton
+            assertTrue(throttled >= 1 && throttled <= 4, "throttled=" + throttled);
+            int x = server.getMatchmaker().get(0).getGameState().getPlayer1Tank().getX();
+            assertTrue(x > 100 && x < 100 + sent, "x=" + x);
+            assertTrue(server.getMatchmaker().get(0).isFull(), "throttled client was disconnected");
+        }
+    }
+
+    /**
+     * Sprawdza, czy obaj silniki rozłączają klienta ramkowego zapowiadającego zbyt dużą ramkę,
+     * a silnik wątkowy - także starego klienta przysyłającego zbyt duży obiekt.
+     *
+     * @throws Exception w przypadku błędu połączenia.
+     */
+    @Test
+    void testOversizedFramesDisconnect() throws Exception {
+        for (ServerConfig.Engine engine : ServerConfig.Engine.values()) {
+            ServerConfig config = config(engine, 0);
+            config.setMaxFrameBytes(1024);
+            server = start(config);
+            try (Socket socket = connect(server.getLocalPort(), (byte) 0)) {
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                out.writeInt(1_000_000);
+                out.writeByte(WireProtocol.FRAME_STATE);
+                out.flush();
+                assertClosed(socket);
+            }
+            awaitDisconnects(DisconnectReason.FRAME_TOO_LARGE, 1);
+            server.stop();
+        }
+
+        server = start(config(ServerConfig.Engine.THREADS, 0));
+        try (Socket socket = new Socket("localhost", server.getLocalPort())) {
+            socket.setSoTimeout(5000);
+            ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.flush();
+            List<Bullet> bullets = new ArrayList<>();
+            for (int i = 0; i < 5000; i++) {
+                bullets.add(new Bullet(i, i, 45, Color.BLUE, true));
+            }
+            try {
+                out.writeObject(new GameState(new Tank(100, 515, Color.BLUE), new Tank(600, 515, Color.RED),
+                        bullets, new ArrayList<>(), true));
+                out.flush();
+            } catch (IOException ignored) {
+                // Serwer może zamknąć połączenie, zanim klient skończy pisać
+            }
+            awaitDisconnects(DisconnectReason.FRAME_TOO_LARGE, 1);
+        }
+    }
+
+    /**
+     * Sprawdza limit połączeń wybranego silnika.
+     *
+     * @param engine Silnik serwera.
+     * @throws Exception w przypadku błędu połączenia.
+     */
+    private void checkConnectionLimit(ServerConfig.Engine engine) throws Exception {
+        ServerConfig config = config(engine, 0);
+        config.setMaxConnections(2);
+        server = start(config);
+        Socket first = connect(server.getLocalPort(), (byte) 0);
+        try (Socket second = connect(server.getLocalPort(), (byte) 0)) {
+            assertEquals(WireProtocol.FRAME_WELCOME, WireProtocol.readFrame(new DataInputStream(first.getInputStream())).type);
+            assertEquals(WireProtocol.FRAME_WELCOME, WireProtocol.readFrame(new DataInputStream(second.getInputStream())).type);
+
+            try (Socket rejected = new Socket("localhost", server.getLocalPort())) {
+                rejected.setSoTimeout(5000);
+                assertClosed(rejected);
+            }
+            assertEquals(1, server.getMetrics().getRejectedConnections());
+            assertEquals(2, server.getConnectionLimiter().getOpen());
+
+            first.close();
+            long deadline = System.currentTimeMillis() + 5000;
+            while (server.getConnectionLimiter().getOpen() > 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            try (Socket admitted = connect(server.getLocalPort(), (byte) 0)) {
+                assertEquals(WireProtocol.FRAME_WELCOME, WireProtocol.readFrame(new DataInputStream(admitted.getInputStream())).type);
+            }
+        } finally {
+            first.close();
+        }
+    }
+
+    /**
+     * Sprawdza limit wiadomości wybranego silnika.
+     *
+     * @param engine Silnik serwera.
+     * @throws Exception w przypadku błędu połączenia.
+     */
+    private void checkFloodIsThrottled(ServerConfig.Engine engine) throws Exception {
+        ServerConfig config = config(engine, 0);
+        config.setInboundRate(5);
+        config.setInboundBurst(5);
+        server = start(config);
+        try (Socket first = connect(server.getLocalPort(), (byte) 0); Socket second = connect(server.getLocalPort(), (byte) 0)) {
+            assertEquals(WireProtocol.FRAME_WELCOME, WireProtocol.readFrame(new DataInputStream(first.getInputStream())).type);
+            assertEquals(WireProtocol.FRAME_WELCOME, WireProtocol.readFrame(new DataInputStream(second.getInputStream())).type);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(first.getOutputStream()));
+            int sent = 50;
+            for (int x = 1; x <= sent; x++) {
+                WireProtocol.writeFrame(out, WireProtocol.FRAME_STATE,
+                        BinaryCodec.INSTANCE.encode(state(100 + x)));
+            }
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (server.getMetrics().getThrottledMessages() < sent - 10 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Thread.sleep(200); // Pozostałe stany z bufora gniazda
+            long throttled = server.getMetrics().getThrottledMessages();
+            assertTrue(throttled >= sent - 10 && throttled <= sent - 5, "throttled=" + throttled);
+            assertEquals(1, server.getMatchmaker().size());
+            assertTrue(server.getMatchmaker().get(0).isFull(), "throttled client was disconnected");
+        }
+    }
+
+    /**
+     * Sprawdza, czy serwer zamknął połączenie (zwykłym zamknięciem lub resetem), pomijając
+     * wysłane wcześniej ramki.
+     *
+     * @param socket Gniazdo klienta.
+     */
+    private static void assertClosed(Socket socket) {
+        try {
+            byte[] buffer = new byte[1024];
+            while (socket.getInputStream().read(buffer) >= 0) {
+                // Powitanie i stany sprzed rozłączenia
+            }
+        } catch (IOException e) {
+            assertFalse(e instanceof SocketTimeoutException, "connection was not rejected");
+        }
+    }
+
+    /**
+     * Czeka, aż serwer zapisze rozłączenie z podanego powodu.
+     *
+     * @param reason   Powód rozłączenia.
+     * @param expected Oczekiwana liczba rozłączeń.
+     * @throws InterruptedException jeśli oczekiwanie zostało przerwane.
+     */
+    private void awaitDisconnects(DisconnectReason reason, long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (server.getMetrics().getDisconnects(reason) < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, server.getMetrics().getDisconnects(reason));
+    }
+}
@@ -0,0 +1,83 @@
+package org.rewera.ptak.raczynski;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testy opóźnienia ponownych połączeń {@link Backoff}.
+ */
+class BackoffTest {
+
+    /**
+     * Sprawdza, czy górna granica opóźnienia podwaja się do maksimum, a reset wraca do pierwszej granicy.
+     */
+    @Test
+    void testCeilingDoublesUpToMaximum() {
+        Backoff backoff = new Backoff(100, 1000, new FixedRandom(0.999999));
+        assertEquals(100, backoff.nextDelayMillis());
+        assertEquals(200, backoff.nextDelayMillis());
+        assertEquals(400, backoff.nextDelayMillis());
+        assertEquals(800, backoff.nextDelayMillis());
+        assertEquals(1000, backoff.nextDelayMillis());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(1000, backoff.nextDelayMillis()); // Bez przepełnienia przesunięcia
+        }
+        assertEquals(105, backoff.getAttempts());
+        backoff.reset();
+        assertEquals(0, backoff.getAttempts());
+        assertEquals(100, backoff.nextDelayMillis());
+    }
+
+    /**
+     * Sprawdza, czy opóźnienia są rozrzucone w całym przedziale, a nie skupione przy granicy.
+     */
+    @Test
+    void testDelaysAreSpreadOverWholeRange() {
+        Random random = new Random(42);
+        int low = 0;
+        for (int i = 0; i < 1000; i++) {
+            Backoff backoff = new Backoff(1000, 1000, random);
+            long delay = backoff.nextDelayMillis();
+            assertTrue(delay >= 0 && delay <= 1000);
+            if (delay < 500) {
+                low++;
+            }
+        }
+        assertTrue(low > 400 && low < 600, "low=" + low);
+        assertThrows(IllegalArgumentException.class, () -> new Backoff(0, 10, random));
+        assertThrows(IllegalArgumentException.class, () -> new Backoff(100, 10, random));
+    }
+
+    /**
+     * Generator zwracający zawsze tę samą liczbę.
+     */
+    private static final class FixedRandom extends Random {
+
+        /**
+         * Unikalny identyfikator wersji klasy do serializacji.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Zwracana liczba z przedziału [0, 1).
+         */
+        private final double value;
+
+        /**
+         * Tworzy generator.
+         *
+         * @param value Zwracana liczba z przedziału [0, 1).
+         */
+        FixedRandom(double value) {
+            this.value = value;
+        }
+
+        @Override
+        public double nextDouble() {
+            return value;
+        }
+    }
+}
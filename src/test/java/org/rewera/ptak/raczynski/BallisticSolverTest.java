@@ -0,0 +1,140 @@
+package org.rewera.ptak.raczynski;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testy analitycznego wyznaczania lotu pocisku {@link BallisticSolver}.
+ */
+class BallisticSolverTest {
+
+    /**
+     * Sprawdza wszystkie strzały możliwe w grze (pozycje czołgu co 2 piksele, kąty co 5 stopni)
+     * przy losowych przeszkodach: takt i rodzaj trafienia muszą być takie same jak w symulacji takt po takcie.
+     */
+    @Test
+    void testMatchesSteppedGameShots() {
+        Random random = new Random(17);
+        int tankHits = 0;
+        int obstacleHits = 0;
+        for (int layout = 0; layout < 3; layout++) {
+            List<Obstacle> obstacles = new ArrayList<>();
+            for (int i = 0; i < 3 + random.nextInt(4); i++) {
+                obstacles.add(new Obstacle(random.nextInt(750), 530, 20 + random.nextInt(30), 20));
+            }
+            int enemyX = random.nextInt(751);
+            for (int x = 0; x <= 750; x += 2) {
+                for (int angle = 0; angle <= 180; angle += 5) {
+                    Tank shooter = new Tank(x, 515, Color.BLUE);
+                    Tank enemy = new Tank(enemyX, 515, Color.RED);
+                    BulletStore bullets = new BulletStore(1);
+                    bullets.fire(shooter.getX() + shooter.getWidth() / 2, shooter.getY(), angle, true);
+
+                    BallisticSolver.Impact impact = BallisticSolver.solve(bullets, 0, shooter, enemy, obstacles);
+                    assertStepped(impact, bullets, shooter, enemy, obstacles, "x=" + x + ", angle=" + angle);
+                    tankHits += impact.tankHit ? 1 : 0;
+                    obstacleHits += impact.obstacleHit ? 1 : 0;
+                }
+            }
+        }
+        assertTrue(tankHits > 100 && obstacleHits > 100, "tank hits " + tankHits + ", obstacle hits " + obstacleHits);
+    }
+
+    /**
+     * Sprawdza dowolne stany pocisków (także lecące w dół, spoza ekranu i pionowo) i przeszkody w powietrzu.
+     */
+    @Test
+    void testMatchesSteppedRandomBullets() {
+        Random random = new Random(29);
+        for (int shot = 0; shot < 20_000; shot++) {
+            List<Obstacle> obstacles = new ArrayList<>();
+            for (int i = 0; i < random.nextInt(8); i++) {
+                obstacles.add(new Obstacle(random.nextInt(800), 100 + random.nextInt(431), random.nextInt(60), random.nextInt(60)));
+            }
+            Tank player1Tank = new Tank(random.nextInt(751), 100 + random.nextInt(416), Color.BLUE);
+            Tank player2Tank = new Tank(random.nextInt(751), 100 + random.nextInt(416), Color.RED);
+            double dx = shot % 10 == 0 ? 0 : random.nextGaussian() * 6;
+            BulletStore bullets = new BulletStore(1);
+            bullets.add(random.nextDouble() * 820 - 10, random.nextDouble() * 600 - 80, dx, random.nextGaussian() * 8,
+                    random.nextBoolean(), true);
+
+            BallisticSolver.Impact impact = BallisticSolver.solve(bullets, 0, player1Tank, player2Tank, obstacles);
+            assertStepped(impact, bullets, player1Tank, player2Tank, obstacles, "shot " + shot);
+        }
+    }
+
+    /**
+     * Sprawdza, czy rozstrzygnięcie strzału od razu daje ten sam stan gry co wykonywanie taktów do końca strzału.
+     */
+    @Test
+    void testResolveShotMatchesSteps() {
+        Random random = new Random(3);
+        for (int game = 0; game < 200; game++) {
+            List<Obstacle> obstacles = new ArrayList<>();
+            for (int i = 0; i < 3 + random.nextInt(4); i++) {
+                obstacles.add(new Obstacle(random.nextInt(750), 530, 20 + random.nextInt(30), 20));
+            }
+            GameState start = new GameState(new Tank(random.nextInt(300), 515, Color.BLUE, random.nextInt(90), 100, 100),
+                    new Tank(400 + random.nextInt(351), 515, Color.RED), new ArrayList<>(), obstacles, true);
+            GameSimulation stepped = new GameSimulation(start.copy());
+            GameSimulation resolved = new GameSimulation(start.copy());
+            stepped.applyInput(true, InputCommand.FIRE);
+            resolved.applyInput(true, InputCommand.FIRE);
+            stepped.step(); // Także w trakcie lotu
+            resolved.step();
+
+            int ticks = 1;
+            while (stepped.snapshot().isPlayer1Turn()) {
+                stepped.step();
+                ticks++;
+            }
+            assertEquals(ticks, 1 + resolved.resolveShot(), "game " + game);
+            assertEquals(0, resolved.resolveShot());
+            GameState expected = stepped.snapshot();
+            GameState actual = resolved.snapshot();
+            assertFalse(actual.isPlayer1Turn());
+            assertTrue(actual.getBullets().isEmpty());
+            assertEquals(expected.getPlayer2Tank().getHp(), actual.getPlayer2Tank().getHp(), "game " + game);
+        }
+    }
+
+    /**
+     * Wykonuje takty magazynu do usunięcia pocisku i porównuje ich przebieg z wynikiem solvera.
+     *
+     * @param impact      Wynik solvera.
+     * @param bullets     Magazyn z jednym pociskiem.
+     * @param player1Tank Czołg gracza 1.
+     * @param player2Tank Czołg gracza 2.
+     * @param obstacles   Przeszkody.
+     * @param message     Opis przypadku.
+     */
+    private static void assertStepped(BallisticSolver.Impact impact, BulletStore bullets, Tank player1Tank, Tank player2Tank,
+                                      List<Obstacle> obstacles, String message) {
+        Tank target = bullets.isPlayer1(0) ? player2Tank : player1Tank;
+        int hp = target.getHp();
+        ObstacleIndex index = new ObstacleIndex(obstacles);
+        int hitTick = 0;
+        int tick = 0;
+        while (!bullets.isEmpty()) {
+            bullets.step(player1Tank, player2Tank, index);
+            tick++;
+            if (hitTick == 0 && !bullets.isEmpty() && !bullets.isVisible(0)) {
+                hitTick = tick;
+                assertEquals(bullets.getX(0), impact.x, 1e-9, message);
+                assertEquals(bullets.getY(0), impact.y, 1e-9, message);
+            }
+        }
+        assertEquals(tick, impact.removalTick(), message + ": " + impact);
+        assertEquals(hitTick != 0, impact.tankHit || impact.obstacleHit, message + ": " + impact);
+        assertEquals(hp != target.getHp(), impact.tankHit, message + ": " + impact);
+        if (hitTick != 0) {
+            assertEquals(hitTick, impact.tick, message);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package org.rewera.ptak.raczynski;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testy jednostkowe klasy {@link BinaryCodec}.
+ * Sprawdzają, czy stan gry po zakodowaniu i zdekodowaniu jest identyczny oraz czy
+ * niepoprawne dane są odrzucane.
+ */
+class BinaryCodecTest {
+
+    /**
+     * Stan gry używany w testach.
+     */
+    private GameState gameState;
+
+    /**
+     * Przygotowanie testów.
+     * Tworzy stan gry z przesuniętymi czołgami, lecącym pociskiem i przeszkodami.
+     */
+    @BeforeEach
+    void setUp() {
+        Tank player1Tank = new Tank(120, 515, Color.BLUE, 60, 80, 42);
+        Tank player2Tank = new Tank(600, 515, Color.RED);
+        List<Bullet> bullets = new ArrayList<>();
+        Bullet bullet = new Bullet(132, 515, 60, Color.BLUE, true);
+        bullet.move();
+        bullets.add(bullet);
+        List<Obstacle> obstacles = new ArrayList<>();
+        obstacles.add(new Obstacle(300, 530, 40, 20));
+        obstacles.add(new Obstacle(450, 530, 25, 20));
+        gameState = new GameState(player1Tank, player2Tank, bullets, obstacles, false);
+    }
+
+    /**
+     * Sprawdza, czy wszystkie pola przechodzą przez kodek bez zmian.
+     *
+     * @throws IOException jeśli dekodowanie się nie powiodło.
+     */
+    @Test
+    void testRoundTrip() throws IOException {
+        byte[] data = BinaryCodec.INSTANCE.encode(gameState);
+        GameState decoded = BinaryCodec.INSTANCE.decode(data, 0, data.length);
+
+        assertFalse(decoded.isPlayer1Turn());
+        Tank tank = decoded.getPlayer1Tank();
+        assertEquals(120, tank.getX());
+        assertEquals(515, tank.getY());
+        assertEquals(60, tank.getAngle());
+        assertEquals(80, tank.getHp());
+        assertEquals(42, tank.getFuel());
+        assertEquals(Color.BLUE, tank.getColor());
+        assertEquals(Color.RED, decoded.getPlayer2Tank().getColor());
+
+        Bullet original = gameState.getBullets().get(0);
+        Bullet bullet = decoded.getBullets().get(0);
+        assertEquals(original.getX(), bullet.getX());
+        assertEquals(original.getY(), bullet.getY());
+        assertEquals(original.getDx(), bullet.getDx());
+        assertEquals(original.getDy(), bullet.getDy());
+        assertTrue(bullet.isPlayer1());
+        assertTrue(bullet.isVisible());
+
+        assertEquals(2, decoded.getObstacles().size());
+        assertEquals(gameState.getObstacles().get(1).getBounds(), decoded.getObstacles().get(1).getBounds());
+    }
+
+    /**
+     * Sprawdza, czy kodek binarny jest co najmniej rząd wielkości mniejszy od serializacji Javy.
+     */
+    @Test
+    void testSmallerThanSerialization() {
+        int binary = BinaryCodec.INSTANCE.encode(gameState).length;
+        int serialized = SerializationCodec.INSTANCE.encode(gameState).length;
+        assertTrue(binary * 10 <= serialized, "binary=" + binary + " serialized=" + serialized);
+    }
+
+    /**
+     * Sprawdza, czy nieznana wersja formatu i ucięte dane są odrzucane.
+     */
+    @Test
+    void testRejectsInvalidData() {
+        byte[] data = BinaryCodec.INSTANCE.encode(gameState);
+        assertThrows(IOException.class, () -> BinaryCodec.INSTANCE.decode(data, 0, data.length - 3));
+        data[0] = 99;
+        assertThrows(IOException.class, () -> BinaryCodec.INSTANCE.decode(data, 0, data.length));
+    }
+}
@@ -0,0 +1,166 @@
+package org.rewera.ptak.raczynski;
+
+import java.awt.*;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Benchmark taktu pocisków: lista obiektów {@link Bullet} (ruch, {@code removeIf} i kolizje przez
+ * {@link Rectangle}) w porównaniu z magazynem {@link BulletStore} przy 1k, 10k i 50k pocisków w locie.
+ *
+ * <p>Po każdym takcie obie wersje dostają nowe pociski w miejsce tych, które spadły lub trafiły,
+ * więc liczba pocisków w locie jest stała. Wypisywany jest czas taktu i liczba bajtów zaalokowanych
+ * na takt (łącznie z nowymi pociskami - w magazynie nie tworzą one obiektów).</p>
+ *
+ * <p>Uruchomienie: {@code java -cp target/classes:target/test-classes
+ * org.rewera.ptak.raczynski.BulletStoreBenchmark [liczby pocisków] [takty]},
+ * np. {@code 1000,10000,50000 2000}.</p>
+ */
+class BulletStoreBenchmark {
+
+    /**
+     * Przeszkody na planszy.
+     */
+    private static final List<Obstacle> OBSTACLES = Arrays.asList(
+            new Obstacle(250, 530, 30, 20), new Obstacle(380, 530, 40, 20), new Obstacle(520, 530, 25, 20));
+
+    /**
+     * Indeks przeszkód na planszy.
+     */
+    private static final ObstacleIndex INDEX = new ObstacleIndex(OBSTACLES);
+
+    /**
+     * Punkt wejścia benchmarku.
+     *
+     * @param args Liczby pocisków (po przecinku) i liczba taktów pomiarowych.
+     */
+    public static void main(String[] args) {
+        String[] counts = (args.length > 0 ? args[0] : "1000,10000,50000").split(",");
+        int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+
+        System.out.printf("%-12s %8s %12s %14s%n", "store", "bullets", "tick us", "bytes/tick");
+        for (String count : counts) {
+            int bullets = Integer.parseInt(count.trim());
+            measureList(bullets, ticks / 10); // Rozgrzewka JIT
+            measureStore(bullets, ticks / 10);
+            measureList(bullets, ticks);
+            measureStore(bullets, ticks);
+        }
+    }
+
+    /**
+     * Mierzy takt listy obiektów {@link Bullet}.
+     *
+     * @param count Liczba pocisków w locie.
+     * @param ticks Liczba taktów.
+     */
+    private static void measureList(int count, int ticks) {
+        Tank tank1 = new Tank(100, 515, Color.BLUE);
+        Tank tank2 = new Tank(600, 515, Color.RED);
+        List<Bullet> bullets = new ArrayList<>(count);
+        long allocated = allocatedBytes();
+        long start = System.nanoTime();
+        for (int tick = 0; tick < ticks; tick++) {
+            for (int i = bullets.size(); i < count; i++) {
+                bullets.add(new Bullet(x(i), y(i), angle(tick, i), (i & 1) == 0 ? Color.BLUE : Color.RED, (i & 1) == 0));
+            }
+            for (Bullet bullet : bullets) {
+                bullet.move();
+            }
+            bullets.removeIf(bullet -> !bullet.isVisible());
+            for (Bullet bullet : bullets) {
+                if (bullet.isPlayer1() && bullet.getBounds().intersects(tank2.getBounds())) {
+                    bullet.setVisible(false);
+                } else if (!bullet.isPlayer1() && bullet.getBounds().intersects(tank1.getBounds())) {
+                    bullet.setVisible(false);
+                }
+                for (Obstacle obstacle : OBSTACLES) {
+                    if (bullet.getBounds().intersects(obstacle.getBounds())) {
+                        bullet.setVisible(false);
+                        break;
+                    }
+                }
+            }
+        }
+        report("List<Bullet>", count, ticks, start, allocated);
+    }
+
+    /**
+     * Mierzy takt magazynu {@link BulletStore}.
+     *
+     * @param count Liczba pocisków w locie.
+     * @param ticks Liczba taktów.
+     */
+    private static void measureStore(int count, int ticks) {
+        Tank tank1 = new Tank(100, 515, Color.BLUE);
+        Tank tank2 = new Tank(600, 515, Color.RED);
+        BulletStore bullets = new BulletStore(count);
+        long allocated = allocatedBytes();
+        long start = System.nanoTime();
+        for (int tick = 0; tick < ticks; tick++) {
+            for (int i = bullets.size(); i < count; i++) {
+                bullets.fire(x(i), y(i), angle(tick, i), (i & 1) == 0);
+            }
+            bullets.step(tank1, tank2, INDEX);
+        }
+        report("BulletStore", count, ticks, start, allocated);
+    }
+
+    /**
+     * Wypisuje wynik pomiaru.
+     *
+     * @param name      Nazwa wersji.
+     * @param count     Liczba pocisków w locie.
+     * @param ticks     Liczba taktów.
+     * @param start     Czas rozpoczęcia w nanosekundach.
+     * @param allocated Liczba zaalokowanych bajtów przed pomiarem.
+     */
+    private static void report(String name, int count, int ticks, long start, long allocated) {
+        long tickNanos = (System.nanoTime() - start) / ticks;
+        long bytes = (allocatedBytes() - allocated) / ticks;
+        System.out.printf("%-12s %8d %12.1f %14d%n", name, count, tickNanos / 1000.0, bytes);
+    }
+
+    /**
+     * Zwraca liczbę bajtów zaalokowanych przez bieżący wątek.
+     *
+     * @return Liczba bajtów.
+     */
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Pozycja X nowego pocisku.
+     *
+     * @param i Numer pocisku.
+     * @return Pozycja X.
+     */
+    private static int x(int i) {
+        return 50 + (i * 7) % 700;
+    }
+
+    /**
+     * Pozycja Y nowego pocisku.
+     *
+     * @param i Numer pocisku.
+     * @return Pozycja Y.
+     */
+    private static int y(int i) {
+        return 100 + (i * 13) % 300;
+    }
+
+    /**
+     * Kąt strzału nowego pocisku.
+     *
+     * @param tick Numer taktu.
+     * @param i    Numer pocisku.
+     * @return Kąt w stopniach.
+     */
+    private static int angle(int tick, int i) {
+        return (tick + i) % 180;
+    }
+}
@@ -0,0 +1,162 @@
+package org.rewera.ptak.raczynski;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testy magazynu pocisków {@link BulletStore}.
+ */
+class BulletStoreTest {
+
+    /**
+     * Sprawdza, czy magazyn daje te same pociski i trafienia co lista obiektów {@link Bullet}
+     * z ruchem {@link Bullet#move()} i kolizjami {@link Rectangle}.
+     */
+    @Test
+    void testMatchesBulletObjects() {
+        Random random = new Random(7);
+        List<Obstacle> obstacles = Arrays.asList(new Obstacle(300, 530, 40, 20), new Obstacle(450, 530, 25, 20));
+        ObstacleIndex index = new ObstacleIndex(obstacles);
+        Tank storeTank1 = new Tank(100, 515, Color.BLUE);
+        Tank storeTank2 = new Tank(600, 515, Color.RED);
+        Tank listTank1 = new Tank(100, 515, Color.BLUE);
+        Tank listTank2 = new Tank(600, 515, Color.RED);
+        BulletStore store = new BulletStore(1);
+        List<Bullet> bullets = new ArrayList<>();
+
+        for (int tick = 0; tick < 400; tick++) {
+            if (tick % 4 == 0) {
+                boolean isPlayer1 = random.nextBoolean();
+                int x = isPlayer1 ? 112 : 612;
+                int angle = isPlayer1 ? 20 + random.nextInt(60) : 100 + random.nextInt(60);
+                store.fire(x, 515, angle, isPlayer1);
+                bullets.add(new Bullet(x, 515, angle, isPlayer1 ? Color.BLUE : Color.RED, isPlayer1));
+            }
+            store.step(storeTank1, storeTank2, index);
+            step(bullets, listTank1, listTank2, obstacles);
+
+            assertEquals(listTank1.getHp(), storeTank1.getHp());
+            assertEquals(listTank2.getHp(), storeTank2.getHp());
+            assertEquals(sorted(bullets), sorted(store.toList()), "tick " + tick);
+        }
+        assertTrue(storeTank1.getHp() < 100 || storeTank2.getHp() < 100, "no hits were simulated");
+    }
+
+    /**
+     * Sprawdza, czy takt z tysiącami pocisków nie alokuje pamięci.
+     */
+    @Test
+    void testStepDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        ObstacleIndex index = new ObstacleIndex(Arrays.asList(new Obstacle(300, 530, 40, 20), new Obstacle(450, 530, 25, 20)));
+        Tank tank1 = new Tank(100, 515, Color.BLUE);
+        Tank tank2 = new Tank(600, 515, Color.RED);
+        BulletStore store = new BulletStore(4096);
+        for (int i = 0; i < 10_000; i++) { // Rozgrzewka - kompilacja JIT
+            refill(store, i);
+            store.step(tank1, tank2, index);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 10_000; i++) {
+            refill(store, i);
+            store.step(tank1, tank2, index);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue(allocated < 1024, "allocated " + allocated + " bytes");
+        assertTrue(store.size() > 1000);
+    }
+
+    /**
+     * Sprawdza, czy pociski ze stanu gry (także niewidoczne po trafieniu) są wczytywane i zwracane bez zmian.
+     */
+    @Test
+    void testLoadRoundTrip() {
+        List<Bullet> bullets = new ArrayList<>();
+        bullets.add(new Bullet(150.5, 400.25, 3.0, -2.5, Color.BLUE, true, true));
+        bullets.add(new Bullet(500.0, 300.0, -4.0, 1.0, Color.RED, false, false));
+        BulletStore store = new BulletStore(1);
+        store.fire(10, 10, 45, true);
+        store.load(bullets);
+
+        assertEquals(2, store.size());
+        assertEquals(sorted(bullets), sorted(store.toList()));
+        assertFalse(store.isVisible(1));
+
+        // Niewidoczny pocisk znika w kolejnym takcie
+        store.step(new Tank(100, 515, Color.BLUE), new Tank(600, 515, Color.RED), new ObstacleIndex(new ArrayList<>()));
+        assertEquals(1, store.size());
+        assertTrue(store.isPlayer1(0));
+        store.clear();
+        assertTrue(store.isEmpty());
+    }
+
+    /**
+     * Uzupełnia magazyn do 2000 pocisków o deterministycznych kątach.
+     *
+     * @param store Magazyn.
+     * @param seed  Ziarno kątów.
+     */
+    private static void refill(BulletStore store, int seed) {
+        for (int i = store.size(); i < 2000; i++) {
+            store.fire(50 + (i * 7) % 700, 100 + (i * 13) % 300, (seed + i) % 180, (i & 1) == 0);
+        }
+    }
+
+    /**
+     * Wykonuje takt na liście obiektów tak jak dawniej {@code GameSimulation.step}.
+     *
+     * @param bullets   Pociski.
+     * @param tank1     Czołg gracza 1.
+     * @param tank2     Czołg gracza 2.
+     * @param obstacles Przeszkody.
+     */
+    private static void step(List<Bullet> bullets, Tank tank1, Tank tank2, List<Obstacle> obstacles) {
+        for (Bullet bullet : bullets) {
+            bullet.move();
+        }
+        bullets.removeIf(bullet -> !bullet.isVisible());
+        for (Bullet bullet : bullets) {
+            if (bullet.isPlayer1() && bullet.getBounds().intersects(tank2.getBounds())) {
+                tank2.decreaseHp(20);
+                bullet.setVisible(false);
+            } else if (!bullet.isPlayer1() && bullet.getBounds().intersects(tank1.getBounds())) {
+                tank1.decreaseHp(20);
+                bullet.setVisible(false);
+            }
+            for (Obstacle obstacle : obstacles) {
+                if (bullet.getBounds().intersects(obstacle.getBounds())) {
+                    bullet.setVisible(false);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Opisuje pociski niezależnie od ich kolejności.
+     *
+     * @param bullets Pociski.
+     * @return Posortowane opisy pocisków.
+     */
+    private static List<String> sorted(List<Bullet> bullets) {
+        List<String> descriptions = new ArrayList<>();
+        for (Bullet bullet : bullets) {
+            descriptions.add(bullet.getX() + "," + bullet.getY() + "," + bullet.getDx() + "," + bullet.getDy() + ","
+                    + bullet.isPlayer1() + "," + bullet.isVisible() + "," + bullet.getColor().getRGB());
+        }
+        descriptions.sort(Comparator.naturalOrder());
+        return descriptions;
+    }
+}
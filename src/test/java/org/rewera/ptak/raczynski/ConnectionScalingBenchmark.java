@@ -0,0 +1,130 @@
+package org.rewera.ptak.raczynski;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmark porównujący silnik wątek-na-klienta z silnikiem NIO.
+ * Otwiera N bezczynnych połączeń i raportuje, ile z nich serwer przyjął,
+ * ile wątków i pamięci sterty kosztuje jedno połączenie.
+ *
+ * <p>Uruchomienie: {@code java -cp target/classes:target/test-classes
+ * org.rewera.ptak.raczynski.ConnectionScalingBenchmark [liczba_połączeń]}.
+ * Rezerwacja stosu wątku platformowego (domyślnie 1 MB, {@code -Xss}) nie jest widoczna
+ * w pamięci sterty, dlatego raportowana jest osobno na podstawie liczby wątków.</p>
+ */
+class ConnectionScalingBenchmark {
+
+    /**
+     * Domyślny rozmiar stosu wątku platformowego w kilobajtach.
+     */
+    private static final long DEFAULT_STACK_KB = 1024;
+
+    /**
+     * Punkt wejścia benchmarku.
+     *
+     * @param args Opcjonalnie liczba połączeń (domyślnie 2000).
+     * @throws Exception w przypadku błędu benchmarku.
+     */
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        run(ServerConfig.Engine.THREADS, connections);
+        run(ServerConfig.Engine.NIO, connections);
+    }
+
+    /**
+     * Mierzy koszt połączeń dla wybranego silnika.
+     *
+     * @param engine      Silnik serwera.
+     * @param connections Liczba połączeń do otwarcia.
+     * @throws Exception w przypadku błędu benchmarku.
+     */
+    private static void run(ServerConfig.Engine engine, int connections) throws Exception {
+        ServerConfig config = new ServerConfig();
+        config.setPort(0);
+        config.setEngine(engine);
+        GameServer server = GameServer.create(config);
+        server.start();
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long heapBefore = usedHeap();
+        int threadsBefore = threads.getThreadCount();
+        long start = System.nanoTime();
+
+        List<Socket> sockets = new ArrayList<>();
+        int errors = 0;
+        for (int i = 0; i < connections; i++) {
+            try {
+                sockets.add(connect(engine, server.getLocalPort()));
+            } catch (IOException e) {
+                errors++;
+            }
+        }
+        // Poczekaj na przyjęcie roli przez każdego klienta, aby serwer zakończył obsługę powitań
+        int accepted = 0;
+        for (Socket socket : sockets) {
+            try {
+                socket.setSoTimeout(10_000);
+                InputStream in = socket.getInputStream();
+                if (in.read() >= 0) {
+                    accepted++;
+                }
+            } catch (IOException e) {
+                errors++;
+            }
+        }
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        long heapPerConnection = (usedHeap() - heapBefore) / Math.max(1, accepted);
+        int extraThreads = threads.getThreadCount() - threadsBefore;
+        System.out.printf("%-7s connections=%d accepted=%d errors=%d time=%dms threads=+%d heap/conn=%dB stack/conn~%dKB%n",
+                engine, connections, accepted, errors, elapsedMs, extraThreads, heapPerConnection,
+                extraThreads * DEFAULT_STACK_KB / Math.max(1, accepted));
+
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+        server.stop();
+        Thread.sleep(500);
+    }
+
+    /**
+     * Otwiera połączenie mówiące protokołem oczekiwanym przez dany silnik.
+     *
+     * @param engine Silnik serwera.
+     * @param port   Port serwera.
+     * @return Gniazdo klienta.
+     * @throws IOException w przypadku błędu połączenia.
+     */
+    private static Socket connect(ServerConfig.Engine engine, int port) throws IOException {
+        Socket socket = new Socket("localhost", port);
+        if (engine == ServerConfig.Engine.NIO) {
+            WireProtocol.writeHello(new DataOutputStream(socket.getOutputStream()), GameStateCodec.SERIALIZATION, (byte) 0);
+        } else {
+            new ObjectOutputStream(socket.getOutputStream()).flush();
+        }
+        return socket;
+    }
+
+    /**
+     * Zwraca zajętą pamięć sterty po wymuszeniu odśmiecania.
+     *
+     * @return Zajęta pamięć w bajtach.
+     * @throws InterruptedException jeśli wątek został przerwany.
+     */
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
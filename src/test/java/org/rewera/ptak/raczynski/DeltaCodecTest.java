@@ -0,0 +1,99 @@
+package org.rewera.ptak.raczynski;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testy jednostkowe klasy {@link DeltaCodec}.
+ */
+class DeltaCodecTest {
+
+    /**
+     * Stan bazowy używany w testach.
+     */
+    private GameState base;
+
+    /**
+     * Przygotowanie testów.
+     * Tworzy stan bazowy z dwoma czołgami, jednym pociskiem i przeszkodami.
+     */
+    @BeforeEach
+    void setUp() {
+        List<Bullet> bullets = new ArrayList<>();
+        bullets.add(new Bullet(112, 515, 45, Color.BLUE, true));
+        List<Obstacle> obstacles = new ArrayList<>();
+        obstacles.add(new Obstacle(300, 530, 40, 20));
+        obstacles.add(new Obstacle(450, 530, 25, 20));
+        base = new GameState(new Tank(100, 515, Color.BLUE), new Tank(600, 515, Color.RED), bullets, obstacles, true);
+    }
+
+    /**
+     * Sprawdza, czy ruch jednego czołgu zajmuje tylko kilka bajtów i jest poprawnie odtwarzany.
+     *
+     * @throws IOException jeśli dekodowanie się nie powiodło.
+     */
+    @Test
+    void testSingleTankMove() throws IOException {
+        GameState current = base.copy();
+        current.getPlayer1Tank().moveRight(current.getObstacles());
+
+        byte[] delta = DeltaCodec.encode(base, current);
+        assertTrue(delta.length <= 8, "delta=" + delta.length);
+
+        GameState applied = DeltaCodec.apply(base, delta, 0, delta.length);
+        assertEquals(102, applied.getPlayer1Tank().getX());
+        assertEquals(99, applied.getPlayer1Tank().getFuel());
+        assertEquals(600, applied.getPlayer2Tank().getX());
+        assertEquals(100, base.getPlayer1Tank().getX()); // Stan bazowy nie jest modyfikowany
+    }
+
+    /**
+     * Sprawdza odtwarzanie przesuniętych, dodanych i usuniętych pocisków oraz zmiany tury.
+     *
+     * @throws IOException jeśli dekodowanie się nie powiodło.
+     */
+    @Test
+    void testBulletsAndTurn() throws IOException {
+        GameState moved = base.copy();
+        moved.getBullets().get(0).move();
+        moved.getBullets().add(new Bullet(612, 515, 135, Color.RED, false));
+
+        byte[] delta = DeltaCodec.encode(base, moved);
+        GameState applied = DeltaCodec.apply(base, delta, 0, delta.length);
+        assertEquals(2, applied.getBullets().size());
+        assertEquals(moved.getBullets().get(0).getX(), applied.getBullets().get(0).getX());
+        assertEquals(moved.getBullets().get(0).getDy(), applied.getBullets().get(0).getDy());
+        assertFalse(applied.getBullets().get(1).isPlayer1());
+
+        GameState cleared = new GameState(base.getPlayer1Tank(), base.getPlayer2Tank(), new ArrayList<>(), base.getObstacles(), false);
+        delta = DeltaCodec.encode(base, cleared);
+        applied = DeltaCodec.apply(base, delta, 0, delta.length);
+        assertTrue(applied.getBullets().isEmpty());
+        assertFalse(applied.isPlayer1Turn());
+    }
+
+    /**
+     * Sprawdza, czy niezmieniony stan daje jednobajtową różnicę, a zmienione przeszkody są przesyłane w całości.
+     *
+     * @throws IOException jeśli dekodowanie się nie powiodło.
+     */
+    @Test
+    void testUnchangedAndObstacles() throws IOException {
+        assertEquals(1, DeltaCodec.encode(base, base.copy()).length);
+
+        List<Obstacle> obstacles = new ArrayList<>();
+        obstacles.add(new Obstacle(200, 530, 30, 20));
+        GameState current = new GameState(base.getPlayer1Tank(), base.getPlayer2Tank(), base.getBullets(), obstacles, true);
+        byte[] delta = DeltaCodec.encode(base, current);
+        GameState applied = DeltaCodec.apply(base, delta, 0, delta.length);
+        assertEquals(1, applied.getObstacles().size());
+        assertEquals(200, applied.getObstacles().get(0).getX());
+    }
+}
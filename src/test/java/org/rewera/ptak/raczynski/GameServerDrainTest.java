@@ -0,0 +1,228 @@
+package org.rewera.ptak.raczynski;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.rewera.ptak.raczynski.ServerFixtures.*;
+
+/**
+ * Testy wygaszania serwera ({@link GameServer#drain(long)}) i przejmowania portu przez nowy proces.
+ */
+class GameServerDrainTest {
+
+    /**
+     * Katalog tymczasowy migawek.
+     */
+    @TempDir
+    Path directory;
+
+    /**
+     * Uruchomione serwery.
+     */
+    private final List<GameServer> servers = new ArrayList<>();
+
+    /**
+     * Zatrzymuje serwery po każdym teście.
+     */
+    @AfterEach
+    void tearDown() {
+        for (GameServer server : servers) {
+            server.stop();
+        }
+    }
+
+    /**
+     * Sprawdza, czy wygaszany serwer nie przyjmuje połączeń, przerywa grę czekającą na przeciwnika,
+     * a trwającą grę obsługuje do końca i dopiero wtedy się zatrzymuje.
+     *
+     * @throws Exception w przypadku błędu połączenia.
+     */
+    @Test
+    void testDrainLetsRunningGamesFinish() throws Exception {
+        GameServer server = launch(config(ServerConfig.Engine.THREADS));
+        int port = server.getLocalPort();
+        Thread drain = new Thread(() -> server.drain(10_000));
+        try (Socket first = connect(port, (byte) 0); Socket second = connect(port, (byte) 0)) {
+            DataInputStream firstIn = joined(first);
+            DataInputStream secondIn = joined(second);
+            Socket waiting = connect(port, (byte) 0); // Po dołączeniu pierwszych dwóch - trafia do nowej gry
+            DataInputStream waitingIn = new DataInputStream(waiting.getInputStream());
+            assertEquals(WireProtocol.FRAME_WELCOME, WireProtocol.readFrame(waitingIn).type);
+
+            drain.start();
+            assertEquals(WireProtocol.SERVER_RESTARTING_MESSAGE, readText(waitingIn));
+            assertThrows(EOFException.class, () -> WireProtocol.readFrame(waitingIn));
+            waiting.close();
+            assertThrows(ConnectException.class, () -> new Socket("localhost", port).close());
+
+            WireProtocol.writeFrame(new DataOutputStream(first.getOutputStream()), WireProtocol.FRAME_STATE,
+                    BinaryCodec.INSTANCE.encode(state(140)));
+            assertEquals(140, readState(secondIn).getPlayer1Tank().getX());
+            assertEquals(140, readState(firstIn).getPlayer1Tank().getX());
+            assertTrue(drain.isAlive());
+        }
+        drain.join(5000); // Gracze wyszli - gra się kończy, a serwer zatrzymuje
+        assertFalse(drain.isAlive());
+        assertEquals(0, server.getMatchmaker().size());
+    }
+
+    /**
+     * Sprawdza, czy gra, która nie skończyła się przed upływem czasu wygaszania, trafia do migawek,
+     * jej gracze dostają komunikat o restarcie, a nowa wersja serwera odtwarza grę, do której gracz
+     * wraca ze swoim żetonem sesji.
+     *
+     * @throws Exception w przypadku błędu połączenia.
+     */
+    @Test
+    void testDrainTimeoutHandsGamesOffThroughSnapshots() throws Exception {
+        ServerConfig config = config(ServerConfig.Engine.NIO);
+        config.setSnapshotDir(directory);
+        GameServer server = launch(config);
+        long firstToken;
+        try (Socket first = resumable(server.getLocalPort(), 0); Socket second = resumable(server.getLocalPort(), 0)) {
+            DataInputStream firstIn = joined(first);
+            firstToken = token(firstIn);
+            DataInputStream secondIn = joined(second);
+            token(secondIn);
+            WireProtocol.writeFrame(new DataOutputStream(first.getOutputStream()), WireProtocol.FRAME_STATE,
+                    BinaryCodec.INSTANCE.encode(state(140)));
+            assertEquals(140, readState(secondIn).getPlayer1Tank().getX());
+            assertEquals(140, readState(firstIn).getPlayer1Tank().getX());
+
+            server.drain(200);
+            assertEquals(WireProtocol.SERVER_RESTARTING_MESSAGE, readText(firstIn));
+            assertEquals(WireProtocol.SERVER_RESTARTING_MESSAGE, readText(secondIn));
+        }
+
+        GameServer successor = launch(config);
+        assertEquals(1, successor.getMatchmaker().size());
+        assertEquals(140, successor.getMatchmaker().get(0).getGameState().getPlayer1Tank().getX());
+        try (Socket back = resumable(successor.getLocalPort(), firstToken)) {
+            DataInputStream in = new DataInputStream(back.getInputStream());
+            WireProtocol.Frame welcome = WireProtocol.readFrame(in);
+            assertEquals(WireProtocol.FRAME_WELCOME, welcome.type);
+            assertNotEquals(0, welcome.payload[1] & WireProtocol.FLAG_RESUME);
+            assertEquals(140, readState(in).getPlayer1Tank().getX());
+        }
+    }
+
+    /**
+     * Sprawdza, czy z {@code SO_REUSEPORT} nowy serwer nasłuchuje na porcie starego, a po wygaszeniu
+     * starego przyjmuje wszystkie połączenia.
+     *
+     * @throws Exception w przypadku błędu połączenia.
+     */
+    @Test
+    void testSuccessorTakesOverReusedPort() throws Exception {
+        assumeTrue(ListeningChannel.isReusePortSupported());
+        ServerConfig config = config(ServerConfig.Engine.NIO);
+        config.setReusePort(true);
+        GameServer old = launch(config);
+        ServerConfig successorConfig = config(ServerConfig.Engine.THREADS);
+        successorConfig.setReusePort(true);
+        successorConfig.setPort(old.getLocalPort());
+        GameServer successor = launch(successorConfig);
+
+        old.drain(0);
+        List<Socket> players = new ArrayList<>();
+        try {
+            for (int i = 0; i < 4; i++) {
+                Socket player = connect(successorConfig.getPort(), (byte) 0);
+                players.add(player);
+                joined(player);
+            }
+            assertEquals(2, successor.getMatchmaker().size());
+            assertEquals(0, old.getMatchmaker().size());
+        } finally {
+            for (Socket player : players) {
+                player.close();
+            }
+        }
+    }
+
+    /**
+     * Uruchamia serwer i zapamiętuje go do zatrzymania po teście.
+     *
+     * @param config Konfiguracja serwera.
+     * @return Uruchomiony serwer.
+     * @throws IOException jeśli nie udało się otworzyć portu.
+     */
+    private GameServer launch(ServerConfig config) throws IOException {
+        GameServer server = start(config);
+        servers.add(server);
+        return server;
+    }
+
+    /**
+     * Łączy klienta ramkowego, który może wznawiać sesje.
+     *
+     * @param port  Port serwera.
+     * @param token Żeton sesji do wznowienia lub 0 dla nowego gracza.
+     * @return Gniazdo klienta.
+     * @throws IOException w przypadku błędu połączenia.
+     */
+    private static Socket resumable(int port, long token) throws IOException {
+        Socket socket = connect(port, WireProtocol.FLAG_RESUME);
+        WireProtocol.writeFrame(new DataOutputStream(socket.getOutputStream()), WireProtocol.FRAME_RESUME,
+                WireProtocol.resume(token, 0));
+        return socket;
+    }
+
+    /**
+     * Odczytuje żeton sesji nadany po dołączeniu do gry.
+     *
+     * @param in Strumień wejściowy gracza.
+     * @return Żeton sesji.
+     * @throws IOException w przypadku błędu odczytu.
+     */
+    private static long token(DataInputStream in) throws IOException {
+        WireProtocol.Frame frame = WireProtocol.readFrame(in);
+        assertEquals(WireProtocol.FRAME_SESSION, frame.type);
+        return ByteBuffer.wrap(frame.payload).getLong();
+    }
+
+    /**
+     * Odczytuje powitanie i pierwszy stan gry.
+     *
+     * @param socket Gniazdo gracza.
+     * @return Strumień wejściowy gracza.
+     * @throws IOException w przypadku błędu odczytu.
+     */
+    private static DataInputStream joined(Socket socket) throws IOException {
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        assertEquals(WireProtocol.FRAME_WELCOME, WireProtocol.readFrame(in).type);
+        return in;
+    }
+
+    /**
+     * Odczytuje kolejną ramkę pełnego stanu gry, pomijając stan początkowy.
+     *
+     * @param in Strumień wejściowy gracza.
+     * @return Stan gry.
+     * @throws IOException w przypadku błędu odczytu.
+     */
+    private static GameState readState(DataInputStream in) throws IOException {
+        while (true) {
+            WireProtocol.Frame frame = WireProtocol.readFrame(in);
+            assertEquals(WireProtocol.FRAME_STATE, frame.type);
+            GameState state = BinaryCodec.INSTANCE.decode(frame.payload, 0, frame.payload.length);
+            if (state.getPlayer1Tank().getX() != 100) {
+                return state;
+            }
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package org.rewera.ptak.raczynski;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testy silnika wątkowego {@link GameServer}.
+ * Sprawdzają rozpoznawanie protokołu i negocjację kodeka przy połączeniu.
+ */
+class GameServerTest {
+
+    /**
+     * Serwer gry uruchomiony z silnikiem wątkowym.
+     */
+    private GameServer server;
+
+    /**
+     * Uruchamia serwer na porcie przydzielonym przez system.
+     *
+     * @throws IOException jeśli nie udało się otworzyć portu.
+     */
+    @BeforeEach
+    void setUp() throws IOException {
+        ServerConfig config = new ServerConfig();
+        config.setPort(0);
+        config.setMaxLagMillis(300);
+        config.setInboundRate(0); // Test zatrzymanego klienta wysyła stany bez przerw
+        server = GameServer.create(config);
+        server.start();
+    }
+
+    /**
+     * Zatrzymuje serwer po każdym teście.
+     */
+    @AfterEach
+    void tearDown() {
+        server.stop();
+    }
+
+    /**
+     * Sprawdza, czy klient ramkowy otrzymuje wybrany kodek binarny i stan gry w tym formacie.
+     *
+     * @throws IOException w przypadku błędu połączenia.
+     */
+    @Test
+    void testFramedClientNegotiatesBinaryCodec() throws IOException {
+        try (Socket first = new Socket("localhost", server.getLocalPort());
+             Socket second = new Socket("localhost", server.getLocalPort())) {
+            first.setSoTimeout(5000);
+            WireProtocol.writeHello(new DataOutputStream(first.getOutputStream()), GameStateCodec.BINARY, (byte) 0);
+            DataInputStream in = new DataInputStream(first.getInputStream());
+
+            WireProtocol.Frame welcome = WireProtocol.readFrame(in);
+            assertEquals(WireProtocol.FRAME_WELCOME, welcome.type);
+            assertEquals(1, welcome.payload[0]); // Gracz 1
+            assertEquals(GameStateCodec.BINARY, welcome.payload[2]);
+
+            // Drugi gracz używa starego protokołu - obaj trafiają do tej samej gry
+            new ObjectOutputStream(second.getOutputStream()).flush();
+            second.setSoTimeout(5000);
+            assertFalse(new ObjectInputStream(second.getInputStream()).readBoolean());
+
+            WireProtocol.Frame state = WireProtocol.readFrame(in);
+            assertEquals(WireProtocol.FRAME_STATE, state.type);
+            GameState decoded = BinaryCodec.INSTANCE.decode(state.payload, 0, state.payload.length);
+            assertEquals(100, decoded.getPlayer1Tank().getX());
+        }
+    }
+
+    /**
+     * Sprawdza, czy w grze prowadzonej przez serwer polecenie gracza 1 jest wykonywane na serwerze,
+     * a wynik trafia do obu graczy.
+     *
+     * @throws IOException w przypadku błędu połączenia.
+     */
+    @Test
+    void testInputClientsAreSimulatedByServer() throws IOException {
+        try (Socket first = new Socket("localhost", server.getLocalPort());
+             Socket second = new Socket("localhost", server.getLocalPort())) {
+            byte flags = WireProtocol.FLAG_INPUT;
+            first.setSoTimeout(5000);
+            second.setSoTimeout(5000);
+            DataOutputStream firstOut = new DataOutputStream(first.getOutputStream());
+            WireProtocol.writeHello(firstOut, GameStateCodec.BINARY, flags);
+            DataInputStream firstIn = new DataInputStream(first.getInputStream());
+            WireProtocol.Frame welcome = WireProtocol.readFrame(firstIn);
+            assertEquals(flags, welcome.payload[1]);
+
+            WireProtocol.writeHello(new DataOutputStream(second.getOutputStream()), GameStateCodec.BINARY, flags);
+            DataInputStream secondIn = new DataInputStream(second.getInputStream());
+            assertEquals(0, WireProtocol.readFrame(secondIn).payload[0]); // Gracz 2 w tej samej grze
+            assertEquals(WireProtocol.FRAME_STATE, WireProtocol.readFrame(firstIn).type);
+            assertEquals(WireProtocol.FRAME_STATE, WireProtocol.readFrame(secondIn).type);
+
+            // Polecenie gracza 2 (nie jego tura) jest pomijane, polecenie gracza 1 - wykonywane
+            WireProtocol.writeFrame(new DataOutputStream(second.getOutputStream()), WireProtocol.FRAME_INPUT,
+                    InputCommand.encode(1, InputCommand.LEFT));
+            WireProtocol.writeFrame(firstOut, WireProtocol.FRAME_INPUT, InputCommand.encode(1, InputCommand.RIGHT));
+
+            WireProtocol.Frame state = WireProtocol.readFrame(secondIn);
+            GameState decoded = BinaryCodec.INSTANCE.decode(state.payload, 0, state.payload.length);
+            assertEquals(102, decoded.getPlayer1Tank().getX());
+            assertEquals(600, decoded.getPlayer2Tank().getX());
+        }
+    }
+
+    /**
+     * Sprawdza, czy klient proszący o potwierdzenia poleceń dostaje numer wykonanego polecenia przed
+     * stanem, który je uwzględnia, a polecenie bez skutku (poza turą) jest potwierdzane bez stanu.
+     *
+     * @throws IOException w przypadku błędu połączenia.
+     */
+    @Test
+    void testPredictingClientsReceiveInputAcks() throws IOException {
+        try (Socket first = new Socket("localhost", server.getLocalPort());
+             Socket second = new Socket("localhost", server.getLocalPort())) {
+            byte flags = WireProtocol.FLAG_INPUT | WireProtocol.FLAG_PREDICT;
+            first.setSoTimeout(5000);
+            second.setSoTimeout(5000);
+            DataOutputStream firstOut = new DataOutputStream(first.getOutputStream());
+            WireProtocol.writeHello(firstOut, GameStateCodec.BINARY, flags);
+            DataInputStream firstIn = new DataInputStream(first.getInputStream());
+            assertEquals(flags, WireProtocol.readFrame(firstIn).payload[1]);
+
+            DataOutputStream secondOut = new DataOutputStream(second.getOutputStream());
+            WireProtocol.writeHello(secondOut, GameStateCodec.BINARY, flags);
+            DataInputStream secondIn = new DataInputStream(second.getInputStream());
+            WireProtocol.readFrame(secondIn);
+            assertEquals(WireProtocol.FRAME_STATE, WireProtocol.readFrame(firstIn).type);
+            assertEquals(WireProtocol.FRAME_STATE, WireProtocol.readFrame(secondIn).type);
+
+            WireProtocol.writeFrame(secondOut, WireProtocol.FRAME_INPUT, InputCommand.encode(7, InputCommand.LEFT));
+            WireProtocol.Frame ignored = WireProtocol.readFrame(secondIn);
+            assertEquals(WireProtocol.FRAME_INPUT_ACK, ignored.type);
+            assertEquals(7, WireProtocol.readSeq(ignored.payload, 0, ignored.payload.length));
+
+            WireProtocol.writeFrame(firstOut, WireProtocol.FRAME_INPUT, InputCommand.encode(3, InputCommand.RIGHT));
+            WireProtocol.Frame ack = WireProtocol.readFrame(firstIn);
+            assertEquals(WireProtocol.FRAME_INPUT_ACK, ack.type);
+            assertEquals(3, WireProtocol.readSeq(ack.payload, 0, ack.payload.length));
+            WireProtocol.Frame state = WireProtocol.readFrame(firstIn);
+            assertEquals(WireProtocol.FRAME_STATE, state.type);
+            assertEquals(102, BinaryCodec.INSTANCE.decode(state.payload, 0, state.payload.length).getPlayer1Tank().getX());
+
+            // Drugi gracz nie prosił o potwierdzenie polecenia gracza 1 - dostaje tylko stan
+            assertEquals(WireProtocol.FRAME_STATE, WireProtocol.readFrame(secondIn).type);
+        }
+    }
+
+    /**
+     * Sprawdza, czy nieznany kodek jest zastępowany serializacją Javy.
+     *
+     * @throws IOException w przypadku błędu połączenia.
+     */
+    @Test
+    void testUnknownCodecFallsBackToSerialization() throws IOException {
+        try (Socket socket = new Socket("localhost", server.getLocalPort())) {
+            socket.setSoTimeout(5000);
+            WireProtocol.writeHello(new DataOutputStream(socket.getOutputStream()), (byte) 42, (byte) 0);
+            WireProtocol.Frame welcome = WireProtocol.readFrame(new DataInputStream(socket.getInputStream()));
+            assertEquals(GameStateCodec.SERIALIZATION, welcome.payload[2]);
+        }
+    }
+
+    /**
+     * Sprawdza, czy klient, który przestał odbierać, nie blokuje gry i zostaje rozłączony
+     * po przekroczeniu dopuszczalnego opóźnienia.
+     *
+     * @throws Exception w przypadku błędu połączenia.
+     */
+    @Test
+    void testStalledClientIsDisconnectedWithoutBlockingGame() throws Exception {
+        try (Socket stalled = new Socket();
+             Socket active = new Socket("localhost", server.getLocalPort())) {
+            stalled.setReceiveBufferSize(4096);
+            stalled.connect(new InetSocketAddress("localhost", server.getLocalPort()));
+            new ObjectOutputStream(stalled.getOutputStream()).flush();
+            assertTrue(new ObjectInputStream(stalled.getInputStream()).readBoolean());
+
+            active.setSoTimeout(5000);
+            active.setTcpNoDelay(true);
+            ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(active.getOutputStream()));
+            out.flush();
+            ObjectInputStream in = new ObjectInputStream(active.getInputStream());
+            assertFalse(in.readBoolean());
+            GameInstance game = server.getMatchmaker().getInstances().iterator().next();
+            in.readObject(); // Stan początkowy po zapełnieniu gry
+
+            // Duże stany szybko zapełniają bufory gniazda klienta, który nie odbiera
+            List<Bullet> bullets = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                bullets.add(new Bullet(i, i, 45, Color.BLUE, true));
+            }
+            long deadline = System.currentTimeMillis() + 20_000;
+            int x = 0;
+            while (game.isFull() && System.currentTimeMillis() < deadline) {
+                out.writeObject(new GameState(new Tank(x++ % 500, 515, Color.BLUE), new Tank(600, 515, Color.RED),
+                        bullets, new ArrayList<>(), true));
+                out.reset();
+                out.flush();
+                in.readObject(); // Aktywny gracz wciąż dostaje każdy stan
+            }
+            assertFalse(game.isFull(), "stalled client was not disconnected");
+        }
+    }
+}
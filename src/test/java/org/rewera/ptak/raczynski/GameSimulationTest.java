@@ -0,0 +1,151 @@
+package org.rewera.ptak.raczynski;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testy jednostkowe klasy {@link GameSimulation}.
+ */
+class GameSimulationTest {
+
+    /**
+     * Symulacja używana w testach.
+     */
+    private GameSimulation simulation;
+
+    /**
+     * Przygotowanie testów.
+     * Tworzy symulację z czołgami w pozycjach początkowych i bez przeszkód.
+     */
+    @BeforeEach
+    void setUp() {
+        simulation = new GameSimulation(new GameState(new Tank(100, 515, Color.BLUE), new Tank(600, 515, Color.RED),
+                new ArrayList<>(), new ArrayList<>(), true));
+    }
+
+    /**
+     * Sprawdza, czy polecenia gracza bez tury są pomijane, a polecenia gracza z turą wykonywane.
+     */
+    @Test
+    void testInputRespectsTurn() {
+        assertFalse(simulation.applyInput(false, InputCommand.LEFT));
+        assertEquals(600, simulation.snapshot().getPlayer2Tank().getX());
+
+        assertTrue(simulation.applyInput(true, InputCommand.RIGHT | InputCommand.ANGLE_UP));
+        GameState state = simulation.snapshot();
+        assertEquals(102, state.getPlayer1Tank().getX());
+        assertEquals(50, state.getPlayer1Tank().getAngle());
+    }
+
+    /**
+     * Sprawdza przebieg strzału: pocisk leci, trafia czołg przeciwnika, a po jego zniknięciu zmienia się tura.
+     */
+    @Test
+    void testShotHitsAndEndsTurn() {
+        assertFalse(simulation.step()); // Bez pocisków nic się nie dzieje
+        simulation.applyInput(true, InputCommand.FIRE);
+        assertEquals(1, simulation.snapshot().getBullets().size());
+        assertFalse(simulation.applyInput(true, InputCommand.LEFT)); // Ruch zablokowany w trakcie strzału
+
+        int ticks = 0;
+        while (simulation.snapshot().isPlayer1Turn() && ticks++ < 1000) {
+            simulation.step();
+        }
+        GameState state = simulation.snapshot();
+        assertFalse(state.isPlayer1Turn());
+        assertTrue(state.getBullets().isEmpty());
+        assertEquals(80, state.getPlayer2Tank().getHp());
+    }
+
+    /**
+     * Sprawdza, czy takty symulacji - ruch czołgów z kolizjami, strzały i lot pocisków - nie alokują pamięci.
+     */
+    @Test
+    void testTicksDoNotAllocate() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        List<Obstacle> obstacles = new ArrayList<>();
+        obstacles.add(new Obstacle(300, 530, 30, 20));
+        obstacles.add(new Obstacle(420, 530, 40, 20));
+        simulation = new GameSimulation(new GameState(new Tank(100, 515, Color.BLUE), new Tank(600, 515, Color.RED),
+                new ArrayList<>(), obstacles, true));
+        for (int tick = 0; tick < 20_000; tick++) { // Rozgrzewka - kompilacja JIT
+            play(tick);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int tick = 0; tick < 20_000; tick++) {
+            play(tick);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue(allocated < 1024, "allocated " + allocated + " bytes");
+    }
+
+    /**
+     * Wykonuje takt gry jak {@code GameInstance.tick()}: ruch obu graczy (także zablokowany przez przeszkody),
+     * co jakiś czas strzał i krok symulacji.
+     *
+     * @param tick Numer taktu.
+     */
+    private void play(int tick) {
+        int move = (tick / 150) % 2 == 0 ? InputCommand.RIGHT : InputCommand.LEFT;
+        simulation.applyInput(true, move | InputCommand.ANGLE_UP);
+        simulation.applyInput(false, move | InputCommand.ANGLE_DOWN);
+        if (tick % 200 == 0) {
+            simulation.applyInput(tick % 400 == 0, InputCommand.FIRE);
+        }
+        simulation.step();
+    }
+
+    /**
+     * Sprawdza wczytywanie stanu: pociski przeciwnika lecą bez zmiany tury, a po własnym strzale
+     * symulacja kończy turę sama.
+     */
+    @Test
+    void testLoadKeepsTurnUnlessOwnShot() {
+        simulation.applyInput(true, InputCommand.FIRE);
+        GameState inFlight = simulation.snapshot();
+        List<Obstacle> obstacles = new ArrayList<>();
+        obstacles.add(new Obstacle(700, 530, 30, 20));
+
+        // U przeciwnika: turę zmieni dopiero stan od strzelającego
+        GameSimulation observer = new GameSimulation(new GameState(new Tank(100, 515, Color.BLUE),
+                new Tank(600, 515, Color.RED), new ArrayList<>(), obstacles, true));
+        observer.load(inFlight.copy(), false);
+        assertEquals(inFlight.getObstacles().size(), observer.getObstacles().size());
+        while (!observer.getBullets().isEmpty()) {
+            observer.step();
+        }
+        assertTrue(observer.isPlayer1Turn());
+        assertEquals(80, observer.getPlayer2Tank().getHp());
+
+        // U strzelającego: koniec strzału kończy turę
+        observer.load(inFlight.copy());
+        assertTrue(observer.isShotInProgress());
+        assertFalse(observer.applyInput(true, InputCommand.LEFT));
+        while (observer.isShotInProgress()) {
+            observer.step();
+        }
+        assertFalse(observer.isPlayer1Turn());
+        assertTrue(observer.applyInput(false, InputCommand.LEFT));
+        assertEquals(598, observer.getPlayer2Tank().getX());
+    }
+
+    /**
+     * Sprawdza, czy migawka stanu jest niezależna od dalszej symulacji.
+     */
+    @Test
+    void testSnapshotIsIndependent() {
+        GameState before = simulation.snapshot();
+        simulation.applyInput(true, InputCommand.LEFT);
+        assertEquals(100, before.getPlayer1Tank().getX());
+    }
+}
@@ -0,0 +1,90 @@
+package org.rewera.ptak.raczynski;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testy przewidywania poleceń gracza {@link InputPredictor}.
+ */
+class InputPredictorTest {
+
+    /**
+     * Sprawdza, czy niepotwierdzone polecenia są stosowane na kopii stanu serwera, a potwierdzone
+     * przestają być stosowane.
+     */
+    @Test
+    void testPendingInputsAreReplayedUntilAcknowledged() {
+        InputPredictor predictor = new InputPredictor();
+        GameState server = state(true, 100);
+        assertSame(server, predictor.predict(server, true));
+
+        predictor.record(1, InputCommand.RIGHT);
+        predictor.record(2, InputCommand.RIGHT | InputCommand.ANGLE_UP);
+        predictor.record(3, InputCommand.RIGHT | InputCommand.FIRE);
+        GameState predicted = predictor.predict(server, true);
+        assertEquals(106, predicted.getPlayer1Tank().getX());
+        assertEquals(50, predicted.getPlayer1Tank().getAngle());
+        assertTrue(predicted.getBullets().isEmpty(), "shots are not predicted");
+        assertEquals(100, server.getPlayer1Tank().getX(), "server state was modified");
+
+        // Serwer wykonał dwa polecenia - jego stan już je zawiera
+        predictor.acknowledge(2);
+        assertEquals(1, predictor.getPending());
+        GameState next = state(true, 104);
+        assertEquals(106, predictor.predict(next, true).getPlayer1Tank().getX());
+
+        predictor.acknowledge(3);
+        assertSame(next, predictor.predict(next, true));
+    }
+
+    /**
+     * Sprawdza, czy polecenia nie są przewidywane poza turą gracza i w trakcie strzału (serwer je pominie).
+     */
+    @Test
+    void testNothingIsPredictedOutsideOwnTurn() {
+        InputPredictor predictor = new InputPredictor();
+        predictor.record(1, InputCommand.LEFT);
+        GameState opponentsTurn = state(false, 100);
+        assertSame(opponentsTurn, predictor.predict(opponentsTurn, true));
+        assertEquals(598, predictor.predict(opponentsTurn, false).getPlayer2Tank().getX());
+
+        GameState shotInFlight = state(true, 100);
+        shotInFlight.getBullets().add(new Bullet(150, 500, 45, Color.BLUE, true));
+        assertSame(shotInFlight, predictor.predict(shotInFlight, true));
+    }
+
+    /**
+     * Sprawdza, czy przepełniony bufor porzuca najstarsze polecenia.
+     */
+    @Test
+    void testRingDropsOldestInputs() {
+        InputPredictor predictor = new InputPredictor();
+        for (int seq = 1; seq <= InputPredictor.CAPACITY + 10; seq++) {
+            predictor.record(seq, InputCommand.ANGLE_UP);
+        }
+        assertEquals(InputPredictor.CAPACITY, predictor.getPending());
+        predictor.acknowledge(10);
+        assertEquals(InputPredictor.CAPACITY, predictor.getPending());
+        predictor.acknowledge(InputPredictor.CAPACITY);
+        assertEquals(10, predictor.getPending());
+        predictor.clear();
+        assertEquals(0, predictor.getPending());
+    }
+
+    /**
+     * Tworzy stan gry bez przeszkód i pocisków.
+     *
+     * @param isPlayer1Turn Określa, czyja jest tura.
+     * @param player1X      Położenie czołgu gracza 1.
+     * @return Stan gry.
+     */
+    private static GameState state(boolean isPlayer1Turn, int player1X) {
+        return new GameState(new Tank(player1X, 515, Color.BLUE), new Tank(600, 515, Color.RED),
+                new ArrayList<>(), Collections.emptyList(), isPlayer1Turn);
+    }
+}
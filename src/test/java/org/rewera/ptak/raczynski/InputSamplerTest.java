@@ -0,0 +1,72 @@
+package org.rewera.ptak.raczynski;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.event.KeyEvent;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testy próbkowania klawiszy {@link InputSampler}.
+ */
+class InputSamplerTest {
+
+    /**
+     * Sprawdza, czy przytrzymany ruch działa w każdym takcie niezależnie od powtórzeń zdarzenia,
+     * a bez wciśniętych klawiszy próbka jest pusta.
+     */
+    @Test
+    void testHeldMovementIsSampledEveryTick() {
+        InputSampler input = new InputSampler();
+        assertEquals(0, input.sample());
+        input.press(KeyEvent.VK_A);
+        for (int tick = 0; tick < 10; tick++) {
+            input.press(KeyEvent.VK_A); // Powtórzenie systemowe nic nie zmienia
+            input.press(KeyEvent.VK_A);
+            assertEquals(InputCommand.LEFT, input.sample());
+        }
+        input.release(KeyEvent.VK_A);
+        assertEquals(0, input.sample());
+    }
+
+    /**
+     * Sprawdza, czy ruch i zmiana kąta w jednym takcie trafiają do jednej próbki, kąt zmienia się
+     * co {@link InputSampler#ANGLE_REPEAT_TICKS} takty, a strzał tylko raz na naciśnięcie.
+     */
+    @Test
+    void testChangesOfOneTickAreBatched() {
+        InputSampler input = new InputSampler();
+        input.press(KeyEvent.VK_D);
+        input.press(KeyEvent.VK_E);
+        input.press(KeyEvent.VK_W);
+        assertEquals(InputCommand.RIGHT | InputCommand.ANGLE_UP | InputCommand.FIRE, input.sample());
+        for (int tick = 1; tick < InputSampler.ANGLE_REPEAT_TICKS; tick++) {
+            assertEquals(InputCommand.RIGHT, input.sample());
+        }
+        assertEquals(InputCommand.RIGHT | InputCommand.ANGLE_UP, input.sample());
+        input.release(KeyEvent.VK_E);
+        input.press(KeyEvent.VK_W); // Wciąż przytrzymany - bez kolejnego strzału
+        assertEquals(InputCommand.RIGHT, input.sample());
+        input.release(KeyEvent.VK_W);
+        input.press(KeyEvent.VK_W);
+        assertEquals(InputCommand.RIGHT | InputCommand.FIRE, input.sample());
+    }
+
+    /**
+     * Sprawdza, czy klawisz wciśnięty i zwolniony w jednym takcie jest wykonany raz, a utrata
+     * fokusu zwalnia przytrzymane klawisze.
+     */
+    @Test
+    void testTapWithinTickIsNotLost() {
+        InputSampler input = new InputSampler();
+        input.press(KeyEvent.VK_Q);
+        input.release(KeyEvent.VK_Q);
+        input.press(KeyEvent.VK_SPACE);
+        assertEquals(InputCommand.ANGLE_DOWN, input.sample());
+        assertEquals(0, input.sample());
+
+        input.press(KeyEvent.VK_D);
+        input.releaseAll();
+        assertEquals(0, input.sample());
+    }
+}
@@ -0,0 +1,66 @@
+package org.rewera.ptak.raczynski;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testy jednostkowe klasy {@link LatencyHistogram}.
+ */
+class LatencyHistogramTest {
+
+    /**
+     * Sprawdza, czy percentyle mieszczą się w deklarowanym błędzie względnym.
+     */
+    @Test
+    void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1_000_000, histogram.getMax());
+        assertEquals(500_500, histogram.getMean());
+
+        long p50 = histogram.getPercentile(50);
+        assertTrue(p50 >= 500_000 && p50 <= 500_000 * 1.125, "p50=" + p50);
+        long p99 = histogram.getPercentile(99);
+        assertTrue(p99 >= 990_000 && p99 <= 1_000_000, "p99=" + p99);
+    }
+
+    /**
+     * Sprawdza obsługę małych i ujemnych wartości oraz zerowanie.
+     */
+    @Test
+    void testSmallValuesAndReset() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(3);
+        assertEquals(0, histogram.getPercentile(50));
+        assertEquals(3, histogram.getPercentile(100));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(99));
+    }
+
+    /**
+     * Sprawdza histogram o zawężonym zakresie: rozdzielczość jednostki zapisu, wartości spoza zakresu
+     * w ostatnim przedziale i dokładne maksimum.
+     */
+    @Test
+    void testNarrowRange() {
+        LatencyHistogram histogram = new LatencyHistogram(GameMetrics.UNIT_BITS, GameMetrics.RANGE_BITS);
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        long p50 = histogram.getPercentile(50);
+        assertTrue(p50 >= 500_000 && p50 <= 500_000 * 1.125, "p50=" + p50);
+
+        long huge = 1L << 40;
+        histogram.record(huge);
+        assertEquals(huge, histogram.getMax());
+        assertEquals(huge, histogram.getPercentile(100));
+        assertThrows(IllegalArgumentException.class, () -> histogram.addTo(new LatencyHistogram()));
+    }
+}
@@ -0,0 +1,111 @@
+package org.rewera.ptak.raczynski;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testy generatora obciążenia {@link LoadBot} uruchamianego przeciwko lokalnemu serwerowi.
+ */
+class LoadBotTest {
+
+    /**
+     * Serwer gry uruchomiony z silnikiem wątkowym.
+     */
+    private GameServer server;
+
+    /**
+     * Uruchamia serwer na porcie przydzielonym przez system.
+     *
+     * @throws IOException jeśli nie udało się otworzyć portu.
+     */
+    @BeforeEach
+    void setUp() throws IOException {
+        ServerConfig config = new ServerConfig();
+        config.setPort(0);
+        server = GameServer.create(config);
+        server.start();
+    }
+
+    /**
+     * Zatrzymuje serwer po każdym teście.
+     */
+    @AfterEach
+    void tearDown() {
+        server.stop();
+    }
+
+    /**
+     * Sprawdza, czy wczytywane są ustawienia z wiersza poleceń, a nieznane argumenty są odrzucane.
+     */
+    @Test
+    void testParseOptions() {
+        LoadBot.Options options = LoadBot.Options.parse(new String[]{
+                "--host=example", "--port=9000", "--bots=50", "--protocol=legacy", "--script=random", "--fire-rate=2"});
+        assertEquals("example", options.host);
+        assertEquals(9000, options.port);
+        assertEquals(50, options.bots);
+        assertEquals(LoadBot.Protocol.LEGACY, options.protocol);
+        assertEquals(LoadBot.Script.RANDOM, options.script);
+        assertEquals(2.0, options.fireRate);
+
+        assertThrows(IllegalArgumentException.class, () -> LoadBot.Options.parse(new String[]{"--bots=0"}));
+        assertThrows(IllegalArgumentException.class, () -> LoadBot.Options.parse(new String[]{"--speed=1"}));
+    }
+
+    /**
+     * Sprawdza, czy boty protokołu ramkowego łączą się, grają i mierzą czas obiegu bez błędów.
+     *
+     * @throws InterruptedException jeśli wątek został przerwany.
+     */
+    @Test
+    void testFramedBotsPlayAgainstServer() throws InterruptedException {
+        LoadBot.Stats stats = run(LoadBot.Protocol.FRAMED);
+        assertTrue(stats.connect.getCount() >= 4);
+        assertTrue(stats.roundTrip.getCount() > 0);
+        assertTrue(stats.bytesIn.sum() > 0 && stats.bytesOut.sum() > 0);
+        assertEquals(0, stats.connectErrors.sum());
+        assertEquals(0, stats.errors.sum());
+    }
+
+    /**
+     * Sprawdza, czy boty starego protokołu (serializacja Javy) łączą się, grają i mierzą czas obiegu bez błędów.
+     *
+     * @throws InterruptedException jeśli wątek został przerwany.
+     */
+    @Test
+    void testLegacyBotsPlayAgainstServer() throws InterruptedException {
+        LoadBot.Stats stats = run(LoadBot.Protocol.LEGACY);
+        assertTrue(stats.connect.getCount() >= 4);
+        assertTrue(stats.roundTrip.getCount() > 0);
+        assertTrue(stats.bytesIn.sum() > 0 && stats.bytesOut.sum() > 0);
+        assertEquals(0, stats.connectErrors.sum());
+        assertEquals(0, stats.errors.sum());
+    }
+
+    /**
+     * Uruchamia cztery boty na półtorej sekundy, łączące się kolejno co 50 ms.
+     *
+     * @param protocol Protokół botów.
+     * @return Statystyki botów.
+     * @throws InterruptedException jeśli wątek został przerwany.
+     */
+    private LoadBot.Stats run(LoadBot.Protocol protocol) throws InterruptedException {
+        LoadBot.Options options = new LoadBot.Options();
+        options.port = server.getLocalPort();
+        options.bots = 4;
+        options.rampMillis = 200; // Równoczesne połączenia mogłyby otworzyć osobne gry
+        options.protocol = protocol;
+        options.moveRate = 20;
+        options.fireRate = 2;
+        LoadBot loadBot = new LoadBot(options);
+        loadBot.start();
+        Thread.sleep(1500);
+        loadBot.stop();
+        return loadBot.getStats();
+    }
+}
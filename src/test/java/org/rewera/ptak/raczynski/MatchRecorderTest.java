@@ -0,0 +1,171 @@
+package org.rewera.ptak.raczynski;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testy zapisu meczu {@link MatchRecorder} i jego odtwarzania {@link MatchReplay}.
+ */
+class MatchRecorderTest {
+
+    /**
+     * Katalog tymczasowy na pliki zapisu.
+     */
+    @TempDir
+    Path directory;
+
+    /**
+     * Sprawdza, czy mecz prowadzony przez serwer odtworzony z poleceń kończy się tym samym stanem,
+     * klatki kluczowe zgadzają się z symulacją, a przejście do tury zwraca stan z jej początku.
+     *
+     * @throws IOException w przypadku błędu zapisu lub odczytu.
+     */
+    @Test
+    void testServerAuthoritativeReplayIsDeterministic() throws IOException {
+        Path file = directory.resolve("server.match");
+        GameState initial = initialState();
+        GameSimulation simulation = new GameSimulation(initial.copy());
+        List<GameState> turnStarts = new ArrayList<>();
+        turnStarts.add(initial.copy());
+        int tick = 0;
+        try (MatchRecorder recorder = new MatchRecorder(file, 7, true, initial)) {
+            for (int turn = 0; turn < 6; turn++) {
+                boolean player1 = turn % 2 == 0;
+                int[] script = {InputCommand.RIGHT, InputCommand.ANGLE_UP, InputCommand.LEFT, InputCommand.FIRE};
+                for (int buttons : script) {
+                    tick += 3;
+                    simulation.applyInput(!player1, InputCommand.LEFT); // Polecenie bez tury - odrzucane
+                    recorder.recordInput(tick, new InputCommand(!player1, 0, InputCommand.LEFT));
+                    simulation.applyInput(player1, buttons);
+                    recorder.recordInput(tick, new InputCommand(player1, 0, buttons));
+                    simulation.step();
+                }
+                while (simulation.snapshot().isPlayer1Turn() == player1) {
+                    tick++;
+                    if (simulation.step()) {
+                        recorder.recordTick(tick, simulation.snapshot());
+                    }
+                }
+                turnStarts.add(simulation.snapshot());
+            }
+            assertEquals(7, recorder.getTurnCount());
+            recorder.close(tick);
+        }
+
+        MatchReplay replay = new MatchReplay(file);
+        assertTrue(replay.isComplete());
+        assertTrue(replay.isServerAuthoritative());
+        assertEquals(7, replay.getGameId());
+        assertEquals(initial.getObstacles().size(), replay.getObstacles().size());
+        assertEquals(7, replay.getTurnCount());
+        for (int turn = 0; turn < turnStarts.size(); turn++) {
+            assertArrayEquals(encode(turnStarts.get(turn)), encode(replay.seek(turn)), "turn " + turn);
+        }
+
+        List<GameState> states = new ArrayList<>();
+        GameState last = replay.play(0, (time, state) -> states.add(state));
+        assertArrayEquals(encode(simulation.snapshot()), encode(last));
+        assertEquals(0, replay.getDivergences());
+        assertTrue(states.size() > turnStarts.size());
+
+        assertArrayEquals(encode(last), encode(replay.play(4, (time, state) -> { })));
+        assertEquals(0, replay.getDivergences());
+        assertThrows(IOException.class, () -> replay.seek(7));
+    }
+
+    /**
+     * Sprawdza, czy plik niezamknięty (np. po awarii serwera) jest czytelny, a indeks tur odtwarzany z rekordów.
+     *
+     * @throws IOException w przypadku błędu zapisu lub odczytu.
+     */
+    @Test
+    void testUnclosedRecordingIsReadable() throws IOException {
+        Path file = directory.resolve("client.match");
+        GameState initial = initialState();
+        try (MatchRecorder recorder = new MatchRecorder(file, 3, false, initial)) {
+            GameState state = initial.copy();
+            for (int seq = 1; seq <= 9; seq++) {
+                state.getPlayer1Tank().moveRight(state.getObstacles());
+                boolean player1Turn = (seq / 3) % 2 == 0; // Zmiana tury co trzy stany
+                recorder.recordState(seq, new GameState(state.getPlayer1Tank(), state.getPlayer2Tank(),
+                        state.getBullets(), state.getObstacles(), player1Turn));
+            }
+            assertEquals(4, recorder.getTurnCount());
+
+            MatchReplay replay = new MatchReplay(file); // Zapis wciąż otwarty - bez indeksu w pliku
+            assertFalse(replay.isComplete());
+            assertFalse(replay.isServerAuthoritative());
+            assertEquals(recorder.getTurnCount(), replay.getTurnCount());
+            List<GameState> states = new ArrayList<>();
+            replay.play(0, (time, s) -> states.add(s));
+            assertEquals(10, states.size()); // Stan początkowy i dziewięć stanów od klientów
+        }
+    }
+
+    /**
+     * Sprawdza, czy gra z ustawionym katalogiem zapisów zapisuje stany od klientów i kończy zapis po wyjściu graczy.
+     *
+     * @throws IOException w przypadku błędu odczytu.
+     */
+    @Test
+    void testGameInstanceRecordsMatch() throws IOException {
+        Matchmaker matchmaker = new Matchmaker(null);
+        matchmaker.setRecordDirectory(directory);
+        MatchmakerTest.StubConnection first = new MatchmakerTest.StubConnection();
+        MatchmakerTest.StubConnection second = new MatchmakerTest.StubConnection();
+        GameInstance game = matchmaker.assign(first);
+        matchmaker.assign(second);
+
+        GameState state = game.getGameState();
+        for (int i = 0; i < 5; i++) {
+            state.getPlayer1Tank().moveRight(state.getObstacles());
+            game.updateGameState(state.copy());
+        }
+        game.removeClient(first);
+        game.removeClient(second);
+
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.collect(Collectors.toList());
+        }
+        assertEquals(1, files.size());
+        MatchReplay replay = new MatchReplay(files.get(0));
+        assertTrue(replay.isComplete());
+        GameState last = replay.play(0, (time, s) -> { });
+        assertEquals(state.getPlayer1Tank().getX(), last.getPlayer1Tank().getX());
+    }
+
+    /**
+     * Tworzy stan początkowy z czołgami w pozycjach startowych i dwiema przeszkodami.
+     *
+     * @return Stan gry.
+     */
+    private static GameState initialState() {
+        List<Obstacle> obstacles = new ArrayList<>();
+        obstacles.add(new Obstacle(300, 530, 30, 20));
+        obstacles.add(new Obstacle(450, 530, 40, 20));
+        return new GameState(new Tank(100, 515, Color.BLUE), new Tank(600, 515, Color.RED),
+                new ArrayList<>(), obstacles, true);
+    }
+
+    /**
+     * Koduje stan do porównania.
+     *
+     * @param state Stan gry.
+     * @return Bajty stanu.
+     */
+    private static byte[] encode(GameState state) {
+        return BinaryCodec.INSTANCE.encode(state);
+    }
+}
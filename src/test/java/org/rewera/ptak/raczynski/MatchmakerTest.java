@@ -0,0 +1,156 @@
+package org.rewera.ptak.raczynski;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testy klasy {@link Matchmaker}.
+ */
+class MatchmakerTest {
+
+    /**
+     * Połączenie testowe bez gniazda, zapamiętujące przydzieloną grę i rolę.
+     */
+    static class StubConnection implements PlayerConnection {
+
+        /**
+         * Gra, do której dołączył klient.
+         */
+        volatile GameInstance gameInstance;
+
+        /**
+         * Określa, czy klient jest graczem 1.
+         */
+        volatile boolean isPlayer1;
+
+        /**
+         * Liczba odebranych stanów gry.
+         */
+        volatile int states;
+
+        @Override
+        public void joined(GameInstance gameInstance, boolean isPlayer1) {
+            this.gameInstance = gameInstance;
+            this.isPlayer1 = isPlayer1;
+        }
+
+        @Override
+        public void sendGameState(GameState gameState) {
+            states++;
+        }
+
+        @Override
+        public void sendMessage(String message) {
+        }
+
+        @Override
+        public boolean isPlayer1() {
+            return isPlayer1;
+        }
+
+        @Override
+        public boolean sendsInput() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Sprawdza, czy kolejni gracze są łączeni w pary, a gra z wolnym miejscem wraca do kolejki.
+     */
+    @Test
+    void testPairsPlayersAndReopensGames() {
+        Matchmaker matchmaker = new Matchmaker(null);
+        StubConnection first = new StubConnection();
+        StubConnection second = new StubConnection();
+        StubConnection third = new StubConnection();
+
+        GameInstance game = matchmaker.assign(first);
+        assertSame(game, matchmaker.assign(second));
+        assertTrue(game.isFull());
+        assertTrue(first.isPlayer1());
+        assertFalse(second.isPlayer1());
+
+        GameInstance other = matchmaker.assign(third);
+        assertNotSame(game, other);
+        assertEquals(2, matchmaker.size());
+
+        // Gracz 1 wychodzi z pełnej gry - gra wraca na koniec kolejki, za czekające lobby
+        game.removeClient(first);
+        assertSame(other, matchmaker.assign(new StubConnection()));
+        StubConnection fifth = new StubConnection();
+        assertSame(game, matchmaker.assign(fifth));
+        assertTrue(fifth.isPlayer1());
+        assertEquals(2, matchmaker.size());
+    }
+
+    /**
+     * Sprawdza, czy opustoszałe lobby jest usuwane z rejestru i pomijane przy przydziale.
+     */
+    @Test
+    void testEmptyLobbyIsSkipped() {
+        Matchmaker matchmaker = new Matchmaker(null);
+        StubConnection first = new StubConnection();
+        GameInstance lobby = matchmaker.assign(first);
+        lobby.removeClient(first);
+        assertNull(matchmaker.get(lobby.getGameId()));
+
+        StubConnection second = new StubConnection();
+        GameInstance game = matchmaker.assign(second);
+        assertNotSame(lobby, game);
+        assertTrue(second.isPlayer1());
+    }
+
+    /**
+     * Sprawdza, czy przy równoczesnym łączeniu każda gra dostaje dokładnie dwóch graczy.
+     *
+     * @throws InterruptedException jeśli oczekiwanie zostało przerwane.
+     */
+    @Test
+    void testConcurrentAssignment() throws InterruptedException {
+        Matchmaker matchmaker = new Matchmaker(null);
+        int threads = 8;
+        int perThread = 5000;
+        List<StubConnection> connections = new ArrayList<>();
+        for (int i = 0; i < threads * perThread; i++) {
+            connections.add(new StubConnection());
+        }
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            List<StubConnection> slice = connections.subList(t * perThread, (t + 1) * perThread);
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (StubConnection connection : slice) {
+                    matchmaker.assign(connection);
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertEquals(threads * perThread / 2, matchmaker.size());
+        for (GameInstance game : matchmaker.getInstances()) {
+            assertTrue(game.isFull());
+        }
+        for (StubConnection connection : connections) {
+            assertNotNull(connection.gameInstance);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package org.rewera.ptak.raczynski;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Benchmark przepustowości przydziału graczy przy 100k żywych, pełnych grach:
+ * {@link Matchmaker} (kolejka lobby) wobec dawnego przeglądania wszystkich gier pod blokadą.
+ *
+ * <p>Uruchomienie: {@code java -cp target/classes:target/test-classes
+ * org.rewera.ptak.raczynski.MatchmakingBenchmark [żywe gry] [połączenia] [wątki]}.</p>
+ */
+class MatchmakingBenchmark {
+
+    /**
+     * Punkt wejścia benchmarku.
+     *
+     * @param args Liczba żywych gier, liczba mierzonych połączeń i liczba wątków łączących.
+     * @throws InterruptedException jeśli oczekiwanie zostało przerwane.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int liveGames = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int connects = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+
+        Matchmaker matchmaker = new Matchmaker(null);
+        LinearScan linearScan = new LinearScan();
+        for (int i = 0; i < 2 * liveGames; i++) {
+            matchmaker.assign(new MatchmakerTest.StubConnection());
+            linearScan.assign(new MatchmakerTest.StubConnection());
+        }
+
+        measure("linear scan", linearScan::assign, Math.max(threads, connects / 500), threads);
+        measure("matchmaker", matchmaker::assign, connects, threads);
+        System.out.println("live games: " + matchmaker.size());
+    }
+
+    /**
+     * Mierzy przepustowość przydziału.
+     *
+     * @param name     Nazwa wariantu.
+     * @param assigner Przydział klienta do gry.
+     * @param connects Liczba połączeń.
+     * @param threads  Liczba wątków łączących.
+     * @throws InterruptedException jeśli oczekiwanie zostało przerwane.
+     */
+    private static void measure(String name, Assigner assigner, int connects, int threads) throws InterruptedException {
+        AtomicInteger remaining = new AtomicInteger(connects);
+        CountDownLatch done = new CountDownLatch(threads);
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                while (remaining.getAndDecrement() > 0) {
+                    assigner.assign(new MatchmakerTest.StubConnection());
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        long nanos = System.nanoTime() - start;
+        System.out.printf("%-12s %9d connects in %6d ms = %,12.0f connects/s (%,d ns/connect)%n",
+                name, connects, nanos / 1_000_000, connects * 1e9 / nanos, nanos / connects);
+    }
+
+    /**
+     * Przydział klienta do gry.
+     */
+    private interface Assigner {
+
+        /**
+         * Przydziela klienta do gry.
+         *
+         * @param client Połączenie klienta.
+         */
+        void assign(PlayerConnection client);
+    }
+
+    /**
+     * Dawny przydział: przeglądanie wszystkich gier pod globalną blokadą.
+     */
+    private static final class LinearScan {
+
+        /**
+         * Rejestr gier.
+         */
+        private final Map<Integer, GameInstance> gameInstances = new ConcurrentHashMap<>();
+
+        /**
+         * Globalna blokada przydziału.
+         */
+        private final ReentrantLock lock = new ReentrantLock();
+
+        /**
+         * Identyfikator kolejnej gry.
+         */
+        private int nextGameId;
+
+        /**
+         * Przydziela klienta do pierwszej niepełnej gry lub do nowej gry.
+         *
+         * @param client Połączenie klienta.
+         */
+        void assign(PlayerConnection client) {
+            lock.lock();
+            try {
+                for (GameInstance instance : gameInstances.values()) {
+                    if (!instance.isFull()) {
+                        instance.addClient(client);
+                        return;
+                    }
+                }
+                GameInstance instance = new GameInstance(nextGameId++);
+                gameInstances.put(instance.getGameId(), instance);
+                instance.addClient(client);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package org.rewera.ptak.raczynski;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testy silnika {@link NioGameServer}.
+ * Sprawdzają dołączanie klientów protokołu ramkowego, obsługę starych klientów oraz rozłączanie
+ * klientów, którzy nie odbierają stanów.
+ */
+class NioGameServerTest {
+
+    /**
+     * Serwer gry uruchomiony z silnikiem NIO.
+     */
+    private GameServer server;
+
+    /**
+     * Uruchamia serwer na porcie przydzielonym przez system.
+     *
+     * @throws IOException jeśli nie udało się otworzyć portu.
+     */
+    @BeforeEach
+    void setUp() throws IOException {
+        ServerConfig config = new ServerConfig();
+        config.setPort(0);
+        config.setEngine(ServerConfig.Engine.NIO);
+        config.setIoThreads(2);
+        server = GameServer.create(config);
+        server.start();
+    }
+
+    /**
+     * Zatrzymuje serwer po każdym teście.
+     */
+    @AfterEach
+    void tearDown() {
+        server.stop();
+    }
+
+    /**
+     * Otwiera połączenie klienta protokołu ramkowego i wysyła powitanie.
+     *
+     * @return Gniazdo klienta.
+     * @throws IOException w przypadku błędu połączenia.
+     */
+    private Socket connectFramed() throws IOException {
+        Socket socket = new Socket("localhost", server.getLocalPort());
+        socket.setSoTimeout(5000);
+        WireProtocol.writeHello(new DataOutputStream(socket.getOutputStream()), GameStateCodec.SERIALIZATION, (byte) 0);
+        return socket;
+    }
+
+    /**
+     * Sprawdza, czy dwaj klienci ramkowi otrzymują role i stan gry,
+     * a stan wysłany przez jednego trafia do drugiego.
+     *
+     * @throws IOException w przypadku błędu połączenia.
+     */
+    @Test
+    void testFramedClientsJoinAndExchangeState() throws IOException {
+        try (Socket first = connectFramed(); Socket second = connectFramed()) {
+            DataInputStream firstIn = new DataInputStream(first.getInputStream());
+            DataInputStream secondIn = new DataInputStream(second.getInputStream());
+
+            WireProtocol.Frame welcome1 = WireProtocol.readFrame(firstIn);
+            WireProtocol.Frame welcome2 = WireProtocol.readFrame(secondIn);
+            assertEquals(WireProtocol.FRAME_WELCOME, welcome1.type);
+            assertEquals(WireProtocol.FRAME_WELCOME, welcome2.type);
+            assertNotEquals(welcome1.payload[0], welcome2.payload[0]); // Różne role graczy
+
+            assertEquals(WireProtocol.FRAME_STATE, WireProtocol.readFrame(firstIn).type);
+            assertEquals(WireProtocol.FRAME_STATE, WireProtocol.readFrame(secondIn).type);
+
+            GameState state = new GameState(new Tank(140, 515, Color.BLUE), new Tank(600, 515, Color.RED),
+                    new ArrayList<>(), new ArrayList<>(), false);
+            WireProtocol.writeFrame(new DataOutputStream(first.getOutputStream()), WireProtocol.FRAME_STATE,
+                    SerializationCodec.INSTANCE.encode(state));
+
+            WireProtocol.Frame update = WireProtocol.readFrame(secondIn);
+            GameState received = SerializationCodec.INSTANCE.decode(update.payload, 0, update.payload.length);
+            assertEquals(140, received.getPlayer1Tank().getX());
+            assertFalse(received.isPlayer1Turn());
+        }
+    }
+
+    /**
+     * Sprawdza, czy klient używający strumieni obiektowych nadal może dołączyć do gry.
+     *
+     * @throws IOException w przypadku błędu połączenia.
+     */
+    @Test
+    void testLegacyClientIsHandedOff() throws IOException {
+        try (Socket socket = new Socket("localhost", server.getLocalPort())) {
+            socket.setSoTimeout(5000);
+            ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
+            out.flush();
+            ObjectInputStream in = new ObjectInputStream(socket.getInputStream());
+            assertTrue(in.readBoolean()); // Pierwszy klient zostaje graczem 1
+        }
+    }
+
+    /**
+     * Sprawdza, czy klient, który przestał odbierać, jest rozłączany po przekroczeniu dopuszczalnego
+     * opóźnienia, a jego kolejka nie rośnie i nie blokuje rozsyłania stanu drugiemu graczowi.
+     *
+     * @throws Exception w przypadku błędu połączenia.
+     */
+    @Test
+    void testStalledClientIsDisconnectedWithoutBlockingGame() throws Exception {
+        server.stop();
+        ServerConfig config = new ServerConfig();
+        config.setPort(0);
+        config.setEngine(ServerConfig.Engine.NIO);
+        config.setMaxLagMillis(300);
+        config.setInboundRate(0); // Aktywny gracz wysyła stany bez przerw
+        server = GameServer.create(config);
+        server.start();
+
+        try (Socket stalled = new Socket(); Socket active = connectFramed()) {
+            stalled.setReceiveBufferSize(4096);
+            stalled.connect(new InetSocketAddress("localhost", server.getLocalPort()));
+            WireProtocol.writeHello(new DataOutputStream(stalled.getOutputStream()), GameStateCodec.SERIALIZATION, (byte) 0);
+
+            active.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(active.getInputStream());
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(active.getOutputStream()));
+            assertEquals(WireProtocol.FRAME_WELCOME, WireProtocol.readFrame(in).type);
+            assertEquals(WireProtocol.FRAME_STATE, WireProtocol.readFrame(in).type); // Stan początkowy po zapełnieniu gry
+            GameInstance game = server.getMatchmaker().getInstances().iterator().next();
+
+            // Duże stany szybko zapełniają bufory gniazda klienta, który nie odbiera
+            List<Bullet> bullets = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                bullets.add(new Bullet(i, i, 45, Color.BLUE, true));
+            }
+            long deadline = System.currentTimeMillis() + 20_000;
+            int x = 0;
+            while (game.isFull() && System.currentTimeMillis() < deadline) {
+                WireProtocol.writeFrame(out, WireProtocol.FRAME_STATE, SerializationCodec.INSTANCE.encode(
+                        new GameState(new Tank(x++ % 500, 515, Color.BLUE), new Tank(600, 515, Color.RED),
+                                bullets, new ArrayList<>(), true)));
+                out.flush();
+                assertEquals(WireProtocol.FRAME_STATE, WireProtocol.readFrame(in).type); // Aktywny gracz wciąż dostaje każdy stan
+            }
+            assertFalse(game.isFull(), "stalled client was not disconnected");
+            assertEquals(1, server.getMetrics().getDisconnects(DisconnectReason.LAG_LIMIT)
+                    + server.getMetrics().getDisconnects(DisconnectReason.QUEUE_FULL));
+        }
+    }
+
+    /**
+     * Sprawdza, czy po nieudanym {@code accept()} i po błędzie przygotowania przyjętego kanału serwer
+     * dalej przyjmuje połączenia, a miejsce porzuconego połączenia w limicie jest zwalniane.
+     *
+     * @throws Exception w przypadku błędu połączenia.
+     */
+    @Test
+    void testAcceptorSurvivesFailedAccepts() throws Exception {
+        server.stop();
+        ServerConfig config = new ServerConfig();
+        config.setPort(0);
+        config.setEngine(ServerConfig.Engine.NIO);
+        server = GameServer.create(config);
+        AtomicInteger accepts = new AtomicInteger();
+        NioGameServer nio = new NioGameServer(server, config) {
+            @Override
+            SocketChannel accept() throws IOException {
+                int attempt = accepts.incrementAndGet();
+                if (attempt == 1) {
+                    throw new IOException("Too many open files");
+                }
+                SocketChannel channel = super.accept();
+                if (attempt == 2 && channel != null) {
+                    channel.close(); // Przygotowanie kanału się nie powiedzie
+                }
+                return channel;
+            }
+        };
+        nio.start();
+        try {
+            try (Socket dropped = new Socket("localhost", nio.getLocalPort())) {
+                dropped.setSoTimeout(5000);
+                assertEquals(-1, dropped.getInputStream().read());
+            }
+            assertTrue(accepts.get() >= 2);
+
+            try (Socket first = new Socket("localhost", nio.getLocalPort());
+                 Socket second = new Socket("localhost", nio.getLocalPort())) {
+                for (Socket player : new Socket[]{first, second}) {
+                    player.setSoTimeout(5000);
+                    WireProtocol.writeHello(new DataOutputStream(player.getOutputStream()), GameStateCodec.SERIALIZATION, (byte) 0);
+                    assertEquals(WireProtocol.FRAME_WELCOME, WireProtocol.readFrame(new DataInputStream(player.getInputStream())).type);
+                }
+                assertEquals(2, server.getConnectionLimiter().getOpen());
+            }
+        } finally {
+            nio.stop();
+        }
+    }
+}
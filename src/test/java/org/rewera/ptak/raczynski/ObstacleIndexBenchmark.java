@@ -0,0 +1,196 @@
+package org.rewera.ptak.raczynski;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmark wyszukiwania kolizji z przeszkodami: sprawdzenie wszystkich przeszkód z listy
+ * w porównaniu z indeksem {@link ObstacleIndex} przy 10k przeszkód i 10k pocisków.
+ *
+ * <p>Przeszkody leżą na podłożu i nad nim na planszy szerokiej na tyle, aby się zmieściły. W każdym
+ * takcie pociski lecą po torze balistycznym i każdy z nich oraz tyle samo czołgów na podłożu sprawdza
+ * kolizję z przeszkodami. Wypisywany jest czas taktu zapytań i czas aktualizacji indeksu po przesunięciu
+ * jednej przeszkody ({@link ObstacleIndex#sync(List)}) w porównaniu z budową indeksu od nowa.</p>
+ *
+ * <p>Uruchomienie: {@code java -cp target/classes:target/test-classes
+ * org.rewera.ptak.raczynski.ObstacleIndexBenchmark [przeszkody] [pociski] [takty]},
+ * np. {@code 10000 10000 20}.</p>
+ */
+class ObstacleIndexBenchmark {
+
+    /**
+     * Współrzędna Y podłoża.
+     */
+    private static final int GROUND_Y = 530;
+
+    /**
+     * Średnia odległość między przeszkodami w osi X.
+     */
+    private static final int SPACING = 40;
+
+    /**
+     * Punkt wejścia benchmarku.
+     *
+     * @param args Liczba przeszkód, liczba pocisków i liczba taktów pomiarowych.
+     */
+    public static void main(String[] args) {
+        int obstacleCount = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int bulletCount = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        int ticks = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        int width = obstacleCount * SPACING;
+
+        List<Obstacle> obstacles = new ArrayList<>(obstacleCount);
+        for (int i = 0; i < obstacleCount; i++) {
+            obstacles.add(obstacle(i, 0));
+        }
+        ObstacleIndex index = new ObstacleIndex(width, 600, ObstacleIndex.DEFAULT_CELL_SIZE);
+        index.sync(obstacles);
+
+        System.out.printf("%d obstacles, %d bullets, world %d px wide%n", obstacleCount, bulletCount, width);
+        System.out.printf("%-14s %14s %10s%n", "collisions", "tick us", "hits");
+        measureList(obstacles, bulletCount, width, ticks); // Rozgrzewka JIT
+        measureIndex(index, bulletCount, width, ticks * 10);
+        measureList(obstacles, bulletCount, width, ticks);
+        measureIndex(index, bulletCount, width, ticks * 10);
+
+        System.out.printf("%-14s %14s%n", "update", "us");
+        for (int round = 0; round < 2; round++) { // Pierwsza runda to rozgrzewka
+            long start = System.nanoTime();
+            for (int tick = 0; tick < ticks * 10; tick++) {
+                int moved = (tick * 7919) % obstacleCount;
+                obstacles.set(moved, obstacle(moved, tick + 1));
+                index.sync(obstacles);
+            }
+            long syncNanos = (System.nanoTime() - start) / (ticks * 10);
+            start = System.nanoTime();
+            for (int tick = 0; tick < ticks; tick++) {
+                new ObstacleIndex(width, 600, ObstacleIndex.DEFAULT_CELL_SIZE).sync(obstacles);
+            }
+            long rebuildNanos = (System.nanoTime() - start) / ticks;
+            if (round == 1) {
+                System.out.printf("%-14s %14.1f%n", "sync", syncNanos / 1000.0);
+                System.out.printf("%-14s %14.1f%n", "rebuild", rebuildNanos / 1000.0);
+            }
+        }
+    }
+
+    /**
+     * Mierzy takt zapytań sprawdzających wszystkie przeszkody z listy.
+     *
+     * @param obstacles Przeszkody.
+     * @param count     Liczba pocisków i czołgów.
+     * @param width     Szerokość planszy.
+     * @param ticks     Liczba taktów.
+     */
+    private static void measureList(List<Obstacle> obstacles, int count, int width, int ticks) {
+        long hits = 0;
+        long start = System.nanoTime();
+        for (int tick = 0; tick < ticks; tick++) {
+            for (int i = 0; i < count; i++) {
+                hits += intersectsAny(obstacles, bulletX(i, tick, width), bulletY(i, tick), BulletStore.DIAMETER, BulletStore.DIAMETER) ? 1 : 0;
+                hits += intersectsAny(obstacles, tankX(i, tick, width), GROUND_Y - 15, 25, 15) ? 1 : 0;
+            }
+        }
+        report("List<Obstacle>", ticks, start, hits);
+    }
+
+    /**
+     * Mierzy takt zapytań przez indeks przeszkód.
+     *
+     * @param index Indeks przeszkód.
+     * @param count Liczba pocisków i czołgów.
+     * @param width Szerokość planszy.
+     * @param ticks Liczba taktów.
+     */
+    private static void measureIndex(ObstacleIndex index, int count, int width, int ticks) {
+        long hits = 0;
+        long start = System.nanoTime();
+        for (int tick = 0; tick < ticks; tick++) {
+            for (int i = 0; i < count; i++) {
+                hits += index.intersectsInAir(bulletX(i, tick, width), bulletY(i, tick), BulletStore.DIAMETER, BulletStore.DIAMETER) ? 1 : 0;
+                hits += index.intersectsOnGround(tankX(i, tick, width), GROUND_Y - 15, 25, 15) ? 1 : 0;
+            }
+        }
+        report("ObstacleIndex", ticks, start, hits);
+    }
+
+    /**
+     * Sprawdza wszystkie przeszkody z listy.
+     *
+     * @param obstacles Przeszkody.
+     * @param x         Lewy brzeg prostokąta.
+     * @param y         Górny brzeg prostokąta.
+     * @param width     Szerokość prostokąta.
+     * @param height    Wysokość prostokąta.
+     * @return true, jeśli prostokąt przecina przeszkodę.
+     */
+    private static boolean intersectsAny(List<Obstacle> obstacles, int x, int y, int width, int height) {
+        for (int i = 0; i < obstacles.size(); i++) {
+            if (obstacles.get(i).intersects(x, y, width, height)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Wypisuje wynik pomiaru.
+     *
+     * @param name  Nazwa wersji.
+     * @param ticks Liczba taktów.
+     * @param start Czas rozpoczęcia w nanosekundach.
+     * @param hits  Liczba kolizji (aby JIT nie pominął zapytań).
+     */
+    private static void report(String name, int ticks, long start, long hits) {
+        long tickNanos = (System.nanoTime() - start) / ticks;
+        System.out.printf("%-14s %14.1f %10d%n", name, tickNanos / 1000.0, hits / ticks);
+    }
+
+    /**
+     * Tworzy przeszkodę: co czwarta wisi nad podłożem, pozostałe leżą na podłożu.
+     *
+     * @param i     Numer przeszkody.
+     * @param shift Przesunięcie w osi X.
+     * @return Przeszkoda.
+     */
+    private static Obstacle obstacle(int i, int shift) {
+        int y = i % 4 == 0 ? 200 + (i * 31) % 250 : GROUND_Y;
+        return new Obstacle(i * SPACING + (i * 17) % 15 + shift % 5, y, 20 + (i * 13) % 30, 20);
+    }
+
+    /**
+     * Pozycja X pocisku w danym takcie.
+     *
+     * @param i     Numer pocisku.
+     * @param tick  Numer taktu.
+     * @param width Szerokość planszy.
+     * @return Pozycja X.
+     */
+    private static int bulletX(int i, int tick, int width) {
+        return (int) (((long) i * 7919 + tick * (i % 2 == 0 ? 6 : -6)) % width + width) % width;
+    }
+
+    /**
+     * Pozycja Y pocisku w danym takcie (lot po paraboli powtarzany co 80 taktów).
+     *
+     * @param i    Numer pocisku.
+     * @param tick Numer taktu.
+     * @return Pozycja Y.
+     */
+    private static int bulletY(int i, int tick) {
+        int t = (tick + i) % 80;
+        return (int) (GROUND_Y - 10 - 8.0 * t + 0.1 * t * t);
+    }
+
+    /**
+     * Pozycja X czołgu w danym takcie.
+     *
+     * @param i     Numer czołgu.
+     * @param tick  Numer taktu.
+     * @param width Szerokość planszy.
+     * @return Pozycja X.
+     */
+    private static int tankX(int i, int tick, int width) {
+        return (int) (((long) i * 104729 + tick * 2) % width);
+    }
+}
@@ -0,0 +1,165 @@
+package org.rewera.ptak.raczynski;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testy indeksu przeszkód {@link ObstacleIndex}.
+ */
+class ObstacleIndexTest {
+
+    /**
+     * Sprawdza, czy oba sposoby wyszukiwania dają ten sam wynik co sprawdzenie wszystkich przeszkód,
+     * także dla prostokątów i przeszkód wystających poza siatkę.
+     */
+    @Test
+    void testMatchesBruteForce() {
+        Random random = new Random(11);
+        List<Obstacle> obstacles = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            obstacles.add(new Obstacle(random.nextInt(900) - 50, random.nextInt(700), random.nextInt(60), random.nextInt(40)));
+        }
+        ObstacleIndex index = new ObstacleIndex(obstacles);
+
+        assertEquals(300, index.size());
+        assertQueriesMatch(random, index, obstacles);
+    }
+
+    /**
+     * Sprawdza, czy indeks po dodaniu, usunięciu i synchronizacji przeszkód odpowiada nowej liście.
+     */
+    @Test
+    void testIncrementalUpdates() {
+        Random random = new Random(5);
+        List<Obstacle> obstacles = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            obstacles.add(new Obstacle(random.nextInt(800), 530, 20 + random.nextInt(30), 20));
+        }
+        ObstacleIndex index = new ObstacleIndex(obstacles);
+
+        // Pojedyncze zmiany
+        Obstacle wide = new Obstacle(200, 400, 300, 50);
+        index.add(wide);
+        obstacles.add(wide);
+        for (int i = 0; i < 30; i++) {
+            assertTrue(index.remove(obstacles.remove(random.nextInt(obstacles.size()))));
+        }
+        assertFalse(index.remove(new Obstacle(10, 530, 20, 20)));
+        assertEquals(obstacles.size(), index.size());
+        assertQueriesMatch(random, index, obstacles);
+
+        // Nowa lista: część przeszkód bez zmian, część przesunięta, mniej przeszkód
+        List<Obstacle> next = new ArrayList<>();
+        for (int i = 0; i < obstacles.size() - 10; i++) {
+            Obstacle obstacle = obstacles.get(i);
+            next.add(i % 3 == 0 ? new Obstacle(obstacle.getX() + 7, 530, obstacle.getWidth(), 20)
+                    : new Obstacle(obstacle.getX(), obstacle.getY(), obstacle.getWidth(), obstacle.getHeight()));
+        }
+        assertTrue(index.sync(next));
+        assertFalse(index.sync(new ArrayList<>(next))); // Te same granice - brak zmian
+        assertEquals(next.size(), index.size());
+        assertQueriesMatch(random, index, next);
+
+        assertTrue(index.sync(new ArrayList<>()));
+        assertEquals(0, index.size());
+        assertFalse(index.intersectsOnGround(0, 0, 800, 600));
+        assertFalse(index.intersectsInAir(0, 0, 800, 600));
+    }
+
+    /**
+     * Sprawdza, czy ruch czołgu z indeksem daje ten sam wynik co ruch z listą przeszkód.
+     */
+    @Test
+    void testTankMovesMatchList() {
+        List<Obstacle> obstacles = Arrays.asList(new Obstacle(150, 530, 30, 20), new Obstacle(300, 530, 40, 20));
+        ObstacleIndex index = new ObstacleIndex(obstacles);
+        Tank listTank = new Tank(100, 515, Color.BLUE);
+        Tank indexTank = new Tank(100, 515, Color.BLUE);
+        for (int i = 0; i < 60; i++) {
+            if (i % 20 < 15) {
+                listTank.moveRight(obstacles);
+                indexTank.moveRight(index);
+            } else {
+                listTank.moveLeft(obstacles);
+                indexTank.moveLeft(index);
+            }
+            assertEquals(listTank.getX(), indexTank.getX());
+            assertEquals(listTank.getFuel(), indexTank.getFuel());
+        }
+        assertEquals(114, indexTank.getX()); // Czołg zatrzymuje się przed pierwszą przeszkodą
+    }
+
+    /**
+     * Sprawdza, czy zapytania nie alokują pamięci.
+     */
+    @Test
+    void testQueriesDoNotAllocate() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        List<Obstacle> obstacles = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            obstacles.add(new Obstacle((i * 37) % 800, 530 - (i % 5) * 40, 20, 20));
+        }
+        ObstacleIndex index = new ObstacleIndex(obstacles);
+        int hits = 0;
+        for (int i = 0; i < 100_000; i++) { // Rozgrzewka - kompilacja JIT
+            hits += query(index, i);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100_000; i++) {
+            hits += query(index, i);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue(allocated < 1024, "allocated " + allocated + " bytes");
+        assertTrue(hits > 0);
+    }
+
+    /**
+     * Wykonuje oba rodzaje zapytań dla deterministycznego prostokąta.
+     *
+     * @param index Indeks.
+     * @param i     Numer zapytania.
+     * @return Liczba trafień.
+     */
+    private static int query(ObstacleIndex index, int i) {
+        int x = (i * 13) % 800;
+        int y = 300 + (i * 7) % 250;
+        return (index.intersectsOnGround(x, 515, 25, 15) ? 1 : 0) + (index.intersectsInAir(x, y, 10, 10) ? 1 : 0);
+    }
+
+    /**
+     * Porównuje wyniki zapytań indeksu z wynikami sprawdzenia wszystkich przeszkód.
+     *
+     * @param random    Generator prostokątów.
+     * @param index     Indeks.
+     * @param obstacles Przeszkody w indeksie.
+     */
+    private static void assertQueriesMatch(Random random, ObstacleIndex index, List<Obstacle> obstacles) {
+        int hits = 0;
+        for (int i = 0; i < 20_000; i++) {
+            int x = random.nextInt(1000) - 100;
+            int y = random.nextInt(800) - 100;
+            int width = random.nextInt(50);
+            int height = random.nextInt(50);
+            boolean expected = false;
+            for (Obstacle obstacle : obstacles) {
+                expected |= obstacle.intersects(x, y, width, height);
+            }
+            String rectangle = x + "," + y + "," + width + "x" + height;
+            assertEquals(expected, index.intersectsOnGround(x, y, width, height), rectangle);
+            assertEquals(expected, index.intersectsInAir(x, y, width, height), rectangle);
+            hits += expected ? 1 : 0;
+        }
+        assertTrue(hits > 100, "too few hits: " + hits);
+    }
+}
@@ -2,6 +2,7 @@ package org.rewera.ptak.raczynski;
 
 import org.junit.jupiter.api.Test;
 import java.awt.*;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -33,4 +34,28 @@ class ObstacleTest {
         assertEquals(100, bounds.getX(), 0.01); // Sprawdzenie pozycji przeszkody
         assertEquals(510, bounds.getY(), 0.01); // y = 530 - height (20)
     }
+
+    /**
+     * Sprawdza, czy test kolizji bez {@link Rectangle} ({@link Obstacle#intersects}, {@link Tank#intersects})
+     * daje ten sam wynik co {@link Rectangle#intersects}, także dla prostokątów stykających się krawędzią.
+     */
+    @Test
+    void testIntersectsMatchesRectangle() {
+        Obstacle obstacle = new Obstacle(100, 530, 50, 20);
+        Tank tank = new Tank(300, 515, Color.BLUE);
+        assertFalse(obstacle.intersects(150, 510, 10, 10)); // Styk z prawą krawędzią
+        assertTrue(obstacle.intersects(149, 500, 10, 11));
+        assertFalse(obstacle.intersects(120, 515, 0, 10)); // Pusty prostokąt
+
+        Random random = new Random(3);
+        for (int i = 0; i < 100_000; i++) {
+            int x = random.nextInt(400);
+            int y = 450 + random.nextInt(100);
+            int width = random.nextInt(40);
+            int height = random.nextInt(40);
+            Rectangle other = new Rectangle(x, y, width, height);
+            assertEquals(other.intersects(obstacle.getBounds()), obstacle.intersects(x, y, width, height), other.toString());
+            assertEquals(other.intersects(tank.getBounds()), tank.intersects(x, y, width, height), other.toString());
+        }
+    }
 }
\ No newline at end of file
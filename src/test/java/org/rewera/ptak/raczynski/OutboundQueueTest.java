@@ -0,0 +1,88 @@
+package org.rewera.ptak.raczynski;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testy jednostkowe klasy {@link OutboundQueue}.
+ */
+class OutboundQueueTest {
+
+    /**
+     * Sprawdza, czy niewysłane stany są scalane, a wiadomości zachowują kolejność.
+     *
+     * @throws InterruptedException jeśli oczekiwanie zostało przerwane.
+     */
+    @Test
+    void testStatesAreCoalesced() throws InterruptedException {
+        OutboundQueue queue = new OutboundQueue(8);
+        assertTrue(queue.offer(Boolean.TRUE));
+        assertTrue(queue.offerState("state-1"));
+        assertTrue(queue.offerState("state-2"));
+        assertTrue(queue.offerState("state-3"));
+        assertEquals(2, queue.getDepth());
+        assertEquals(2, queue.getCoalesced());
+
+        assertEquals(Boolean.TRUE, queue.take());
+        assertEquals("state-3", queue.take());
+        assertEquals(0, queue.getDepth());
+        assertEquals(0, queue.getLag(TimeUnit.NANOSECONDS));
+
+        // Po pobraniu stanu kolejny stan zajmuje nowe miejsce
+        assertTrue(queue.offerState("state-4"));
+        assertEquals("state-4", queue.take());
+        assertEquals(2, queue.getPeakDepth());
+    }
+
+    /**
+     * Sprawdza, czy pojemność ogranicza wiadomości, a opóźnienie liczy się od najstarszego stanu.
+     *
+     * @throws InterruptedException jeśli oczekiwanie zostało przerwane.
+     */
+    @Test
+    void testCapacityAndLag() throws InterruptedException {
+        OutboundQueue queue = new OutboundQueue(2);
+        assertTrue(queue.offerState("old"));
+        assertTrue(queue.offer("text"));
+        assertFalse(queue.offer("overflow"));
+        assertTrue(queue.offerState("new")); // Scalenie nie zajmuje miejsca
+
+        Thread.sleep(20);
+        assertTrue(queue.getLag(TimeUnit.MILLISECONDS) >= 20);
+    }
+
+    /**
+     * Sprawdza, czy po zamknięciu kolejka oddaje pozostałe wiadomości, a potem null.
+     *
+     * @throws InterruptedException jeśli oczekiwanie zostało przerwane.
+     */
+    @Test
+    void testCloseDrainsRemainingMessages() throws InterruptedException {
+        OutboundQueue queue = new OutboundQueue(4);
+        queue.offer("bye");
+        queue.close();
+        assertFalse(queue.offerState("late"));
+        assertEquals("bye", queue.take());
+        assertNull(queue.take());
+    }
+
+    /**
+     * Sprawdza, czy pobieranie bez czekania (pętla zdarzeń NIO) zastępuje znacznik oczekującym stanem
+     * i zwraca null dla pustej kolejki, także po zamknięciu.
+     */
+    @Test
+    void testPollDoesNotWait() {
+        OutboundQueue queue = new OutboundQueue(4);
+        assertNull(queue.poll());
+        queue.offerState("state-1");
+        queue.offer("text");
+        queue.offerState("state-2");
+        queue.close();
+        assertEquals("state-2", queue.poll());
+        assertEquals("text", queue.poll());
+        assertNull(queue.poll());
+    }
+}
@@ -0,0 +1,75 @@
+package org.rewera.ptak.raczynski;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testy jednostkowe klasy {@link ReliableChannel}.
+ */
+class ReliableChannelTest {
+
+    /**
+     * Sprawdza, czy wiadomości są dostarczane w kolejności, a powtórzenia pomijane.
+     */
+    @Test
+    void testInOrderDelivery() {
+        ReliableChannel sender = new ReliableChannel();
+        ReliableChannel receiver = new ReliableChannel();
+        byte[] first = sender.send(WireProtocol.FRAME_INPUT, new byte[]{1});
+        byte[] second = sender.send(WireProtocol.FRAME_INPUT, new byte[]{2});
+
+        // Pierwsza wiadomość zaginęła - druga czeka na uzupełnienie luki
+        assertTrue(receiver.receive(second, 0, second.length).isEmpty());
+        assertEquals(0, receiver.getReceivedSeq());
+        List<WireProtocol.Frame> frames = receiver.receive(first, 0, first.length);
+        assertEquals(2, frames.size());
+        assertEquals(WireProtocol.FRAME_INPUT, frames.get(0).type);
+        assertArrayEquals(new byte[]{1}, frames.get(0).payload);
+        assertArrayEquals(new byte[]{2}, frames.get(1).payload);
+        assertTrue(receiver.receive(first, 0, first.length).isEmpty()); // Powtórzenie
+        assertTrue(receiver.receive(second, 0, second.length).isEmpty());
+        assertEquals(2, receiver.getReceivedSeq());
+    }
+
+    /**
+     * Sprawdza ponawianie po upływie czasu i potwierdzenie zbiorcze.
+     */
+    @Test
+    void testRetransmitUntilAcked() {
+        ReliableChannel channel = new ReliableChannel();
+        channel.send(WireProtocol.FRAME_INPUT, new byte[]{1});
+        channel.send(WireProtocol.FRAME_INPUT, new byte[]{2});
+        channel.send(WireProtocol.FRAME_INPUT, new byte[]{3});
+        long now = System.nanoTime();
+        assertTrue(channel.due(now).isEmpty());
+
+        long later = now + TimeUnit.MILLISECONDS.toNanos(ReliableChannel.RETRANSMIT_MILLIS + 1);
+        List<byte[]> due = channel.due(later);
+        assertEquals(3, due.size());
+        assertTrue(channel.due(later).isEmpty()); // Ponowione - czekamy kolejny okres
+
+        channel.acked(2);
+        assertEquals(1, channel.getUnacked());
+        assertEquals(2, channel.getAckedSeq());
+        assertEquals(1, channel.due(later + TimeUnit.MILLISECONDS.toNanos(ReliableChannel.RETRANSMIT_MILLIS)).size());
+        assertEquals(4, channel.getRetransmits());
+    }
+
+    /**
+     * Sprawdza, czy pełne okno odrzuca kolejne wiadomości.
+     */
+    @Test
+    void testWindowLimit() {
+        ReliableChannel channel = new ReliableChannel();
+        for (int i = 0; i < ReliableChannel.WINDOW; i++) {
+            assertNotNull(channel.send(WireProtocol.FRAME_INPUT, new byte[0]));
+        }
+        assertNull(channel.send(WireProtocol.FRAME_INPUT, new byte[0]));
+        channel.acked(1);
+        assertNotNull(channel.send(WireProtocol.FRAME_INPUT, new byte[0]));
+    }
+}
@@ -0,0 +1,102 @@
+package org.rewera.ptak.raczynski;
+
+import java.awt.*;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Wspólne przygotowanie testów serwera: konfiguracja, uruchomienie, połączenia klientów ramkowych,
+ * odczyt komunikatów i stany gry.
+ */
+final class ServerFixtures {
+
+    /**
+     * Klasa narzędziowa - bez instancji.
+     */
+    private ServerFixtures() {
+    }
+
+    /**
+     * Tworzy konfigurację serwera na porcie przydzielonym przez system.
+     *
+     * @param engine Silnik serwera.
+     * @return Konfiguracja.
+     */
+    static ServerConfig config(ServerConfig.Engine engine) {
+        ServerConfig config = new ServerConfig();
+        config.setPort(0);
+        config.setEngine(engine);
+        return config;
+    }
+
+    /**
+     * Tworzy konfigurację serwera na porcie przydzielonym przez system z podanym okresem karencji sesji.
+     *
+     * @param engine      Silnik serwera.
+     * @param graceMillis Okres karencji sesji (0 wyłącza przetrzymywanie miejsc).
+     * @return Konfiguracja.
+     */
+    static ServerConfig config(ServerConfig.Engine engine, long graceMillis) {
+        ServerConfig config = config(engine);
+        config.setResumeGraceMillis(graceMillis);
+        return config;
+    }
+
+    /**
+     * Tworzy i uruchamia serwer.
+     *
+     * @param config Konfiguracja serwera.
+     * @return Uruchomiony serwer.
+     * @throws IOException jeśli nie udało się otworzyć portu.
+     */
+    static GameServer start(ServerConfig config) throws IOException {
+        GameServer server = GameServer.create(config);
+        server.start();
+        return server;
+    }
+
+    /**
+     * Łączy klienta ramkowego z kodekiem binarnym i wysyła powitanie.
+     *
+     * @param port  Port serwera.
+     * @param flags Flagi powitania.
+     * @return Gniazdo klienta.
+     * @throws IOException w przypadku błędu połączenia.
+     */
+    static Socket connect(int port, byte flags) throws IOException {
+        Socket socket = new Socket("localhost", port);
+        socket.setSoTimeout(5000);
+        WireProtocol.writeHello(new DataOutputStream(socket.getOutputStream()), GameStateCodec.BINARY, flags);
+        return socket;
+    }
+
+    /**
+     * Odczytuje ramkę komunikatu tekstowego.
+     *
+     * @param in Strumień wejściowy klienta.
+     * @return Treść komunikatu.
+     * @throws IOException jeśli ramka nie jest komunikatem.
+     */
+    static String readText(DataInputStream in) throws IOException {
+        WireProtocol.Frame frame = WireProtocol.readFrame(in);
+        assertEquals(WireProtocol.FRAME_TEXT, frame.type);
+        return new String(frame.payload, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Tworzy stan gry bez przeszkód z podaną pozycją czołgu gracza 1.
+     *
+     * @param x Pozycja czołgu gracza 1.
+     * @return Stan gry.
+     */
+    static GameState state(int x) {
+        return new GameState(new Tank(x, 515, Color.BLUE), new Tank(600, 515, Color.RED),
+                new ArrayList<>(), new ArrayList<>(), true);
+    }
+}
@@ -0,0 +1,223 @@
+package org.rewera.ptak.raczynski;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+import java.io.DataInputStream;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testy metryk serwera {@link ServerMetrics} i ich udostępniania przez JMX.
+ */
+class ServerMetricsTest {
+
+    /**
+     * Serwer gry uruchomiony z silnikiem wątkowym.
+     */
+    private GameServer server;
+
+    /**
+     * Serwer MBean platformy.
+     */
+    private final MBeanServer mbeans = ManagementFactory.getPlatformMBeanServer();
+
+    /**
+     * Uruchamia serwer na porcie przydzielonym przez system.
+     *
+     * @throws Exception jeśli nie udało się otworzyć portu.
+     */
+    @BeforeEach
+    void setUp() throws Exception {
+        ServerConfig config = new ServerConfig();
+        config.setPort(0);
+        server = GameServer.create(config);
+        server.start();
+    }
+
+    /**
+     * Zatrzymuje serwer po każdym teście.
+     */
+    @AfterEach
+    void tearDown() {
+        server.stop();
+    }
+
+    /**
+     * Sprawdza, czy metryki serwera i gry są widoczne przez JMX: połączenia, gry, serializacja
+     * stanów i powody rozłączeń, a po zatrzymaniu serwera są wyrejestrowywane.
+     *
+     * @throws Exception w przypadku błędu połączenia lub JMX.
+     */
+    @Test
+    void testMetricsExposedViaJmx() throws Exception {
+        int port = server.getLocalPort();
+        ObjectName serverName = ServerMetrics.serverName(port);
+        ObjectName gameName = ServerMetrics.gameName(port, 0);
+        try (Socket first = connect(port); Socket second = connect(port)) {
+            for (Socket player : new Socket[]{first, second}) { // Pełna gra - obaj dostają stan początkowy
+                assertEquals(WireProtocol.FRAME_STATE, WireProtocol.readFrame(new DataInputStream(player.getInputStream())).type);
+            }
+            waitFor(() -> ((Long) ((CompositeData) mbeans.getAttribute(serverName, "BroadcastTime")).get("count")) >= 1);
+            // Stan jest kodowany raz na rozesłanie, niezależnie od liczby odbiorców
+            assertEquals(1L, ((CompositeData) mbeans.getAttribute(serverName, "SerializationTime")).get("count"));
+            assertEquals(2, mbeans.getAttribute(serverName, "Connections"));
+            assertEquals(1, mbeans.getAttribute(serverName, "Games"));
+            assertTrue(mbeans.isRegistered(gameName));
+            assertTrue((Long) mbeans.getAttribute(gameName, "SerializedBytes") > 0);
+            assertTrue((Long) mbeans.getAttribute(gameName, "StateUpdates") >= 0);
+            CompositeData broadcast = (CompositeData) mbeans.getAttribute(gameName, "BroadcastTime");
+            assertEquals(1L, broadcast.get("count"));
+        }
+
+        waitFor(() -> (Integer) mbeans.getAttribute(serverName, "Connections") == 0);
+        TabularData reasons = (TabularData) mbeans.getAttribute(serverName, "DisconnectReasons");
+        assertEquals(2L, reasons.get(new Object[]{DisconnectReason.CLIENT_CLOSED.name()}).get("value"));
+        assertEquals(2L, mbeans.getAttribute(serverName, "AcceptedConnections"));
+        waitFor(() -> !mbeans.isRegistered(gameName));
+
+        server.stop();
+        assertFalse(mbeans.isRegistered(serverName));
+    }
+
+    /**
+     * Sprawdza, czy zapis pomiarów w gorącej ścieżce nie alokuje pamięci.
+     */
+    @Test
+    void testRecordingDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        ServerMetrics total = new ServerMetrics();
+        GameMetrics game = total.newGameMetrics();
+        for (int i = 0; i < 10_000; i++) { // Rozgrzewka - kompilacja JIT
+            record(game, i);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100_000; i++) {
+            record(game, i);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue(allocated < 1024, "allocated " + allocated + " bytes");
+        assertEquals(110_000, total.getStateUpdates());
+        assertEquals(110_000, game.getSerializedStates());
+    }
+
+    /**
+     * Sprawdza, czy suma serwera łączy przy odczycie pomiary żywych gier i zachowuje pomiary
+     * zakończonych, a odczyt częstotliwości aktualizacji nie zmienia metryk.
+     */
+    @Test
+    void testGameMetricsMergedOnRead() {
+        ServerMetrics total = new ServerMetrics();
+        GameMetrics first = total.newGameMetrics();
+        GameMetrics second = total.newGameMetrics();
+        total.gameOpened(0, first);
+        total.gameOpened(1, second);
+        for (int i = 0; i < 100; i++) {
+            record(first, i);
+        }
+        record(second, 1_000_000);
+
+        assertEquals(101, total.getStateUpdates());
+        assertEquals(101, total.getTickTime().getCount());
+        assertEquals(1_001_000 / 1e3, total.getTickTime().getMaxMicros());
+        assertEquals(100, first.getTickTime().getCount());
+        assertEquals(101 * 120, total.getSerializedBytes());
+
+        total.gameClosed(1, second);
+        record(second, 2_000_000); // Pomiar po zakończeniu gry nie trafia już do sumy
+        assertEquals(101, total.getStateUpdates());
+        assertEquals(101, total.getDeliveryLatency().getCount());
+
+        double rate = first.getStateUpdateRate();
+        assertTrue(rate > 0);
+        assertTrue(first.getStateUpdateRate() > 0, "second read must not reset the rate window");
+
+        total.reset();
+        assertEquals(0, total.getStateUpdates());
+        assertEquals(0, first.getStateUpdates());
+    }
+
+    /**
+     * Sprawdza, czy odczyty kolejnych atrybutów czasów korzystają z jednego połączenia gier,
+     * a wyzerowanie metryk tworzy podsumowania od nowa.
+     */
+    @Test
+    void testLatencySnapshotSharedBetweenReads() {
+        ServerMetrics total = new ServerMetrics();
+        GameMetrics game = total.newGameMetrics();
+        record(game, 0);
+
+        LatencySummary tick = total.getTickTime();
+        assertSame(tick, total.getTickTime());
+        assertEquals(1, total.getDeliveryLatency().getCount());
+
+        total.reset();
+        assertNotSame(tick, total.getTickTime());
+        assertEquals(0, total.getTickTime().getCount());
+    }
+
+    /**
+     * Zapisuje zestaw pomiarów jak przy jednym rozesłaniu stanu.
+     *
+     * @param metrics Metryki gry.
+     * @param i       Numer pomiaru.
+     */
+    private static void record(GameMetrics metrics, int i) {
+        metrics.recordUpdate();
+        metrics.recordTick(1_000 + i);
+        metrics.recordSerialization(5_000 + i, 120);
+        metrics.recordBroadcast(2_000 + i);
+        metrics.recordDelivery(50_000 + i);
+    }
+
+    /**
+     * Łączy klienta ramkowego i czeka na ramkę powitalną.
+     *
+     * @param port Port serwera.
+     * @return Gniazdo klienta.
+     * @throws Exception w przypadku błędu połączenia.
+     */
+    private static Socket connect(int port) throws Exception {
+        Socket socket = ServerFixtures.connect(port, (byte) 0);
+        assertEquals(WireProtocol.FRAME_WELCOME, WireProtocol.readFrame(new DataInputStream(socket.getInputStream())).type);
+        return socket;
+    }
+
+    /**
+     * Warunek sprawdzany w pętli oczekiwania.
+     */
+    private interface Condition {
+
+        /**
+         * Sprawdza warunek.
+         *
+         * @return true, jeśli warunek jest spełniony.
+         * @throws Exception w przypadku błędu odczytu.
+         */
+        boolean met() throws Exception;
+    }
+
+    /**
+     * Czeka do 5 sekund na spełnienie warunku.
+     *
+     * @param condition Warunek.
+     * @throws Exception w przypadku błędu odczytu.
+     */
+    private static void waitFor(Condition condition) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.met()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not met in time");
+            Thread.sleep(10);
+        }
+    }
+}
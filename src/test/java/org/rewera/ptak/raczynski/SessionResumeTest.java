@@ -0,0 +1,354 @@
+package org.rewera.ptak.raczynski;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.rewera.ptak.raczynski.ServerFixtures.*;
+
+/**
+ * Testy wznawiania sesji graczy po utracie połączenia ({@link SessionRegistry}).
+ */
+class SessionResumeTest {
+
+    /**
+     * Liczba gier w teście fali ponownych połączeń.
+     */
+    private static final int STORM_GAMES = 20;
+
+    /**
+     * Serwer gry.
+     */
+    private GameServer server;
+
+    /**
+     * Zatrzymuje serwer po każdym teście.
+     */
+    @AfterEach
+    void tearDown() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    /**
+     * Sprawdza na silniku wątkowym, czy gracz po zerwaniu połączenia wraca do tej samej gry i roli.
+     *
+     * @throws Exception w przypadku błędu połączenia.
+     */
+    @Test
+    void testResumeKeepsGameWithThreads() throws Exception {
+        server = start(config(ServerConfig.Engine.THREADS, 10_000));
+        checkResumeKeepsGame();
+    }
+
+    /**
+     * Sprawdza na silniku NIO, czy gracz po zerwaniu połączenia wraca do tej samej gry i roli.
+     *
+     * @throws Exception w przypadku błędu połączenia.
+     */
+    @Test
+    void testResumeKeepsGameWithNio() throws Exception {
+        server = start(config(ServerConfig.Engine.NIO, 10_000));
+        checkResumeKeepsGame();
+    }
+
+    /**
+     * Sprawdza, czy klient z replikacją różnicową po wznowieniu dostaje różnicę względem ostatniego
+     * odtworzonego stanu zamiast pełnej klatki kluczowej.
+     *
+     * @throws Exception w przypadku błędu połączenia.
+     */
+    @Test
+    void testResumeCatchesUpWithDelta() throws Exception {
+        server = start(config(ServerConfig.Engine.THREADS, 10_000));
+        StateReplica replica = new StateReplica(BinaryCodec.INSTANCE);
+        try (Player first = join(0, 0, WireProtocol.FLAG_DELTA); Player second = join(0, 0, WireProtocol.FLAG_DELTA)) {
+            replica.apply(first.expect(WireProtocol.FRAME_SNAPSHOT));
+            second.expect(WireProtocol.FRAME_SNAPSHOT);
+            first.send(WireProtocol.FRAME_ACK, WireProtocol.ack(replica.getLastSeq()));
+            first.socket.close();
+
+            second.send(WireProtocol.FRAME_STATE, BinaryCodec.INSTANCE.encode(state(150)));
+            WireProtocol.readFrame(second.in); // Bez potwierdzenia - klatka kluczowa
+
+            try (Player resumed = join(first.token, replica.getLastSeq(), WireProtocol.FLAG_DELTA)) {
+                assertTrue(resumed.resumed);
+                assertTrue(resumed.isPlayer1);
+                WireProtocol.Frame catchUp = resumed.expect(WireProtocol.FRAME_DELTA);
+                assertEquals(150, replica.apply(catchUp).getPlayer1Tank().getX());
+            }
+        }
+    }
+
+    /**
+     * Sprawdza, czy po upływie karencji miejsce jest zwalniane, a klient wracający z wygasłym żetonem
+     * dołącza jak nowy gracz, dostaje nowy żeton i komunikat o wygaśnięciu sesji.
+     *
+     * @throws Exception w przypadku błędu połączenia.
+     */
+    @Test
+    void testExpiredSessionJoinsAsNewPlayer() throws Exception {
+        server = start(config(ServerConfig.Engine.THREADS, 100));
+        try (Player first = join(0, 0, (byte) 0); Player second = join(0, 0, (byte) 0)) {
+            first.expect(WireProtocol.FRAME_STATE);
+            second.expect(WireProtocol.FRAME_STATE);
+            first.socket.close();
+            long deadline = System.currentTimeMillis() + 5000;
+            while (server.getMetrics().getExpiredSessions() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, server.getMetrics().getExpiredSessions());
+            assertNull(server.getSessions().get(first.token));
+
+            try (Player rejoined = join(first.token, 0, (byte) 0)) {
+                assertFalse(rejoined.resumed);
+                assertNotEquals(first.token, rejoined.token);
+                rejoined.expect(WireProtocol.FRAME_STATE);
+                assertEquals(WireProtocol.SESSION_EXPIRED_MESSAGE, rejoined.readText());
+                assertEquals(1, server.getMatchmaker().size()); // Wolne miejsce w tej samej grze
+            }
+        }
+        assertEquals(0, server.getMetrics().getResumedSessions());
+    }
+
+    /**
+     * Sprawdza na silniku wątkowym, czy wszyscy gracze wielu gier rozłączeni naraz wznawiają sesje
+     * równocześnie bez tworzenia nowych gier.
+     *
+     * @throws Exception w przypadku błędu połączenia.
+     */
+    @Test
+    void testReconnectStormWithThreads() throws Exception {
+        server = start(config(ServerConfig.Engine.THREADS, 10_000));
+        checkReconnectStorm();
+    }
+
+    /**
+     * Sprawdza na silniku NIO, czy wszyscy gracze wielu gier rozłączeni naraz wznawiają sesje
+     * równocześnie bez tworzenia nowych gier.
+     *
+     * @throws Exception w przypadku błędu połączenia.
+     */
+    @Test
+    void testReconnectStormWithNio() throws Exception {
+        server = start(config(ServerConfig.Engine.NIO, 10_000));
+        checkReconnectStorm();
+    }
+
+    /**
+     * Łączy dwóch graczy, zrywa połączenie gracza 1 i sprawdza, czy po wznowieniu dostaje bieżący
+     * stan, a gra toczy się dalej bez resetu.
+     *
+     * @throws Exception w przypadku błędu połączenia.
+     */
+    private void checkResumeKeepsGame() throws Exception {
+        try (Player first = join(0, 0, (byte) 0); Player second = join(0, 0, (byte) 0)) {
+            assertTrue(first.isPlayer1);
+            assertNotEquals(0, first.token);
+            first.expect(WireProtocol.FRAME_STATE);
+            second.expect(WireProtocol.FRAME_STATE);
+            first.send(WireProtocol.FRAME_STATE, BinaryCodec.INSTANCE.encode(state(140)));
+            first.expect(WireProtocol.FRAME_STATE);
+            second.expect(WireProtocol.FRAME_STATE);
+            first.socket.close();
+
+            try (Player resumed = join(first.token, 0, (byte) 0)) {
+                assertTrue(resumed.resumed);
+                assertTrue(resumed.isPlayer1);
+                assertEquals(first.token, resumed.token);
+                assertEquals(140, resumed.expectState().getPlayer1Tank().getX());
+
+                second.send(WireProtocol.FRAME_STATE, BinaryCodec.INSTANCE.encode(state(160)));
+                assertEquals(160, resumed.expectState().getPlayer1Tank().getX());
+                assertEquals(160, second.expectState().getPlayer1Tank().getX());
+                assertEquals(1, server.getMatchmaker().size());
+                assertEquals(1, server.getMetrics().getResumedSessions());
+            }
+        }
+    }
+
+    /**
+     * Łączy graczy wielu gier, zrywa wszystkie połączenia naraz i wznawia je równocześnie.
+     *
+     * @throws Exception w przypadku błędu połączenia.
+     */
+    private void checkReconnectStorm() throws Exception {
+        List<Player> players = new ArrayList<>();
+        List<Player> reconnected = new ArrayList<>();
+        try {
+            for (int i = 0; i < STORM_GAMES * 2; i++) {
+                players.add(join(0, 0, (byte) 0));
+            }
+            for (Player player : players) {
+                player.expect(WireProtocol.FRAME_STATE);
+            }
+            for (Player player : players) {
+                player.socket.close();
+            }
+
+            ExecutorService executor = Executors.newFixedThreadPool(16);
+            try {
+                List<Future<Player>> futures = new ArrayList<>();
+                for (Player player : players) {
+                    futures.add(executor.submit(() -> join(player.token, 0, (byte) 0)));
+                }
+                for (int i = 0; i < players.size(); i++) {
+                    Player resumed = futures.get(i).get();
+                    reconnected.add(resumed);
+                    assertTrue(resumed.resumed);
+                    assertEquals(players.get(i).isPlayer1, resumed.isPlayer1);
+                    resumed.expect(WireProtocol.FRAME_STATE);
+                }
+            } finally {
+                executor.shutdown();
+            }
+            assertEquals(STORM_GAMES, server.getMatchmaker().size());
+            assertEquals(STORM_GAMES * 2, server.getMetrics().getResumedSessions());
+            assertEquals(STORM_GAMES * 2, server.getSessions().size());
+        } finally {
+            for (Player player : players) {
+                player.close();
+            }
+            for (Player player : reconnected) {
+                player.close();
+            }
+        }
+    }
+
+    /**
+     * Łączy gracza z flagą {@link WireProtocol#FLAG_RESUME}, wysyła żądanie wznowienia i odczytuje powitanie
+     * oraz - przy nowej sesji - żeton.
+     *
+     * @param token   Żeton sesji lub 0.
+     * @param lastSeq Numer ostatniego odtworzonego stanu.
+     * @param flags   Dodatkowe flagi powitania.
+     * @return Połączony gracz.
+     * @throws IOException w przypadku błędu połączenia.
+     */
+    private Player join(long token, int lastSeq, byte flags) throws IOException {
+        Player player = new Player(connect(server.getLocalPort(), (byte) (flags | WireProtocol.FLAG_RESUME)));
+        player.send(WireProtocol.FRAME_RESUME, WireProtocol.resume(token, lastSeq));
+        WireProtocol.Frame welcome = player.expect(WireProtocol.FRAME_WELCOME);
+        player.isPlayer1 = welcome.payload[0] != 0;
+        player.resumed = (welcome.payload[1] & WireProtocol.FLAG_RESUME) != 0;
+        player.token = player.resumed ? token : ByteBuffer.wrap(player.expect(WireProtocol.FRAME_SESSION).payload).getLong();
+        return player;
+    }
+
+    /**
+     * Połączenie testowego gracza.
+     */
+    private static final class Player implements AutoCloseable {
+
+        /**
+         * Gniazdo gracza.
+         */
+        final Socket socket;
+
+        /**
+         * Strumień wejściowy ramek.
+         */
+        final DataInputStream in;
+
+        /**
+         * Strumień wyjściowy ramek.
+         */
+        final DataOutputStream out;
+
+        /**
+         * Określa, czy gracz jest graczem 1.
+         */
+        boolean isPlayer1;
+
+        /**
+         * Określa, czy serwer potwierdził wznowienie sesji.
+         */
+        boolean resumed;
+
+        /**
+         * Żeton sesji.
+         */
+        long token;
+
+        /**
+         * Tworzy połączenie gracza.
+         *
+         * @param socket Gniazdo gracza.
+         * @throws IOException w przypadku błędu gniazda.
+         */
+        Player(Socket socket) throws IOException {
+            this.socket = socket;
+            socket.setSoTimeout(5000);
+            this.in = new DataInputStream(socket.getInputStream());
+            this.out = new DataOutputStream(socket.getOutputStream());
+        }
+
+        /**
+         * Wysyła ramkę.
+         *
+         * @param type    Typ ramki.
+         * @param payload Dane ramki.
+         * @throws IOException w przypadku błędu zapisu.
+         */
+        void send(byte type, byte[] payload) throws IOException {
+            WireProtocol.writeFrame(out, type, payload);
+        }
+
+        /**
+         * Odczytuje ramkę i sprawdza jej typ.
+         *
+         * @param type Oczekiwany typ ramki.
+         * @return Odczytana ramka.
+         * @throws IOException w przypadku błędu odczytu.
+         */
+        WireProtocol.Frame expect(byte type) throws IOException {
+            WireProtocol.Frame frame = WireProtocol.readFrame(in);
+            assertEquals(type, frame.type);
+            return frame;
+        }
+
+        /**
+         * Odczytuje ramkę pełnego stanu gry.
+         *
+         * @return Stan gry.
+         * @throws IOException w przypadku błędu odczytu.
+         */
+        GameState expectState() throws IOException {
+            byte[] payload = expect(WireProtocol.FRAME_STATE).payload;
+            return BinaryCodec.INSTANCE.decode(payload, 0, payload.length);
+        }
+
+        /**
+         * Odczytuje ramkę komunikatu tekstowego.
+         *
+         * @return Treść komunikatu.
+         * @throws IOException jeśli ramka nie jest komunikatem.
+         */
+        String readText() throws IOException {
+            return new String(expect(WireProtocol.FRAME_TEXT).payload, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Zamyka gniazdo gracza.
+         *
+         * @throws IOException w przypadku błędu zamknięcia.
+         */
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
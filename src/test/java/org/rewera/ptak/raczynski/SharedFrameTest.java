@@ -0,0 +1,59 @@
+package org.rewera.ptak.raczynski;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testy wiadomości współdzielonej {@link SharedFrame}.
+ */
+class SharedFrameTest {
+
+    /**
+     * Sprawdza, czy ramka współdzielona ma format ramki protokołu i daje niezależne widoki bufora.
+     *
+     * @throws IOException w przypadku błędu odczytu.
+     */
+    @Test
+    void testFrameMatchesWireFormat() throws IOException {
+        SharedFrame frame = SharedFrame.frame(WireProtocol.FRAME_TEXT, new byte[]{1, 2, 3});
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        frame.writeTo(bytes);
+        assertEquals(frame.length(), bytes.size());
+
+        WireProtocol.Frame read = WireProtocol.readFrame(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(WireProtocol.FRAME_TEXT, read.type);
+        assertArrayEquals(new byte[]{1, 2, 3}, read.payload);
+
+        assertEquals(frame.length(), frame.view().remaining());
+        frame.view().position(frame.length());
+        assertEquals(frame.length(), frame.view().remaining()); // Każdy odbiorca ma własną pozycję
+        frame.release();
+    }
+
+    /**
+     * Sprawdza liczenie referencji: bufor jest zwalniany dopiero przez ostatniego odbiorcę,
+     * a użycie zwolnionej ramki jest błędem.
+     */
+    @Test
+    void testReferenceCounting() {
+        SharedFrame frame = SharedFrame.raw(new byte[]{7});
+        frame.retain().retain();
+        assertEquals(3, frame.refCount());
+        frame.release();
+        frame.release();
+        assertEquals(1, frame.length());
+        frame.view();
+        frame.release();
+
+        assertEquals(0, frame.refCount());
+        assertThrows(IllegalStateException.class, frame::view);
+        assertThrows(IllegalStateException.class, frame::retain);
+        assertThrows(IllegalStateException.class, frame::release);
+    }
+}
@@ -0,0 +1,170 @@
+package org.rewera.ptak.raczynski;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmark symulacji bez interfejsu: liczba całych meczów rozegranych na sekundę na rdzeń.
+ *
+ * <p>Każdy wątek rozgrywa kolejne mecze na własnych obiektach {@link GameSimulation}, tak jak takty
+ * {@link GameInstance}: polecenie gracza, a potem {@link GameSimulation#step()}. W swojej turze bot jedzie
+ * kilka taktów w losową stronę, ustawia lufę (o 5 stopni na takt) na kąt z przybliżonego zasięgu rzutu
+ * z losowym błędem i strzela. Mecz kończy się, gdy któryś czołg straci punkty życia (najwyżej po
+ * {@link #MAX_TURNS} turach). W trybie {@code resolve} lot pocisku nie jest symulowany takt po takcie -
+ * rozstrzyga go {@link GameSimulation#resolveShot()}.</p>
+ *
+ * <p>Wypisywane są mecze i takty symulacji na sekundę (łącznie i na wątek) oraz krotność czasu
+ * rzeczywistego - ile taktów po {@link GameSimulation#TICK_MILLIS} ms mieści się w sekundzie pomiaru.</p>
+ *
+ * <p>Uruchomienie: {@code java -cp target/classes:target/test-classes
+ * org.rewera.ptak.raczynski.SimulationBenchmark [sekundy] [wątki]}, np. {@code 10 1}.</p>
+ */
+class SimulationBenchmark {
+
+    /**
+     * Największa liczba tur w meczu.
+     */
+    private static final int MAX_TURNS = 200;
+
+    /**
+     * Punkt wejścia benchmarku.
+     *
+     * @param args Czas pomiaru w sekundach dla każdego trybu i liczba wątków.
+     * @throws InterruptedException jeśli oczekiwanie zostało przerwane.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+
+        System.out.printf("%-8s %7s %12s %16s %14s %12s %10s%n",
+                "mode", "threads", "matches/s", "matches/s/core", "ticks/s", "ticks/match", "realtime");
+        for (boolean resolve : new boolean[]{false, true}) {
+            run(resolve, 2, threads, false); // Rozgrzewka JIT
+            run(resolve, seconds, threads, true);
+        }
+    }
+
+    /**
+     * Wykonuje jeden pomiar.
+     *
+     * @param resolve Określa, czy strzały są rozstrzygane analitycznie.
+     * @param seconds Czas pomiaru w sekundach.
+     * @param threads Liczba wątków.
+     * @param print   Określa, czy wypisać wynik.
+     * @throws InterruptedException jeśli oczekiwanie zostało przerwane.
+     */
+    private static void run(boolean resolve, int seconds, int threads, boolean print) throws InterruptedException {
+        AtomicLong matches = new AtomicLong();
+        AtomicLong ticks = new AtomicLong();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        List<Thread> workers = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            Random random = new Random(t);
+            Thread worker = new Thread(() -> {
+                long played = 0;
+                long simulated = 0;
+                while (System.nanoTime() < deadline) {
+                    simulated += playMatch(random, resolve);
+                    played++;
+                }
+                matches.addAndGet(played);
+                ticks.addAndGet(simulated);
+            }, "bench-sim-" + t);
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        if (print) {
+            double matchesPerSecond = matches.get() / (double) seconds;
+            double ticksPerSecond = ticks.get() / (double) seconds;
+            System.out.printf("%-8s %7d %12.0f %16.0f %14.0f %12.0f %9.0fx%n", resolve ? "resolve" : "step", threads,
+                    matchesPerSecond, matchesPerSecond / threads, ticksPerSecond, ticks.get() / (double) matches.get(),
+                    ticksPerSecond * GameSimulation.TICK_MILLIS / 1000);
+        }
+    }
+
+    /**
+     * Rozgrywa jeden mecz.
+     *
+     * @param random  Generator ruchów i przeszkód.
+     * @param resolve Określa, czy strzały są rozstrzygane analitycznie.
+     * @return Liczba taktów symulacji, które zajął mecz.
+     */
+    static long playMatch(Random random, boolean resolve) {
+        List<Obstacle> obstacles = new ArrayList<>();
+        for (int i = 0; i < 3 + random.nextInt(4); i++) {
+            int x;
+            do {
+                x = random.nextInt(750);
+            } while (Math.abs(x - 100) < 50 || Math.abs(x - 600) < 50);
+            obstacles.add(new Obstacle(x, 530, 20 + random.nextInt(30), 20));
+        }
+        GameSimulation simulation = new GameSimulation(new GameState(new Tank(100, 515, Color.BLUE),
+                new Tank(600, 515, Color.RED), new ArrayList<>(), obstacles, true));
+
+        long ticks = 0;
+        for (int turn = 0; turn < MAX_TURNS && !simulation.isGameOver(); turn++) {
+            boolean isPlayer1 = simulation.isPlayer1Turn();
+            Tank tank = isPlayer1 ? simulation.getPlayer1Tank() : simulation.getPlayer2Tank();
+            Tank enemy = isPlayer1 ? simulation.getPlayer2Tank() : simulation.getPlayer1Tank();
+
+            int direction = random.nextBoolean() ? InputCommand.LEFT : InputCommand.RIGHT;
+            for (int i = random.nextInt(20); i > 0; i--) {
+                ticks += tick(simulation, isPlayer1, direction);
+            }
+            int angle = aim(tank, enemy, random);
+            while (tank.getAngle() != angle) {
+                ticks += tick(simulation, isPlayer1, tank.getAngle() < angle ? InputCommand.ANGLE_UP : InputCommand.ANGLE_DOWN);
+            }
+            ticks += tick(simulation, isPlayer1, InputCommand.FIRE);
+
+            if (resolve) {
+                ticks += simulation.resolveShot();
+            } else {
+                while (simulation.isShotInProgress()) {
+                    simulation.step();
+                    ticks++;
+                }
+            }
+        }
+        return ticks;
+    }
+
+    /**
+     * Wykonuje takt symulacji z poleceniem gracza.
+     *
+     * @param simulation Symulacja.
+     * @param isPlayer1  Określa, czy polecenie pochodzi od gracza 1.
+     * @param buttons    Maska przycisków.
+     * @return Liczba wykonanych taktów (1).
+     */
+    private static int tick(GameSimulation simulation, boolean isPlayer1, int buttons) {
+        simulation.applyInput(isPlayer1, buttons);
+        simulation.step();
+        return 1;
+    }
+
+    /**
+     * Wybiera kąt strzału z zasięgu rzutu ukośnego bez oporu ({@code v^2 sin 2a / g}) z losowym błędem.
+     *
+     * @param tank   Czołg strzelający.
+     * @param enemy  Czołg przeciwnika.
+     * @param random Generator błędu.
+     * @return Kąt w stopniach - wielokrotność 5 z przedziału [0, 180].
+     */
+    private static int aim(Tank tank, Tank enemy, Random random) {
+        double distance = Math.abs(enemy.getX() - tank.getX());
+        double range = BulletStore.VELOCITY * BulletStore.VELOCITY / BulletStore.GRAVITY;
+        double degrees = Math.toDegrees(Math.asin(Math.min(1, distance / range))) / 2 + random.nextGaussian() * 4;
+        if (enemy.getX() < tank.getX()) {
+            degrees = 180 - degrees;
+        }
+        return Math.max(0, Math.min(180, (int) Math.round(degrees / 5) * 5));
+    }
+}
@@ -0,0 +1,111 @@
+package org.rewera.ptak.raczynski;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testy interpolacji stanów od serwera {@link SnapshotInterpolator}.
+ */
+class SnapshotInterpolatorTest {
+
+    /**
+     * Milisekunda w nanosekundach.
+     */
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * Sprawdza, czy czołgi i pociski są wyświetlane z opóźnieniem w położeniu pośrednim między stanami,
+     * a wartości nieciągłe pochodzą z nowszego stanu.
+     */
+    @Test
+    void testPositionsAreInterpolatedBehindNewestState() {
+        SnapshotInterpolator interpolator = new SnapshotInterpolator(50);
+        assertNull(interpolator.sample(0));
+
+        interpolator.add(1000 * MS, state(100, 45, 100, 200.0));
+        interpolator.add(1020 * MS, state(110, 55, 80, 220.0));
+        interpolator.add(1040 * MS, state(120, 65, 80, 240.0));
+
+        GameState view = interpolator.sample(1060 * MS); // Chwila 1010 ms
+        assertEquals(105, view.getPlayer1Tank().getX());
+        assertEquals(50, view.getPlayer1Tank().getAngle());
+        assertEquals(80, view.getPlayer1Tank().getHp());
+        assertEquals(210.0, view.getBullets().get(0).getX(), 1e-9);
+
+        assertEquals(100, interpolator.sample(1000 * MS).getPlayer1Tank().getX());
+        assertEquals(120, interpolator.sample(1090 * MS).getPlayer1Tank().getX());
+    }
+
+    /**
+     * Sprawdza, czy spóźniony stan jest zastępowany przedłużeniem ruchu, ale tylko do
+     * {@link SnapshotInterpolator#MAX_EXTRAPOLATION_MILLIS} ms, a kąt lufy nie wychodzi poza zakres.
+     */
+    @Test
+    void testLateStateIsExtrapolatedWithinLimit() {
+        SnapshotInterpolator interpolator = new SnapshotInterpolator(50);
+        interpolator.add(1000 * MS, state(100, 170, 100, 200.0));
+        interpolator.add(1020 * MS, state(110, 180, 100, 220.0));
+
+        GameState view = interpolator.sample(1090 * MS); // 20 ms po ostatnim stanie
+        assertEquals(120, view.getPlayer1Tank().getX());
+        assertEquals(180, view.getPlayer1Tank().getAngle());
+        assertEquals(240.0, view.getBullets().get(0).getX(), 1e-9);
+
+        long limit = 1020 + SnapshotInterpolator.MAX_EXTRAPOLATION_MILLIS;
+        int maxX = 110 + (int) SnapshotInterpolator.MAX_EXTRAPOLATION_MILLIS / 2;
+        assertEquals(maxX, interpolator.sample((limit + 50) * MS).getPlayer1Tank().getX());
+        assertEquals(maxX, interpolator.sample((limit + 5000) * MS).getPlayer1Tank().getX());
+    }
+
+    /**
+     * Sprawdza, czy ruch po przerwie w stanach (serwer nic nie wysyłał) zaczyna się od poprzedniego
+     * położenia, zamiast być rozłożony na całą przerwę, a nowy pocisk nie jest interpolowany.
+     */
+    @Test
+    void testMovementAfterPauseStartsFromHeldState() {
+        SnapshotInterpolator interpolator = new SnapshotInterpolator(50);
+        interpolator.add(1000 * MS, state(100, 45, 100));
+        interpolator.add(3000 * MS, state(110, 45, 100, 300.0));
+
+        GameState view = interpolator.sample(3000 * MS);
+        assertEquals(100, view.getPlayer1Tank().getX());
+        assertTrue(view.getBullets().isEmpty());
+        view = interpolator.sample(3025 * MS);
+        assertEquals(105, view.getPlayer1Tank().getX());
+        assertEquals(300.0, view.getBullets().get(0).getX(), 1e-9);
+        assertEquals(110, interpolator.sample(3050 * MS).getPlayer1Tank().getX());
+
+        for (int i = 1; i <= SnapshotInterpolator.CAPACITY * 2; i++) {
+            interpolator.add((3050 + i * 10) * MS, state(110 + i, 45, 100));
+        }
+        assertEquals(110 + SnapshotInterpolator.CAPACITY * 2,
+                interpolator.sample((3050 + SnapshotInterpolator.CAPACITY * 20 + 50) * MS).getPlayer1Tank().getX());
+        interpolator.clear();
+        assertNull(interpolator.sample(5000 * MS));
+    }
+
+    /**
+     * Tworzy stan gry bez przeszkód.
+     *
+     * @param x        Położenie czołgu gracza 1.
+     * @param angle    Kąt lufy czołgu gracza 1.
+     * @param hp       Punkty życia czołgu gracza 1.
+     * @param bulletsX Położenia pocisków gracza 1.
+     * @return Stan gry.
+     */
+    private static GameState state(int x, int angle, int hp, double... bulletsX) {
+        List<Bullet> bullets = new ArrayList<>();
+        for (double bulletX : bulletsX) {
+            bullets.add(new Bullet(bulletX, 400, 10, -5, Color.BLUE, true, true));
+        }
+        return new GameState(new Tank(x, 515, Color.BLUE, angle, hp, 100), new Tank(600, 515, Color.RED),
+                bullets, Collections.emptyList(), true);
+    }
+}
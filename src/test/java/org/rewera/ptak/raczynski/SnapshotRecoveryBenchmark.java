@@ -0,0 +1,98 @@
+package org.rewera.ptak.raczynski;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Benchmark migawek i odtwarzania gier ({@link SnapshotStore}): koszt pełnej i przyrostowej rundy migawek
+ * dla wielu gier oraz czas odtworzenia wszystkich gier przy starcie serwera (odczyt dziennika,
+ * dekodowanie stanów, rejestracja w {@link Matchmaker} i odtworzenie sesji graczy w {@link SessionRegistry}).
+ *
+ * <p>Uruchomienie: {@code java -cp target/classes:target/test-classes
+ * org.rewera.ptak.raczynski.SnapshotRecoveryBenchmark [gry] [rundy]}.</p>
+ */
+class SnapshotRecoveryBenchmark {
+
+    /**
+     * Punkt wejścia benchmarku.
+     *
+     * @param args Opcjonalnie liczba gier (domyślnie 10 000) i liczba rund przyrostowych (domyślnie 20).
+     * @throws IOException w przypadku błędu zapisu lub odczytu.
+     */
+    public static void main(String[] args) throws IOException {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        Path directory = Files.createTempDirectory("snapshots");
+        try {
+            SessionRegistry sessions = new SessionRegistry(60_000, new ServerMetrics());
+            Matchmaker matchmaker = new Matchmaker(null);
+            matchmaker.setSessions(sessions); // Migawki obejmują tylko gry graczy z sesjami
+            List<GameInstance> instances = new ArrayList<>(games);
+            for (int i = 0; i < games; i++) {
+                instances.add(matchmaker.assign(new SnapshotStoreTest.ResumableConnection()));
+                matchmaker.assign(new SnapshotStoreTest.ResumableConnection());
+            }
+
+            try (SnapshotStore store = new SnapshotStore(directory)) {
+                long start = System.nanoTime();
+                int written = matchmaker.snapshot(store);
+                report("full round", start, written);
+
+                start = System.nanoTime();
+                written = matchmaker.snapshot(store);
+                report("idle round", start, written);
+
+                long total = 0;
+                written = 0;
+                for (int round = 0; round < rounds; round++) {
+                    for (int i = round % 10; i < games; i += 10) { // 10% gier zmienia się między rundami
+                        GameInstance game = instances.get(i);
+                        GameState state = game.getGameState();
+                        state.getPlayer1Tank().moveRight(state.getObstacles());
+                        game.updateGameState(state);
+                    }
+                    long roundStart = System.nanoTime();
+                    written += matchmaker.snapshot(store);
+                    total += System.nanoTime() - roundStart;
+                }
+                System.out.printf("%-16s %8.2f ms/round %7d records/round log=%d KB compactions=%d%n",
+                        "10% dirty round", total / 1e6 / rounds, written / rounds,
+                        store.fileSize() / 1024, store.getCompactions());
+            } finally {
+                sessions.shutdown();
+            }
+
+            for (int run = 0; run < 3; run++) { // Pierwsze przebiegi rozgrzewają JIT
+                long start = System.nanoTime();
+                SessionRegistry restoredSessions = new SessionRegistry(60_000, new ServerMetrics());
+                Matchmaker restored = new Matchmaker(null);
+                restored.setSessions(restoredSessions);
+                try (SnapshotStore store = new SnapshotStore(directory)) {
+                    restored.restore(store.load());
+                }
+                report("recovery", start, restored.size());
+                restoredSessions.shutdown();
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    /**
+     * Wypisuje czas pomiaru.
+     *
+     * @param name  Nazwa pomiaru.
+     * @param start Początek pomiaru ({@link System#nanoTime()}).
+     * @param count Liczba zapisanych rekordów lub odtworzonych gier.
+     */
+    private static void report(String name, long start, int count) {
+        System.out.printf("%-16s %8.2f ms %7d games%n", name, (System.nanoTime() - start) / 1e6, count);
+    }
+}
@@ -0,0 +1,304 @@
+package org.rewera.ptak.raczynski;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testy magazynu migawek {@link SnapshotStore} i odtwarzania gier przez {@link Matchmaker}.
+ */
+class SnapshotStoreTest {
+
+    /**
+     * Katalog tymczasowy magazynu.
+     */
+    @TempDir
+    Path directory;
+
+    /**
+     * Sprawdza, czy migawki są zapisywane tylko po zmianie wersji, usunięte gry dostają rekord usunięcia,
+     * a ponownie otwarty magazyn zwraca ostatnie stany żywych gier.
+     *
+     * @throws IOException w przypadku błędu zapisu lub odczytu.
+     */
+    @Test
+    void testIncrementalSnapshotsSurviveReopen() throws IOException {
+        GameState first = state(150);
+        GameState second = state(250);
+        try (SnapshotStore store = new SnapshotStore(directory)) {
+            assertTrue(store.stage(1, false, 5, first));
+            assertTrue(store.stage(2, true, 9, second));
+            assertEquals(2, store.flush(ids(1, 2)));
+
+            assertFalse(store.stage(1, false, 5, first)); // Bez zmian - bez kodowania i zapisu
+            assertTrue(store.stage(2, true, 10, state(260)));
+            assertEquals(1, store.flush(ids(1, 2)));
+
+            assertEquals(1, store.flush(ids(2))); // Gra 1 usunięta z serwera
+            assertEquals(0, store.flush(ids(2)));
+        }
+
+        try (SnapshotStore store = new SnapshotStore(directory)) {
+            List<SnapshotStore.Snapshot> snapshots = store.load();
+            assertEquals(1, snapshots.size());
+            SnapshotStore.Snapshot snapshot = snapshots.get(0);
+            assertEquals(2, snapshot.gameId);
+            assertTrue(snapshot.serverAuthoritative);
+            assertEquals(10, snapshot.version);
+            assertEquals(260, snapshot.state.getPlayer1Tank().getX());
+            assertFalse(store.stage(2, true, 10, snapshot.state)); // Wersja znana z dziennika
+        }
+    }
+
+    /**
+     * Sprawdza, czy urwany ostatni rekord (awaria w trakcie zapisu) jest odrzucany, a wcześniejsze migawki zostają.
+     *
+     * @throws IOException w przypadku błędu zapisu lub odczytu.
+     */
+    @Test
+    void testTornTailIsDiscarded() throws IOException {
+        long intact;
+        try (SnapshotStore store = new SnapshotStore(directory)) {
+            store.stage(1, false, 1, state(150));
+            store.flush(ids(1));
+            intact = store.fileSize();
+            store.stage(1, false, 2, state(170));
+            store.flush(ids(1));
+        }
+        try (FileChannel channel = FileChannel.open(directory.resolve(SnapshotStore.FILE_NAME), StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        try (SnapshotStore store = new SnapshotStore(directory)) {
+            assertEquals(intact, store.fileSize());
+            List<SnapshotStore.Snapshot> snapshots = store.load();
+            assertEquals(1, snapshots.size());
+            assertEquals(1, snapshots.get(0).version);
+            assertEquals(150, snapshots.get(0).state.getPlayer1Tank().getX());
+        }
+    }
+
+    /**
+     * Sprawdza, czy rekord z błędną sumą kontrolną kończy odczyt dziennika.
+     *
+     * @throws IOException w przypadku błędu zapisu lub odczytu.
+     */
+    @Test
+    void testCorruptRecordIsDiscarded() throws IOException {
+        long intact;
+        try (SnapshotStore store = new SnapshotStore(directory)) {
+            store.stage(1, false, 1, state(150));
+            store.flush(ids(1));
+            intact = store.fileSize();
+            store.stage(1, false, 2, state(170));
+            store.flush(ids(1));
+        }
+        try (FileChannel channel = FileChannel.open(directory.resolve(SnapshotStore.FILE_NAME), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0x7F}), intact + 12); // Bajt w wersji drugiego rekordu
+        }
+
+        try (SnapshotStore store = new SnapshotStore(directory)) {
+            assertEquals(intact, store.fileSize());
+            assertEquals(1, store.load().get(0).version);
+        }
+    }
+
+    /**
+     * Sprawdza, czy przepisany dziennik zawiera tylko ostatnie stany żywych gier.
+     *
+     * @throws IOException w przypadku błędu zapisu lub odczytu.
+     */
+    @Test
+    void testCompactionKeepsLatestStates() throws IOException {
+        try (SnapshotStore store = new SnapshotStore(directory, 4096)) {
+            for (int round = 1; round <= 50; round++) {
+                store.stage(1, false, round, state(100 + round));
+                store.stage(2, false, round, state(200 + round));
+                store.flush(round < 50 ? ids(1, 2) : ids(2));
+            }
+            assertTrue(store.getCompactions() > 0);
+            assertTrue(store.fileSize() < 4096 * 2);
+        }
+        try (SnapshotStore store = new SnapshotStore(directory)) {
+            List<SnapshotStore.Snapshot> snapshots = store.load();
+            assertEquals(1, snapshots.size());
+            assertEquals(2, snapshots.get(0).gameId);
+            assertEquals(250, snapshots.get(0).state.getPlayer1Tank().getX());
+        }
+    }
+
+    /**
+     * Sprawdza, czy gry zapisane w migawkach są odtwarzane pod tymi samymi identyfikatorami tylko dla
+     * właścicieli żetonów sesji: nowi gracze nie trafiają do odtworzonej gry, a gracz wracający z żetonem
+     * przejmuje swoje miejsce i dostaje odtworzony stan.
+     *
+     * @throws IOException w przypadku błędu zapisu lub odczytu.
+     */
+    @Test
+    void testMatchmakerRestoresGamesForSessionOwners() throws IOException {
+        SessionRegistry sessions = new SessionRegistry(10_000, new ServerMetrics());
+        Matchmaker before = new Matchmaker(null);
+        before.setSessions(sessions);
+        ResumableConnection first = new ResumableConnection();
+        ResumableConnection second = new ResumableConnection();
+        GameInstance game = before.assign(first);
+        before.assign(second);
+        before.assign(new MatchmakerTest.StubConnection()); // Gra z graczem bez sesji - bez migawki
+        GameState played = game.getGameState();
+        played.getPlayer1Tank().moveRight(played.getObstacles());
+        game.updateGameState(played);
+        try (SnapshotStore store = new SnapshotStore(directory)) {
+            assertEquals(1, before.snapshot(store));
+            assertEquals(0, before.snapshot(store));
+        } finally {
+            sessions.shutdown();
+        }
+
+        SessionRegistry restoredSessions = new SessionRegistry(10_000, new ServerMetrics());
+        try {
+            Matchmaker after = restore(restoredSessions);
+            assertEquals(1, after.size());
+            GameInstance restored = after.get(game.getGameId());
+            assertEquals(game.getVersion(), restored.getVersion());
+            assertArrayEquals(BinaryCodec.INSTANCE.encode(played), BinaryCodec.INSTANCE.encode(restored.getGameState()));
+            assertEquals(first.token, restored.getSessionToken(true));
+            assertEquals(second.token, restored.getSessionToken(false));
+            assertTrue(restored.isFull());
+
+            GameInstance fresh = after.assign(new MatchmakerTest.StubConnection());
+            assertNotSame(restored, fresh);
+            assertNotEquals(game.getGameId(), fresh.getGameId());
+
+            ResumableConnection back = new ResumableConnection();
+            assertTrue(restored.resume(back, restoredSessions.get(second.token), 0));
+            assertSame(restored, back.gameInstance);
+            assertFalse(back.isPlayer1);
+            assertTrue(back.states > 0);
+        } finally {
+            restoredSessions.shutdown();
+        }
+    }
+
+    /**
+     * Sprawdza, czy odtworzona gra, do której jeden z graczy nie wrócił w okresie karencji, jest kończona
+     * i usuwana wraz z sesjami, zamiast czekać na nowego przeciwnika.
+     *
+     * @throws Exception w przypadku błędu zapisu lub odczytu albo przerwania oczekiwania.
+     */
+    @Test
+    void testUnclaimedRestoredGameExpires() throws Exception {
+        SessionRegistry sessions = new SessionRegistry(10_000, new ServerMetrics());
+        Matchmaker before = new Matchmaker(null);
+        before.setSessions(sessions);
+        ResumableConnection first = new ResumableConnection();
+        GameInstance game = before.assign(first);
+        before.assign(new ResumableConnection());
+        try (SnapshotStore store = new SnapshotStore(directory)) {
+            assertEquals(1, before.snapshot(store));
+        } finally {
+            sessions.shutdown();
+        }
+
+        SessionRegistry restoredSessions = new SessionRegistry(300, new ServerMetrics());
+        try {
+            Matchmaker after = restore(restoredSessions);
+            GameInstance restored = after.get(game.getGameId());
+            ResumableConnection back = new ResumableConnection();
+            assertTrue(restored.resume(back, restoredSessions.get(first.token), 0));
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (after.get(game.getGameId()) != null && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertNull(after.get(game.getGameId()));
+            assertEquals(0, restoredSessions.size());
+            assertTrue(back.messages.contains(WireProtocol.MATCH_ENDED_MESSAGE));
+        } finally {
+            restoredSessions.shutdown();
+        }
+    }
+
+    /**
+     * Odtwarza gry z magazynu w nowym matchmakerze, jak serwer po restarcie.
+     *
+     * @param sessions Rejestr sesji nowego serwera.
+     * @return Matchmaker z odtworzonymi grami.
+     * @throws IOException w przypadku błędu odczytu.
+     */
+    private Matchmaker restore(SessionRegistry sessions) throws IOException {
+        Matchmaker matchmaker = new Matchmaker(null);
+        matchmaker.setSessions(sessions);
+        try (SnapshotStore store = new SnapshotStore(directory)) {
+            matchmaker.restore(store.load());
+        }
+        return matchmaker;
+    }
+
+    /**
+     * Połączenie gracza, który może wznowić sesję: zapamiętuje żeton i odebrane komunikaty.
+     */
+    static class ResumableConnection extends MatchmakerTest.StubConnection {
+
+        /**
+         * Żeton sesji nadany przez grę.
+         */
+        volatile long token;
+
+        /**
+         * Odebrane komunikaty tekstowe.
+         */
+        final List<String> messages = new CopyOnWriteArrayList<>();
+
+        @Override
+        public boolean isResumable() {
+            return true;
+        }
+
+        @Override
+        public void sessionIssued(long token) {
+            this.token = token;
+        }
+
+        @Override
+        public void sendMessage(String message) {
+            messages.add(message);
+        }
+    }
+
+    /**
+     * Tworzy stan gry z czołgiem gracza 1 w podanym miejscu.
+     *
+     * @param x Położenie czołgu gracza 1.
+     * @return Stan gry.
+     */
+    private static GameState state(int x) {
+        List<Obstacle> obstacles = new ArrayList<>();
+        obstacles.add(new Obstacle(300, 530, 30, 20));
+        return new GameState(new Tank(x, 515, Color.BLUE), new Tank(600, 515, Color.RED),
+                new ArrayList<>(), obstacles, true);
+    }
+
+    /**
+     * Tworzy zbiór identyfikatorów gier.
+     *
+     * @param gameIds Identyfikatory.
+     * @return Zbiór identyfikatorów.
+     */
+    private static Set<Integer> ids(Integer... gameIds) {
+        return new HashSet<>(Arrays.asList(gameIds));
+    }
+}
@@ -0,0 +1,132 @@
+package org.rewera.ptak.raczynski;
+
+import java.awt.*;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmark rozsyłania stanu gry do wielu widzów: kodowanie osobno dla każdego odbiorcy
+ * (dotychczasowe {@code sendGameState}) w porównaniu z kodowaniem raz do wspólnej ramki
+ * ({@link StateBroadcast}, {@link SharedFrame}). Zapis trafia do strumienia, który tylko liczy
+ * bajty, więc mierzony jest koszt kodowania i kopiowania, a nie sieci.
+ *
+ * <p>Uruchomienie: {@code java -cp target/classes:target/test-classes
+ * org.rewera.ptak.raczynski.SpectatorFanOutBenchmark [rozesłania]}.</p>
+ */
+class SpectatorFanOutBenchmark {
+
+    /**
+     * Liczby odbiorców w kolejnych pomiarach.
+     */
+    private static final int[] VIEWERS = {10, 100, 1000};
+
+    /**
+     * Strumień porzucający dane i liczący bajty.
+     */
+    private static final class Sink extends OutputStream {
+
+        /**
+         * Liczba zapisanych bajtów.
+         */
+        long bytes;
+
+        @Override
+        public void write(int b) {
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes += len;
+        }
+    }
+
+    /**
+     * Punkt wejścia benchmarku.
+     *
+     * @param args Opcjonalnie liczba rozesłań dla 10 odbiorców (domyślnie 20 000, dla większych proporcjonalnie mniej).
+     * @throws IOException w przypadku błędu zapisu.
+     */
+    public static void main(String[] args) throws IOException {
+        int broadcasts = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        GameState state = typicalState();
+        GameStateCodec[] codecs = {SerializationCodec.INSTANCE, BinaryCodec.INSTANCE};
+        for (GameStateCodec codec : codecs) { // Rozgrzewka JIT
+            measure(codec, state, 10, broadcasts / 10, false);
+            measure(codec, state, 10, broadcasts / 10, true);
+        }
+        for (GameStateCodec codec : codecs) {
+            for (int viewers : VIEWERS) {
+                int rounds = Math.max(10, broadcasts * 10 / viewers);
+                long perRecipient = measure(codec, state, viewers, rounds, false);
+                long encodeOnce = measure(codec, state, viewers, rounds, true);
+                System.out.printf("%-20s viewers=%5d per-recipient=%9d ns encode-once=%9d ns speedup=%5.1fx%n",
+                        codec.getClass().getSimpleName(), viewers, perRecipient, encodeOnce,
+                        (double) perRecipient / encodeOnce);
+            }
+        }
+    }
+
+    /**
+     * Mierzy średni czas jednego rozesłania stanu do wszystkich odbiorców.
+     *
+     * @param codec      Kodek stanu.
+     * @param state      Stan gry.
+     * @param viewers    Liczba odbiorców.
+     * @param rounds     Liczba rozesłań.
+     * @param encodeOnce Określa, czy stan jest kodowany raz do wspólnej ramki.
+     * @return Średni czas rozesłania w nanosekundach.
+     * @throws IOException w przypadku błędu zapisu.
+     */
+    private static long measure(GameStateCodec codec, GameState state, int viewers, int rounds, boolean encodeOnce)
+            throws IOException {
+        Sink sink = new Sink();
+        DataOutputStream out = new DataOutputStream(sink);
+        List<SharedFrame> queued = new ArrayList<>(viewers);
+        long start = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            if (encodeOnce) {
+                StateBroadcast broadcast = new StateBroadcast(state, null);
+                for (int i = 0; i < viewers; i++) {
+                    queued.add(broadcast.frame(codec).retain()); // Jak kolejka odbiorcy
+                }
+                broadcast.release();
+                for (SharedFrame frame : queued) { // Jak wątki zapisujące
+                    frame.writeTo(sink);
+                    frame.release();
+                }
+                queued.clear();
+            } else {
+                for (int i = 0; i < viewers; i++) {
+                    byte[] payload = codec.encode(state);
+                    WireProtocol.writeFrame(out, WireProtocol.FRAME_STATE, payload);
+                }
+            }
+        }
+        long elapsed = (System.nanoTime() - start) / rounds;
+        if (sink.bytes == 0) {
+            throw new IllegalStateException("nothing written");
+        }
+        return elapsed;
+    }
+
+    /**
+     * Buduje typowy stan gry: dwa czołgi, jeden pocisk w locie i pięć przeszkód.
+     *
+     * @return Stan gry.
+     */
+    private static GameState typicalState() {
+        List<Bullet> bullets = new ArrayList<>();
+        Bullet bullet = new Bullet(112, 515, 45, Color.BLUE, true);
+        bullet.move();
+        bullets.add(bullet);
+        List<Obstacle> obstacles = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            obstacles.add(new Obstacle(200 + i * 80, 530, 30, 20));
+        }
+        return new GameState(new Tank(100, 515, Color.BLUE), new Tank(600, 515, Color.RED), bullets, obstacles, true);
+    }
+}
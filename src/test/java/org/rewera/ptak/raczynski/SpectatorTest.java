@@ -0,0 +1,188 @@
+package org.rewera.ptak.raczynski;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.rewera.ptak.raczynski.ServerFixtures.*;
+
+/**
+ * Testy widzów i rozsyłania stanu kodowanego raz dla wszystkich odbiorców ({@link StateBroadcast}).
+ */
+class SpectatorTest {
+
+    /**
+     * Liczba widzów w testach.
+     */
+    private static final int SPECTATORS = 3;
+
+    /**
+     * Serwer gry.
+     */
+    private GameServer server;
+
+    /**
+     * Zatrzymuje serwer po każdym teście.
+     */
+    @AfterEach
+    void tearDown() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    /**
+     * Sprawdza na silniku wątkowym, czy gracze i widzowie dostają te same bajty stanu zakodowanego raz.
+     *
+     * @throws Exception w przypadku błędu połączenia.
+     */
+    @Test
+    void testSpectatorsShareEncodedStateWithThreads() throws Exception {
+        server = start(config(ServerConfig.Engine.THREADS));
+        checkSharedBroadcast();
+    }
+
+    /**
+     * Sprawdza na silniku NIO, czy gracze i widzowie dostają te same bajty stanu zakodowanego raz.
+     *
+     * @throws Exception w przypadku błędu połączenia.
+     */
+    @Test
+    void testSpectatorsShareEncodedStateWithNio() throws Exception {
+        server = start(config(ServerConfig.Engine.NIO));
+        checkSharedBroadcast();
+    }
+
+    /**
+     * Sprawdza, czy widz nieistniejącej gry dostaje komunikat i zostaje rozłączony.
+     *
+     * @throws Exception w przypadku błędu połączenia.
+     */
+    @Test
+    void testWatchingMissingGameIsRefused() throws Exception {
+        server = start(config(ServerConfig.Engine.THREADS));
+        try (Socket spectator = connect(server.getLocalPort(), WireProtocol.FLAG_SPECTATE)) {
+            WireProtocol.writeFrame(new DataOutputStream(spectator.getOutputStream()), WireProtocol.FRAME_WATCH,
+                    WireProtocol.watch(12345));
+            DataInputStream in = new DataInputStream(spectator.getInputStream());
+            assertEquals(WireProtocol.NO_SUCH_GAME_MESSAGE, readText(in));
+            assertThrows(EOFException.class, () -> WireProtocol.readFrame(in));
+        }
+    }
+
+    /**
+     * Sprawdza, czy gracze starego protokołu odczytują kolejne stany zserializowane raz dla wszystkich odbiorców.
+     *
+     * @throws Exception w przypadku błędu połączenia.
+     */
+    @Test
+    void testLegacyPlayersReadSharedStates() throws Exception {
+        server = start(config(ServerConfig.Engine.THREADS));
+        try (Socket first = new Socket("localhost", server.getLocalPort())) {
+            first.setSoTimeout(5000);
+            ObjectOutputStream firstOut = new ObjectOutputStream(first.getOutputStream());
+            firstOut.flush();
+            ObjectInputStream firstIn = new ObjectInputStream(first.getInputStream());
+            assertTrue(firstIn.readBoolean());
+            try (Socket second = new Socket("localhost", server.getLocalPort())) {
+                second.setSoTimeout(5000);
+                new ObjectOutputStream(second.getOutputStream()).flush();
+                ObjectInputStream secondIn = new ObjectInputStream(second.getInputStream());
+                assertFalse(secondIn.readBoolean());
+                assertEquals(100, ((GameState) secondIn.readObject()).getPlayer1Tank().getX());
+                assertEquals(100, ((GameState) firstIn.readObject()).getPlayer1Tank().getX());
+
+                for (int x = 110; x <= 130; x += 10) {
+                    firstOut.writeObject(state(x));
+                    firstOut.reset();
+                    firstOut.flush();
+                    assertEquals(x, ((GameState) secondIn.readObject()).getPlayer1Tank().getX());
+                    assertEquals(x, ((GameState) firstIn.readObject()).getPlayer1Tank().getX());
+                }
+            }
+        }
+    }
+
+    /**
+     * Łączy dwóch graczy i widzów, a następnie sprawdza, czy wszyscy dostają identyczne ramki stanu,
+     * stan jest kodowany raz na rozesłanie, stany od widzów są pomijane, a po wyjściu graczy
+     * widzowie dostają komunikat o końcu meczu.
+     *
+     * @throws Exception w przypadku błędu połączenia.
+     */
+    private void checkSharedBroadcast() throws Exception {
+        List<Socket> sockets = new ArrayList<>();
+        try {
+            List<DataInputStream> inputs = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                // Kolejno - gracze łączący się jednocześnie mogą trafić do dwóch nowych gier
+                Socket player = connect(server.getLocalPort(), (byte) 0);
+                sockets.add(player);
+                DataInputStream in = new DataInputStream(player.getInputStream());
+                assertEquals(WireProtocol.FRAME_WELCOME, WireProtocol.readFrame(in).type);
+                inputs.add(in);
+            }
+            Socket player1 = sockets.get(0);
+            Socket player2 = sockets.get(1);
+            for (DataInputStream in : inputs) {
+                assertEquals(WireProtocol.FRAME_STATE, WireProtocol.readFrame(in).type);
+            }
+
+            List<DataInputStream> spectatorInputs = new ArrayList<>();
+            for (int i = 0; i < SPECTATORS; i++) {
+                Socket spectator = connect(server.getLocalPort(), WireProtocol.FLAG_SPECTATE);
+                sockets.add(spectator);
+                WireProtocol.writeFrame(new DataOutputStream(spectator.getOutputStream()), WireProtocol.FRAME_WATCH,
+                        WireProtocol.watch(WireProtocol.ANY_GAME));
+                DataInputStream in = new DataInputStream(spectator.getInputStream());
+                WireProtocol.Frame welcome = WireProtocol.readFrame(in);
+                assertEquals(WireProtocol.FRAME_WELCOME, welcome.type);
+                assertEquals(WireProtocol.FLAG_SPECTATE, welcome.payload[1]);
+                assertEquals(WireProtocol.FRAME_STATE, WireProtocol.readFrame(in).type); // Bieżący stan od razu
+                spectatorInputs.add(in);
+            }
+            inputs.addAll(spectatorInputs);
+            GameInstance game = server.getMatchmaker().get(0);
+            assertEquals(SPECTATORS, game.getSpectatorCount());
+            long serialized = game.getMetrics().getSerializedStates();
+
+            // Stan od widza jest pomijany - następny stan u wszystkich pochodzi od gracza
+            WireProtocol.writeFrame(new DataOutputStream(sockets.get(2).getOutputStream()), WireProtocol.FRAME_STATE,
+                    BinaryCodec.INSTANCE.encode(state(999)));
+            WireProtocol.writeFrame(new DataOutputStream(player1.getOutputStream()), WireProtocol.FRAME_STATE,
+                    BinaryCodec.INSTANCE.encode(state(140)));
+
+            byte[] expected = null;
+            for (DataInputStream in : inputs) {
+                WireProtocol.Frame frame = WireProtocol.readFrame(in);
+                assertEquals(WireProtocol.FRAME_STATE, frame.type);
+                if (expected == null) {
+                    expected = frame.payload;
+                    assertEquals(140, BinaryCodec.INSTANCE.decode(expected, 0, expected.length).getPlayer1Tank().getX());
+                }
+                assertArrayEquals(expected, frame.payload);
+            }
+            assertEquals(serialized + 1, game.getMetrics().getSerializedStates());
+
+            player1.close();
+            player2.close();
+            for (DataInputStream in : spectatorInputs) {
+                assertEquals(WireProtocol.MATCH_ENDED_MESSAGE, readText(in));
+            }
+        } finally {
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        }
+    }
+}
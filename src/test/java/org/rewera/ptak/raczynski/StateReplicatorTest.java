@@ -0,0 +1,101 @@
+package org.rewera.ptak.raczynski;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testy replikacji stanu gry: {@link StateReplicator} po stronie serwera i {@link StateReplica} po stronie klienta.
+ */
+class StateReplicatorTest {
+
+    /**
+     * Replikacja po stronie serwera.
+     */
+    private StateReplicator replicator;
+
+    /**
+     * Replika po stronie klienta.
+     */
+    private StateReplica replica;
+
+    /**
+     * Bieżący stan gry na serwerze.
+     */
+    private GameState state;
+
+    /**
+     * Przygotowanie testów.
+     */
+    @BeforeEach
+    void setUp() {
+        replicator = new StateReplicator(BinaryCodec.INSTANCE);
+        replica = new StateReplica(BinaryCodec.INSTANCE);
+        state = new GameState(new Tank(100, 515, Color.BLUE), new Tank(600, 515, Color.RED),
+                new ArrayList<>(), new ArrayList<>(), true);
+    }
+
+    /**
+     * Sprawdza, czy przed potwierdzeniem wysyłane są klatki kluczowe, a po nim różnice.
+     *
+     * @throws IOException jeśli odtworzenie stanu się nie powiodło.
+     */
+    @Test
+    void testDeltasAfterAck() throws IOException {
+        WireProtocol.Frame first = replicator.next(state);
+        assertEquals(WireProtocol.FRAME_SNAPSHOT, first.type);
+        replica.apply(first);
+
+        state.getPlayer1Tank().moveRight(state.getObstacles());
+        assertEquals(WireProtocol.FRAME_SNAPSHOT, replicator.next(state).type); // Brak potwierdzenia
+
+        replicator.ack(replica.getLastSeq());
+        state.getPlayer1Tank().moveRight(state.getObstacles());
+        WireProtocol.Frame delta = replicator.next(state);
+        assertEquals(WireProtocol.FRAME_DELTA, delta.type);
+        assertTrue(delta.payload.length < first.payload.length / 2);
+
+        GameState applied = replica.apply(delta);
+        assertEquals(104, applied.getPlayer1Tank().getX());
+    }
+
+    /**
+     * Sprawdza, czy co {@link StateReplicator#KEYFRAME_INTERVAL} stanów wysyłana jest klatka kluczowa.
+     *
+     * @throws IOException jeśli odtworzenie stanu się nie powiodło.
+     */
+    @Test
+    void testPeriodicKeyframe() throws IOException {
+        int keyframes = 0;
+        for (int i = 0; i < 2 * StateReplicator.KEYFRAME_INTERVAL; i++) {
+            state.getPlayer2Tank().changeAngle(1);
+            WireProtocol.Frame frame = replicator.next(state);
+            if (frame.type == WireProtocol.FRAME_SNAPSHOT) {
+                keyframes++;
+            }
+            assertEquals(state.getPlayer2Tank().getAngle(), replica.apply(frame).getPlayer2Tank().getAngle());
+            replicator.ack(replica.getLastSeq());
+        }
+        assertEquals(2, keyframes);
+    }
+
+    /**
+     * Sprawdza, czy różnica do nieznanego stanu bazowego jest pomijana przez klienta.
+     *
+     * @throws IOException jeśli odtworzenie stanu się nie powiodło.
+     */
+    @Test
+    void testMissingBaseIsIgnored() throws IOException {
+        WireProtocol.Frame first = replicator.next(state);
+        replicator.ack(1);
+        WireProtocol.Frame delta = replicator.next(state);
+        assertEquals(WireProtocol.FRAME_DELTA, delta.type);
+        assertNull(replica.apply(delta)); // Klient nie odebrał klatki kluczowej
+        assertNotNull(replica.apply(first));
+    }
+}
@@ -0,0 +1,142 @@
+package org.rewera.ptak.raczynski;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Benchmark harmonogramu taktów: opóźnienie (jitter) taktów przy 1k, 10k i 50k jednoczesnych
+ * grach dwuosobowych prowadzonych przez serwer w jednej maszynie wirtualnej.
+ *
+ * <p>Każde zadanie odpowiada taktowi {@link GameInstance}: pod blokadą stosuje polecenie,
+ * wykonuje krok {@link GameSimulation} i tworzy migawkę stanu, gdy stan się zmienił.
+ * Sieć jest pominięta. Co kilka sekund gracz oddaje strzał, więc część gier ma pociski w locie.</p>
+ *
+ * <p>Uruchomienie: {@code java -cp target/classes:target/test-classes
+ * org.rewera.ptak.raczynski.TickSchedulerBenchmark [liczby instancji] [sekundy] [wątki]},
+ * np. {@code 1000,10000,50000 10 8}.</p>
+ */
+class TickSchedulerBenchmark {
+
+    /**
+     * Punkt wejścia benchmarku.
+     *
+     * @param args Liczby instancji (po przecinku), czas pomiaru w sekundach i liczba wątków taktujących.
+     * @throws InterruptedException jeśli oczekiwanie zostało przerwane.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        String[] counts = (args.length > 0 ? args[0] : "1000,10000,50000").split(",");
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        System.out.printf("%8s %7s %9s %9s %9s %9s %8s %8s %6s%n",
+                "games", "threads", "p50 us", "p99 us", "p99.9 us", "max us", "missed", "late", "slow");
+        for (String count : counts) {
+            run(Integer.parseInt(count.trim()), seconds, threads);
+        }
+    }
+
+    /**
+     * Wykonuje jeden pomiar.
+     *
+     * @param games   Liczba instancji gier.
+     * @param seconds Czas pomiaru w sekundach.
+     * @param threads Liczba wątków taktujących.
+     * @throws InterruptedException jeśli oczekiwanie zostało przerwane.
+     */
+    private static void run(int games, int seconds, int threads) throws InterruptedException {
+        TickScheduler scheduler = new TickScheduler("bench-tick", threads, GameSimulation.TICK_MILLIS);
+        List<TickScheduler.Handle> handles = new ArrayList<>(games);
+        for (int i = 0; i < games; i++) {
+            handles.add(scheduler.schedule(new SimulatedGame(i)));
+        }
+
+        Thread.sleep(2000); // Rozgrzewka
+        scheduler.getTickLateness().reset();
+        long missedBefore = scheduler.getMissedTicks();
+        Thread.sleep(seconds * 1000L);
+
+        LatencyHistogram lateness = scheduler.getTickLateness();
+        long late = 0;
+        long slow = 0;
+        for (TickScheduler.Handle handle : handles) {
+            late += handle.getLateTicks();
+            slow += handle.getSlowTicks();
+        }
+        System.out.printf("%8d %7d %9d %9d %9d %9d %8d %8d %6d%n", games, threads,
+                lateness.getPercentile(50) / 1000, lateness.getPercentile(99) / 1000,
+                lateness.getPercentile(99.9) / 1000, lateness.getMax() / 1000,
+                scheduler.getMissedTicks() - missedBefore, late, slow);
+        scheduler.shutdown();
+    }
+
+    /**
+     * Takt jednej gry odpowiadający {@code GameInstance.tick()} bez rozsyłania przez sieć.
+     */
+    private static final class SimulatedGame implements Runnable {
+
+        /**
+         * Blokada instancji gry.
+         */
+        private final ReentrantLock lock = new ReentrantLock();
+
+        /**
+         * Symulacja gry.
+         */
+        private GameSimulation simulation;
+
+        /**
+         * Numer taktu (przesunięty, aby strzały w różnych grach nie wypadały jednocześnie).
+         */
+        private int tick;
+
+        /**
+         * Ostatnia migawka stanu.
+         */
+        private GameState snapshot;
+
+        /**
+         * Tworzy grę.
+         *
+         * @param seed Przesunięcie numeru taktu.
+         */
+        SimulatedGame(int seed) {
+            this.tick = seed;
+            reset();
+        }
+
+        /**
+         * Ustawia stan początkowy gry.
+         */
+        private void reset() {
+            List<Obstacle> obstacles = new ArrayList<>();
+            obstacles.add(new Obstacle(300, 530, 30, 20));
+            obstacles.add(new Obstacle(420, 530, 40, 20));
+            simulation = new GameSimulation(new GameState(new Tank(100, 515, Color.BLUE), new Tank(600, 515, Color.RED),
+                    new ArrayList<>(), obstacles, true));
+        }
+
+        @Override
+        public void run() {
+            lock.lock();
+            try {
+                tick++;
+                boolean changed = false;
+                if (tick % 240 == 0) {
+                    changed = simulation.applyInput(true, InputCommand.FIRE)
+                            | simulation.applyInput(false, InputCommand.FIRE);
+                }
+                changed |= simulation.step();
+                if (changed) {
+                    snapshot = simulation.snapshot();
+                }
+                if (simulation.isGameOver()) {
+                    reset();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package org.rewera.ptak.raczynski;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testy klasy {@link TickScheduler}.
+ * Okresy i czasy oczekiwania są dobrane z dużym zapasem, aby testy nie zależały od obciążenia maszyny.
+ */
+class TickSchedulerTest {
+
+    /**
+     * Testowany harmonogram.
+     */
+    private TickScheduler scheduler;
+
+    /**
+     * Zatrzymuje harmonogram po każdym teście.
+     */
+    @AfterEach
+    void tearDown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    /**
+     * Sprawdza, czy zadanie jest wykonywane cyklicznie i przestaje być wykonywane po anulowaniu.
+     *
+     * @throws InterruptedException jeśli oczekiwanie zostało przerwane.
+     */
+    @Test
+    void testRunsAtFixedRateUntilCancelled() throws InterruptedException {
+        scheduler = new TickScheduler("test-tick", 2, 5);
+        AtomicInteger ticks = new AtomicInteger();
+        TickScheduler.Handle handle = scheduler.schedule(ticks::incrementAndGet);
+
+        Thread.sleep(300);
+        int counted = ticks.get();
+        assertTrue(counted >= 10 && counted <= 70, "ticks=" + counted);
+
+        handle.cancel();
+        Thread.sleep(50);
+        int afterCancel = ticks.get();
+        Thread.sleep(100);
+        assertEquals(afterCancel, ticks.get());
+        assertTrue(scheduler.getTickLateness().getCount() > 0);
+    }
+
+    /**
+     * Sprawdza, czy zadanie regularnie przekraczające budżet trafia na wolny pas,
+     * a pozostałe zadania sharda są dalej wykonywane bez opóźnień.
+     *
+     * @throws InterruptedException jeśli oczekiwanie zostało przerwane.
+     */
+    @Test
+    void testSlowTaskMovesToSlowLane() throws InterruptedException {
+        scheduler = new TickScheduler("test-tick", 1, 20);
+        TickScheduler.Handle slow = scheduler.schedule(() -> {
+            try {
+                Thread.sleep(15);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        AtomicInteger fastTicks = new AtomicInteger();
+        TickScheduler.Handle fast = scheduler.schedule(fastTicks::incrementAndGet);
+
+        Thread.sleep(500);
+        assertTrue(slow.isOnSlowLane());
+        assertTrue(slow.getSlowTicks() >= TickScheduler.SLOW_STRIKES);
+        assertFalse(fast.isOnSlowLane());
+        assertEquals(1, scheduler.getSlowLaneSize());
+
+        int before = fastTicks.get();
+        Thread.sleep(200);
+        assertTrue(fastTicks.get() - before >= 5, "fast ticks=" + (fastTicks.get() - before));
+    }
+
+    /**
+     * Sprawdza, czy zadanie, które przestało przekraczać budżet, wraca z wolnego pasa na zwykły shard.
+     *
+     * @throws InterruptedException jeśli oczekiwanie zostało przerwane.
+     */
+    @Test
+    void testRecoveredTaskLeavesSlowLane() throws InterruptedException {
+        scheduler = new TickScheduler("test-tick", 1, 20);
+        AtomicInteger slowTicksLeft = new AtomicInteger(TickScheduler.SLOW_STRIKES);
+        TickScheduler.Handle handle = scheduler.schedule(() -> {
+            if (slowTicksLeft.getAndDecrement() > 0) {
+                try {
+                    Thread.sleep(15);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!handle.isOnSlowLane() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(handle.isOnSlowLane());
+
+        deadline = System.currentTimeMillis() + 10_000;
+        while (handle.isOnSlowLane() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertFalse(handle.isOnSlowLane());
+        assertEquals(0, scheduler.getSlowLaneSize());
+    }
+}
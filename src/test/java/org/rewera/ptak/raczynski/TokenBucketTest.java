@@ -0,0 +1,57 @@
+package org.rewera.ptak.raczynski;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testy limitu wiadomości {@link TokenBucket}.
+ */
+class TokenBucketTest {
+
+    /**
+     * Sprawdza, czy pełny kubełek przepuszcza serię, a potem jedną wiadomość na czas uzupełnienia żetonu.
+     */
+    @Test
+    void testBurstThenSteadyRate() {
+        TokenBucket bucket = new TokenBucket(10, 3);
+        long now = System.nanoTime();
+        assertTrue(bucket.tryAcquire(now));
+        assertTrue(bucket.tryAcquire(now));
+        assertTrue(bucket.tryAcquire(now));
+        assertFalse(bucket.tryAcquire(now));
+
+        long tick = TimeUnit.MILLISECONDS.toNanos(100);
+        assertFalse(bucket.tryAcquire(now + tick - 1));
+        assertTrue(bucket.tryAcquire(now + tick));
+        assertFalse(bucket.tryAcquire(now + tick));
+
+        // Zasypujący klient dostaje średnio rate wiadomości na sekundę
+        int admitted = 0;
+        for (long t = now + tick; t <= now + tick + TimeUnit.SECONDS.toNanos(1); t += tick / 10) {
+            if (bucket.tryAcquire(t)) {
+                admitted++;
+            }
+        }
+        assertEquals(10, admitted);
+    }
+
+    /**
+     * Sprawdza, czy bezczynność uzupełnia kubełek najwyżej do jego pojemności.
+     */
+    @Test
+    void testIdleRefillIsCappedAtBurst() {
+        TokenBucket bucket = new TokenBucket(100, 5);
+        long now = System.nanoTime();
+        long later = now + TimeUnit.MINUTES.toNanos(1);
+        int admitted = 0;
+        while (bucket.tryAcquire(later)) {
+            admitted++;
+        }
+        assertEquals(5, admitted);
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(0, 5));
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(5, 0));
+    }
+}
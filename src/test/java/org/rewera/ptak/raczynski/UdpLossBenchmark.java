@@ -0,0 +1,172 @@
+package org.rewera.ptak.raczynski;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.Arrays;
+
+/**
+ * Benchmark opóźnienia stanów gry przy sztucznej utracie datagramów na pętli zwrotnej:
+ * dostarczanie „najnowszy wygrywa” (UDP) wobec dostarczania w kolejności z ponowieniami,
+ * które odwzorowuje blokowanie czoła kolejki w TCP.
+ *
+ * <p>Nadawca wysyła co {@code interwał} ms stan z numerem. Dla każdego stanu mierzony jest czas,
+ * po którym odbiorca pokazuje ten stan albo nowszy - przy dostarczaniu w kolejności zgubiony stan
+ * wstrzymuje wszystkie kolejne do ponowienia, a przy „najnowszy wygrywa” przykrywa go następny.</p>
+ *
+ * <p>Uruchomienie: {@code java -cp target/classes:target/test-classes
+ * org.rewera.ptak.raczynski.UdpLossBenchmark [utrata] [stany] [interwał ms]}.</p>
+ */
+class UdpLossBenchmark {
+
+    /**
+     * Punkt wejścia benchmarku.
+     *
+     * @param args Prawdopodobieństwo utraty, liczba stanów i odstęp między stanami w milisekundach.
+     * @throws Exception w przypadku błędu kanałów.
+     */
+    public static void main(String[] args) throws Exception {
+        double loss = args.length > 0 ? Double.parseDouble(args[0]) : 0.05;
+        int states = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        long interval = args.length > 2 ? Long.parseLong(args[2]) : 16;
+
+        System.out.printf("%-12s %6s %9s %9s %9s %9s%n", "delivery", "loss", "p50 us", "p99 us", "max us", "retx");
+        for (boolean newestWins : new boolean[]{false, true}) {
+            Result result = measure(newestWins, loss, states, interval);
+            System.out.printf("%-12s %5.0f%% %9d %9d %9d %9d%n", newestWins ? "newest-wins" : "in-order", loss * 100,
+                    result.latency.getPercentile(50) / 1000, result.latency.getPercentile(99) / 1000,
+                    result.latency.getMax() / 1000, result.retransmits);
+        }
+    }
+
+    /**
+     * Wynik pomiaru.
+     */
+    static final class Result {
+
+        /**
+         * Czas od wysłania stanu do pokazania go lub nowszego stanu.
+         */
+        final LatencyHistogram latency;
+
+        /**
+         * Liczba ponowień kanału niezawodnego.
+         */
+        final long retransmits;
+
+        /**
+         * Tworzy wynik.
+         *
+         * @param latency     Histogram opóźnień.
+         * @param retransmits Liczba ponowień.
+         */
+        Result(LatencyHistogram latency, long retransmits) {
+            this.latency = latency;
+            this.retransmits = retransmits;
+        }
+    }
+
+    /**
+     * Wykonuje jeden pomiar na parze łączy UDP na pętli zwrotnej.
+     *
+     * @param newestWins Określa, czy stany idą bez potwierdzeń („najnowszy wygrywa”), czy w kolejności z ponowieniami.
+     * @param loss       Prawdopodobieństwo utraty datagramu w każdym kierunku.
+     * @param states     Liczba wysyłanych stanów.
+     * @param interval   Odstęp między stanami w milisekundach.
+     * @return Wynik pomiaru.
+     * @throws Exception w przypadku błędu kanałów.
+     */
+    static Result measure(boolean newestWins, double loss, int states, long interval) throws Exception {
+        DatagramChannel senderChannel = DatagramChannel.open().bind(new InetSocketAddress("localhost", 0));
+        DatagramChannel receiverChannel = DatagramChannel.open().bind(new InetSocketAddress("localhost", 0));
+        UdpLink sender = new UdpLink(senderChannel, 1, receiverChannel.getLocalAddress());
+        UdpLink receiver = new UdpLink(receiverChannel, 1, senderChannel.getLocalAddress());
+        sender.setLossRate(loss);
+        receiver.setLossRate(loss);
+
+        long[] sent = new long[states + 1];
+        long[] shown = new long[states + 1];
+        Arrays.fill(shown, Long.MAX_VALUE);
+
+        Thread receiving = new Thread(() -> receive(receiver, receiverChannel, newestWins, shown));
+        Thread acknowledging = new Thread(() -> receive(sender, senderChannel, newestWins, null));
+        receiving.start();
+        acknowledging.start();
+        try {
+            long next = System.nanoTime();
+            for (int seq = 1; seq <= states; seq++) {
+                byte[] payload = ByteBuffer.allocate(4).putInt(seq).array();
+                sent[seq] = System.nanoTime();
+                if (newestWins) {
+                    sender.send(WireProtocol.FRAME_SNAPSHOT, payload);
+                } else {
+                    sender.sendReliable(WireProtocol.FRAME_SNAPSHOT, payload);
+                }
+                // Zegar ponowień (jak w UdpTransport) do czasu wysłania kolejnego stanu
+                next += interval * 1_000_000L;
+                while (System.nanoTime() < next) {
+                    sender.retransmit();
+                    Thread.sleep(Math.min(UdpTransport.TIMER_MILLIS, Math.max(1, (next - System.nanoTime()) / 1_000_000)));
+                }
+            }
+            long deadline = System.nanoTime() + 2_000_000_000L;
+            while (sender.getReliable().getUnacked() > 0 && System.nanoTime() < deadline) {
+                sender.retransmit();
+                Thread.sleep(UdpTransport.TIMER_MILLIS);
+            }
+            Thread.sleep(50);
+        } finally {
+            senderChannel.close();
+            receiverChannel.close();
+            receiving.join();
+            acknowledging.join();
+        }
+
+        // Stan jest widoczny, gdy pokazano jego lub nowszy - minimum po sufiksie
+        LatencyHistogram latency = new LatencyHistogram();
+        long covered = Long.MAX_VALUE;
+        for (int seq = states; seq >= 1; seq--) {
+            covered = Math.min(covered, shown[seq]);
+            if (covered != Long.MAX_VALUE) {
+                latency.record(covered - sent[seq]);
+            }
+        }
+        return new Result(latency, sender.getReliable().getRetransmits());
+    }
+
+    /**
+     * Pętla odbierająca datagramy jednego końca łącza.
+     *
+     * @param link       Koniec łącza.
+     * @param channel    Kanał datagramowy.
+     * @param newestWins Określa, czy pomijać stany starsze niż ostatnio pokazany.
+     * @param shown      Czasy pokazania stanów (null po stronie nadawcy, który odbiera tylko potwierdzenia).
+     */
+    private static void receive(UdpLink link, DatagramChannel channel, boolean newestWins, long[] shown) {
+        ByteBuffer buffer = ByteBuffer.allocate(UdpLink.MAX_DATAGRAM);
+        int lastShown = 0;
+        try {
+            while (true) {
+                buffer.clear();
+                channel.receive(buffer);
+                long now = System.nanoTime();
+                buffer.flip();
+                buffer.getLong();
+                byte type = buffer.get();
+                for (WireProtocol.Frame frame : link.receive(type, buffer.array(), buffer.position(), buffer.remaining())) {
+                    int seq = ByteBuffer.wrap(frame.payload).getInt();
+                    if (shown != null && (!newestWins || seq > lastShown)) {
+                        lastShown = seq;
+                        shown[seq] = now;
+                    }
+                }
+            }
+        } catch (ClosedChannelException e) {
+            // Koniec pomiaru
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package org.rewera.ptak.raczynski;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testy transportu UDP ({@link UdpTransport}, {@link UdpClient}) na pętli zwrotnej ze sztuczną utratą datagramów.
+ */
+class UdpTransportTest {
+
+    /**
+     * Prawdopodobieństwo sztucznej utraty datagramu w każdym kierunku.
+     */
+    private static final double LOSS = 0.2;
+
+    /**
+     * Serwer gry z włączonym transportem UDP.
+     */
+    private GameServer server;
+
+    /**
+     * Uruchamia serwer z transportem UDP tracącym część datagramów.
+     *
+     * @throws IOException jeśli nie udało się otworzyć portu.
+     */
+    @BeforeEach
+    void setUp() throws IOException {
+        ServerConfig config = new ServerConfig();
+        config.setPort(0);
+        config.setUdp(true);
+        server = GameServer.create(config);
+        server.start();
+        server.getUdpTransport().setLossRate(LOSS);
+    }
+
+    /**
+     * Zatrzymuje serwer po każdym teście.
+     */
+    @AfterEach
+    void tearDown() {
+        server.stop();
+    }
+
+    /**
+     * Gracz połączony przez TCP z przydzieloną sesją UDP.
+     */
+    private final class Player {
+
+        /**
+         * Gniazdo TCP.
+         */
+        final Socket socket;
+
+        /**
+         * Klient UDP.
+         */
+        final UdpClient udp;
+
+        /**
+         * Replika stanu gry odtwarzana z datagramów.
+         */
+        final StateReplica replica = new StateReplica(BinaryCodec.INSTANCE);
+
+        /**
+         * Ostatni stan odebrany przez UDP.
+         */
+        final AtomicReference<GameState> latest = new AtomicReference<>();
+
+        /**
+         * Liczba stanów odebranych przez UDP.
+         */
+        final AtomicInteger datagrams = new AtomicInteger();
+
+        /**
+         * Łączy gracza, odczytuje powitanie i żeton sesji, a następnie zgłasza się przez UDP.
+         *
+         * @throws IOException w przypadku błędu połączenia.
+         */
+        Player() throws IOException {
+            socket = new Socket("localhost", server.getLocalPort());
+            socket.setSoTimeout(5000);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            WireProtocol.writeHello(out, GameStateCodec.BINARY,
+                    (byte) (WireProtocol.FLAG_DELTA | WireProtocol.FLAG_INPUT | WireProtocol.FLAG_UDP));
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            WireProtocol.Frame welcome = WireProtocol.readFrame(in);
+            assertEquals(WireProtocol.FRAME_WELCOME, welcome.type);
+            assertTrue((welcome.payload[1] & WireProtocol.FLAG_UDP) != 0);
+            WireProtocol.Frame bind = WireProtocol.readFrame(in);
+            assertEquals(WireProtocol.FRAME_UDP_BIND, bind.type);
+
+            udp = new UdpClient(new InetSocketAddress("localhost", server.getLocalPort()),
+                    ByteBuffer.wrap(bind.payload).getLong(), frame -> {
+                try {
+                    GameState state = replica.apply(frame);
+                    if (state != null) {
+                        datagrams.incrementAndGet();
+                        latest.set(state);
+                        udp().sendAck(replica.getLastSeq());
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            });
+            udp.getLink().setLossRate(LOSS);
+            udp.start();
+        }
+
+        /**
+         * Zwraca klienta UDP (dla odbiorcy wywoływanego przed zakończeniem konstruktora).
+         *
+         * @return Klient UDP.
+         */
+        UdpClient udp() {
+            return udp;
+        }
+
+        /**
+         * Czeka, aż serwer potwierdzi zgłoszenie UDP.
+         *
+         * @throws InterruptedException jeśli oczekiwanie zostało przerwane.
+         */
+        void awaitReady() throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (!udp.isReady() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(udp.isReady(), "UDP session was not confirmed");
+        }
+
+        /**
+         * Zamyka połączenia gracza.
+         *
+         * @throws IOException w przypadku błędu zamykania.
+         */
+        void close() throws IOException {
+            udp.close();
+            socket.close();
+        }
+    }
+
+    /**
+     * Sprawdza, czy przy 20% utraty datagramów polecenia docierają do serwera kanałem niezawodnym,
+     * a obaj gracze dostają przez UDP stan końcowy serwera (ponowienie ostatniego stanu).
+     *
+     * @throws Exception w przypadku błędu połączenia.
+     */
+    @Test
+    void testCommandsAndStatesSurvivePacketLoss() throws Exception {
+        Player first = new Player();
+        Player second = new Player();
+        try {
+            first.awaitReady();
+            second.awaitReady();
+
+            int moves = 20;
+            for (int i = 1; i <= moves; i++) {
+                assertTrue(first.udp.sendInput(InputCommand.encode(i, InputCommand.RIGHT)));
+                Thread.sleep(5);
+            }
+
+            // Przeszkody są losowe, więc położenie końcowe odczytujemy z serwera
+            GameInstance game = server.getMatchmaker().getInstances().iterator().next();
+            long deadline = System.currentTimeMillis() + 10_000;
+            int serverX;
+            do {
+                Thread.sleep(10);
+                serverX = game.getGameState().getPlayer1Tank().getX();
+            } while (System.currentTimeMillis() < deadline && !(serverX > 100 && hasX(first, serverX) && hasX(second, serverX)));
+            assertTrue(serverX > 100, "no command reached the server");
+            assertTrue(hasX(first, serverX), "player 1 did not converge");
+            assertTrue(hasX(second, serverX), "player 2 did not converge");
+            assertTrue(first.datagrams.get() > 0 && second.datagrams.get() > 0);
+        } finally {
+            first.close();
+            second.close();
+        }
+    }
+
+    /**
+     * Sprawdza, czy przy utracie pakietów „najnowszy wygrywa” pokazuje aktualny stan wyraźnie szybciej
+     * niż dostarczanie w kolejności z ponowieniami (odpowiednik blokowania czoła kolejki w TCP).
+     *
+     * @throws Exception w przypadku błędu kanałów.
+     */
+    @Test
+    void testNewestWinsHidesLossLatency() throws Exception {
+        UdpLossBenchmark.Result inOrder = UdpLossBenchmark.measure(false, 0.1, 200, 10);
+        UdpLossBenchmark.Result newestWins = UdpLossBenchmark.measure(true, 0.1, 200, 10);
+        long inOrderP99 = inOrder.latency.getPercentile(99);
+        long newestP99 = newestWins.latency.getPercentile(99);
+        assertTrue(inOrder.retransmits > 0);
+        assertTrue(newestP99 * 2 < inOrderP99, "newest-wins p99=" + newestP99 + " ns, in-order p99=" + inOrderP99 + " ns");
+    }
+
+    /**
+     * Sprawdza, czy gracz ma przez UDP stan z czołgiem gracza 1 w podanym położeniu.
+     *
+     * @param player Gracz.
+     * @param x      Oczekiwane położenie czołgu gracza 1.
+     * @return true, jeśli ostatni stan ma czołg w tym położeniu.
+     */
+    private static boolean hasX(Player player, int x) {
+        GameState state = player.latest.get();
+        return state != null && state.getPlayer1Tank().getX() == x;
+    }
+}
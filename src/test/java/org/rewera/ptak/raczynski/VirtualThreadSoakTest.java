@@ -0,0 +1,112 @@
+package org.rewera.ptak.raczynski;
+
+import jdk.jfr.consumer.RecordingStream;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Test obciążeniowy trybu wątków wirtualnych.
+ * Otwiera wiele połączeń (domyślnie 10 000, właściwość {@code czolgi.soak.connections}),
+ * wymienia stany gry między parami graczy i sprawdza przez JFR, że żaden wątek wirtualny
+ * nie został przypięty do wątku nośnego (zdarzenie {@code jdk.VirtualThreadPinned}).
+ *
+ * <p>Test jest pomijany na JDK bez wątków wirtualnych oraz gdy limit deskryptorów plików
+ * nie pozwala otworzyć obu stron wszystkich połączeń w jednym procesie.</p>
+ */
+class VirtualThreadSoakTest {
+
+    /**
+     * Sprawdza brak przypięć wątków wirtualnych przy wielu jednoczesnych połączeniach.
+     *
+     * @throws Exception w przypadku błędu połączeń.
+     */
+    @Test
+    void testNoCarrierPinningUnderLoad() throws Exception {
+        assumeTrue(ClientThreads.isVirtualSupported(), "Virtual threads require JDK 21+");
+        int connections = Integer.getInteger("czolgi.soak.connections", 10_000) & ~1;
+        assumeTrue(maxFileDescriptors() > 2L * connections + 1000, "File descriptor limit too low");
+
+        ServerConfig config = new ServerConfig();
+        config.setPort(0);
+        config.setThreadMode(ClientThreads.Mode.VIRTUAL);
+        GameServer server = GameServer.create(config);
+        server.start();
+
+        AtomicInteger pinned = new AtomicInteger();
+        try (RecordingStream recording = new RecordingStream()) {
+            recording.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO);
+            recording.onEvent("jdk.VirtualThreadPinned", event -> pinned.incrementAndGet());
+            recording.startAsync();
+
+            List<Socket> sockets = new ArrayList<>();
+            List<ObjectOutputStream> outputs = new ArrayList<>();
+            List<ObjectInputStream> inputs = new ArrayList<>();
+            try {
+                for (int i = 0; i < connections; i++) {
+                    Socket socket = new Socket("localhost", server.getLocalPort());
+                    socket.setSoTimeout(30_000);
+                    ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
+                    out.flush();
+                    sockets.add(socket);
+                    outputs.add(out);
+                }
+                for (Socket socket : sockets) {
+                    ObjectInputStream in = new ObjectInputStream(socket.getInputStream());
+                    in.readBoolean();
+                    inputs.add(in);
+                }
+
+                // Każdy gracz wysyła stan, który serwer rozsyła do obu graczy w grze
+                for (int round = 0; round < 3; round++) {
+                    for (ObjectOutputStream out : outputs) {
+                        out.writeObject(new GameState(new Tank(100 + round, 515, Color.BLUE),
+                                new Tank(600, 515, Color.RED), new ArrayList<>(), new ArrayList<>(), true));
+                        out.reset();
+                        out.flush();
+                    }
+                    for (ObjectInputStream in : inputs) {
+                        // Stan startowy w pierwszej rundzie oraz po jednym stanie od każdego gracza pary
+                        int expected = round == 0 ? 3 : 2;
+                        for (int i = 0; i < expected; i++) {
+                            assertTrue(in.readObject() instanceof GameState);
+                        }
+                    }
+                }
+            } finally {
+                for (Socket socket : sockets) {
+                    socket.close();
+                }
+                server.stop();
+            }
+            Thread.sleep(1000); // Czas na dostarczenie zdarzeń JFR
+        }
+        assertEquals(0, pinned.get(), "Virtual threads were pinned to carrier threads");
+    }
+
+    /**
+     * Zwraca limit deskryptorów plików procesu.
+     *
+     * @return Limit deskryptorów lub {@link Long#MAX_VALUE}, jeśli nie jest znany.
+     */
+    private static long maxFileDescriptors() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.UnixOperatingSystemMXBean) {
+            return ((com.sun.management.UnixOperatingSystemMXBean) os).getMaxFileDescriptorCount();
+        }
+        return Long.MAX_VALUE;
+    }
+}
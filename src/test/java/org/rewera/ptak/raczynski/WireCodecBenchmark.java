@@ -0,0 +1,110 @@
+package org.rewera.ptak.raczynski;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmark porównujący kodek binarny z serializacją Javy:
+ * rozmiar ramki oraz czas kodowania i dekodowania typowego stanu gry,
+ * a także rozmiar różnicy ({@link DeltaCodec}) po typowej zmianie stanu.
+ *
+ * <p>Uruchomienie: {@code java -cp target/classes:target/test-classes
+ * org.rewera.ptak.raczynski.WireCodecBenchmark [iteracje]}.</p>
+ */
+class WireCodecBenchmark {
+
+    /**
+     * Punkt wejścia benchmarku.
+     *
+     * @param args Opcjonalnie liczba iteracji pomiarowych (domyślnie 200 000).
+     * @throws Exception w przypadku błędu dekodowania.
+     */
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        GameState state = typicalState();
+        GameStateCodec[] codecs = {SerializationCodec.INSTANCE, BinaryCodec.INSTANCE};
+        for (GameStateCodec codec : codecs) {
+            measure(codec, state, iterations / 10); // Rozgrzewka JIT
+        }
+        for (GameStateCodec codec : codecs) {
+            measure(codec, state, iterations);
+        }
+        measureDelta(state, iterations);
+    }
+
+    /**
+     * Mierzy i wypisuje koszt różnicy po typowej zmianie: ruchu czołgu i przesunięciu pocisku.
+     *
+     * @param base       Stan bazowy.
+     * @param iterations Liczba iteracji.
+     * @throws Exception w przypadku błędu dekodowania.
+     */
+    private static void measureDelta(GameState base, int iterations) throws Exception {
+        GameState current = base.copy();
+        current.getPlayer1Tank().moveRight(current.getObstacles());
+        current.getBullets().get(0).move();
+        byte[] data = DeltaCodec.encode(base, current);
+        long sink = 0;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += DeltaCodec.encode(base, current).length;
+        }
+        long encodeNs = (System.nanoTime() - start) / iterations;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += DeltaCodec.apply(base, data, 0, data.length).getBullets().size();
+        }
+        long decodeNs = (System.nanoTime() - start) / iterations;
+
+        System.out.printf("%-20s bytes/frame=%5d encode=%6d ns decode=%6d ns (%d)%n",
+                "DeltaCodec", data.length, encodeNs, decodeNs, sink % 10);
+    }
+
+    /**
+     * Mierzy i wypisuje koszt kodeka.
+     *
+     * @param codec      Kodek.
+     * @param state      Stan gry.
+     * @param iterations Liczba iteracji.
+     * @throws Exception w przypadku błędu dekodowania.
+     */
+    private static void measure(GameStateCodec codec, GameState state, int iterations) throws Exception {
+        byte[] data = codec.encode(state);
+        long sink = 0;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += codec.encode(state).length;
+        }
+        long encodeNs = (System.nanoTime() - start) / iterations;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += codec.decode(data, 0, data.length).getBullets().size();
+        }
+        long decodeNs = (System.nanoTime() - start) / iterations;
+
+        System.out.printf("%-20s bytes/frame=%5d encode=%6d ns decode=%6d ns (%d)%n",
+                codec.getClass().getSimpleName(), data.length, encodeNs, decodeNs, sink % 10);
+    }
+
+    /**
+     * Buduje typowy stan gry: dwa czołgi, jeden pocisk w locie i pięć przeszkód.
+     *
+     * @return Stan gry.
+     */
+    private static GameState typicalState() {
+        List<Bullet> bullets = new ArrayList<>();
+        Bullet bullet = new Bullet(112, 515, 45, Color.BLUE, true);
+        bullet.move();
+        bullets.add(bullet);
+        List<Obstacle> obstacles = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            obstacles.add(new Obstacle(200 + i * 80, 530, 30, 20));
+        }
+        return new GameState(new Tank(100, 515, Color.BLUE), new Tank(600, 515, Color.RED), bullets, obstacles, true);
+    }
+}